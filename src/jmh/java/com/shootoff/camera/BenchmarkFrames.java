@@ -0,0 +1,64 @@
+package com.shootoff.camera;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Frames for the benchmarks: either one of the shot searcher test fixtures
+ * or a synthetic camera frame.
+ */
+public final class BenchmarkFrames {
+	public static final String SYNTHETIC = "synthetic";
+	
+	private BenchmarkFrames() {}
+	
+	/**
+	 * @param name	a file in <tt>src/test/resources/shotsearcher</tt> or
+	 * 				<tt>SYNTHETIC</tt>
+	 */
+	public static BufferedImage load(String name) throws IOException {
+		if (SYNTHETIC.equals(name)) return createSynthetic(CameraManager.FEED_WIDTH, CameraManager.FEED_HEIGHT);
+		
+		try (InputStream in = BenchmarkFrames.class.getResourceAsStream("/shotsearcher/" + name)) {
+			if (in == null) throw new IOException("Missing benchmark frame " + name);
+			return ImageIO.read(in);
+		}
+	}
+	
+	/**
+	 * Creates a noisy, mostly dark frame with a red and a green laser dot
+	 * in different sectors. The noise is seeded so every run benchmarks the
+	 * same frame.
+	 */
+	public static BufferedImage createSynthetic(int width, int height) {
+		BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Random random = new Random(42);
+		
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int gray = 40 + random.nextInt(40);
+				frame.setRGB(x, y, gray << 16 | gray << 8 | gray);
+			}
+		}
+		
+		Graphics2D g = frame.createGraphics();
+		drawDot(g, new Color(255, 60, 60), width / 6, height / 6);
+		drawDot(g, new Color(60, 255, 60), width * 5 / 6, height * 5 / 6);
+		g.dispose();
+		
+		return frame;
+	}
+	
+	private static void drawDot(Graphics2D g, Color color, int x, int y) {
+		g.setColor(color);
+		g.fillOval(x - 6, y - 6, 12, 12);
+		g.setColor(Color.WHITE);
+		g.fillOval(x - 2, y - 2, 4, 4);
+	}
+}
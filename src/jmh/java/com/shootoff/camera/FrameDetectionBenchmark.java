@@ -0,0 +1,75 @@
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shootoff.config.Configuration;
+
+/**
+ * Benchmarks the per frame work done before a shot search: thresholding,
+ * counting bright pixels, and updating the bloom filter.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameDetectionBenchmark {
+	@Param({ "no_interference_two_shots.png", "all_interference.png", BenchmarkFrames.SYNTHETIC })
+	private String frameName;
+	
+	private Configuration config;
+	private BufferedImage grayScale;
+	private BufferedImage threshed;
+	private ByteBuffer pixels;
+	private FrameDetector detector;
+	
+	@Setup
+	public void setUp() throws Exception {
+		config = new Configuration(new String[0]);
+		
+		BufferedImage frame = BenchmarkFrames.load(frameName);
+		grayScale = new BufferedImage(frame.getWidth(), frame.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+		grayScale.createGraphics().drawImage(frame, 0, 0, null);
+		threshed = CameraManager.threshold(config, grayScale);
+		
+		pixels = ByteBuffer.allocateDirect(frame.getWidth() * frame.getHeight() * FrameSource.BYTES_PER_PIXEL);
+		ImageFrameSource.copyPixels(frame, pixels);
+		
+		// Fill the bloom filter so that detect measures the steady state
+		detector = new FrameDetector(config, frame.getWidth(), frame.getHeight());
+		for (int i = 0; i < CameraManager.DEFAULT_BLOOM_COUNT; i++) detect();
+	}
+	
+	@Benchmark
+	public BufferedImage threshold() {
+		return CameraManager.threshold(config, grayScale);
+	}
+	
+	@Benchmark
+	public byte[] frameCount() {
+		return CameraManager.getFrameCount(threshed);
+	}
+	
+	@Benchmark
+	public boolean detect() {
+		Optional<DetectionFrame> detectionFrame = detector.detect(pixels, CameraManager.DEFAULT_BLOOM_COUNT);
+		if (detectionFrame.isPresent()) detectionFrame.get().release();
+		return detectionFrame.isPresent();
+	}
+}
@@ -0,0 +1,78 @@
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shootoff.config.Configuration;
+
+/**
+ * Benchmarks searching one thresholded frame for shots with each search
+ * engine. The detector and classifier are reused like they are by
+ * CameraManager.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShotSearchBenchmark {
+	@Param({ "no_interference_two_shots.png", "all_interference.png", BenchmarkFrames.SYNTHETIC })
+	private String frameName;
+	
+	@Param({ "sector", "blob" })
+	private String engine;
+	
+	private Configuration config;
+	private boolean[][] sectorStatuses;
+	private DetectionFrame detectionFrame;
+	private final BlobDetector blobDetector = new BlobDetector();
+	private final ColorClassifier colorClassifier = new ColorClassifier();
+	private int shotsFound = 0;
+	
+	@Setup
+	public void setUp() throws Exception {
+		config = new Configuration(new String[0]);
+		config.setShotSearchEngineName(engine);
+		
+		// Unknown names silently select the sector engine
+		if (config.getShotSearchEngine() != ShotSearcher.SearchEngine.valueOf(engine.toUpperCase())) {
+			throw new IllegalStateException("Search engine " + engine + " isn't the one in effect");
+		}
+		
+		sectorStatuses = new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS];
+		for (boolean[] row : sectorStatuses) Arrays.fill(row, true);
+		
+		BufferedImage frame = BenchmarkFrames.load(frameName);
+		BufferedImage grayScale = new BufferedImage(frame.getWidth(), frame.getHeight(),
+				BufferedImage.TYPE_BYTE_GRAY);
+		grayScale.createGraphics().drawImage(frame, 0, 0, null);
+		
+		detectionFrame = new DetectionFrame(frame,
+				CameraManager.getFrameCount(CameraManager.threshold(config, grayScale)));
+	}
+	
+	@Benchmark
+	public int search() {
+		ShotSearcher searcher = new ShotSearcher(config, (color, x, y) -> shotsFound++, sectorStatuses,
+				detectionFrame);
+		searcher.setBlobDetector(blobDetector);
+		searcher.setColorClassifier(colorClassifier);
+		searcher.run();
+		
+		return shotsFound;
+	}
+}
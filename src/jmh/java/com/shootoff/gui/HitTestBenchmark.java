@@ -0,0 +1,145 @@
+package com.shootoff.gui;
+
+import java.io.File;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javafx.collections.FXCollections;
+import javafx.embed.swing.JFXPanel;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.CamerasSupervisor;
+import com.shootoff.camera.Shot;
+import com.shootoff.config.Configuration;
+import com.shootoff.targets.RegionType;
+import com.shootoff.targets.TargetRegion;
+import com.shootoff.targets.io.TargetIO;
+
+/**
+ * Benchmarks finding the region hit by a shot on a canvas with many
+ * targets. Targets are spread over the feed and shots land at random, so
+ * most shots hit some target's bounds. With <tt>useHitRasters</tt> the
+ * benchmark waits for every target's raster to be built before measuring.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HitTestBenchmark {
+	private static final int SHOT_COUNT = 1024;
+	
+	@Param({ "1", "10", "100" })
+	private int targetCount;
+	
+	@Param({ "IPSC.target", "plate_rack.target" })
+	private String targetName;
+	
+	@Param({ "false", "true" })
+	private boolean useHitRasters;
+	
+	private CanvasManager canvasManager;
+	private final Shot[] shots = new Shot[SHOT_COUNT];
+	private int nextShot = 0;
+	
+	@Setup
+	public void setUp() throws Exception {
+		new JFXPanel(); // Initialize the JFX toolkit
+		
+		Configuration config = new Configuration(new String[0]);
+		config.setUseHitRasters(useHitRasters);
+		canvasManager = new CanvasManager(new Group(), config, new CamerasSupervisor(config),
+				FXCollections.observableArrayList());
+		
+		Random random = new Random(42);
+		File targetFile = new File("targets" + File.separator + targetName);
+		
+		for (int i = 0; i < targetCount; i++) {
+			Optional<Group> target = TargetIO.loadTarget(targetFile);
+			if (!target.isPresent()) throw new IllegalStateException("Failed to load " + targetFile);
+			
+			// Targets are positioned by moving their regions, as
+			// TargetContainer does, because hit checks treat the regions'
+			// bounds in the target as canvas coordinates
+			Bounds bounds = target.get().getBoundsInLocal();
+			double x = random.nextInt(CameraManager.FEED_WIDTH) - bounds.getWidth() / 2;
+			double y = random.nextInt(CameraManager.FEED_HEIGHT) - bounds.getHeight() / 2;
+			
+			for (Node node : target.get().getChildren()) {
+				node.setLayoutX(node.getLayoutX() + x);
+				node.setLayoutY(node.getLayoutY() + y);
+			}
+			
+			canvasManager.addTarget(target.get(), false);
+		}
+		
+		// Targets too large to rasterize never get a raster, so don't wait
+		// for them forever
+		if (useHitRasters) {
+			for (Group target : canvasManager.getTargets()) {
+				for (int i = 0; i < 20 && !canvasManager.getHitIndex().getRaster(target).isPresent(); i++) {
+					Thread.sleep(TargetHitIndex.RASTER_DELAY);
+				}
+			}
+		}
+		
+		verifyHit(canvasManager.getTargets().get(0));
+		
+		for (int i = 0; i < SHOT_COUNT; i++) {
+			shots[i] = new Shot(Color.RED, random.nextInt(CameraManager.FEED_WIDTH),
+					random.nextInt(CameraManager.FEED_HEIGHT), 0, config.getMarkerRadius());
+		}
+	}
+	
+	// Makes sure the benchmark measures hits rather than misses by shooting
+	// a point known to be inside one of the first target's regions
+	private void verifyHit(Group target) {
+		for (Node node : target.getChildren()) {
+			if (((TargetRegion)node).getType() == RegionType.IMAGE) continue;
+			
+			Bounds bounds = node.getBoundsInParent();
+			
+			for (double x = bounds.getMinX(); x <= bounds.getMaxX(); x++) {
+				for (double y = bounds.getMinY(); y <= bounds.getMaxY(); y++) {
+					if (!node.contains(node.parentToLocal(x, y))) continue;
+					
+					Shot shot = new Shot(Color.RED, x, y, 0, 1);
+					if (!canvasManager.checkHit(shot).isPresent()) {
+						throw new IllegalStateException(String.format("Shot at (%.0f, %.0f) missed %s", x, y, 
+								targetName));
+					}
+					
+					return;
+				}
+			}
+		}
+		
+		throw new IllegalStateException("Found no point inside " + targetName);
+	}
+	
+	@Benchmark
+	public Optional<TargetRegion> checkHit() {
+		Shot shot = shots[nextShot];
+		nextShot = (nextShot + 1) % SHOT_COUNT;
+		
+		return canvasManager.checkHit(shot);
+	}
+}
@@ -0,0 +1,45 @@
+package com.shootoff.headless;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.shootoff.config.Configuration;
+
+/**
+ * Benchmarks detecting every shot in a recorded video end to end, from
+ * decoding to deduplication. Each operation processes the whole video.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class VideoDetectionBenchmark {
+	private Configuration config;
+	private File videoFile;
+	
+	@Setup
+	public void setUp() throws Exception {
+		config = new Configuration(new String[0]);
+		videoFile = new File(VideoDetectionBenchmark.class.getResource(
+				"/shotsearcher/no_interference_two_shots.mp4").toURI());
+	}
+	
+	@Benchmark
+	public List<DetectedShot> detectShots() {
+		return new VideoShotDetector(config, videoFile).call();
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+/**
+ * A group of 8-connected white pixels in a shot frame.
+ */
+public class Blob {
+	private final int minX;
+	private final int minY;
+	private final int maxX;
+	private final int maxY;
+	private final int area;
+	private final double centroidX;
+	private final double centroidY;
+	
+	public Blob(int minX, int minY, int maxX, int maxY, int area, double centroidX, double centroidY) {
+		this.minX = minX;
+		this.minY = minY;
+		this.maxX = maxX;
+		this.maxY = maxY;
+		this.area = area;
+		this.centroidX = centroidX;
+		this.centroidY = centroidY;
+	}
+	
+	public int getMinX() {
+		return minX;
+	}
+	
+	public int getMinY() {
+		return minY;
+	}
+	
+	public int getMaxX() {
+		return maxX;
+	}
+	
+	public int getMaxY() {
+		return maxY;
+	}
+	
+	public int getWidth() {
+		return maxX - minX + 1;
+	}
+	
+	public int getHeight() {
+		return maxY - minY + 1;
+	}
+	
+	/**
+	 * @return the number of white pixels in this blob
+	 */
+	public int getArea() {
+		return area;
+	}
+	
+	public double getCentroidX() {
+		return centroidX;
+	}
+	
+	public double getCentroidY() {
+		return centroidY;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("Blob (%d, %d) %dx%d area=%d centroid=(%.1f, %.1f)",
+				minX, minY, getWidth(), getHeight(), area, centroidX, centroidY);
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Finds every blob in a shot frame with a single raster scan. Each white
+ * pixel gets the label of an already visited neighbor (left, up-left, up,
+ * or up-right) and labels that turn out to touch are joined with
+ * union-find. Bounding boxes, areas, and centroids are accumulated per
+ * label while scanning and merged into each label's root at the end, so
+ * the frame is never scanned a second time. Only two rows of labels are
+ * kept and black pixels are skipped 64 at a time.
+ * 
+ * A detector reuses its buffers between frames and must not be used by
+ * more than one thread at a time.
+ */
+public class BlobDetector {
+	private static final int INITIAL_LABELS = 256;
+	
+	private int[] previousRow = new int[0];
+	private int[] currentRow = new int[0];
+	
+	private int labelCount;
+	private int[] parents = new int[INITIAL_LABELS];
+	private int[] minXs = new int[INITIAL_LABELS];
+	private int[] minYs = new int[INITIAL_LABELS];
+	private int[] maxXs = new int[INITIAL_LABELS];
+	private int[] maxYs = new int[INITIAL_LABELS];
+	private int[] areas = new int[INITIAL_LABELS];
+	private long[] sumXs = new long[INITIAL_LABELS];
+	private long[] sumYs = new long[INITIAL_LABELS];
+	
+	/**
+	 * @param frame	the frame whose shot frame should be labelled
+	 * @return every blob in the shot frame, ordered by the position of each
+	 * 		blob's first pixel (top to bottom, then left to right)
+	 */
+	public List<Blob> findBlobs(DetectionFrame frame) {
+		int width = frame.getWidth();
+		int height = frame.getHeight();
+		long[] shotFrame = frame.getShotFrame();
+		
+		if (previousRow.length != width + 2) {
+			// Rows are padded by one label on each side so that neighbors
+			// never need bounds checks
+			previousRow = new int[width + 2];
+			currentRow = new int[width + 2];
+		} else {
+			Arrays.fill(previousRow, 0);
+			Arrays.fill(currentRow, 0);
+		}
+		
+		// Label 0 is the background
+		labelCount = 1;
+		boolean previousRowDirty = false;
+		boolean currentRowDirty = false;
+		
+		for (int y = 0; y < height; y++) {
+			int rowStart = y * width;
+			int rowEnd = rowStart + width;
+			int wordIndex = rowStart >>> 6;
+			long word = shotFrame[wordIndex] & (-1L << rowStart);
+			
+			while (true) {
+				while (word == 0 && ++wordIndex << 6 < rowEnd) word = shotFrame[wordIndex];
+				if (word == 0) break;
+				
+				int i = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+				if (i >= rowEnd) break;
+				word &= word - 1;
+				
+				labelPixel(i - rowStart, y);
+				currentRowDirty = true;
+			}
+			
+			int[] finishedRow = previousRow;
+			previousRow = currentRow;
+			currentRow = finishedRow;
+			
+			if (previousRowDirty) Arrays.fill(currentRow, 0);
+			previousRowDirty = currentRowDirty;
+			currentRowDirty = false;
+		}
+		
+		return collectBlobs();
+	}
+	
+	private void labelPixel(int x, int y) {
+		// Row arrays are offset by one for padding
+		int left = currentRow[x];
+		int upLeft = previousRow[x];
+		int up = previousRow[x + 1];
+		int upRight = previousRow[x + 2];
+		
+		int label = left != 0 ? left : upLeft != 0 ? upLeft : up != 0 ? up : upRight;
+		
+		if (label == 0) {
+			label = newLabel(x, y);
+		} else {
+			if (left != 0 && left != label) union(label, left);
+			if (upLeft != 0 && upLeft != label) union(label, upLeft);
+			if (up != 0 && up != label) union(label, up);
+			if (upRight != 0 && upRight != label) union(label, upRight);
+			
+			if (x < minXs[label]) minXs[label] = x;
+			if (x > maxXs[label]) maxXs[label] = x;
+			maxYs[label] = y;
+			areas[label]++;
+			sumXs[label] += x;
+			sumYs[label] += y;
+		}
+		
+		currentRow[x + 1] = label;
+	}
+	
+	private int newLabel(int x, int y) {
+		if (labelCount == parents.length) {
+			int size = parents.length * 2;
+			parents = Arrays.copyOf(parents, size);
+			minXs = Arrays.copyOf(minXs, size);
+			minYs = Arrays.copyOf(minYs, size);
+			maxXs = Arrays.copyOf(maxXs, size);
+			maxYs = Arrays.copyOf(maxYs, size);
+			areas = Arrays.copyOf(areas, size);
+			sumXs = Arrays.copyOf(sumXs, size);
+			sumYs = Arrays.copyOf(sumYs, size);
+		}
+		
+		int label = labelCount++;
+		parents[label] = label;
+		minXs[label] = x;
+		minYs[label] = y;
+		maxXs[label] = x;
+		maxYs[label] = y;
+		areas[label] = 1;
+		sumXs[label] = x;
+		sumYs[label] = y;
+		
+		return label;
+	}
+	
+	private int find(int label) {
+		while (parents[label] != label) {
+			parents[label] = parents[parents[label]];
+			label = parents[label];
+		}
+		
+		return label;
+	}
+	
+	// The smaller label always becomes the root so that roots are
+	// the labels of each blob's first pixel
+	private void union(int a, int b) {
+		int rootA = find(a);
+		int rootB = find(b);
+		
+		if (rootA < rootB) {
+			parents[rootB] = rootA;
+		} else if (rootB < rootA) {
+			parents[rootA] = rootB;
+		}
+	}
+	
+	private List<Blob> collectBlobs() {
+		// Fold the statistics of every label into its blob's root label
+		for (int label = labelCount - 1; label > 0; label--) {
+			int root = find(label);
+			if (root == label) continue;
+			
+			minXs[root] = Math.min(minXs[root], minXs[label]);
+			minYs[root] = Math.min(minYs[root], minYs[label]);
+			maxXs[root] = Math.max(maxXs[root], maxXs[label]);
+			maxYs[root] = Math.max(maxYs[root], maxYs[label]);
+			areas[root] += areas[label];
+			sumXs[root] += sumXs[label];
+			sumYs[root] += sumYs[label];
+		}
+		
+		List<Blob> blobs = new ArrayList<Blob>();
+		
+		for (int label = 1; label < labelCount; label++) {
+			if (parents[label] != label) continue;
+			
+			blobs.add(new Blob(minXs[label], minYs[label], maxXs[label], maxYs[label], areas[label],
+					(double)sumXs[label] / areas[label], (double)sumYs[label] / areas[label]));
+		}
+		
+		return blobs;
+	}
+}
@@ -18,17 +18,21 @@
 
 package com.shootoff.camera;
 
-import java.awt.Dimension;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.github.sarxos.webcam.Webcam;
+import com.shootoff.camera.metrics.FrameCaptureEvent;
+import com.shootoff.camera.metrics.MetricsRegistry;
+import com.shootoff.camera.metrics.PipelineEvents;
+import com.shootoff.camera.metrics.PipelineMetrics;
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.CanvasManager;
 import com.shootoff.gui.ThresholdListener;
@@ -39,10 +43,6 @@ import com.xuggle.mediatool.ToolFactory;
 import com.xuggle.mediatool.event.ICloseEvent;
 import com.xuggle.mediatool.event.IVideoPictureEvent;
 import com.xuggle.xuggler.ICodec;
-import com.xuggle.xuggler.IPixelFormat;
-import com.xuggle.xuggler.IVideoPicture;
-import com.xuggle.xuggler.video.ConverterFactory;
-import com.xuggle.xuggler.video.IConverter;
 
 import javafx.application.Platform;
 import javafx.embed.swing.SwingFXUtils;
@@ -53,16 +53,22 @@ import javafx.scene.image.Image;
 public class CameraManager {
 	public static final int FEED_WIDTH = 640;
 	public static final int FEED_HEIGHT = 480;
+	public static final int MAX_DISPLAY_FPS = 30;
+	public static final int DEFAULT_BLOOM_COUNT = 10;
+	public static final String SHOT_CLIPS_DIRECTORY = "clips";
 	
-	private int bloomCount = 10;
+	private int bloomCount = DEFAULT_BLOOM_COUNT;
 	
 	private final Logger logger = LoggerFactory.getLogger(CameraManager.class);
 	private final Optional<Webcam> webcam;
+	private final Optional<FrameSource> frameSource;
 	private final Object processingLock;
 	private boolean processedVideo = false;
 	private final CanvasManager canvasManager;
 	private final Configuration config;
-	private final int webcamRefreshDelay; // in milliseconds (ms)
+	private final ShotSearchExecutor shotSearchExecutor;
+	private final Optional<FrameRingBuffer> frameRing;
+	private final PipelineMetrics metrics;
 	
 	private boolean isStreaming = true;
 	private boolean isDetecting = true;
@@ -71,33 +77,53 @@ public class CameraManager {
 	private Optional<Integer> minimumShotDimension = Optional.empty();
 	private Optional<ThresholdListener> thresholdListener = Optional.empty();
 	
-	private boolean recording = false;
-	private boolean isFirstFrame = true;
-	private IMediaWriter videoWriter;
-	private long recordingStartTime;
+	private volatile Optional<VideoEncoder> videoEncoder = Optional.empty();
+	private volatile Optional<RawFrameWriter> rawCapture = Optional.empty();
+	private Optional<ShotClipRecorder> shotClipRecorder = Optional.empty();
 	private boolean[][] sectorStatuses;
 	
 	protected CameraManager(Webcam webcam, CanvasManager canvas, Configuration config) {
-		this.webcam = Optional.of(webcam);
+		this(Optional.of(webcam), new WebcamFrameSource(webcam, FEED_WIDTH, FEED_HEIGHT), canvas, config);
+	}
+	
+	/**
+	 * Streams frames from any source, e.g. an ImageFrameSource to run the
+	 * capture pipeline without a webcam.
+	 */
+	protected CameraManager(FrameSource frameSource, CanvasManager canvas, Configuration config) {
+		this(Optional.empty(), frameSource, canvas, config);
+	}
+	
+	private CameraManager(Optional<Webcam> webcam, FrameSource frameSource, CanvasManager canvas,
+			Configuration config) {
+		
+		this.webcam = webcam;
+		this.frameSource = Optional.of(frameSource);
 		processingLock = null;
 		this.canvasManager = canvas;
 		this.config = config;
 		
-		if (webcam.getFPS() == 0) {
-			webcamRefreshDelay = 30; // ms
-		} else {
-			webcamRefreshDelay = (int)(1000 / webcam.getFPS());
-		}
+		frameRing = Optional.of(new FrameRingBuffer(frameSource.getWidth(), frameSource.getHeight()));
+		shotSearchExecutor = new ShotSearchExecutor(frameSource.getName(),
+				config.getShotSearchQueueDepth(), config.getShotSearchDropPolicy());
+		metrics = MetricsRegistry.register(frameSource.getName());
 		
 		init(new Detector());
 	}
 	
 	protected CameraManager(File videoFile, Object processingLock, CanvasManager canvas, Configuration config) {
 		this.webcam = Optional.empty();
+		this.frameSource = Optional.empty();
 		this.processingLock = processingLock;
 		this.canvasManager = canvas;
 		this.config = config;
-		webcamRefreshDelay = 30;
+		frameRing = Optional.empty();
+		
+		// Video files are decoded as fast as possible, so make the reader wait
+		// for the searcher instead of dropping frames
+		shotSearchExecutor = new ShotSearchExecutor(videoFile.getName(),
+				config.getShotSearchQueueDepth(), ShotSearchExecutor.DropPolicy.BLOCK);
+		metrics = new PipelineMetrics(videoFile.getName());
 		
 		Detector detector = new Detector();
 		
@@ -141,8 +167,13 @@ public class CameraManager {
 	}
 	
 	public void close() {
-		if (webcam.isPresent()) webcam.get().close();
-		if (recording) stopRecording();
+		if (frameSource.isPresent()) frameSource.get().close();
+		if (videoEncoder.isPresent()) stopRecording();
+		if (rawCapture.isPresent()) stopRawCapture();
+		if (shotClipRecorder.isPresent()) shotClipRecorder.get().close();
+		shotSearchExecutor.shutdown();
+		canvasManager.close();
+		MetricsRegistry.unregister(metrics);
 	}
 	
 	public void setStreaming(boolean isStreaming) {
@@ -153,33 +184,121 @@ public class CameraManager {
 		this.isDetecting = isDetecting;
 	}
 	
-	public void startRecording(File videoFile) {
+	public synchronized void startRecording(File videoFile) {
 		logger.debug("Writing Video Feed To: {}", videoFile.getAbsoluteFile());
-		videoWriter = ToolFactory.makeWriter(videoFile.getName());
-		videoWriter.addVideoStream(0, 0, ICodec.ID.CODEC_ID_H264, FEED_WIDTH, FEED_HEIGHT);
-		recordingStartTime = System.currentTimeMillis();
-		isFirstFrame = true;
 		
-		recording = true;
+		IMediaWriter videoWriter = ToolFactory.makeWriter(videoFile.getName());
+		videoWriter.addVideoStream(0, 0, ICodec.ID.CODEC_ID_H264, getFeedWidth(), getFeedHeight());
+		
+		VideoEncoder encoder = new VideoEncoder(metrics.getCameraName(), videoWriter, System.currentTimeMillis(),
+				config.getRecordingQueueDepth(), config.getRecordingDropPolicy());
+		encoder.setMetrics(metrics);
+		videoEncoder = Optional.of(encoder);
+	}
+	
+	/**
+	 * Stops recording once the frames waiting for the encoder are encoded.
+	 */
+	public synchronized void stopRecording() {
+		Optional<VideoEncoder> encoder = videoEncoder;
+		videoEncoder = Optional.empty();
+		
+		if (encoder.isPresent()) encoder.get().close();
+	}
+	
+	/**
+	 * Starts writing every frame losslessly to a raw capture, which can be
+	 * replayed bit for bit with a RawFrameSource. Raw captures are large
+	 * (about 27 MB per second at 640x480 and 30 FPS).
+	 */
+	public void startRawCapture(File captureFile) throws IOException {
+		logger.debug("Writing Raw Capture To: {}", captureFile.getAbsoluteFile());
+		
+		stopRawCapture();
+		RawFrameWriter writer = new RawFrameWriter(captureFile, getFeedWidth(), getFeedHeight());
+		
+		synchronized (this) {
+			rawCapture = Optional.of(writer);
+		}
+	}
+	
+	public void stopRawCapture() {
+		Optional<RawFrameWriter> writer;
+		
+		synchronized (this) {
+			writer = rawCapture;
+			rawCapture = Optional.empty();
+		}
+		
+		if (!writer.isPresent()) return;
+		
+		// The recording stage may be writing a frame
+		synchronized (writer.get()) {
+			try {
+				writer.get().close();
+			} catch (IOException e) {
+				logger.error("Failed to close raw capture", e);
+			}
+		}
+	}
+	
+	public boolean isRawCapturing() {
+		return rawCapture.isPresent();
 	}
 	
-	public void stopRecording() {
-		recording = false;
-		videoWriter.close();
+	/**
+	 * @return the encoder of the current recording, if recording
+	 */
+	public Optional<VideoEncoder> getVideoEncoder() {
+		return videoEncoder;
 	}
 	
 	public Image getCurrentFrame() {
-		if (webcam.isPresent()) {
-			return SwingFXUtils.toFXImage(webcam.get().getImage(), null);
+		if (frameRing.isPresent()) {
+			Optional<CapturedFrame> frame = frameRing.get().acquireLatest();
+			
+			if (frame.isPresent()) {
+				try {
+					return frame.get().toFXImage();
+				} finally {
+					frame.get().release();
+				}
+			} else if (webcam.isPresent()) {
+				return SwingFXUtils.toFXImage(webcam.get().getImage(), null);
+			} else {
+				return null;
+			}
 		} else {
 			return null;
 		}
 	}
 	
+	// Frame sources may use any resolution, video files are assumed to use
+	// the webcam resolution
+	private int getFeedWidth() {
+		return frameSource.isPresent() ? frameSource.get().getWidth() : FEED_WIDTH;
+	}
+	
+	private int getFeedHeight() {
+		return frameSource.isPresent() ? frameSource.get().getHeight() : FEED_HEIGHT;
+	}
+	
 	public CanvasManager getCanvasManager() {
 		return canvasManager;
 	}
 	
+	public ShotSearchExecutor getShotSearchExecutor() {
+		return shotSearchExecutor;
+	}
+	
+	/**
+	 * @return this camera's pipeline metrics, which are also published over
+	 * 		JMX for cameras (but not video files)
+	 */
+	public PipelineMetrics getMetrics() {
+		return metrics;
+	}
+	
 	public boolean getProcessedVideo() {
 		return processedVideo;
 	}
@@ -230,26 +349,26 @@ public class CameraManager {
 		return red << 16 | green << 8 | blue;
 	}
 	
-	protected static byte[][] getFrameCount(BufferedImage img) {
-		byte[][] newCount = new byte[FEED_HEIGHT][FEED_WIDTH];
+	protected static byte[] getFrameCount(BufferedImage img) {
+		byte[] newCount = new byte[img.getWidth() * img.getHeight()];
 		
 		for (int y = 0; y < img.getHeight(); y++) {
 			for (int x = 0; x < img.getWidth(); x++) {
 				int pixel = img.getRGB(x, y) & 0xFF;
-				if (pixel == 255) newCount[y][x] = 1;
+				if (pixel == 255) newCount[y * img.getWidth() + x] = DetectionFrame.WHITE_PIXEL;
 			}
 		}
 		
 		return newCount;
 	}
 	
-	protected BufferedImage countToImage(byte[][] count) {
-		BufferedImage img = new BufferedImage(count[0].length,
-				count.length, BufferedImage.TYPE_BYTE_GRAY);
+	protected BufferedImage countToImage(DetectionFrame frame) {
+		BufferedImage img = new BufferedImage(frame.getWidth(),
+				frame.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
 		
 		for (int y = 0; y < img.getHeight(); y++) {
 			for (int x = 0; x < img.getWidth(); x++) {
-				if (count[y][x] == 1) {
+				if (frame.isWhite(x, y)) {
 					img.setRGB(x, y, mixColor(255, 255, 255));
 				} else {
 					img.setRGB(x, y, mixColor(0, 0, 0));
@@ -261,211 +380,279 @@ public class CameraManager {
 	}
 	
 	private class Detector extends MediaListenerAdapter implements Runnable {
-		private BufferedImage currentFrame;
-		private int oldestFrame = 0;
-		private List<Object> counts = new ArrayList<Object>();
-		private byte[][] bloomFilter = new byte[FEED_HEIGHT][FEED_WIDTH];
-		private boolean bloomFilterInitialized = false;
+		// One slot for each queued search, one for the running search, and
+		// one for the frame being submitted
+		private final FrameDetector frameDetector = new FrameDetector(config, getFeedWidth(), getFeedHeight(),
+				shotSearchExecutor.getQueueDepth() + 2);
+		// Only used by the shot search executor's worker thread
+		private final BlobDetector blobDetector = new BlobDetector();
+		private final ColorClassifier colorClassifier = new ColorClassifier();
+		private long videoFrameSequence = -1;
+		
+		public Detector() {
+			frameDetector.setMetrics(metrics);
+			metrics.addDroppedFrameCounter(frameDetector::getSkippedSearchCount);
+			metrics.addDroppedFrameCounter(shotSearchExecutor::getDroppedCount);
+		}
 		
 		@Override
 		public void run() {
-			if (webcam.isPresent()) {
-				if (!webcam.get().isOpen()) {
-					webcam.get().setViewSize(new Dimension(FEED_WIDTH, FEED_HEIGHT));
-					webcam.get().open();			
+			if (frameSource.isPresent()) {
+				frameSource.get().open();
+				
+				Thread displayStage = startFrameStages(frameSource.get().getName(), frameRing.get());
+				captureCameraFrames(frameSource.get(), frameRing.get());
+				
+				// The display stage can still show a frame that was published
+				// before the ring closed, so only stop the canvas's stream once
+				// it is done
+				try {
+					displayStage.join();
+				} catch (InterruptedException e) {
+					logger.error("Interrupted while waiting for the display stage to finish", e);
 				}
 				
-				streamCameraFrames();
+				canvasManager.stopBackgroundStream();
 			}
 		}
 		
 		@Override
 		public void onVideoPicture(IVideoPictureEvent event)
 		{
-			currentFrame = event.getImage();
-			detectShots();
+			PipelineEvents.setCurrentFrame(metrics.getCameraName(), ++videoFrameSequence);
+			
+			try {
+				detectShots(event.getImage());
+			} finally {
+				PipelineEvents.clearCurrentFrame();
+			}
 		}
 		
 		@Override
 		public void onClose(ICloseEvent event) {
+			try {
+				shotSearchExecutor.awaitIdle();
+			} catch (InterruptedException e) {
+				logger.error("Interrupted while waiting for shot searches to finish", e);
+			}
+			
+			shotSearchExecutor.shutdown();
+			
 			synchronized (processingLock) {
 				processedVideo = true;
 				processingLock.notifyAll();
 			}
 		}
 		
-		private void streamCameraFrames() {
-			long startDetectionCycle = System.currentTimeMillis();
+		// Display, detection, and recording each consume frames on their own
+		// thread so that a slow stage can't hold up capture or the others
+		private Thread startFrameStages(String cameraName, FrameRingBuffer frameRing) {
+			Thread displayStage = new FrameConsumer(cameraName + " display", frameRing, FrameConsumer.SkipPolicy.LATEST,
+					() -> 1000 / MAX_DISPLAY_FPS, (frame) -> showFrame(frame)).start();
+			
+			new FrameConsumer(cameraName + " detection", frameRing, FrameConsumer.SkipPolicy.LATEST,
+					() -> config.getDetectionRate(), (frame) -> {
+						metrics.markDetectionCycle();
+						PipelineEvents.setCurrentFrame(metrics.getCameraName(), frame.getSequence());
+						
+						try {
+							detectShots(frame);
+						} finally {
+							PipelineEvents.clearCurrentFrame();
+						}
+					}).start();
+			
+			// Frames the recording stage skips are missing from the video
+			FrameConsumer recordingStage = new FrameConsumer(cameraName + " recording", frameRing,
+					FrameConsumer.SkipPolicy.EVERY_FRAME, () -> 0, (frame) -> recordFrame(frame));
+			metrics.addDroppedFrameCounter(recordingStage::getSkippedCount);
+			recordingStage.start();
+			
+			if (config.useShotClips()) {
+				ShotClipRecorder clipRecorder = new ShotClipRecorder(cameraName, new File(SHOT_CLIPS_DIRECTORY),
+						config.getShotClipPreRoll(), config.getShotClipPostRoll());
+				shotClipRecorder = Optional.of(clipRecorder);
+				canvasManager.setShotClipRecorder(clipRecorder);
+				
+				new FrameConsumer(cameraName + " shot clips", frameRing, FrameConsumer.SkipPolicy.LATEST,
+						() -> clipRecorder.getFrameInterval(), (frame) -> clipRecorder.record(frame)).start();
+			}
+			
+			return displayStage;
+		}
+		
+		private void showFrame(CapturedFrame frame) {
+			long start = System.nanoTime();
+			canvasManager.updateBackground(frame.getPixels(), frame.getWidth(), frame.getHeight());
+			metrics.markDisplayed(System.nanoTime() - start);
+		}
+				
+		// Frames are read straight into the ring's buffers, so capturing a
+		// frame doesn't allocate an image. Sources that announce new frames
+		// are waited on; every other source is read once per frame interval,
+		// less the time the last read took
+		private void captureCameraFrames(FrameSource frameSource, FrameRingBuffer frameRing) {
+			FramePacer pacer = new FramePacer(frameSource::getFPS);
 			
 			while (isStreaming) {
-				if (webcam.isPresent()) {
-					currentFrame = webcam.get().getImage();
-				}
+				long frameStart = System.nanoTime();
+				metrics.setTargetCaptureFPS(pacer.getTargetFPS());
 				
-				if (currentFrame == null && webcam.isPresent() && !webcam.get().isOpen()) {
-					Platform.runLater(() -> {
-							Alert cameraAlert = new Alert(AlertType.ERROR);
-							
-							Optional<String> cameraName = config.getWebcamsUserName(webcam.get());
-							String messageFormat = "ShootOFF can no longer communicate with the webcam %s. Was it unplugged?";
-							String message;
-							if (cameraName.isPresent()) {
-								message = String.format(messageFormat, cameraName.get());
-							} else {
-								message = String.format(messageFormat, webcam.get().getName());
-							}
-							
-							cameraAlert.setTitle("Webcam Missing");
-							cameraAlert.setHeaderText("Cannot Communicate with Camera!");
-							cameraAlert.setResizable(true);
-							cameraAlert.setContentText(message);
-							cameraAlert.show();
-						});
-					
-					return;
+				boolean awaitFrames = frameSource.canAwaitFrames();
+				if (awaitFrames) {
+					// Waiting for two intervals lets a late frame through
+					// without stalling the loop if announcements stop
+					try {
+						frameSource.awaitFrame(pacer.getFrameInterval() * 2, TimeUnit.NANOSECONDS);
+					} catch (InterruptedException e) {
+						e.printStackTrace();
+					}
 				}
 				
-				if (recording) {
-					BufferedImage image = ConverterFactory.convertToType(currentFrame, BufferedImage.TYPE_3BYTE_BGR);
-					IConverter converter = ConverterFactory.createConverter(image, IPixelFormat.Type.YUV420P);
-
-					IVideoPicture frame = converter.toPicture(image, 
-							(System.currentTimeMillis() - recordingStartTime) * 1000);
-					frame.setKeyFrame(isFirstFrame);
-					frame.setQuality(0);
-					isFirstFrame = false;
-
-					videoWriter.encodeVideo(0, frame);
-				}
+				ByteBuffer buffer = frameRing.claimBuffer();
+				long timestamp = System.currentTimeMillis();
 				
-				Image img = SwingFXUtils.toFXImage(currentFrame, null);
-				canvasManager.updateBackground(img);
+				FrameCaptureEvent captureEvent = PipelineEvents.isEnabled() ? new FrameCaptureEvent() : null;
+				if (captureEvent != null) captureEvent.begin();
 				
-				if (System.currentTimeMillis() - 
-						startDetectionCycle >= config.getDetectionRate()) {
+				if (frameSource.read(buffer)) {
+					frameRing.publish(buffer, timestamp);
+					metrics.markCaptured();
 					
-					startDetectionCycle = System.currentTimeMillis();
-					detectShots();
+					long interval = pacer.frameDelivered(frameStart, System.nanoTime());
+					if (interval >= 0) metrics.recordCaptureInterval(interval);
+					
+					if (captureEvent != null) captureEvent.commitForFrame(metrics.getCameraName(), frameRing.getLastPublished());
+				} else {
+					frameRing.recycle(buffer);
+							
+					if (!frameSource.isOpen()) {
+						if (webcam.isPresent()) showWebcamMissing();
+						break;
+					}
 				}
 				
+				if (awaitFrames) continue;
+				
 				try {
-					Thread.sleep(webcamRefreshDelay);
+					pacer.awaitNextFrame(frameStart);
 				} catch (InterruptedException e) {
 					e.printStackTrace();
 				}
 			}
+			
+			frameRing.close();
 		}
 		
-		private void addFrameCount(byte[][] count) {
-			for (int y = 0; y < FEED_HEIGHT; y++) {
-				for (int x = 0; x < FEED_WIDTH; x++) {
-					bloomFilter[y][x] += count[y][x];
-				}
-			}
+		private void showWebcamMissing() {
+			Platform.runLater(() -> {
+					Alert cameraAlert = new Alert(AlertType.ERROR);
+					
+					Optional<String> cameraName = config.getWebcamsUserName(webcam.get());
+					String messageFormat = "ShootOFF can no longer communicate with the webcam %s. Was it unplugged?";
+					String message;
+					if (cameraName.isPresent()) {
+						message = String.format(messageFormat, cameraName.get());
+					} else {
+						message = String.format(messageFormat, webcam.get().getName());
+					}
+					
+					cameraAlert.setTitle("Webcam Missing");
+					cameraAlert.setHeaderText("Cannot Communicate with Camera!");
+					cameraAlert.setResizable(true);
+					cameraAlert.setContentText(message);
+					cameraAlert.show();
+				});
 		}
 		
-		private void subFrameCount(byte[][] count) {
-			for (int y = 0; y < FEED_HEIGHT; y++) {
-				for (int x = 0; x < FEED_WIDTH; x++) {
-					if (bloomFilter[y][x] >= 1)
-						bloomFilter[y][x] -= count[y][x];
+		// Only hands the frame to the encoder, which encodes on its own thread.
+		// Raw captures are cheap enough to write here
+		private void recordFrame(CapturedFrame capturedFrame) {
+			Optional<VideoEncoder> encoder = videoEncoder;
+			if (encoder.isPresent()) encoder.get().submit(capturedFrame);
+			
+			Optional<RawFrameWriter> writer = rawCapture;
+			if (writer.isPresent()) {
+				synchronized (writer.get()) {
+					if (rawCapture != writer) return;
+					
+					try {
+						writer.get().write(capturedFrame.getPixels(), capturedFrame.getTimestamp());
+					} catch (IOException e) {
+						logger.error("Failed to write raw capture, stopping it", e);
+						stopRawCapture();
+					}
 				}
 			}
 		}
 		
-		private byte[][] generateMask() {
-			byte[][] mask = new byte[FEED_HEIGHT][FEED_WIDTH];
+		private void detectShots(BufferedImage currentFrame) {
+			if (!isDetecting || bloomCount == 0) return;
 			
-			for (int y = 0; y < FEED_HEIGHT; y++) {
-				for (int x = 0; x < FEED_WIDTH; x++) {
-					if (bloomFilter[y][x] == 0) mask[y][x] = 0;
-					else mask[y][x] = 1;
-				}
+			Optional<DetectionFrame> frame = frameDetector.detect(currentFrame, bloomCount);
+			if (frame.isPresent()) {
+				frame.get().setTimestamp(System.currentTimeMillis());
+				frame.get().setSequence(videoFrameSequence);
 			}
 			
-			return mask;	
+			searchShots(frame);
 		}
 		
-		private byte not(byte value) {
-			if (value == 1) return 0;
-			else return 1;
-		}
-		
-		private byte[][] getShotFrame(byte[][] mask, byte[][] currentFrame) {
-			byte[][] shotFrame = new byte[FEED_HEIGHT][FEED_WIDTH];
+		private void detectShots(CapturedFrame currentFrame) {
+			if (!isDetecting || bloomCount == 0) return;
 			
-			for (int y = 0; y < FEED_HEIGHT; y++) {
-				for (int x = 0; x < FEED_WIDTH; x++) {
-					shotFrame[y][x] = (byte) (not(mask[y][x]) & currentFrame[y][x]);
-				}
+			Optional<DetectionFrame> frame = frameDetector.detect(currentFrame.getPixels(), bloomCount);
+			if (frame.isPresent()) {
+				frame.get().setTimestamp(currentFrame.getTimestamp());
+				frame.get().setSequence(currentFrame.getSequence());
 			}
 			
-			return shotFrame;	
+			searchShots(frame);
 		}
 		
-		private void detectShots() {
-			if (!isDetecting || bloomCount == 0) return;
+		private void searchShots(Optional<DetectionFrame> frame) {
+			if (!frame.isPresent()) return;
 			
-			BufferedImage currentCopy = new BufferedImage(currentFrame.getWidth(),
-					currentFrame.getHeight(), BufferedImage.TYPE_INT_RGB);
-			currentCopy.createGraphics().drawImage(currentFrame, 0, 0, null);
+			long captured = frame.get().getTimestamp();
+			ShotSearcher shotSearcher = new ShotSearcher(config, (color, x, y) -> {
+					metrics.markShotDetected();
+					canvasManager.addShot(color, x, y, metrics, captured);
+				}, sectorStatuses, frame.get());
 			
-			BufferedImage grayScale = new BufferedImage(currentCopy.getWidth(),
-					currentFrame.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-			grayScale.createGraphics().drawImage(currentCopy, 0, 0, null);
+			if (colorDiffThreshold.isPresent()) {
+				shotSearcher.setColorDiffThreshold(colorDiffThreshold.get());
+			}
 			
-			BufferedImage threshed = threshold(config, grayScale);
+			if (centerApproxBorderSize.isPresent()) {
+				shotSearcher.setCenterApproxBorderSize(centerApproxBorderSize.get());
+			}
 			
-			// This condition is true if the stream debugger is opened
-			// and the bloom count slider is changed
-			if (bloomFilterInitialized && counts.size() != bloomCount) {
-				counts.clear();
-				bloomFilterInitialized = false;
-				oldestFrame = 0;
+			if (minimumShotDimension.isPresent()) {
+				shotSearcher.setMinimumShotDimension(minimumShotDimension.get());
 			}
 			
-			if (bloomFilterInitialized) {
-				byte[][] currentFrame = getFrameCount(threshed);
-				byte[][] shotFrame = getShotFrame(generateMask(), currentFrame);
-				
-				ShotSearcher shotSearcher = new ShotSearcher(config, canvasManager, sectorStatuses,
-						currentCopy, shotFrame);
-				
-				if (colorDiffThreshold.isPresent()) {
-					shotSearcher.setColorDiffThreshold(colorDiffThreshold.get());
-				}
-				
-				if (centerApproxBorderSize.isPresent()) {
-					shotSearcher.setCenterApproxBorderSize(centerApproxBorderSize.get());
-				}
-				
-				if (minimumShotDimension.isPresent()) {
-					shotSearcher.setMinimumShotDimension(minimumShotDimension.get());
-				}
-				
-				new Thread(shotSearcher).start();
-				
-				if (thresholdListener.isPresent()) {
-					Image img = SwingFXUtils.toFXImage(countToImage(shotFrame), null);
-					thresholdListener.get().updateThreshold(img);
-				}
-				
-				// Update the bloom filter by removing the oldest frame
-				// and adding the current one
-				subFrameCount((byte[][])counts.get(oldestFrame));
-				counts.set(oldestFrame, currentFrame);
-				addFrameCount(currentFrame);
-				oldestFrame = (oldestFrame + 1) % bloomCount;
-			} else {
-				if (counts.size() != bloomCount) counts.add(getFrameCount(threshed));
-				
-				if (counts.size() == bloomCount) {
-					bloomFilterInitialized = true;
-					logger.debug("Finished initializing bloom filter ({} frames in filter): Enabling Shot Detection",
-							bloomCount);
-					for (Object count : counts) addFrameCount((byte[][])count);
-				}
+			shotSearcher.setBlobDetector(blobDetector);
+			shotSearcher.setColorClassifier(colorClassifier);
+			shotSearcher.setMetrics(metrics);
+			
+			// The debugger image has to be made before the search starts
+			// because the searcher hands the frame back when it finishes
+			if (thresholdListener.isPresent()) {
+				Image img = SwingFXUtils.toFXImage(countToImage(frame.get()), null);
+				thresholdListener.get().updateThreshold(img);
+			}
+			
+			// Most frames have nothing new in them, so don't queue a search
+			// of an empty shot frame
+			int candidatePixels = frame.get().getWhitePixelCount();
+			metrics.recordCandidatePixels(candidatePixels);
+			
+			if (candidatePixels == 0) {
+				frame.get().release();
+				return;
 			}
+			
+			shotSearchExecutor.submit(shotSearcher);
 		}
 	}	
 }
\ No newline at end of file
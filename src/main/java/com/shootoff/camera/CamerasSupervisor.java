@@ -39,6 +39,14 @@ public class CamerasSupervisor {
 		managers.add(new CameraManager(webcam, canvasManager, config));
 	}
 	
+	/**
+	 * Adds a camera that gets its frames from <tt>frameSource</tt> instead of
+	 * a webcam, e.g. a SyntheticFrameSource to load test detection.
+	 */
+	public void addCameraManager(FrameSource frameSource, CanvasManager canvasManager) {
+		managers.add(new CameraManager(frameSource, canvasManager, config));
+	}
+	
 	public void clearManagers() {
 		setStreamingAll(false);
 		setDetectingAll(false);
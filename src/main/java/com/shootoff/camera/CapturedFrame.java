@@ -0,0 +1,140 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * A frame published by a camera's capture thread, stored as packed RGB
+ * bytes in a buffer that belongs to a FrameRingBuffer. Every stage sees the
+ * same buffer, so consumers must treat it as read only, and the buffer is
+ * only reused once the ring and every consumer that acquired the frame have
+ * released it.
+ */
+public class CapturedFrame {
+	private final FrameRingBuffer ring;
+	private final ByteBuffer pixels;
+	private final int width;
+	private final int height;
+	private final long timestamp;
+	private final long sequence;
+	// Starts with the ring's reference
+	private final AtomicInteger references = new AtomicInteger(1);
+	
+	protected CapturedFrame(FrameRingBuffer ring, ByteBuffer pixels, int width, int height, long timestamp,
+			long sequence) {
+		
+		this.ring = ring;
+		this.pixels = pixels;
+		this.width = width;
+		this.height = height;
+		this.timestamp = timestamp;
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * @return a read only view of the frame's pixels, three bytes (red,
+	 * 		green, blue) per pixel in row major order
+	 */
+	public ByteBuffer getPixels() {
+		return pixels.asReadOnlyBuffer();
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return when the frame was acquired, in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+	
+	/**
+	 * @return the frame's position in the capture stream, starting at 0
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	/**
+	 * Copies the frame into a new image for code that needs one, e.g. the
+	 * video encoder.
+	 */
+	public BufferedImage toBufferedImage() {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		copyTo(image);
+		return image;
+	}
+	
+	/**
+	 * Copies the frame into an existing image, e.g. one the video encoder
+	 * reuses for every frame.
+	 * 
+	 * @param image	a <tt>TYPE_3BYTE_BGR</tt> image the size of this frame
+	 */
+	public void copyTo(BufferedImage image) {
+		byte[] data = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+		
+		for (int i = 0; i < data.length; i += FrameSource.BYTES_PER_PIXEL) {
+			data[i] = pixels.get(i + 2);
+			data[i + 1] = pixels.get(i + 1);
+			data[i + 2] = pixels.get(i);
+		}
+	}
+	
+	public Image toFXImage() {
+		WritableImage image = new WritableImage(width, height);
+		image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteRgbInstance(), getPixels(),
+				width * FrameSource.BYTES_PER_PIXEL);
+		return image;
+	}
+	
+	/**
+	 * Adds a reference unless the frame was already released by everyone,
+	 * in which case its buffer may already hold another frame.
+	 */
+	protected boolean retain() {
+		while (true) {
+			int count = references.get();
+			if (count == 0) return false;
+			if (references.compareAndSet(count, count + 1)) return true;
+		}
+	}
+	
+	/**
+	 * Drops a reference taken by <tt>FrameRingBuffer.acquire</tt>. The frame
+	 * must not be used afterwards.
+	 */
+	public void release() {
+		if (references.decrementAndGet() == 0) ring.recycle(pixels);
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Decides whether the pixels around a candidate shot are a red or a green
+ * laser. The colors of a candidate and of up to four pixels in each
+ * direction from it are averaged, then looked up in a table that maps
+ * every color (six bits per channel) to a laser color. The few cells of
+ * the table that straddle the threshold are marked as undecided, and only
+ * colors that fall into them are checked with the exact ratios, so the
+ * result is always the same as checking the ratios directly.
+ * 
+ * The averages come from per channel summed-area tables that are built once
+ * for a candidate region (a sector or a blob's bounding box), so each
+ * candidate in the region costs a handful of array reads no matter how many
+ * candidates there are. The lookup table is only rebuilt when the color
+ * difference threshold changes.
+ * 
+ * A classifier reuses its buffers and must not be used by more than one
+ * thread at a time.
+ */
+public class ColorClassifier {
+	public static final double DEFAULT_COLOR_DIFF_THRESHOLD = 1.05;
+	
+	// Pixels averaged in each direction, counting the candidate itself
+	private static final int COLOR_DETECTION_RADIUS = 5;
+	private static final int LEVEL_BITS = 6;
+	private static final int LEVEL_SHIFT = 8 - LEVEL_BITS;
+	
+	private static final byte NO_LASER = 0;
+	private static final byte RED_LASER = 1;
+	private static final byte GREEN_LASER = 2;
+	private static final byte UNDECIDED = 3;
+	
+	private double colorDiffThreshold = Double.NaN;
+	private final byte[] laserColors = new byte[1 << (3 * LEVEL_BITS)];
+	
+	private DetectionFrame frame;
+	private int regionX;
+	private int regionY;
+	private int tableWidth;
+	private int[] redSums = new int[0];
+	private int[] greenSums = new int[0];
+	private int[] blueSums = new int[0];
+	// Red, green, and blue sums and the pixel count for averageRGB
+	private final int[] totals = new int[4];
+	
+	public ColorClassifier() {
+		setColorDiffThreshold(DEFAULT_COLOR_DIFF_THRESHOLD);
+	}
+	
+	/**
+	 * @param colorDiffThreshold	how much bigger the largest color component
+	 * 								must be than the others for the color to count
+	 * 								as a laser, e.g. 1.05 for 5% bigger
+	 */
+	public void setColorDiffThreshold(double colorDiffThreshold) {
+		if (this.colorDiffThreshold == colorDiffThreshold) return;
+		
+		this.colorDiffThreshold = colorDiffThreshold;
+		
+		int levels = 1 << LEVEL_BITS;
+		for (int red = 0; red < levels; red++) {
+			for (int green = 0; green < levels; green++) {
+				for (int blue = 0; blue < levels; blue++) {
+					laserColors[(red << (2 * LEVEL_BITS)) | (green << LEVEL_BITS) | blue] =
+							classifyLevel(red, green, blue);
+				}
+			}
+		}
+	}
+	
+	// A level covers every average from level << LEVEL_SHIFT up to (but not
+	// including) the next level, so a cell is only decided if the ratios
+	// agree at its extremes
+	private byte classifyLevel(int red, int green, int blue) {
+		// Averages in the lowest level may be zero, which the ratios treat
+		// specially
+		if (red == 0 || green == 0 || blue == 0) return UNDECIDED;
+		
+		double rLow = red << LEVEL_SHIFT, rHigh = (red + 1) << LEVEL_SHIFT;
+		double gLow = green << LEVEL_SHIFT, gHigh = (green + 1) << LEVEL_SHIFT;
+		double bLow = blue << LEVEL_SHIFT, bHigh = (blue + 1) << LEVEL_SHIFT;
+		
+		boolean alwaysRed = rLow / gHigh > colorDiffThreshold && rLow / bHigh > colorDiffThreshold;
+		boolean neverRed = rHigh / gLow <= colorDiffThreshold || rHigh / bLow <= colorDiffThreshold;
+		
+		if (alwaysRed) return RED_LASER;
+		if (!neverRed) return UNDECIDED;
+		
+		boolean alwaysGreen = gLow / rHigh > colorDiffThreshold && gLow / bHigh > colorDiffThreshold;
+		boolean neverGreen = gHigh / rLow <= colorDiffThreshold || gHigh / bLow <= colorDiffThreshold;
+		
+		if (alwaysGreen) return GREEN_LASER;
+		if (!neverGreen) return UNDECIDED;
+		
+		return NO_LASER;
+	}
+	
+	// We only detect a color if the largest component is at least
+	// colorDiffThreshold times bigger than the other components. This is
+	// based on the heuristic that noise tends to have color values that are
+	// very similar
+	private byte classify(double r, double g, double b) {
+		if (g == 0 || b == 0) return NO_LASER;
+		
+		if ((r / g) > colorDiffThreshold && (r / b) > colorDiffThreshold) return RED_LASER;
+		
+		if (r == 0) return NO_LASER;
+		
+		if ((g / r) > colorDiffThreshold && (g / b) > colorDiffThreshold) return GREEN_LASER;
+		
+		return NO_LASER;
+	}
+	
+	/**
+	 * Builds the summed-area tables for the candidates in a region of
+	 * <tt>frame</tt>. Only candidates inside the region (inclusive) can be
+	 * classified until the next call.
+	 */
+	public void setRegion(DetectionFrame frame, int minX, int minY, int maxX, int maxY) {
+		this.frame = frame;
+		
+		int padding = COLOR_DETECTION_RADIUS - 1;
+		regionX = Math.max(0, minX - padding);
+		regionY = Math.max(0, minY - padding);
+		int regionWidth = Math.min(frame.getWidth() - 1, maxX + padding) - regionX + 1;
+		int regionHeight = Math.min(frame.getHeight() - 1, maxY + padding) - regionY + 1;
+		
+		// Tables have an extra row and column of zeros at the top and left
+		tableWidth = regionWidth + 1;
+		int tableSize = tableWidth * (regionHeight + 1);
+		
+		if (redSums.length < tableSize) {
+			redSums = new int[tableSize];
+			greenSums = new int[tableSize];
+			blueSums = new int[tableSize];
+		} else {
+			Arrays.fill(redSums, 0, tableWidth, 0);
+			Arrays.fill(greenSums, 0, tableWidth, 0);
+			Arrays.fill(blueSums, 0, tableWidth, 0);
+		}
+		
+		for (int y = 0; y < regionHeight; y++) {
+			int rowRed = 0, rowGreen = 0, rowBlue = 0;
+			int above = y * tableWidth;
+			int current = above + tableWidth;
+			
+			redSums[current] = 0;
+			greenSums[current] = 0;
+			blueSums[current] = 0;
+			
+			for (int x = 0; x < regionWidth; x++) {
+				int rgb = frame.getRGB(regionX + x, regionY + y);
+				rowRed += (rgb >> 16) & 0xFF;
+				rowGreen += (rgb >> 8) & 0xFF;
+				rowBlue += rgb & 0xFF;
+				
+				redSums[current + x + 1] = redSums[above + x + 1] + rowRed;
+				greenSums[current + x + 1] = greenSums[above + x + 1] + rowGreen;
+				blueSums[current + x + 1] = blueSums[above + x + 1] + rowBlue;
+			}
+		}
+	}
+	
+	/**
+	 * @param x	x coordinate of a candidate inside the current region
+	 * @param y	y coordinate of a candidate inside the current region
+	 * @return the color of the laser at the candidate, if any
+	 */
+	public Optional<Color> classify(int x, int y) {
+		int rgb = averageRGB(x, y);
+		
+		int index = (((rgb >> 16) & 0xFF) >> LEVEL_SHIFT) << (2 * LEVEL_BITS) |
+				(((rgb >> 8) & 0xFF) >> LEVEL_SHIFT) << LEVEL_BITS |
+				((rgb & 0xFF) >> LEVEL_SHIFT);
+		
+		byte laserColor = laserColors[index];
+		
+		if (laserColor == UNDECIDED) {
+			double pixelsSeen = totals[3];
+			laserColor = classify(totals[0] / pixelsSeen, totals[1] / pixelsSeen, totals[2] / pixelsSeen);
+		}
+		
+		switch (laserColor) {
+		case RED_LASER:
+			return Optional.of(Color.RED);
+		case GREEN_LASER:
+			return Optional.of(Color.GREEN);
+		default:
+			return Optional.empty();
+		}
+	}
+	
+	/**
+	 * Averages the candidate and the pixels to its left, right, top, and
+	 * bottom. The candidate is counted once on its own and once in each
+	 * direction, and the first row and column are never included in the
+	 * left and top runs, which is how ShotSearcher has always sampled colors.
+	 * The sums stay in <tt>totals</tt> until the next call.
+	 * 
+	 * @return the average color (rounded down) packed like getRGB (without alpha)
+	 */
+	protected int averageRGB(int x, int y) {
+		int lastX = frame.getWidth() - 1;
+		int lastY = frame.getHeight() - 1;
+		int reach = COLOR_DETECTION_RADIUS - 1;
+		
+		int rgb = frame.getRGB(x, y);
+		totals[0] = (rgb >> 16) & 0xFF;
+		totals[1] = (rgb >> 8) & 0xFF;
+		totals[2] = rgb & 0xFF;
+		totals[3] = 1;
+		
+		// Left, right, down, and up runs, each including the candidate
+		addRun(Math.max(1, x - reach), y, x, y);
+		addRun(x, y, Math.min(lastX, x + reach), y);
+		addRun(x, y, x, Math.min(lastY, y + reach));
+		addRun(x, Math.max(1, y - reach), x, y);
+		
+		int pixelsSeen = totals[3];
+		return (totals[0] / pixelsSeen) << 16 | (totals[1] / pixelsSeen) << 8 | (totals[2] / pixelsSeen);
+	}
+	
+	private void addRun(int minX, int minY, int maxX, int maxY) {
+		if (minX > maxX || minY > maxY) return;
+		
+		totals[0] += sum(redSums, minX, minY, maxX, maxY);
+		totals[1] += sum(greenSums, minX, minY, maxX, maxY);
+		totals[2] += sum(blueSums, minX, minY, maxX, maxY);
+		totals[3] += (maxX - minX + 1) * (maxY - minY + 1);
+	}
+	
+	private int sum(int[] sums, int minX, int minY, int maxX, int maxY) {
+		int left = minX - regionX;
+		int right = maxX - regionX + 1;
+		int top = (minY - regionY) * tableWidth;
+		int bottom = (maxY - regionY + 1) * tableWidth;
+		
+		return sums[bottom + right] - sums[bottom + left] - sums[top + right] + sums[top + left];
+	}
+}
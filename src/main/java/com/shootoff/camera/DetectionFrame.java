@@ -0,0 +1,141 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A reusable pair of flat buffers holding one frame's colors and the
+ * pixels that may be shots in that frame. The shot frame is bit packed:
+ * pixel <tt>i</tt> (in row major order) is bit <tt>i % 64</tt> of word
+ * <tt>i / 64</tt>. Instances are owned by a
+ * FrameDetector and lent to a ShotSearcher, which must call
+ * <tt>release</tt> once it is done with them.
+ */
+public class DetectionFrame {
+	public static final byte BLACK_PIXEL = 0;
+	public static final byte WHITE_PIXEL = 1;
+	
+	private final int width;
+	private final int height;
+	private final int[] rgb;
+	private final long[] shotFrame;
+	private final AtomicBoolean inUse = new AtomicBoolean(false);
+	private long timestamp = 0;
+	private long sequence = -1;
+	
+	public DetectionFrame(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.rgb = new int[width * height];
+		this.shotFrame = new long[getWordCount(width, height)];
+	}
+	
+	/**
+	 * Wraps an existing frame and shot frame, e.g. to search a still
+	 * image that did not come through a FrameDetector.
+	 * 
+	 * @param frame		the frame the shot frame was computed from
+	 * @param shotFrame	one byte per pixel, <tt>WHITE_PIXEL</tt> where a shot may be
+	 */
+	public DetectionFrame(BufferedImage frame, byte[] shotFrame) {
+		this.width = frame.getWidth();
+		this.height = frame.getHeight();
+		this.rgb = frame.getRGB(0, 0, width, height, null, 0, width);
+		this.shotFrame = new long[getWordCount(width, height)];
+		
+		for (int i = 0; i < width * height; i++) {
+			if (shotFrame[i] == WHITE_PIXEL) this.shotFrame[i >>> 6] |= 1L << i;
+		}
+	}
+	
+	/**
+	 * @return the number of longs needed to hold one bit per pixel
+	 */
+	public static int getWordCount(int width, int height) {
+		return (width * height + 63) >>> 6;
+	}
+	
+	protected boolean acquire() {
+		return inUse.compareAndSet(false, true);
+	}
+	
+	/**
+	 * Returns this frame to its detector so that its buffers can be filled
+	 * with a new frame.
+	 */
+	public void release() {
+		inUse.set(false);
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return when the frame was captured in milliseconds since the epoch
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+	
+	protected void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+	
+	/**
+	 * @return the capture sequence number of the frame, or -1 if it did not
+	 * 		come from a camera or video
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	protected void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	
+	public int getRGB(int x, int y) {
+		return rgb[y * width + x];
+	}
+	
+	public boolean isWhite(int x, int y) {
+		int i = y * width + x;
+		return (shotFrame[i >>> 6] & (1L << i)) != 0;
+	}
+	
+	public int getWhitePixelCount() {
+		int whitePixels = 0;
+		for (long word : shotFrame) whitePixels += Long.bitCount(word);
+		return whitePixels;
+	}
+	
+	protected int[] getRGBBuffer() {
+		return rgb;
+	}
+	
+	protected long[] getShotFrame() {
+		return shotFrame;
+	}
+}
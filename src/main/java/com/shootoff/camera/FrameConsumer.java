@@ -0,0 +1,142 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * One stage of a camera's frame pipeline (e.g. display, detection, or
+ * recording) running on its own thread and reading from a FrameRingBuffer.
+ * A slow stage only falls behind itself: it never delays the capture thread
+ * or the other stages.
+ */
+public class FrameConsumer implements Runnable {
+	/**
+	 * LATEST always jumps to the newest frame, skipping any frames that
+	 * arrived while the stage was busy. EVERY_FRAME consumes frames in order
+	 * and only skips frames that were overwritten before it got to them.
+	 */
+	public enum SkipPolicy {
+		LATEST, EVERY_FRAME
+	}
+	
+	private static final long IDLE_TIMEOUT = TimeUnit.MILLISECONDS.toNanos(100);
+	
+	private final Logger logger = LoggerFactory.getLogger(FrameConsumer.class);
+	private final String name;
+	private final FrameRingBuffer ring;
+	private final SkipPolicy skipPolicy;
+	private final LongSupplier minimumInterval;
+	private final Consumer<CapturedFrame> stage;
+	
+	private final AtomicLong consumedFrames = new AtomicLong();
+	private final AtomicLong skippedFrames = new AtomicLong();
+	
+	/**
+	 * @param name				the stage's name, used for its thread
+	 * @param ring				the ring to read frames from
+	 * @param skipPolicy		which frame to consume next
+	 * @param minimumInterval	supplies the minimum time between two frames
+	 * 							in milliseconds (0 for no limit)
+	 * @param stage				called with each consumed frame
+	 */
+	public FrameConsumer(String name, FrameRingBuffer ring, SkipPolicy skipPolicy,
+			LongSupplier minimumInterval, Consumer<CapturedFrame> stage) {
+		this.name = name;
+		this.ring = ring;
+		this.skipPolicy = skipPolicy;
+		this.minimumInterval = minimumInterval;
+		this.stage = stage;
+	}
+	
+	public Thread start() {
+		Thread thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+	
+	public long getConsumedCount() {
+		return consumedFrames.get();
+	}
+	
+	public long getSkippedCount() {
+		return skippedFrames.get();
+	}
+	
+	@Override
+	public void run() {
+		ring.addConsumer(Thread.currentThread());
+		
+		try {
+			// Frames published before the stage started are consumed too, as
+			// long as they haven't been overwritten
+			long lastConsumed = -1;
+			
+			while (!Thread.currentThread().isInterrupted()) {
+				long latest = ring.getLastPublished();
+				
+				if (latest <= lastConsumed) {
+					if (ring.isClosed()) break;
+					ring.awaitFrameAfter(lastConsumed, IDLE_TIMEOUT);
+					continue;
+				}
+				
+				long started = System.currentTimeMillis();
+				long next = skipPolicy == SkipPolicy.LATEST ? latest : lastConsumed + 1;
+				Optional<CapturedFrame> frame = ring.acquire(next);
+				
+				if (!frame.isPresent()) {
+					// Overwritten before we got to it, so move to the oldest
+					// frame that is still in the ring
+					next = Math.max(next, ring.getLastPublished() - ring.getCapacity() + 1);
+					frame = ring.acquire(next);
+					if (!frame.isPresent()) continue;
+				}
+				
+				skippedFrames.addAndGet(next - lastConsumed - 1);
+				lastConsumed = next;
+				
+				try {
+					stage.accept(frame.get());
+				} catch (RuntimeException e) {
+					logger.error("Frame stage " + name + " failed", e);
+				} finally {
+					frame.get().release();
+				}
+				
+				consumedFrames.incrementAndGet();
+				
+				long remaining = minimumInterval.getAsLong() - (System.currentTimeMillis() - started);
+				if (remaining > 0) Thread.sleep(remaining);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			ring.removeConsumer(Thread.currentThread());
+		}
+	}
+}
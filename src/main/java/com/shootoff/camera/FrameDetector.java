@@ -0,0 +1,267 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.metrics.BloomFilterEvent;
+import com.shootoff.camera.metrics.PipelineEvents;
+import com.shootoff.camera.metrics.PipelineMetrics;
+import com.shootoff.camera.metrics.ThresholdEvent;
+import com.shootoff.config.Configuration;
+
+/**
+ * Turns camera frames into shot frames: pixels that are bright in the
+ * current frame but were not bright in any of the last <tt>bloomCount</tt>
+ * frames. Every buffer is allocated once per camera and reused, so
+ * detecting shots on a steady stream of frames does not create garbage.
+ * 
+ * Frames in the bloom filter's window are stored one bit per pixel. The
+ * filter's mask is the OR of every frame in the window and the shot frame is
+ * <tt>current & ~mask</tt>, so each step handles 64 pixels at a time.
+ * 
+ * Shot frames are lent out in DetectionFrames taken from a small ring of
+ * slots. If every slot is still being searched the frame only updates the
+ * bloom filter and no search is started.
+ */
+public class FrameDetector {
+	public static final int DEFAULT_SEARCH_SLOTS = 4;
+	
+	private final Logger logger = LoggerFactory.getLogger(FrameDetector.class);
+	private final Configuration config;
+	private final int width;
+	private final int height;
+	
+	private final DetectionFrame[] slots;
+	private final DetectionFrame spareSlot;
+	private int nextSlot = 0;
+	
+	private byte[] laserLevels;
+	private int laserIntensity = -1;
+	
+	private final int words;
+	private long[] currentFrame;
+	private long[][] window = new long[0][];
+	private final long[] bloomMask;
+	private int oldestFrame = 0;
+	private boolean bloomFilterInitialized = false;
+	private final AtomicLong skippedSearches = new AtomicLong();
+	private Optional<PipelineMetrics> metrics = Optional.empty();
+	
+	public FrameDetector(Configuration config, int width, int height) {
+		this(config, width, height, DEFAULT_SEARCH_SLOTS);
+	}
+	
+	public FrameDetector(Configuration config, int width, int height, int searchSlots) {
+		this.config = config;
+		this.width = width;
+		this.height = height;
+		
+		slots = new DetectionFrame[searchSlots];
+		for (int i = 0; i < searchSlots; i++) slots[i] = new DetectionFrame(width, height);
+		spareSlot = new DetectionFrame(width, height);
+		
+		words = DetectionFrame.getWordCount(width, height);
+		currentFrame = new long[words];
+		bloomMask = new long[words];
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public boolean isBloomFilterInitialized() {
+		return bloomFilterInitialized;
+	}
+	
+	/**
+	 * @return the number of frames that were not searched because every
+	 * 		detection frame was still being searched
+	 */
+	public long getSkippedSearchCount() {
+		return skippedSearches.get();
+	}
+	
+	/**
+	 * Sets the camera's metrics to record the threshold and bloom filter
+	 * times in.
+	 */
+	public void setMetrics(PipelineMetrics metrics) {
+		this.metrics = Optional.of(metrics);
+	}
+	
+	/**
+	 * Adds <tt>frame</tt> to the bloom filter and, once the filter holds
+	 * <tt>bloomCount</tt> frames, computes the frame's shot frame.
+	 * 
+	 * @param frame			the latest frame from the camera
+	 * @param bloomCount	the number of past frames a pixel must have been dark in
+	 * @return a frame to search for shots that the caller must release, or
+	 * 		empty if the filter is still filling or no slot is free
+	 */
+	public Optional<DetectionFrame> detect(BufferedImage frame, int bloomCount) {
+		if (frame.getWidth() != width || frame.getHeight() != height) {
+			logger.warn("Skipping frame with unexpected dimensions {}x{}, expected {}x{}",
+					frame.getWidth(), frame.getHeight(), width, height);
+			return Optional.empty();
+		}
+		
+		DetectionFrame slot = prepare(bloomCount);
+		ThresholdEvent thresholdEvent = PipelineEvents.isEnabled() ? new ThresholdEvent() : null;
+		if (thresholdEvent != null) thresholdEvent.begin();
+		long start = System.nanoTime();
+		LaserMaskKernel.apply(frame, laserLevels, slot.getRGBBuffer(), currentFrame);
+		if (thresholdEvent != null) thresholdEvent.commitForCurrentFrame();
+		
+		return filter(slot, start);
+	}
+	
+	/**
+	 * Like <tt>detect(BufferedImage, int)</tt>, but for a frame stored as
+	 * packed RGB bytes by a FrameSource.
+	 * 
+	 * @param frame			width * height * 3 bytes of pixels
+	 * @param bloomCount	the number of past frames a pixel must have been dark in
+	 * @return a frame to search for shots that the caller must release, or
+	 * 		empty if the filter is still filling or no slot is free
+	 */
+	public Optional<DetectionFrame> detect(ByteBuffer frame, int bloomCount) {
+		if (frame.capacity() < width * height * FrameSource.BYTES_PER_PIXEL) {
+			logger.warn("Skipping frame with {} bytes, expected {}", frame.capacity(),
+					width * height * FrameSource.BYTES_PER_PIXEL);
+			return Optional.empty();
+		}
+		
+		DetectionFrame slot = prepare(bloomCount);
+		ThresholdEvent thresholdEvent = PipelineEvents.isEnabled() ? new ThresholdEvent() : null;
+		if (thresholdEvent != null) thresholdEvent.begin();
+		long start = System.nanoTime();
+		LaserMaskKernel.apply(frame, width, height, laserLevels, slot.getRGBBuffer(), currentFrame);
+		if (thresholdEvent != null) thresholdEvent.commitForCurrentFrame();
+		
+		return filter(slot, start);
+	}
+	
+	private DetectionFrame prepare(int bloomCount) {
+		if (window.length != bloomCount) resizeBloomFilter(bloomCount);
+		
+		if (laserIntensity != config.getLaserIntensity()) {
+			laserIntensity = config.getLaserIntensity();
+			laserLevels = LaserMaskKernel.createLaserLevels(laserIntensity);
+		}
+		
+		return acquireSlot();
+	}
+	
+	// Computes the shot frame for the frame in currentFrame and adds it to
+	// the bloom filter. maskStart is when the frame started being thresholded
+	private Optional<DetectionFrame> filter(DetectionFrame slot, long maskStart) {
+		BloomFilterEvent bloomFilterEvent = PipelineEvents.isEnabled() ? new BloomFilterEvent() : null;
+		if (bloomFilterEvent != null) bloomFilterEvent.begin();
+		long filterStart = System.nanoTime();
+		if (metrics.isPresent()) metrics.get().recordThresholdTime(filterStart - maskStart);
+		
+		if (!bloomFilterInitialized) {
+			fillBloomFilter();
+			slot.release();
+			return Optional.empty();
+		}
+		
+		System.arraycopy(window[0], 0, bloomMask, 0, words);
+		for (int f = 1; f < window.length; f++) {
+			long[] pastFrame = window[f];
+			for (int i = 0; i < words; i++) bloomMask[i] |= pastFrame[i];
+		}
+		
+		long[] shotFrame = slot.getShotFrame();
+		for (int i = 0; i < words; i++) {
+			shotFrame[i] = currentFrame[i] & ~bloomMask[i];
+		}
+		
+		// Update the bloom filter by replacing the oldest frame
+		// with the current one
+		long[] oldest = window[oldestFrame];
+		window[oldestFrame] = currentFrame;
+		currentFrame = oldest;
+		oldestFrame = (oldestFrame + 1) % window.length;
+		
+		if (metrics.isPresent()) metrics.get().recordBloomFilterTime(System.nanoTime() - filterStart);
+		if (bloomFilterEvent != null) {
+			bloomFilterEvent.bloomCount = window.length;
+			bloomFilterEvent.commitForCurrentFrame();
+		}
+		
+		if (slot == spareSlot) {
+			logger.debug("Skipping shot search: every detection frame is still being searched");
+			skippedSearches.incrementAndGet();
+			slot.release();
+			return Optional.empty();
+		}
+		
+		return Optional.of(slot);
+	}
+	
+	private void fillBloomFilter() {
+		long[] filled = window[oldestFrame];
+		window[oldestFrame] = currentFrame;
+		currentFrame = filled;
+		oldestFrame++;
+		
+		if (oldestFrame == window.length) {
+			oldestFrame = 0;
+			bloomFilterInitialized = true;
+			logger.debug("Finished initializing bloom filter ({} frames in filter): Enabling Shot Detection",
+					window.length);
+		}
+	}
+	
+	// This is only true when the detector is first used or the stream
+	// debugger is opened and the bloom count slider is changed
+	private void resizeBloomFilter(int bloomCount) {
+		long[][] newWindow = Arrays.copyOf(window, bloomCount);
+		for (int i = window.length; i < bloomCount; i++) newWindow[i] = new long[words];
+		
+		window = newWindow;
+		oldestFrame = 0;
+		bloomFilterInitialized = false;
+	}
+	
+	private DetectionFrame acquireSlot() {
+		for (int i = 0; i < slots.length; i++) {
+			DetectionFrame slot = slots[nextSlot];
+			nextSlot = (nextSlot + 1) % slots.length;
+			
+			if (slot.acquire()) return slot;
+		}
+		
+		spareSlot.acquire();
+		return spareSlot;
+	}
+}
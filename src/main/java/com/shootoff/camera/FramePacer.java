@@ -0,0 +1,165 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Decides how long a capture loop should wait before reading its next
+ * frame. The wait is the frame interval minus the time the last frame took
+ * to read and publish, so slow reads don't stretch the interval and a
+ * source that blocks until it has a frame isn't waited on twice.
+ * 
+ * The interval comes from the source's frame rate. If the source doesn't
+ * know its frame rate (or reports a nonsense one, as some drivers report
+ * -1), the interval is how long reads take once a few frames were read,
+ * because a source that blocks until it has a frame takes one frame to
+ * read. Reads that return too quickly to have waited for the source say
+ * nothing about its frame rate, so those sources are read every
+ * <tt>DEFAULT_INTERVAL</tt>. The time between delivered frames is measured
+ * separately so the frame rate the source actually achieved can be
+ * compared with the one it promised.
+ */
+public class FramePacer {
+	public static final long DEFAULT_INTERVAL = TimeUnit.MILLISECONDS.toNanos(30);
+	
+	// Weight of the newest interval in the moving average
+	private static final double SMOOTHING = 0.1;
+	
+	// Reads to measure before trusting the read time as the interval
+	static final int MEASURED_READS = 5;
+	
+	// Reads quicker than this (over 250 fps) can't have waited for a frame
+	static final long MIN_MEASURED_INTERVAL = TimeUnit.MILLISECONDS.toNanos(4);
+	
+	private final DoubleSupplier targetFPS;
+	
+	private long lastDelivery = -1;
+	private double deliveryInterval = 0;
+	private int measuredReads = 0;
+	private double readTime = 0;
+	
+	/**
+	 * @param targetFPS	supplies the source's frame rate, which is checked
+	 * 					every frame because some sources only know it once
+	 * 					they are streaming
+	 */
+	public FramePacer(DoubleSupplier targetFPS) {
+		this.targetFPS = targetFPS;
+	}
+	
+	/**
+	 * Records that a frame was delivered at <tt>now</tt>.
+	 * 
+	 * @param now	the current time from <tt>System.nanoTime</tt>
+	 * @return the time since the previous delivered frame in nanoseconds, or
+	 * 		-1 for the first frame
+	 */
+	public long frameDelivered(long now) {
+		if (lastDelivery < 0) {
+			lastDelivery = now;
+			return -1;
+		}
+		
+		long interval = now - lastDelivery;
+		lastDelivery = now;
+		
+		if (deliveryInterval == 0) {
+			deliveryInterval = interval;
+		} else {
+			deliveryInterval += SMOOTHING * (interval - deliveryInterval);
+		}
+		
+		return interval;
+	}
+	
+	/**
+	 * Like <tt>frameDelivered(long)</tt>, but also measures how long the
+	 * frame took to read, which sets the interval for sources that don't
+	 * know their frame rate.
+	 * 
+	 * @param frameStart	when the loop started reading the frame
+	 * @param now			the current time from <tt>System.nanoTime</tt>
+	 */
+	public long frameDelivered(long frameStart, long now) {
+		long read = now - frameStart;
+		
+		if (measuredReads == 0) {
+			readTime = read;
+		} else {
+			readTime += SMOOTHING * (read - readTime);
+		}
+		
+		measuredReads++;
+		
+		return frameDelivered(now);
+	}
+	
+	/**
+	 * @return the frame rate the source says it delivers, or 0 if it doesn't
+	 * 		know
+	 */
+	public double getTargetFPS() {
+		double fps = targetFPS.getAsDouble();
+		return fps > 0 && !Double.isInfinite(fps) ? fps : 0;
+	}
+	
+	/**
+	 * @return the frame rate the source actually delivered, averaged over
+	 * 		roughly the last ten frames, or 0 before two frames were delivered
+	 */
+	public double getAchievedFPS() {
+		if (deliveryInterval == 0) return 0;
+		
+		return TimeUnit.SECONDS.toNanos(1) / deliveryInterval;
+	}
+	
+	/**
+	 * @return the time a frame should take in nanoseconds
+	 */
+	public long getFrameInterval() {
+		double fps = getTargetFPS();
+		if (fps > 0) return (long)(TimeUnit.SECONDS.toNanos(1) / fps);
+		
+		// The read time doesn't include the wait, so pacing by it can't
+		// stretch the interval it is measured from
+		if (measuredReads >= MEASURED_READS && readTime >= MIN_MEASURED_INTERVAL) return (long)readTime;
+		
+		return DEFAULT_INTERVAL;
+	}
+	
+	/**
+	 * @param frameStart	when the loop started reading the current frame
+	 * @param now			the current time from <tt>System.nanoTime</tt>
+	 * @return how many nanoseconds to wait before reading the next frame,
+	 * 		which is 0 if reading this frame already took a whole interval
+	 */
+	public long getDelay(long frameStart, long now) {
+		return Math.max(0, getFrameInterval() - (now - frameStart));
+	}
+	
+	/**
+	 * Sleeps for <tt>getDelay(frameStart, System.nanoTime())</tt>.
+	 */
+	public void awaitNextFrame(long frameStart) throws InterruptedException {
+		long delay = getDelay(frameStart, System.nanoTime());
+		if (delay > 0) TimeUnit.NANOSECONDS.sleep(delay);
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A fixed size ring of the most recent frames from one camera. A single
+ * capture thread publishes frames and any number of consumers read them
+ * without taking locks: the producer never waits for consumers, so a
+ * consumer that falls more than a ring's worth of frames behind simply
+ * finds that the frames it wanted were overwritten and skips ahead.
+ * 
+ * Frames are stored in direct buffers that the capture thread claims from
+ * the ring, fills, and publishes. A buffer goes back to the ring's pool once
+ * its frame was overwritten and released by every consumer that acquired
+ * it, so a steady stream of frames doesn't allocate new buffers.
+ */
+public class FrameRingBuffer {
+	public static final int DEFAULT_CAPACITY = 8;
+	
+	private final AtomicReferenceArray<CapturedFrame> frames;
+	private final int mask;
+	private final int width;
+	private final int height;
+	private final Queue<ByteBuffer> freeBuffers = new ConcurrentLinkedQueue<ByteBuffer>();
+	private final AtomicInteger allocatedBuffers = new AtomicInteger();
+	private final AtomicLong lastPublished = new AtomicLong(-1);
+	private final List<Thread> consumers = new CopyOnWriteArrayList<Thread>();
+	private volatile boolean isClosed = false;
+	
+	public FrameRingBuffer(int width, int height) {
+		this(DEFAULT_CAPACITY, width, height);
+	}
+	
+	/**
+	 * @param capacity	the number of frames kept, rounded up to a power of two
+	 * @param width		the width of every frame in pixels
+	 * @param height	the height of every frame in pixels
+	 */
+	public FrameRingBuffer(int capacity, int width, int height) {
+		this.width = width;
+		this.height = height;
+		
+		int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+		frames = new AtomicReferenceArray<CapturedFrame>(size);
+		mask = size - 1;
+	}
+	
+	public int getCapacity() {
+		return frames.length();
+	}
+	
+	public int getFrameSize() {
+		return width * height * FrameSource.BYTES_PER_PIXEL;
+	}
+	
+	/**
+	 * @return the number of frame buffers the ring has allocated so far
+	 */
+	public int getAllocatedBuffers() {
+		return allocatedBuffers.get();
+	}
+	
+	/**
+	 * Hands out an empty buffer of exactly <tt>getFrameSize</tt> bytes for the
+	 * capture thread to fill. The buffer must be given back with either
+	 * <tt>publish</tt> or <tt>recycle</tt>.
+	 */
+	public ByteBuffer claimBuffer() {
+		ByteBuffer buffer = freeBuffers.poll();
+		
+		if (buffer == null) {
+			buffer = ByteBuffer.allocateDirect(getFrameSize());
+			allocatedBuffers.incrementAndGet();
+		}
+		
+		buffer.clear();
+		return buffer;
+	}
+	
+	/**
+	 * Publishes the next frame. Must only be called from the capture thread.
+	 * 
+	 * @param pixels	a buffer from <tt>claimBuffer</tt> holding the captured frame
+	 * @param timestamp	when the frame was acquired in milliseconds since the epoch
+	 */
+	public void publish(ByteBuffer pixels, long timestamp) {
+		long sequence = lastPublished.get() + 1;
+		CapturedFrame frame = new CapturedFrame(this, pixels, width, height, timestamp, sequence);
+		
+		CapturedFrame overwritten = frames.getAndSet((int)(sequence & mask), frame);
+		lastPublished.set(sequence);
+		
+		if (overwritten != null) overwritten.release();
+		
+		for (Thread consumer : consumers) LockSupport.unpark(consumer);
+	}
+		
+	/**
+	 * Returns a buffer that was claimed but not published, or that belonged
+	 * to a frame everyone has released, to the pool.
+	 */
+	protected void recycle(ByteBuffer buffer) {
+		freeBuffers.offer(buffer);
+	}
+	
+	/**
+	 * @return the sequence number of the newest frame, or -1 if no frame has
+	 * 		been published
+	 */
+	public long getLastPublished() {
+		return lastPublished.get();
+	}
+	
+	/**
+	 * Like <tt>acquire</tt>, but for the newest frame.
+	 */
+	public Optional<CapturedFrame> acquireLatest() {
+		long sequence = lastPublished.get();
+		if (sequence < 0) return Optional.empty();
+		return acquire(sequence);
+	}
+	
+	/**
+	 * Gets a frame and keeps its buffer from being reused until the caller
+	 * calls <tt>release</tt> on it.
+	 * 
+	 * @return the frame with <tt>sequence</tt>, or empty if it was not
+	 * 		published yet or has already been overwritten
+	 */
+	public Optional<CapturedFrame> acquire(long sequence) {
+		if (sequence < 0 || sequence > lastPublished.get()) return Optional.empty();
+		
+		CapturedFrame frame = frames.get((int)(sequence & mask));
+		if (frame == null || frame.getSequence() != sequence || !frame.retain()) return Optional.empty();
+		
+		return Optional.of(frame);
+	}
+	
+	/**
+	 * Stops the ring: consumers finish once they have seen the frames they
+	 * are going to consume.
+	 */
+	public void close() {
+		isClosed = true;
+		for (Thread consumer : consumers) LockSupport.unpark(consumer);
+	}
+	
+	public boolean isClosed() {
+		return isClosed;
+	}
+	
+	/**
+	 * Registers a consumer thread so that it is woken whenever a frame is
+	 * published.
+	 */
+	protected void addConsumer(Thread consumer) {
+		consumers.add(consumer);
+	}
+	
+	protected void removeConsumer(Thread consumer) {
+		consumers.remove(consumer);
+	}
+	
+	/**
+	 * Parks the calling consumer, which must have been added with
+	 * <tt>addConsumer</tt>, until a frame newer than <tt>sequence</tt> is
+	 * published, the ring is closed, or <tt>timeoutNanos</tt> passes.
+	 */
+	protected void awaitFrameAfter(long sequence, long timeoutNanos) {
+		// A frame published between this check and parking leaves an
+		// unpark permit behind, so it can't be missed
+		if (lastPublished.get() <= sequence && !isClosed) {
+			LockSupport.parkNanos(this, timeoutNanos);
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where a CameraManager gets its frames from. Frames are copied straight
+ * into caller supplied buffers as packed RGB bytes (three bytes per pixel,
+ * row major) so that capturing a frame does not allocate an image.
+ */
+public interface FrameSource {
+	public static final int BYTES_PER_PIXEL = 3;
+	
+	public String getName();
+	
+	public int getWidth();
+	
+	public int getHeight();
+	
+	/**
+	 * @return the number of frames the source produces per second, or 0 if
+	 * 		it is not known
+	 */
+	public double getFPS();
+	
+	public void open();
+	
+	public boolean isOpen();
+	
+	/**
+	 * Copies the next frame into <tt>target</tt>, which must have exactly
+	 * width * height * 3 bytes remaining.
+	 * 
+	 * @return <tt>true</tt> if a frame was copied, <tt>false</tt> if no frame
+	 * 		was available (e.g. because the source was closed)
+	 */
+	public boolean read(ByteBuffer target);
+	
+	/**
+	 * @return <tt>true</tt> if <tt>awaitFrame</tt> really blocks until the
+	 * 		source has a new frame, in which case callers can wait on the
+	 * 		source instead of sleeping for a frame interval
+	 */
+	public default boolean canAwaitFrames() {
+		return false;
+	}
+	
+	/**
+	 * Waits until the source has a frame that has not been read yet.
+	 * 
+	 * @return <tt>true</tt> if a new frame is ready, <tt>false</tt> if the
+	 * 		timeout passed first or the source can't tell
+	 */
+	public default boolean awaitFrame(long timeout, TimeUnit unit) throws InterruptedException {
+		return false;
+	}
+	
+	public void close();
+}
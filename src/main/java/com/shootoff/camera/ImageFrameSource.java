@@ -0,0 +1,150 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Plays a list of images as if they came from a camera, e.g. to run the
+ * capture pipeline on frames saved to files or generated by a test without
+ * a webcam. Every image must have the same dimensions.
+ */
+public class ImageFrameSource implements FrameSource {
+	private final String name;
+	private final List<BufferedImage> frames;
+	private final double fps;
+	private final boolean loop;
+	private int nextFrame = 0;
+	private volatile boolean isOpen = false;
+	
+	/**
+	 * @param name		the name reported for the source
+	 * @param frames	the frames to play, in order
+	 * @param fps		the frame rate to report
+	 * @param loop		<tt>true</tt> to start over after the last frame, <tt>false</tt>
+	 * 					to close the source instead
+	 */
+	public ImageFrameSource(String name, List<BufferedImage> frames, double fps, boolean loop) {
+		if (frames.isEmpty()) throw new IllegalArgumentException("An image frame source needs at least one frame");
+		
+		for (BufferedImage frame : frames) {
+			if (frame.getWidth() != frames.get(0).getWidth() ||
+					frame.getHeight() != frames.get(0).getHeight()) {
+				throw new IllegalArgumentException("Every frame in an image frame source must be the same size");
+			}
+		}
+		
+		this.name = name;
+		this.frames = new ArrayList<BufferedImage>(frames);
+		this.fps = fps;
+		this.loop = loop;
+	}
+	
+	public static ImageFrameSource fromFiles(String name, List<File> files, double fps, boolean loop)
+			throws IOException {
+		
+		List<BufferedImage> frames = new ArrayList<BufferedImage>();
+		
+		for (File file : files) {
+			BufferedImage frame = ImageIO.read(file);
+			if (frame == null) throw new IOException("Could not read image " + file.getPath());
+			frames.add(frame);
+		}
+		
+		return new ImageFrameSource(name, frames, fps, loop);
+	}
+	
+	/**
+	 * Copies <tt>frame</tt> into <tt>target</tt> as packed RGB bytes,
+	 * starting at the buffer's current position.
+	 */
+	public static void copyPixels(BufferedImage frame, ByteBuffer target) {
+		int width = frame.getWidth();
+		int[] row = new int[width];
+		
+		for (int y = 0; y < frame.getHeight(); y++) {
+			frame.getRGB(0, y, width, 1, row, 0, width);
+			
+			for (int pixel : row) {
+				target.put((byte)(pixel >> 16));
+				target.put((byte)(pixel >> 8));
+				target.put((byte)pixel);
+			}
+		}
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public int getWidth() {
+		return frames.get(0).getWidth();
+	}
+	
+	@Override
+	public int getHeight() {
+		return frames.get(0).getHeight();
+	}
+	
+	@Override
+	public double getFPS() {
+		return fps;
+	}
+	
+	@Override
+	public void open() {
+		isOpen = true;
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return isOpen;
+	}
+	
+	@Override
+	public synchronized boolean read(ByteBuffer target) {
+		if (!isOpen) return false;
+		
+		if (nextFrame == frames.size()) {
+			if (!loop) {
+				isOpen = false;
+				return false;
+			}
+			
+			nextFrame = 0;
+		}
+		
+		copyPixels(frames.get(nextFrame++), target);
+		return true;
+	}
+	
+	@Override
+	public void close() {
+		isOpen = false;
+	}
+}
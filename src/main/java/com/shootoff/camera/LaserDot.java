@@ -0,0 +1,87 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import javafx.scene.paint.Color;
+
+/**
+ * A laser dot drawn by a SyntheticFrameSource, which is also the ground
+ * truth for the shot it should be detected as.
+ */
+public class LaserDot {
+	private final double x;
+	private final double y;
+	private final Color color;
+	private final int radius;
+	private final double intensity;
+	private final long startFrame;
+	private final int duration;
+	
+	/**
+	 * @param x				the x coordinate of the dot's center in pixels
+	 * @param y				the y coordinate of the dot's center in pixels
+	 * @param color			the laser's color, e.g. Color.RED
+	 * @param radius		the dot's radius in pixels
+	 * @param intensity		how strongly the dot covers the scene, from 0
+	 * 						(invisible) to 1 (a saturated core)
+	 * @param startFrame	the index of the first frame the dot is in
+	 * @param duration		the number of frames the dot is in
+	 */
+	public LaserDot(double x, double y, Color color, int radius, double intensity, long startFrame, int duration) {
+		this.x = x;
+		this.y = y;
+		this.color = color;
+		this.radius = radius;
+		this.intensity = intensity;
+		this.startFrame = startFrame;
+		this.duration = duration;
+	}
+	
+	public double getX() {
+		return x;
+	}
+	
+	public double getY() {
+		return y;
+	}
+	
+	public Color getColor() {
+		return color;
+	}
+	
+	public int getRadius() {
+		return radius;
+	}
+	
+	public double getIntensity() {
+		return intensity;
+	}
+	
+	public long getStartFrame() {
+		return startFrame;
+	}
+	
+	public int getDuration() {
+		return duration;
+	}
+	
+	public boolean isVisible(long frame) {
+		return frame >= startFrame && frame < startFrame + duration;
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A single pass grayscale, threshold, and copy kernel. It reads a frame's
+ * raster data directly and writes both the frame's packed colors (for
+ * color detection) and a one bit per pixel laser mask (packed the same way
+ * as a DetectionFrame's shot frame), without creating intermediate images.
+ * 
+ * Pixels are converted to gray exactly the way Java2D does when drawing into
+ * a TYPE_BYTE_GRAY image and compared against the value getRGB returns for
+ * that gray level. Colors, including alpha, are copied exactly as getRGB
+ * returns them, and like the getRGB based threshold the mask ignores alpha.
+ * For opaque frames, which is what cameras deliver, the mask is identical
+ * to the one the old BufferedImage based threshold produced; that threshold
+ * drew translucent pixels over black first.
+ */
+public final class LaserMaskKernel {
+	private static final int[] GRAY_TO_RGB = createGrayLookup();
+	
+	private LaserMaskKernel() {}
+	
+	/**
+	 * Creates the lookup table <tt>apply</tt> uses to decide whether a gray
+	 * level is bright enough to be a laser.
+	 * 
+	 * @param laserIntensity	gray levels above this value are lasers
+	 * @return a table mapping each gray level to a mask pixel
+	 */
+	public static byte[] createLaserLevels(int laserIntensity) {
+		byte[] laserLevels = new byte[256];
+		
+		for (int gray = 0; gray < laserLevels.length; gray++) {
+			laserLevels[gray] = GRAY_TO_RGB[gray] > laserIntensity ?
+					DetectionFrame.WHITE_PIXEL : DetectionFrame.BLACK_PIXEL;
+		}
+		
+		return laserLevels;
+	}
+	
+	/**
+	 * Thresholds <tt>frame</tt> into <tt>mask</tt> and copies its colors
+	 * into <tt>rgb</tt> in one pass. Both outputs must hold at least
+	 * width * height pixels.
+	 * 
+	 * @param frame			the frame to threshold
+	 * @param laserLevels	a table created by <tt>createLaserLevels</tt>
+	 * @param rgb			receives the frame's pixels packed like getRGB
+	 * @param mask			receives a set bit for each laser pixel
+	 */
+	public static void apply(BufferedImage frame, byte[] laserLevels, int[] rgb, long[] mask) {
+		Raster raster = frame.getRaster();
+		DataBuffer dataBuffer = raster.getDataBuffer();
+		
+		if (dataBuffer instanceof DataBufferByte && dataBuffer.getNumBanks() == 1 &&
+				raster.getSampleModel() instanceof ComponentSampleModel &&
+				frame.getColorModel() instanceof ComponentColorModel &&
+				frame.getColorModel().getColorSpace().isCS_sRGB() &&
+				!frame.getColorModel().isAlphaPremultiplied() &&
+				raster.getNumBands() >= 3 && raster.getSampleModel().getSampleSize(0) == 8) {
+			
+			applyBytes(raster, frame.getColorModel().hasAlpha(), ((DataBufferByte)dataBuffer).getData(),
+					laserLevels, rgb, mask);
+		} else if (dataBuffer instanceof DataBufferInt &&
+				(frame.getType() == BufferedImage.TYPE_INT_RGB ||
+					frame.getType() == BufferedImage.TYPE_INT_ARGB)) {
+			
+			applyInts(raster, frame.getType() == BufferedImage.TYPE_INT_ARGB, ((DataBufferInt)dataBuffer).getData(),
+					laserLevels, rgb, mask);
+		} else {
+			int width = frame.getWidth();
+			frame.getRGB(0, 0, width, frame.getHeight(), rgb, 0, width);
+			
+			int pixels = width * frame.getHeight();
+			long word = 0;
+			for (int i = 0; i < pixels; i++) {
+				word |= (long)laserLevels[toGray(rgb[i])] << i;
+				
+				if ((i & 63) == 63) {
+					mask[i >>> 6] = word;
+					word = 0;
+				}
+			}
+			
+			finishMask(mask, pixels, word);
+		}
+	}
+	
+	/**
+	 * Thresholds a frame stored as packed RGB bytes (three bytes per pixel,
+	 * row major, as a FrameSource fills it) into <tt>mask</tt> and copies its
+	 * colors into <tt>rgb</tt> in one pass. The buffer is read with absolute
+	 * gets, so its position and limit are ignored.
+	 * 
+	 * @param frame			at least width * height * 3 bytes of pixels
+	 * @param width			the frame's width in pixels
+	 * @param height		the frame's height in pixels
+	 * @param laserLevels	a table created by <tt>createLaserLevels</tt>
+	 * @param rgb			receives the frame's pixels packed like getRGB
+	 * @param mask			receives a set bit for each laser pixel
+	 */
+	public static void apply(ByteBuffer frame, int width, int height, byte[] laserLevels, int[] rgb,
+			long[] mask) {
+		
+		int pixels = width * height;
+		long word = 0;
+		for (int i = 0, in = 0; i < pixels; i++, in += FrameSource.BYTES_PER_PIXEL) {
+			int red = frame.get(in) & 0xFF;
+			int green = frame.get(in + 1) & 0xFF;
+			int blue = frame.get(in + 2) & 0xFF;
+			
+			rgb[i] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+			word |= (long)laserLevels[(77 * red + 150 * green + 29 * blue + 128) >> 8] << i;
+			
+			if ((i & 63) == 63) {
+				mask[i >>> 6] = word;
+				word = 0;
+			}
+		}
+		
+		finishMask(mask, pixels, word);
+	}
+	
+	// Stores the last, partially filled word and clears the rest of the mask
+	private static void finishMask(long[] mask, int pixels, long word) {
+		int words = (pixels + 63) >>> 6;
+		if ((pixels & 63) != 0) mask[words - 1] = word;
+		Arrays.fill(mask, words, mask.length, 0);
+	}
+	
+	private static void applyBytes(Raster raster, boolean hasAlpha, byte[] data, byte[] laserLevels, int[] rgb,
+			long[] mask) {
+		
+		ComponentSampleModel sampleModel = (ComponentSampleModel)raster.getSampleModel();
+		int width = raster.getWidth();
+		int height = raster.getHeight();
+		int pixelStride = sampleModel.getPixelStride();
+		int scanlineStride = sampleModel.getScanlineStride();
+		int[] bandOffsets = sampleModel.getBandOffsets();
+		int redOffset = bandOffsets[0];
+		int greenOffset = bandOffsets[1];
+		int blueOffset = bandOffsets[2];
+		int alphaOffset = hasAlpha ? bandOffsets[bandOffsets.length - 1] : -1;
+		int start = raster.getDataBuffer().getOffset() -
+				raster.getSampleModelTranslateY() * scanlineStride -
+				raster.getSampleModelTranslateX() * pixelStride;
+		
+		long word = 0;
+		for (int y = 0, out = 0; y < height; y++) {
+			for (int x = 0, in = start + y * scanlineStride; x < width; x++, in += pixelStride, out++) {
+				int red = data[in + redOffset] & 0xFF;
+				int green = data[in + greenOffset] & 0xFF;
+				int blue = data[in + blueOffset] & 0xFF;
+				int alpha = hasAlpha ? data[in + alphaOffset] & 0xFF : 0xFF;
+				
+				rgb[out] = (alpha << 24) | (red << 16) | (green << 8) | blue;
+				word |= (long)laserLevels[(77 * red + 150 * green + 29 * blue + 128) >> 8] << out;
+				
+				if ((out & 63) == 63) {
+					mask[out >>> 6] = word;
+					word = 0;
+				}
+			}
+		}
+		
+		finishMask(mask, width * height, word);
+	}
+	
+	private static void applyInts(Raster raster, boolean hasAlpha, int[] data, byte[] laserLevels, int[] rgb,
+			long[] mask) {
+		
+		SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel)raster.getSampleModel();
+		int width = raster.getWidth();
+		int height = raster.getHeight();
+		int scanlineStride = sampleModel.getScanlineStride();
+		int start = raster.getDataBuffer().getOffset() -
+				raster.getSampleModelTranslateY() * scanlineStride -
+				raster.getSampleModelTranslateX();
+		
+		long word = 0;
+		for (int y = 0, out = 0; y < height; y++) {
+			for (int x = 0, in = start + y * scanlineStride; x < width; x++, in++, out++) {
+				int pixel = hasAlpha ? data[in] : 0xFF000000 | data[in];
+				
+				rgb[out] = pixel;
+				word |= (long)laserLevels[toGray(pixel)] << out;
+				
+				if ((out & 63) == 63) {
+					mask[out >>> 6] = word;
+					word = 0;
+				}
+			}
+		}
+		
+		finishMask(mask, width * height, word);
+	}
+	
+	/**
+	 * Converts a pixel to gray the same way Java2D does when drawing an
+	 * RGB image into a TYPE_BYTE_GRAY image.
+	 */
+	protected static int toGray(int rgb) {
+		return (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF) + 128) >> 8;
+	}
+	
+	// Maps the gray level Java2D produces when drawing into a TYPE_BYTE_GRAY
+	// image to the value getRGB returns for it (getRGB treats the gray as linear
+	// and converts it to sRGB)
+	private static int[] createGrayLookup() {
+		BufferedImage levels = new BufferedImage(256, 1, BufferedImage.TYPE_BYTE_GRAY);
+		int[] lookup = new int[256];
+		
+		for (int gray = 0; gray < lookup.length; gray++) {
+			levels.getRaster().setSample(gray, 0, 0, gray);
+			lookup[gray] = levels.getRGB(gray, 0) & 0xFF;
+		}
+		
+		return lookup;
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a raw capture written by RawFrameWriter by memory mapping it, so
+ * frames are read straight from the page cache without being copied or
+ * decoded. The file is mapped in segments of whole frames to support
+ * captures larger than 2 GB.
+ * 
+ * The frame count is taken from the file's size rather than its header, so
+ * a capture that was never closed can be read up to its last whole frame.
+ */
+public class RawFrameReader implements Closeable {
+	private final FileChannel channel;
+	private final int width;
+	private final int height;
+	private final int frameSize;
+	private final long recordSize;
+	private final int framesPerSegment;
+	private final int frameCount;
+	private final MappedByteBuffer[] segments;
+	
+	public RawFrameReader(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		
+		try {
+			ByteBuffer header = ByteBuffer.allocate(RawFrameWriter.HEADER_SIZE);
+			while (header.hasRemaining()) {
+				if (channel.read(header, header.position()) < 0) break;
+			}
+			header.flip();
+			
+			byte[] magic = new byte[RawFrameWriter.MAGIC.length];
+			if (header.remaining() == RawFrameWriter.HEADER_SIZE) header.get(magic);
+			
+			if (!Arrays.equals(magic, RawFrameWriter.MAGIC)) {
+				throw new IOException(file.getPath() + " is not a raw capture");
+			}
+			
+			width = header.getInt();
+			height = header.getInt();
+			int bytesPerPixel = header.getInt();
+			
+			if (width <= 0 || height <= 0 || bytesPerPixel != FrameSource.BYTES_PER_PIXEL) {
+				throw new IOException(String.format("%s has unsupported frames: %dx%d with %d bytes per pixel",
+						file.getPath(), width, height, bytesPerPixel));
+			}
+			
+			frameSize = width * height * FrameSource.BYTES_PER_PIXEL;
+			recordSize = RawFrameWriter.getFrameRecordSize(width, height);
+			frameCount = (int)Math.min(Integer.MAX_VALUE, 
+					(channel.size() - RawFrameWriter.HEADER_SIZE) / recordSize);
+			framesPerSegment = (int)Math.max(1, Integer.MAX_VALUE / recordSize);
+			
+			segments = new MappedByteBuffer[(frameCount + framesPerSegment - 1) / framesPerSegment];
+			for (int i = 0; i < segments.length; i++) {
+				int frames = Math.min(framesPerSegment, frameCount - i * framesPerSegment);
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						RawFrameWriter.HEADER_SIZE + i * framesPerSegment * recordSize, frames * recordSize);
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * @return <tt>true</tt> if the file's name says it is a raw capture
+	 */
+	public static boolean isRawCapture(File file) {
+		return file.getName().toLowerCase().endsWith(RawFrameWriter.EXTENSION);
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public int getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * @return when frame <tt>index</tt> was captured in milliseconds since
+	 * 		the epoch
+	 */
+	public long getTimestamp(int index) {
+		checkIndex(index);
+		return segments[index / framesPerSegment].getLong(getOffset(index));
+	}
+	
+	/**
+	 * @return a read only view of frame <tt>index</tt>'s pixels in the mapped
+	 * 		file, three bytes (red, green, blue) per pixel in row major order
+	 */
+	public ByteBuffer getFrame(int index) {
+		checkIndex(index);
+		
+		ByteBuffer frame = segments[index / framesPerSegment].duplicate();
+		int offset = getOffset(index) + RawFrameWriter.TIMESTAMP_SIZE;
+		frame.limit(offset + frameSize).position(offset);
+		return frame.slice().asReadOnlyBuffer();
+	}
+	
+	/**
+	 * @return the frame rate the capture was recorded at, or 0 if it has
+	 * 		fewer than two frames
+	 */
+	public double getFPS() {
+		if (frameCount < 2) return 0;
+		
+		long duration = getTimestamp(frameCount - 1) - getTimestamp(0);
+		return duration <= 0 ? 0 : (frameCount - 1) * 1000.0 / duration;
+	}
+	
+	private int getOffset(int index) {
+		return (int)((index % framesPerSegment) * recordSize);
+	}
+	
+	private void checkIndex(int index) {
+		if (index < 0 || index >= frameCount) {
+			throw new IndexOutOfBoundsException(String.format("Frame %d of %d", index, frameCount));
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays a raw capture as if it came from a camera. Each frame is a single
+ * bulk copy from the memory mapped file into the caller's buffer, so replay
+ * costs no decoding and reproduces the captured pixels exactly.
+ */
+public class RawFrameSource implements FrameSource {
+	private final Logger logger = LoggerFactory.getLogger(RawFrameSource.class);
+	private final File file;
+	private final RawFrameReader reader;
+	private final boolean loop;
+	private int nextFrame = 0;
+	private volatile boolean isOpen = false;
+	
+	/**
+	 * @param file	a capture written by RawFrameWriter
+	 * @param loop	<tt>true</tt> to start over after the last frame, <tt>false</tt>
+	 * 				to close the source instead
+	 */
+	public RawFrameSource(File file, boolean loop) throws IOException {
+		this.file = file;
+		this.reader = new RawFrameReader(file);
+		this.loop = loop;
+		
+		if (reader.getFrameCount() == 0) {
+			reader.close();
+			throw new IOException(file.getPath() + " has no frames");
+		}
+	}
+	
+	@Override
+	public String getName() {
+		return file.getName();
+	}
+	
+	@Override
+	public int getWidth() {
+		return reader.getWidth();
+	}
+	
+	@Override
+	public int getHeight() {
+		return reader.getHeight();
+	}
+	
+	/**
+	 * @return the frame rate the capture was recorded at
+	 */
+	@Override
+	public double getFPS() {
+		return reader.getFPS();
+	}
+	
+	@Override
+	public void open() {
+		isOpen = true;
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return isOpen;
+	}
+	
+	@Override
+	public synchronized boolean read(ByteBuffer target) {
+		if (!isOpen) return false;
+		
+		if (nextFrame == reader.getFrameCount()) {
+			if (!loop) {
+				close();
+				return false;
+			}
+			
+			nextFrame = 0;
+		}
+		
+		target.put(reader.getFrame(nextFrame++));
+		return true;
+	}
+	
+	@Override
+	public void close() {
+		isOpen = false;
+		
+		try {
+			reader.close();
+		} catch (IOException e) {
+			logger.error("Failed to close raw capture " + file.getPath(), e);
+		}
+	}
+}
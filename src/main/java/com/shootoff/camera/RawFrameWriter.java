@@ -0,0 +1,143 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes frames losslessly in ShootOFF's raw capture format so that they
+ * can be replayed bit for bit, e.g. to tune detection. A raw capture is a
+ * header followed by frames that all have the same size:
+ * 
+ * <pre>
+ * header (HEADER_SIZE bytes, big endian)
+ *   0  magic           8 bytes, "SOFFRAW1"
+ *   8  width           int
+ *  12  height          int
+ *  16  bytes per pixel int, always 3
+ *  20  reserved        int
+ *  24  frame count     long, written when the capture is closed
+ * frame (8 + width * height * 3 bytes)
+ *   0  timestamp       long, milliseconds since the epoch
+ *   8  pixels          packed RGB bytes in row major order
+ * </pre>
+ * 
+ * Frames are written with gathering writes straight from the caller's
+ * buffer, so writing a frame from a FrameRingBuffer doesn't copy it.
+ */
+public class RawFrameWriter implements Closeable {
+	public static final String EXTENSION = ".raw";
+	public static final byte[] MAGIC = "SOFFRAW1".getBytes(StandardCharsets.US_ASCII);
+	public static final int HEADER_SIZE = 32;
+	public static final int TIMESTAMP_SIZE = 8;
+	
+	private final FileChannel channel;
+	private final int width;
+	private final int height;
+	private final ByteBuffer timestamp = ByteBuffer.allocateDirect(TIMESTAMP_SIZE);
+	private final ByteBuffer[] record = new ByteBuffer[2];
+	private long frameCount = 0;
+	
+	public RawFrameWriter(File file, int width, int height) throws IOException {
+		this.width = width;
+		this.height = height;
+		
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+		
+		writeHeader();
+	}
+	
+	/**
+	 * @return the size of one frame in the file, including its timestamp
+	 */
+	public static long getFrameRecordSize(int width, int height) {
+		return TIMESTAMP_SIZE + (long)width * height * FrameSource.BYTES_PER_PIXEL;
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	public long getFrameCount() {
+		return frameCount;
+	}
+	
+	/**
+	 * Appends a frame. The pixels are read from the buffer's position to its
+	 * limit without changing the caller's buffer.
+	 * 
+	 * @param pixels		width * height * 3 bytes of packed RGB pixels
+	 * @param timestamp		when the frame was captured in milliseconds since the epoch
+	 */
+	public void write(ByteBuffer pixels, long timestamp) throws IOException {
+		int frameSize = width * height * FrameSource.BYTES_PER_PIXEL;
+		if (pixels.remaining() != frameSize) {
+			throw new IllegalArgumentException(String.format("Expected a frame of %d bytes, got %d bytes",
+					frameSize, pixels.remaining()));
+		}
+		
+		this.timestamp.clear();
+		this.timestamp.putLong(timestamp).flip();
+		
+		record[0] = this.timestamp;
+		record[1] = pixels.duplicate();
+		
+		while (record[1].hasRemaining()) channel.write(record);
+		
+		frameCount++;
+	}
+	
+	/**
+	 * Writes the frame count to the header and closes the file.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			writeHeader();
+		} finally {
+			channel.close();
+		}
+	}
+	
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.put(MAGIC);
+		header.putInt(width);
+		header.putInt(height);
+		header.putInt(FrameSource.BYTES_PER_PIXEL);
+		header.putInt(0);
+		header.putLong(frameCount);
+		header.flip();
+		
+		long position = channel.position();
+		while (header.hasRemaining()) channel.write(header, HEADER_SIZE - header.remaining());
+		channel.position(Math.max(position, HEADER_SIZE));
+	}
+}
@@ -19,22 +19,20 @@
 package com.shootoff.camera;
 
 import javafx.scene.paint.Color;
-import javafx.scene.shape.Ellipse;
 
 public class Shot {
 	private final Color color;
 	private final double x;
 	private final double y;
 	private final long timestamp;
-	private final Ellipse marker;
+	private final int markerRadius;
 	
 	public Shot (Color color, double x, double y, long timestamp, int markerRadius) {
 		this.color = color;
 		this.x = x;
 		this.y = y;
 		this.timestamp = timestamp;
-		this.marker = new Ellipse(x, y, markerRadius, markerRadius);
-		this.marker.setFill(color);
+		this.markerRadius = markerRadius;
 	}
 	
 	public Color getColor() {
@@ -53,7 +51,7 @@ public class Shot {
 		return timestamp;
 	}
 	
-	public Ellipse getMarker() {
-		return marker;
+	public int getMarkerRadius() {
+		return markerRadius;
 	}
 }
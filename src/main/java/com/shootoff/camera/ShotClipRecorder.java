@@ -0,0 +1,316 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.xuggle.mediatool.IMediaWriter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.xuggler.ICodec;
+import com.xuggle.xuggler.IPixelFormat;
+import com.xuggle.xuggler.IVideoPicture;
+import com.xuggle.xuggler.video.ConverterFactory;
+import com.xuggle.xuggler.video.IConverter;
+
+/**
+ * Keeps the last few seconds of a camera's frames in memory as JPEGs and
+ * saves a short video around each shot, so a shooter can see the second
+ * before and after a shot without recording the whole session.
+ * 
+ * Frames are kept in a ring of at most <tt>capacity</tt> frames and
+ * <tt>maxBytes</tt> bytes, the oldest frames being dropped first, so memory
+ * use doesn't depend on the length of the session. A clip is written on a
+ * background thread once its post-roll has been captured.
+ */
+public class ShotClipRecorder {
+	public static final int CLIP_FPS = 15;
+	public static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+	private static final float JPEG_QUALITY = 0.75f;
+	
+	private final Logger logger = LoggerFactory.getLogger(ShotClipRecorder.class);
+	private final String cameraName;
+	private final File directory;
+	private final long preRoll;
+	private final long postRoll;
+	private final long maxBytes;
+	
+	// The ring of compressed frames, guarded by this
+	private final byte[][] jpegs;
+	private final long[] timestamps;
+	private int oldest = 0;
+	private int count = 0;
+	private long bytes = 0;
+	
+	// Only used by the frame stage's thread
+	private final ImageWriter jpegWriter;
+	private final ImageWriteParam jpegParam;
+	private final ByteArrayOutputStream jpegBytes = new ByteArrayOutputStream();
+	private Optional<BufferedImage> image = Optional.empty();
+	
+	private final ScheduledExecutorService clipWriter;
+	private final AtomicLong savedClips = new AtomicLong();
+	
+	/**
+	 * @param cameraName	the camera's name, used in clip file names
+	 * @param directory		the directory to save clips in
+	 * @param preRoll		milliseconds of video to keep before a shot
+	 * @param postRoll		milliseconds of video to keep after a shot
+	 */
+	public ShotClipRecorder(String cameraName, File directory, long preRoll, long postRoll) {
+		this(cameraName, directory, preRoll, postRoll, DEFAULT_MAX_BYTES);
+	}
+	
+	public ShotClipRecorder(String cameraName, File directory, long preRoll, long postRoll, long maxBytes) {
+		this.cameraName = cameraName;
+		this.directory = directory;
+		this.preRoll = preRoll;
+		this.postRoll = postRoll;
+		this.maxBytes = maxBytes;
+		
+		// Room for a clip's frames plus a second for shots that take a while
+		// to be accepted
+		int capacity = (int)((preRoll + postRoll + 1000) * CLIP_FPS / 1000) + 1;
+		jpegs = new byte[capacity][];
+		timestamps = new long[capacity];
+		
+		jpegWriter = ImageIO.getImageWritersByFormatName("jpeg").next();
+		jpegParam = jpegWriter.getDefaultWriteParam();
+		jpegParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		jpegParam.setCompressionQuality(JPEG_QUALITY);
+		
+		clipWriter = Executors.newSingleThreadScheduledExecutor((r) -> {
+				Thread thread = new Thread(r, "ShotClipWriter-" + cameraName);
+				thread.setDaemon(true);
+				return thread;
+			});
+	}
+	
+	/**
+	 * @return the minimum time between two frames the recorder needs
+	 */
+	public long getFrameInterval() {
+		return 1000 / CLIP_FPS;
+	}
+	
+	public int getCapacity() {
+		return jpegs.length;
+	}
+	
+	/**
+	 * @return the number of frames currently kept
+	 */
+	public synchronized int getFrameCount() {
+		return count;
+	}
+	
+	/**
+	 * @return the number of bytes the kept frames take up
+	 */
+	public synchronized long getBufferedBytes() {
+		return bytes;
+	}
+	
+	public long getSavedClipCount() {
+		return savedClips.get();
+	}
+	
+	/**
+	 * Compresses a frame and adds it to the ring. Must only be called from
+	 * one thread, e.g. a FrameConsumer stage.
+	 */
+	public void record(CapturedFrame frame) {
+		if (!image.isPresent() || image.get().getWidth() != frame.getWidth() ||
+				image.get().getHeight() != frame.getHeight()) {
+			image = Optional.of(new BufferedImage(frame.getWidth(), frame.getHeight(),
+					BufferedImage.TYPE_3BYTE_BGR));
+		}
+		
+		frame.copyTo(image.get());
+		
+		jpegBytes.reset();
+		try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(jpegBytes)) {
+			jpegWriter.setOutput(output);
+			jpegWriter.write(null, new IIOImage(image.get(), null, null), jpegParam);
+		} catch (IOException e) {
+			logger.error("Failed to compress a frame for shot clips", e);
+			return;
+		}
+		
+		add(frame.getTimestamp(), jpegBytes.toByteArray());
+	}
+	
+	protected synchronized void add(long timestamp, byte[] jpeg) {
+		if (count == jpegs.length) removeOldest();
+		
+		int newest = (oldest + count) % jpegs.length;
+		jpegs[newest] = jpeg;
+		timestamps[newest] = timestamp;
+		count++;
+		bytes += jpeg.length;
+		
+		while (bytes > maxBytes && count > 1) removeOldest();
+	}
+	
+	private void removeOldest() {
+		bytes -= jpegs[oldest].length;
+		jpegs[oldest] = null;
+		oldest = (oldest + 1) % jpegs.length;
+		count--;
+	}
+	
+	/**
+	 * @return the kept frames captured between <tt>start</tt> and
+	 * 		<tt>end</tt> (inclusive), oldest first
+	 */
+	protected synchronized List<ClipFrame> getFrames(long start, long end) {
+		List<ClipFrame> frames = new ArrayList<ClipFrame>();
+		
+		for (int i = 0; i < count; i++) {
+			int index = (oldest + i) % jpegs.length;
+			if (timestamps[index] >= start && timestamps[index] <= end) {
+				frames.add(new ClipFrame(timestamps[index], jpegs[index]));
+			}
+		}
+		
+		return frames;
+	}
+	
+	/**
+	 * Saves a clip around a shot once its post-roll has been captured. Returns
+	 * immediately.
+	 * 
+	 * @param shotIndex	the shot's position in the session, used in the file name
+	 * @param shotTime	when the shot was seen in milliseconds since the epoch
+	 */
+	public void saveClip(int shotIndex, long shotTime) {
+		long delay = Math.max(0, shotTime + postRoll - System.currentTimeMillis());
+		
+		clipWriter.schedule(() -> {
+				List<ClipFrame> frames = getFrames(shotTime - preRoll, shotTime + postRoll);
+				
+				if (frames.isEmpty()) {
+					logger.debug("No frames kept for shot {}, not saving a clip", shotIndex);
+					return;
+				}
+				
+				File clipFile = new File(directory, getClipName(shotIndex, shotTime));
+				
+				try {
+					writeClip(frames, clipFile);
+					savedClips.incrementAndGet();
+					logger.debug("Saved clip of shot {} to {}", shotIndex, clipFile);
+				} catch (IOException | RuntimeException e) {
+					logger.error("Failed to save clip of shot " + shotIndex, e);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+	}
+	
+	protected String getClipName(int shotIndex, long shotTime) {
+		String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date(shotTime));
+		return String.format("%s-shot%03d-%s.mp4", cameraName.replaceAll("[^A-Za-z0-9._-]", "_"),
+				shotIndex, timestamp);
+	}
+	
+	protected void writeClip(List<ClipFrame> frames, File clipFile) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create shot clip directory " + directory);
+		}
+		
+		IMediaWriter writer = null;
+		BufferedImage frameImage = null;
+		IConverter converter = null;
+		long start = frames.get(0).getTimestamp();
+		
+		try {
+			for (ClipFrame clipFrame : frames) {
+				BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(clipFrame.getJPEG()));
+				
+				if (writer == null) {
+					frameImage = new BufferedImage(decoded.getWidth(), decoded.getHeight(),
+							BufferedImage.TYPE_3BYTE_BGR);
+					converter = ConverterFactory.createConverter(frameImage, IPixelFormat.Type.YUV420P);
+					
+					writer = ToolFactory.makeWriter(clipFile.getPath());
+					writer.addVideoStream(0, 0, ICodec.ID.CODEC_ID_H264, decoded.getWidth(), decoded.getHeight());
+				}
+				
+				Graphics2D graphics = frameImage.createGraphics();
+				graphics.drawImage(decoded, 0, 0, null);
+				graphics.dispose();
+				
+				IVideoPicture picture = converter.toPicture(frameImage, 
+						(clipFrame.getTimestamp() - start) * 1000);
+				picture.setKeyFrame(clipFrame.getTimestamp() == start);
+				picture.setQuality(0);
+				
+				writer.encodeVideo(0, picture);
+			}
+		} finally {
+			if (writer != null) writer.close();
+		}
+	}
+	
+	/**
+	 * Saves the clips that are already scheduled and stops the clip writer.
+	 */
+	public void close() {
+		clipWriter.shutdown();
+	}
+	
+	protected static class ClipFrame {
+		private final long timestamp;
+		private final byte[] jpeg;
+		
+		public ClipFrame(long timestamp, byte[] jpeg) {
+			this.timestamp = timestamp;
+			this.jpeg = jpeg;
+		}
+		
+		public long getTimestamp() {
+			return timestamp;
+		}
+		
+		public byte[] getJPEG() {
+			return jpeg;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs a camera's shot searches one at a time on a single worker thread so
+ * that shots reach the canvas in the order their frames were captured. At
+ * most <tt>queueDepth</tt> searches wait for the worker. When the queue is
+ * full the drop policy decides which search is thrown away (its frame is
+ * released without being searched) or, for <tt>BLOCK</tt>, makes the
+ * caller wait for room.
+ */
+public class ShotSearchExecutor {
+	public enum DropPolicy {
+		DROP_OLDEST, DROP_NEWEST, BLOCK
+	}
+	
+	private final Logger logger = LoggerFactory.getLogger(ShotSearchExecutor.class);
+	private final ArrayDeque<ShotSearcher> queue;
+	private final int queueDepth;
+	private final DropPolicy dropPolicy;
+	private final Thread worker;
+	
+	private final AtomicLong queuedSearches = new AtomicLong();
+	private final AtomicLong droppedSearches = new AtomicLong();
+	private final AtomicLong completedSearches = new AtomicLong();
+	
+	private boolean isSearching = false;
+	private boolean isShutdown = false;
+	
+	public ShotSearchExecutor(String name, int queueDepth, DropPolicy dropPolicy) {
+		if (queueDepth < 1) throw new IllegalArgumentException("queueDepth must be at least 1");
+		
+		this.queue = new ArrayDeque<ShotSearcher>(queueDepth);
+		this.queueDepth = queueDepth;
+		this.dropPolicy = dropPolicy;
+		
+		worker = new Thread(() -> runSearches(), "ShotSearcher-" + name);
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+	
+	public DropPolicy getDropPolicy() {
+		return dropPolicy;
+	}
+	
+	/**
+	 * @return the number of searches that were accepted into the queue
+	 */
+	public long getQueuedCount() {
+		return queuedSearches.get();
+	}
+	
+	/**
+	 * @return the number of searches whose frames were released without
+	 * 		being searched
+	 */
+	public long getDroppedCount() {
+		return droppedSearches.get();
+	}
+	
+	public long getCompletedCount() {
+		return completedSearches.get();
+	}
+	
+	/**
+	 * @return the number of searches currently waiting for the worker
+	 */
+	public synchronized int getPendingCount() {
+		return queue.size();
+	}
+	
+	/**
+	 * Queues <tt>searcher</tt> behind every search submitted before it.
+	 * Depending on the drop policy this may drop <tt>searcher</tt> or the
+	 * oldest waiting search, or wait until the worker takes a search.
+	 * 
+	 * @param searcher	the search to run
+	 */
+	public void submit(ShotSearcher searcher) {
+		ShotSearcher dropped = null;
+		
+		synchronized (this) {
+			while (dropPolicy == DropPolicy.BLOCK && queue.size() == queueDepth && !isShutdown) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			
+			if (isShutdown) {
+				dropped = searcher;
+			} else if (queue.size() < queueDepth) {
+				queue.add(searcher);
+				queuedSearches.incrementAndGet();
+			} else if (dropPolicy == DropPolicy.DROP_OLDEST) {
+				dropped = queue.poll();
+				queue.add(searcher);
+				queuedSearches.incrementAndGet();
+			} else {
+				dropped = searcher;
+			}
+			
+			notifyAll();
+		}
+		
+		if (dropped != null) {
+			dropped.discard();
+			droppedSearches.incrementAndGet();
+			logger.debug("Dropped a shot search because {} searches are already waiting", queueDepth);
+		}
+	}
+	
+	/**
+	 * Waits until every queued search has finished.
+	 */
+	public synchronized void awaitIdle() throws InterruptedException {
+		while ((!queue.isEmpty() || isSearching) && !isShutdown) wait();
+	}
+	
+	/**
+	 * Stops the worker and releases the frames of searches that have not
+	 * started. A search that is already running is allowed to finish.
+	 */
+	public void shutdown() {
+		ShotSearcher[] waiting;
+		
+		synchronized (this) {
+			isShutdown = true;
+			waiting = queue.toArray(new ShotSearcher[queue.size()]);
+			queue.clear();
+			notifyAll();
+		}
+		
+		for (ShotSearcher searcher : waiting) {
+			searcher.discard();
+			droppedSearches.incrementAndGet();
+		}
+	}
+	
+	private void runSearches() {
+		while (true) {
+			ShotSearcher searcher;
+			
+			synchronized (this) {
+				isSearching = false;
+				notifyAll();
+				
+				while (queue.isEmpty() && !isShutdown) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						logger.error("Shot search worker interrupted", e);
+						return;
+					}
+				}
+				
+				if (isShutdown) return;
+				
+				searcher = queue.poll();
+				isSearching = true;
+				notifyAll();
+			}
+			
+			try {
+				searcher.run();
+			} catch (RuntimeException e) {
+				logger.error("Shot search failed", e);
+			}
+			
+			completedSearches.incrementAndGet();
+		}
+	}
+}
@@ -24,8 +24,10 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.shootoff.camera.metrics.PipelineEvents;
+import com.shootoff.camera.metrics.PipelineMetrics;
+import com.shootoff.camera.metrics.ShotSearchEvent;
 import com.shootoff.config.Configuration;
-import com.shootoff.gui.CanvasManager;
 
 import javafx.geometry.Point2D;
 import javafx.scene.paint.Color;
@@ -34,31 +36,45 @@ public class ShotSearcher implements Runnable {
 	public static final int SECTOR_COLUMNS = 3;
 	public static final int SECTOR_ROWS = 3;
 	
-	private final int BLACK_PIXEL = 0;
-	private final int WHITE_PIXEL = 1;
+	/**
+	 * SECTOR finds at most one shot per sector by scanning each sector for
+	 * its first white pixel. BLOB labels every blob in the frame and can
+	 * find several shots anywhere in it.
+	 */
+	public enum SearchEngine {
+		SECTOR, BLOB
+	}
 	
 	private final Logger logger = LoggerFactory.getLogger(ShotSearcher.class);
 	private final Configuration config;
-	private final CanvasManager canvasManager;
+	private final ShotDetectionListener shotListener;
 	private final boolean[][] sectorStatuses;
-	private final BufferedImage currentFrame;
-	private final byte[][] shotFrame;
-	
-    // We only detect a color if the largest component is at least
-    // 5% bigger than the other components. This is based on the
-    // heuristic that noise tends to have color values that are very
-    // similar
-	private double colorDiffThreshold = 1.05;
+	private final DetectionFrame frame;
+	private Optional<BlobDetector> blobDetector = Optional.empty();
+	private Optional<ColorClassifier> colorClassifier = Optional.empty();
+	private Optional<PipelineMetrics> metrics = Optional.empty();
+	
+	// See ColorClassifier for how this threshold is used
+	private double colorDiffThreshold = ColorClassifier.DEFAULT_COLOR_DIFF_THRESHOLD;
 	private int borderWidth = 3; // px
 	private int minShotDim = 7; // px
+	private int shotsFound = 0;
+	
+	public ShotSearcher(Configuration config, ShotDetectionListener shotListener, boolean[][] sectorStatuses,
+			BufferedImage currentFrame, byte[] shotFrame) {
+		this(config, shotListener, sectorStatuses, new DetectionFrame(currentFrame, shotFrame));
+	}
 	
-	public ShotSearcher(Configuration config, CanvasManager canvasManager, boolean[][] sectorStatuses,
-			BufferedImage currentFrame, byte[][] shotFrame) {
+	/**
+	 * Creates a searcher for a frame lent out by a FrameDetector. The frame is
+	 * released when the search finishes.
+	 */
+	public ShotSearcher(Configuration config, ShotDetectionListener shotListener, boolean[][] sectorStatuses,
+			DetectionFrame frame) {
 		this.config = config;
-		this.canvasManager = canvasManager;
+		this.shotListener = shotListener;
 		this.sectorStatuses = sectorStatuses;
-		this.currentFrame = currentFrame;
-		this.shotFrame = shotFrame;
+		this.frame = frame;
 	}
 	
 	public void setColorDiffThreshold(double threshold) {
@@ -73,16 +89,81 @@ public class ShotSearcher implements Runnable {
 		minShotDim = minDim;
 	}
 	
+	/**
+	 * Sets the detector the blob search engine uses so that its buffers can
+	 * be reused between frames. Without one, each blob search creates its
+	 * own.
+	 */
+	public void setBlobDetector(BlobDetector blobDetector) {
+		this.blobDetector = Optional.of(blobDetector);
+	}
+	
+	/**
+	 * Sets the classifier used to detect laser colors so that its lookup
+	 * table and buffers can be reused between frames. Without one, each
+	 * search creates its own.
+	 */
+	public void setColorClassifier(ColorClassifier colorClassifier) {
+		this.colorClassifier = Optional.of(colorClassifier);
+	}
+	
+	/**
+	 * Sets the camera's metrics to record the search time in.
+	 */
+	public void setMetrics(PipelineMetrics metrics) {
+		this.metrics = Optional.of(metrics);
+	}
+	
 	@Override
 	public void run() {
+		// Shots are handled on this thread, so their events are tagged with
+		// this frame too
+		PipelineEvents.setCurrentFrame(metrics.isPresent() ? metrics.get().getCameraName() : null,
+				frame.getSequence());
+		ShotSearchEvent searchEvent = PipelineEvents.isEnabled() ? new ShotSearchEvent() : null;
+		if (searchEvent != null) searchEvent.begin();
+		long start = System.nanoTime();
+		
+		try {
+			if (!colorClassifier.isPresent()) colorClassifier = Optional.of(new ColorClassifier());
+			colorClassifier.get().setColorDiffThreshold(colorDiffThreshold);
+			
+			if (config.getShotSearchEngine() == SearchEngine.BLOB) {
+				searchBlobs();
+			} else {
+				searchSectors();
+			}
+		} finally {
+			frame.release();
+			if (metrics.isPresent()) metrics.get().recordSearchTime(System.nanoTime() - start);
+			
+			if (searchEvent != null) {
+				searchEvent.searchEngine = config.getShotSearchEngine().name();
+				searchEvent.shotsFound = shotsFound;
+				searchEvent.commitForCurrentFrame();
+			}
+			
+			PipelineEvents.clearCurrentFrame();
+		}
+	}
+	
+	/**
+	 * Gives up on this search without running it, handing its frame back
+	 * to the detector.
+	 */
+	public void discard() {
+		frame.release();
+	}
+	
+	private void searchSectors() {
 		// Split the image into x columns and y rows, and search
 		// each independently
-		int sub_width = shotFrame[0].length / SECTOR_COLUMNS;
-		int sub_height = shotFrame.length / SECTOR_ROWS;
+		int sub_width = frame.getWidth() / SECTOR_COLUMNS;
+		int sub_height = frame.getHeight() / SECTOR_ROWS;
 		
-		for (int y_start = 0, sector_y = 0; y_start <= shotFrame.length - sub_height; 
+		for (int y_start = 0, sector_y = 0; y_start <= frame.getHeight() - sub_height; 
 				y_start += sub_height, sector_y++) {
-			for (int x_start = 0, sector_x = 0; x_start <= shotFrame[0].length - sub_width; 
+			for (int x_start = 0, sector_x = 0; x_start <= frame.getWidth() - sub_width; 
 					x_start += sub_width, sector_x++) {
 				
 				// Don't detect a shot in a sector that is turned off
@@ -92,11 +173,60 @@ public class ShotSearcher implements Runnable {
 		}
 	}
 	
+	private void searchBlobs() {
+		int sub_width = frame.getWidth() / SECTOR_COLUMNS;
+		int sub_height = frame.getHeight() / SECTOR_ROWS;
+		
+		if (!blobDetector.isPresent()) blobDetector = Optional.of(new BlobDetector());
+		
+		for (Blob blob : blobDetector.get().findBlobs(frame)) {
+			int x = (int)blob.getCentroidX();
+			int y = (int)blob.getCentroidY();
+			
+			// Pixels past the last full sector belong to the last sector
+			int sector_x = Math.min(x / sub_width, SECTOR_COLUMNS - 1);
+			int sector_y = Math.min(y / sub_height, SECTOR_ROWS - 1);
+			if (!sectorStatuses[sector_y][sector_x]) continue;
+			
+			// A laser's soft edge falls below the threshold, so pad the blob by
+			// the border width like approximateCenter does before checking it
+			if (blob.getWidth() + borderWidth < minShotDim && 
+					blob.getHeight() + borderWidth < minShotDim) {
+				logger.debug("Suspected shot rejected: Dimensions Too Small ({})", blob);
+				continue;
+			}
+			
+			colorClassifier.get().setRegion(frame, blob.getMinX(), blob.getMinY(),
+					blob.getMaxX(), blob.getMaxY());
+			Optional<Color> areaColor = colorClassifier.get().classify(x, y);
+			if (!areaColor.isPresent()) continue;
+			
+			if (config.ignoreLaserColor() && config.getIgnoreLaserColor().isPresent() &&
+					areaColor.get().equals(config.getIgnoreLaserColor().get()))
+				continue;
+			
+			logger.debug("Suspected shot accepted: {}, Center ({}, {})", blob,
+					blob.getCentroidX(), blob.getCentroidY());
+			
+			shotsFound++;
+			shotListener.addShot(areaColor.get(), blob.getCentroidX(), blob.getCentroidY());
+		}
+	}
+	
 	private void findShot(int x_start, int x_end, int y_start, int y_end) {
+		boolean classifierReady = false;
+		
 		for (int x = x_start; x < x_end; x++) {
 			for (int y = y_start; y < y_end; y++) {
-				if (shotFrame[y][x] == WHITE_PIXEL) {
-					Optional<Color> areaColor = detectColor(x, y);
+				if (frame.isWhite(x, y)) {
+					// Only pay for the sector's summed-area tables if it has
+					// candidates
+					if (!classifierReady) {
+						colorClassifier.get().setRegion(frame, x_start, y_start, x_end - 1, y_end - 1);
+						classifierReady = true;
+					}
+					
+					Optional<Color> areaColor = colorClassifier.get().classify(x, y);
 					if (areaColor.isPresent()) {
 						if (config.ignoreLaserColor() && config.getIgnoreLaserColor().isPresent() &&
 								areaColor.get().equals(config.getIgnoreLaserColor().get()))
@@ -109,7 +239,8 @@ public class ShotSearcher implements Runnable {
 									x, y, center.get().getX(),
 									center.get().getY());
 							
-							canvasManager.addShot(areaColor.get(), center.get().getX(), 
+							shotsFound++;
+							shotListener.addShot(areaColor.get(), center.get().getX(), 
 									center.get().getY());
 							return;
 						}
@@ -117,94 +248,6 @@ public class ShotSearcher implements Runnable {
 				}
 			}
 		}
-	}
-	
-	private Optional<Color> detectColor(int x, int y) {
-		int rgb = currentFrame.getRGB(x, y);
-		double r = getRed(rgb);
-		double g = getGreen(rgb);
-		double b = getBlue(rgb);
-		
-		final int colorDetectionRadius = 5;
-		int pixelsSeen = 1;
-		
-		// Average colorDetectionRadius pixels left
-		for (int x_offset = x; x_offset > 0 && x - x_offset < colorDetectionRadius; 
-				x_offset--) {
-			
-			rgb = currentFrame.getRGB(x_offset, y);
-			r += getRed(rgb);
-			g += getGreen(rgb);
-			b += getBlue(rgb);
-			pixelsSeen++;
-		}
-		
-		// Average colorDetectionRadius pixels right
-		for (int x_offset = x; 
-				x_offset < currentFrame.getWidth() && x_offset - x < colorDetectionRadius; 
-				x_offset++) {
-			
-			rgb = currentFrame.getRGB(x_offset, y);
-			r += getRed(rgb);
-			g += getGreen(rgb);
-			b += getBlue(rgb);
-			pixelsSeen++;
-		}
-			
-		// Average colorDetectionRadius pixels up
-		for (int y_offset = y; 
-				y_offset < currentFrame.getHeight() && y_offset - y < colorDetectionRadius; 
-				y_offset++) {
-			
-			rgb = currentFrame.getRGB(x, y_offset);
-			r += getRed(rgb);
-			g += getGreen(rgb);
-			b += getBlue(rgb);
-			pixelsSeen++;
-		}
-			
-		// Average colorDetectionRadius pixels down
-		for (int y_offset = y; 
-				y_offset > 0 && y - y_offset < colorDetectionRadius; 
-				y_offset--) {
-			
-			rgb = currentFrame.getRGB(x, y_offset);
-			r += getRed(rgb);
-			g += getGreen(rgb);
-			b += getBlue(rgb);
-			pixelsSeen++;
-		}
-		
-		r /= (double)pixelsSeen;
-		g /= (double)pixelsSeen;
-		b /= (double)pixelsSeen;
-		
-        if (g == 0 || b == 0) 
-            return Optional.empty();
-        
-        if ((r / g) > colorDiffThreshold && (r / b) > colorDiffThreshold)
-            return Optional.of(Color.RED);
-            
-        if (r == 0 || b == 0)
-        	return Optional.empty();
-
-        if ((g / r) > colorDiffThreshold && (g / b) > colorDiffThreshold)
-            return Optional.of(Color.GREEN);
-
-		
-		return Optional.empty();
-	}
-	
-	private int getRed(int rgb) {
-		return (rgb & 0x00ff0000) >> 16;
-	}
-	
-	private int getGreen(int rgb) {
-		return (rgb & 0x0000ff00) >> 8;
-	}
-	
-	private int getBlue(int rgb) {
-		return (rgb & 0x000000ff) >> 0;
 	}		
 	
 	/**
@@ -223,8 +266,8 @@ public class ShotSearcher implements Runnable {
 		// even though it's not the read edge otherwise)
 		int blackCount = 0;
 	
-		for (;maxY < shotFrame.length; maxY++) {
-			if (shotFrame[(int)maxY][(int)maxX] == BLACK_PIXEL) blackCount++; else blackCount = 0;
+		for (;maxY < frame.getHeight(); maxY++) {
+			if (!frame.isWhite((int)maxX, (int)maxY)) blackCount++; else blackCount = 0;
 			if (blackCount == borderWidth) break;
 		}
 		
@@ -233,8 +276,8 @@ public class ShotSearcher implements Runnable {
 		double shotHeight = maxY - minY;
 		double centerY = minY + (shotHeight / 2);
 		
-		for (;maxX < shotFrame[0].length; maxX++) {
-			if (shotFrame[(int)centerY][(int)maxX] == BLACK_PIXEL) blackCount++; else blackCount = 0;
+		for (;maxX < frame.getWidth(); maxX++) {
+			if (!frame.isWhite((int)maxX, (int)centerY)) blackCount++; else blackCount = 0;
 			if (blackCount == borderWidth) break;
 		}
 		
@@ -0,0 +1,301 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Renders camera frames of a made up scene so that the capture pipeline can
+ * be benchmarked and soak tested without webcams. A scene is a background
+ * (a solid color or an image such as a target, scaled to the frame), static
+ * bright interference (e.g. lights or reflections), sensor noise, and laser
+ * dots that appear for a few frames each. The dots are the ground truth for
+ * the shots that should be detected.
+ * 
+ * The background and interference are rendered once and every read copies
+ * them, adds noise from a precomputed table, and draws the visible dots, so
+ * several sources can run at full speed on one machine. Noise is seeded,
+ * so a scene renders the same frames every time it is played.
+ */
+public class SyntheticFrameSource implements FrameSource {
+	private static final int NOISE_TABLE_SIZE = 1 << 16;
+	private static final double[] WHITE = { 255, 255, 255 };
+	
+	private final String name;
+	private final int width;
+	private final int height;
+	private final double fps;
+	
+	private Optional<BufferedImage> background = Optional.empty();
+	private java.awt.Color backgroundColor = java.awt.Color.DARK_GRAY;
+	private final List<Ellipse2D> interference = new ArrayList<Ellipse2D>();
+	private final List<LaserDot> laserDots = new ArrayList<LaserDot>();
+	private double noise = 0;
+	private long seed = 42;
+	private long loopLength = 0;
+	
+	private Optional<byte[]> scene = Optional.empty();
+	private Random random;
+	private byte[] noiseTable;
+	private long frameIndex = 0;
+	private volatile boolean isOpen = false;
+	
+	/**
+	 * @param name		the name reported for the source
+	 * @param width		the width of every frame in pixels
+	 * @param height	the height of every frame in pixels
+	 * @param fps		the frame rate CameraManager should read frames at
+	 */
+	public SyntheticFrameSource(String name, int width, int height, double fps) {
+		this.name = name;
+		this.width = width;
+		this.height = height;
+		this.fps = fps;
+	}
+	
+	public synchronized void setBackground(BufferedImage background) {
+		this.background = Optional.of(background);
+		scene = Optional.empty();
+	}
+	
+	public synchronized void setBackgroundColor(java.awt.Color backgroundColor) {
+		this.backgroundColor = backgroundColor;
+		scene = Optional.empty();
+	}
+	
+	/**
+	 * Adds a static white spot that is bright enough to pass the laser
+	 * intensity threshold in every frame.
+	 */
+	public synchronized void addInterference(int x, int y, int radius) {
+		interference.add(new Ellipse2D.Double(x - radius, y - radius, radius * 2, radius * 2));
+		scene = Optional.empty();
+	}
+	
+	/**
+	 * @param noise	the standard deviation of the noise added to every color
+	 * 				component of every pixel, or 0 for no noise
+	 */
+	public synchronized void setNoise(double noise) {
+		this.noise = noise;
+		noiseTable = null;
+	}
+	
+	public synchronized void setSeed(long seed) {
+		this.seed = seed;
+		random = null;
+		noiseTable = null;
+	}
+	
+	/**
+	 * @param loopLength	the number of frames after which the scene starts
+	 * 						over, so that its dots reappear, or 0 to play it
+	 * 						once and then show only the background forever
+	 */
+	public synchronized void setLoopLength(long loopLength) {
+		this.loopLength = loopLength;
+	}
+	
+	public synchronized void addLaserDot(LaserDot laserDot) {
+		laserDots.add(laserDot);
+	}
+	
+	/**
+	 * Adds <tt>count</tt> dots at random positions at least <tt>radius</tt>
+	 * pixels from every edge, one every <tt>interval</tt> frames starting
+	 * with <tt>firstFrame</tt>.
+	 */
+	public synchronized void addRandomLaserDots(int count, long firstFrame, long interval, Color color, int radius,
+			double intensity, int duration) {
+		
+		Random positions = new Random(seed + laserDots.size());
+		
+		for (int i = 0; i < count; i++) {
+			int x = radius + positions.nextInt(Math.max(1, width - 2 * radius));
+			int y = radius + positions.nextInt(Math.max(1, height - 2 * radius));
+			laserDots.add(new LaserDot(x, y, color, radius, intensity, firstFrame + i * interval, duration));
+		}
+	}
+	
+	/**
+	 * @return the dots in the scene, i.e. the shots that should be detected
+	 */
+	public synchronized List<LaserDot> getLaserDots() {
+		return Collections.unmodifiableList(new ArrayList<LaserDot>(laserDots));
+	}
+	
+	/**
+	 * @return the number of frames read so far, which is also the index of
+	 * 		the next frame
+	 */
+	public synchronized long getFrameIndex() {
+		return frameIndex;
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public int getWidth() {
+		return width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return height;
+	}
+	
+	@Override
+	public double getFPS() {
+		return fps;
+	}
+	
+	@Override
+	public void open() {
+		isOpen = true;
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return isOpen;
+	}
+	
+	@Override
+	public synchronized boolean read(ByteBuffer target) {
+		if (!isOpen) return false;
+		
+		if (!scene.isPresent()) scene = Optional.of(renderScene());
+		if (random == null) random = new Random(seed);
+		
+		int start = target.position();
+		byte[] pixels = scene.get();
+		
+		if (noise > 0) {
+			if (noiseTable == null) noiseTable = createNoiseTable();
+			
+			int offset = random.nextInt(NOISE_TABLE_SIZE);
+			for (int i = 0; i < pixels.length; i++) {
+				int value = (pixels[i] & 0xFF) + noiseTable[(offset + i) & (NOISE_TABLE_SIZE - 1)];
+				target.put((byte)Math.max(0, Math.min(255, value)));
+			}
+		} else {
+			target.put(pixels);
+		}
+		
+		long sceneFrame = loopLength > 0 ? frameIndex % loopLength : frameIndex;
+		for (LaserDot laserDot : laserDots) {
+			if (laserDot.isVisible(sceneFrame)) drawLaserDot(target, start, laserDot);
+		}
+		
+		frameIndex++;
+		return true;
+	}
+	
+	@Override
+	public void close() {
+		isOpen = false;
+	}
+	
+	private byte[] renderScene() {
+		BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = frame.createGraphics();
+		
+		if (background.isPresent()) {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(background.get(), 0, 0, width, height, null);
+		} else {
+			g.setColor(backgroundColor);
+			g.fillRect(0, 0, width, height);
+		}
+		
+		g.setColor(java.awt.Color.WHITE);
+		for (Ellipse2D spot : interference) g.fill(spot);
+		
+		g.dispose();
+		
+		ByteBuffer pixels = ByteBuffer.allocate(width * height * BYTES_PER_PIXEL);
+		ImageFrameSource.copyPixels(frame, pixels);
+		return pixels.array();
+	}
+	
+	private byte[] createNoiseTable() {
+		Random noiseRandom = new Random(seed);
+		byte[] table = new byte[NOISE_TABLE_SIZE];
+		
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (byte)Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE,
+					Math.round(noiseRandom.nextGaussian() * noise)));
+		}
+		
+		return table;
+	}
+	
+	// The dot has a white core surrounded by a halo of the laser's color
+	// that fades out towards its edge, which is roughly how a camera sees a
+	// laser
+	private void drawLaserDot(ByteBuffer target, int start, LaserDot laserDot) {
+		int radius = laserDot.getRadius();
+		int coreRadius = Math.max(1, radius / 3);
+		double[] laserColor = { laserDot.getColor().getRed() * 255, laserDot.getColor().getGreen() * 255,
+				laserDot.getColor().getBlue() * 255 };
+		
+		int minX = Math.max(0, (int)Math.floor(laserDot.getX() - radius));
+		int maxX = Math.min(width - 1, (int)Math.ceil(laserDot.getX() + radius));
+		int minY = Math.max(0, (int)Math.floor(laserDot.getY() - radius));
+		int maxY = Math.min(height - 1, (int)Math.ceil(laserDot.getY() + radius));
+		
+		for (int y = minY; y <= maxY; y++) {
+			for (int x = minX; x <= maxX; x++) {
+				double distance = Math.hypot(x - laserDot.getX(), y - laserDot.getY());
+				if (distance > radius) continue;
+				
+				double weight;
+				double[] color;
+				
+				if (distance <= coreRadius) {
+					weight = laserDot.getIntensity();
+					color = WHITE;
+				} else {
+					weight = laserDot.getIntensity() * (1 - 0.5 * (distance - coreRadius) / (radius - coreRadius));
+					color = laserColor;
+				}
+				
+				int i = start + (y * width + x) * BYTES_PER_PIXEL;
+				for (int c = 0; c < BYTES_PER_PIXEL; c++) {
+					int value = target.get(i + c) & 0xFF;
+					double blended = value + (color[c] - value) * weight;
+					target.put(i + c, (byte)Math.round(blended));
+				}
+			}
+		}
+	}
+}
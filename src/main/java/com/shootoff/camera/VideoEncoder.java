@@ -0,0 +1,255 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.metrics.PipelineMetrics;
+import com.xuggle.mediatool.IMediaWriter;
+import com.xuggle.xuggler.IPixelFormat;
+import com.xuggle.xuggler.IVideoPicture;
+import com.xuggle.xuggler.video.ConverterFactory;
+import com.xuggle.xuggler.video.IConverter;
+
+/**
+ * Encodes a camera's recording on its own thread so that encoding never
+ * holds up the recording stage, let alone capture or detection. Frames
+ * wait for the encoder in a queue of at most <tt>queueDepth</tt> frames,
+ * and the encoder takes every waiting frame at once. When the queue is full
+ * the drop policy decides whether the new frame is left out of the video or
+ * the caller waits for room.
+ * 
+ * Each frame is copied into one reused image and turned into a picture by
+ * one converter that is created for the stream's first frame.
+ */
+public class VideoEncoder {
+	/**
+	 * DROP leaves frames that arrive while the queue is full out of the
+	 * video. BLOCK makes <tt>submit</tt> wait for room instead, so the
+	 * recording stage falls behind and only skips frames it finds were
+	 * overwritten in the frame ring.
+	 */
+	public enum DropPolicy {
+		DROP, BLOCK
+	}
+	
+	private final Logger logger = LoggerFactory.getLogger(VideoEncoder.class);
+	private final IMediaWriter videoWriter;
+	private final long startTime;
+	private final ArrayDeque<CapturedFrame> queue;
+	private final int queueDepth;
+	private final DropPolicy dropPolicy;
+	private final Thread worker;
+	private Optional<PipelineMetrics> metrics = Optional.empty();
+	
+	private final AtomicLong encodedFrames = new AtomicLong();
+	private final AtomicLong droppedFrames = new AtomicLong();
+	private volatile long lag = 0;
+	
+	private boolean isClosed = false;
+	
+	// Only used by the worker
+	private Optional<BufferedImage> image = Optional.empty();
+	private Optional<IConverter> converter = Optional.empty();
+	private boolean isFirstFrame = true;
+	
+	/**
+	 * @param name			the camera's name, used for the encoder's thread
+	 * @param videoWriter	a writer with an H.264 stream at index 0
+	 * @param startTime		when the recording started in milliseconds since
+	 * 						the epoch, frames captured earlier are skipped
+	 * @param queueDepth	the number of frames that can wait for the encoder
+	 * @param dropPolicy	what to do with a frame when the queue is full
+	 */
+	public VideoEncoder(String name, IMediaWriter videoWriter, long startTime, int queueDepth,
+			DropPolicy dropPolicy) {
+		if (queueDepth < 1) throw new IllegalArgumentException("queueDepth must be at least 1");
+		
+		this.videoWriter = videoWriter;
+		this.startTime = startTime;
+		this.queue = new ArrayDeque<CapturedFrame>(queueDepth);
+		this.queueDepth = queueDepth;
+		this.dropPolicy = dropPolicy;
+		
+		worker = new Thread(() -> runEncoder(), "VideoEncoder-" + name);
+		worker.setDaemon(true);
+		worker.start();
+	}
+	
+	/**
+	 * Sets the camera's metrics to record encoder lag and dropped frames in.
+	 */
+	public void setMetrics(PipelineMetrics metrics) {
+		this.metrics = Optional.of(metrics);
+	}
+	
+	public int getQueueDepth() {
+		return queueDepth;
+	}
+	
+	public DropPolicy getDropPolicy() {
+		return dropPolicy;
+	}
+	
+	public long getEncodedCount() {
+		return encodedFrames.get();
+	}
+	
+	/**
+	 * @return the number of frames left out of the video because the queue
+	 * 		was full
+	 */
+	public long getDroppedCount() {
+		return droppedFrames.get();
+	}
+	
+	/**
+	 * @return the number of frames currently waiting for the encoder
+	 */
+	public synchronized int getPendingCount() {
+		return queue.size();
+	}
+	
+	/**
+	 * @return milliseconds between capturing and encoding the most recently
+	 * 		encoded frame
+	 */
+	public long getLagMillis() {
+		return lag;
+	}
+	
+	/**
+	 * Queues a frame to be encoded after every frame submitted before it.
+	 * The encoder takes its own reference to the frame, so the caller can
+	 * release the frame as soon as this returns.
+	 */
+	public void submit(CapturedFrame frame) {
+		if (frame.getTimestamp() < startTime) return;
+		
+		synchronized (this) {
+			while (dropPolicy == DropPolicy.BLOCK && queue.size() == queueDepth && !isClosed) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			
+			if (!isClosed && queue.size() < queueDepth && frame.retain()) {
+				queue.add(frame);
+				notifyAll();
+				return;
+			}
+		}
+		
+		droppedFrames.incrementAndGet();
+		if (metrics.isPresent()) metrics.get().markRecordingFrameDropped();
+		logger.trace("Dropped a frame from the recording because {} frames are already waiting", queueDepth);
+	}
+	
+	/**
+	 * Encodes the frames that are still waiting, closes the video, and waits
+	 * for the encoder to finish.
+	 */
+	public void close() {
+		synchronized (this) {
+			isClosed = true;
+			notifyAll();
+		}
+		
+		try {
+			worker.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void runEncoder() {
+		List<CapturedFrame> batch = new ArrayList<CapturedFrame>(queueDepth);
+		
+		while (true) {
+			synchronized (this) {
+				while (queue.isEmpty() && !isClosed) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						logger.error("Video encoder interrupted", e);
+						isClosed = true;
+					}
+				}
+				
+				if (queue.isEmpty()) break;
+				
+				batch.addAll(queue);
+				queue.clear();
+				notifyAll();
+			}
+			
+			for (CapturedFrame frame : batch) {
+				try {
+					encode(frame);
+					encodedFrames.incrementAndGet();
+					
+					lag = System.currentTimeMillis() - frame.getTimestamp();
+					if (metrics.isPresent()) metrics.get().recordEncoderLag(lag);
+				} catch (RuntimeException e) {
+					logger.error("Failed to encode a frame", e);
+				} finally {
+					frame.release();
+				}
+			}
+			
+			batch.clear();
+		}
+		
+		closeVideo();
+	}
+	
+	protected void encode(CapturedFrame capturedFrame) {
+		if (!image.isPresent() || image.get().getWidth() != capturedFrame.getWidth() ||
+				image.get().getHeight() != capturedFrame.getHeight()) {
+			image = Optional.of(new BufferedImage(capturedFrame.getWidth(), capturedFrame.getHeight(),
+					BufferedImage.TYPE_3BYTE_BGR));
+			converter = Optional.of(ConverterFactory.createConverter(image.get(), IPixelFormat.Type.YUV420P));
+		}
+		
+		capturedFrame.copyTo(image.get());
+		
+		IVideoPicture frame = converter.get().toPicture(image.get(), 
+				(capturedFrame.getTimestamp() - startTime) * 1000);
+		frame.setKeyFrame(isFirstFrame);
+		frame.setQuality(0);
+		isFirstFrame = false;
+		
+		videoWriter.encodeVideo(0, frame);
+	}
+	
+	protected void closeVideo() {
+		videoWriter.close();
+	}
+}
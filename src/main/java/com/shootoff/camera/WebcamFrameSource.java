@@ -0,0 +1,183 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import com.github.sarxos.webcam.Webcam;
+import com.github.sarxos.webcam.WebcamDevice;
+import com.github.sarxos.webcam.WebcamEvent;
+import com.github.sarxos.webcam.WebcamListener;
+
+/**
+ * Reads frames from a webcam. Drivers that support buffer access copy
+ * frames directly into the target buffer; for any other driver the frame
+ * is fetched as an image and copied.
+ * 
+ * Webcams that fetch images on their own thread announce each new image to
+ * their listeners. Once such an announcement arrives this source lets
+ * callers wait for the next image instead of guessing when it will be
+ * ready. Announcements made while this source is reading are ignored
+ * because they are about the frame being read, not a new one.
+ */
+public class WebcamFrameSource implements FrameSource {
+	private final Webcam webcam;
+	private final Dimension viewSize;
+	
+	private final Object frameLock = new Object();
+	private long framesObtained = 0;
+	private long lastFrameRead = 0;
+	private boolean announcesFrames = false;
+	private volatile Thread readingThread = null;
+	
+	private final WebcamListener frameListener = new WebcamListener() {
+		@Override
+		public void webcamOpen(WebcamEvent we) {}
+		
+		@Override
+		public void webcamClosed(WebcamEvent we) {
+			synchronized (frameLock) {
+				frameLock.notifyAll();
+			}
+		}
+		
+		@Override
+		public void webcamDisposed(WebcamEvent we) {}
+		
+		@Override
+		public void webcamImageObtained(WebcamEvent we) {
+			if (Thread.currentThread() == readingThread) return;
+			
+			synchronized (frameLock) {
+				framesObtained++;
+				announcesFrames = true;
+				frameLock.notifyAll();
+			}
+		}
+	};
+	
+	public WebcamFrameSource(Webcam webcam, int width, int height) {
+		this.webcam = webcam;
+		this.viewSize = new Dimension(width, height);
+	}
+	
+	public Webcam getWebcam() {
+		return webcam;
+	}
+	
+	@Override
+	public String getName() {
+		return webcam.getName();
+	}
+	
+	@Override
+	public int getWidth() {
+		return viewSize.width;
+	}
+	
+	@Override
+	public int getHeight() {
+		return viewSize.height;
+	}
+	
+	@Override
+	public double getFPS() {
+		return webcam.getFPS();
+	}
+	
+	@Override
+	public void open() {
+		if (!webcam.isOpen()) {
+			webcam.setViewSize(viewSize);
+			webcam.open();
+		}
+		
+		webcam.removeWebcamListener(frameListener);
+		webcam.addWebcamListener(frameListener);
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return webcam.isOpen();
+	}
+	
+	@Override
+	public boolean read(ByteBuffer target) {
+		if (!webcam.isOpen()) return false;
+		
+		synchronized (frameLock) {
+			lastFrameRead = framesObtained;
+		}
+		
+		readingThread = Thread.currentThread();
+		try {
+			return readFrame(target);
+		} finally {
+			readingThread = null;
+		}
+	}
+	
+	private boolean readFrame(ByteBuffer target) {
+		if (webcam.getDevice() instanceof WebcamDevice.BufferAccess) {
+			webcam.getImageBytes(target);
+			
+			// The webcam silently leaves the buffer alone if it was closed
+			// while reading
+			return webcam.isOpen();
+		}
+		
+		BufferedImage frame = webcam.getImage();
+		if (frame == null) return false;
+		
+		ImageFrameSource.copyPixels(frame, target);
+		return true;
+	}
+	
+	@Override
+	public boolean canAwaitFrames() {
+		synchronized (frameLock) {
+			return announcesFrames;
+		}
+	}
+	
+	@Override
+	public boolean awaitFrame(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		
+		synchronized (frameLock) {
+			while (framesObtained == lastFrameRead && webcam.isOpen()) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) return false;
+				
+				TimeUnit.NANOSECONDS.timedWait(frameLock, remaining);
+			}
+			
+			return framesObtained != lastFrameRead;
+		}
+	}
+	
+	@Override
+	public void close() {
+		webcam.close();
+		webcam.removeWebcamListener(frameListener);
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock free histogram of non-negative values in the style of HdrHistogram:
+ * values below 32 are counted exactly and larger values are counted in
+ * buckets that split every power of two into 32 parts, so any percentile is
+ * reported within about 3% of the real value no matter how large the
+ * values get. Recording a value is a couple of atomic increments, so it is
+ * cheap enough to do for every frame.
+ */
+public class Histogram {
+	private static final int SUB_BUCKET_BITS = 5;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+	
+	/**
+	 * @param value	the value to count, negative values are counted as 0
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		
+		counts.incrementAndGet(getIndex(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+	
+	public long getCount() {
+		return count.sum();
+	}
+	
+	public double getMean() {
+		long values = count.sum();
+		return values == 0 ? 0 : (double)sum.sum() / values;
+	}
+	
+	public long getMax() {
+		return max.get();
+	}
+	
+	/**
+	 * @param percentile	between 0 and 100
+	 * @return the largest value in the bucket that holds the value
+	 * 		<tt>percentile</tt> percent of values are at or below, or 0 if no
+	 * 		values were recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long values = 0;
+		for (int i = 0; i < BUCKETS; i++) values += counts.get(i);
+		if (values == 0) return 0;
+		
+		long rank = Math.max(1, (long)Math.ceil(percentile / 100 * values));
+		long seen = 0;
+		
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) return Math.min(getHighestValue(i), getMax());
+		}
+		
+		return getMax();
+	}
+	
+	public HistogramSnapshot getSnapshot() {
+		return new HistogramSnapshot(getCount(), getMean(), getValueAtPercentile(50), getValueAtPercentile(90),
+				getValueAtPercentile(99), getValueAtPercentile(99.9), getMax());
+	}
+	
+	/**
+	 * Forgets every recorded value. Values recorded while the histogram is
+	 * being reset may be partly forgotten.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+	
+	protected static int getIndex(long value) {
+		if (value < SUB_BUCKETS) return (int)value;
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+	
+	protected static long getHighestValue(int index) {
+		if (index < SUB_BUCKETS) return index;
+		
+		int shift = index / SUB_BUCKETS - 1;
+		long lowest = (long)(SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The summary of a Histogram at one point in time. JMX clients see it as
+ * composite data with one item per getter.
+ */
+public class HistogramSnapshot {
+	private final long count;
+	private final double mean;
+	private final long p50;
+	private final long p90;
+	private final long p99;
+	private final long p999;
+	private final long max;
+	
+	@ConstructorProperties({ "count", "mean", "p50", "p90", "p99", "p999", "max" })
+	public HistogramSnapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+		this.count = count;
+		this.mean = mean;
+		this.p50 = p50;
+		this.p90 = p90;
+		this.p99 = p99;
+		this.p999 = p999;
+		this.max = max;
+	}
+	
+	public long getCount() {
+		return count;
+	}
+	
+	public double getMean() {
+		return mean;
+	}
+	
+	public long getP50() {
+		return p50;
+	}
+	
+	public long getP90() {
+		return p90;
+	}
+	
+	public long getP99() {
+		return p99;
+	}
+	
+	public long getP999() {
+		return p999;
+	}
+	
+	public long getMax() {
+		return max;
+	}
+}
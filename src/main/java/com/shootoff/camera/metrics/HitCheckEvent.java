@@ -0,0 +1,40 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.shootoff.CheckHit")
+@Label("Check Hit")
+@Description("Finding the target region a shot hit")
+@Category({ "ShootOFF", "Shots" })
+public class HitCheckEvent extends PipelineEvent {
+	@Label("Targets")
+	public int targets;
+	
+	@Label("Hit")
+	public boolean hit;
+	
+	@Label("Region Name")
+	@Description("The hit region's name tag, if it has one")
+	public String regionName;
+}
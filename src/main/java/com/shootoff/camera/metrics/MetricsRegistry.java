@@ -0,0 +1,119 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the metrics of every open camera and publishes them as MXBeans on
+ * the platform MBean server, named
+ * <tt>com.shootoff:type=CameraPipeline,camera="name"</tt>, so that they can
+ * be watched with JConsole, VisualVM, or any JMX exporter during a session.
+ * Metrics that aren't tied to a camera are published once, named
+ * <tt>com.shootoff:type=Type</tt>.
+ */
+public final class MetricsRegistry {
+	public static final String DOMAIN = "com.shootoff";
+	
+	private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+	private static final Map<PipelineMetrics, ObjectName> registered = 
+			new ConcurrentHashMap<PipelineMetrics, ObjectName>();
+	
+	private MetricsRegistry() {}
+	
+	/**
+	 * Creates and publishes the metrics for a camera. Cameras that share a
+	 * name get numbered names.
+	 */
+	public static synchronized PipelineMetrics register(String cameraName) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		String name = cameraName;
+		
+		try {
+			for (int i = 2; server.isRegistered(getObjectName(name)); i++) {
+				name = cameraName + " " + i;
+			}
+			
+			PipelineMetrics metrics = new PipelineMetrics(name);
+			ObjectName objectName = getObjectName(name);
+			server.registerMBean(metrics, objectName);
+			registered.put(metrics, objectName);
+			
+			return metrics;
+		} catch (JMException e) {
+			logger.warn("Could not publish the metrics for camera " + cameraName + " over JMX", e);
+			return new PipelineMetrics(name);
+		}
+	}
+	
+	public static synchronized void unregister(PipelineMetrics metrics) {
+		ObjectName objectName = registered.remove(metrics);
+		if (objectName == null) return;
+		
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			logger.warn("Could not remove the metrics for camera " + metrics.getCameraName() + " from JMX", e);
+		}
+	}
+	
+	/**
+	 * Publishes an MXBean that lives as long as the application.
+	 */
+	public static synchronized void publish(String type, Object mxbean) {
+		try {
+			ObjectName objectName = new ObjectName(DOMAIN + ":type=" + type);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (!server.isRegistered(objectName)) server.registerMBean(mxbean, objectName);
+		} catch (JMException e) {
+			logger.warn("Could not publish the " + type + " metrics over JMX", e);
+		}
+	}
+	
+	/**
+	 * @return the metrics of every registered camera
+	 */
+	public static List<PipelineMetrics> getAll() {
+		return new ArrayList<PipelineMetrics>(registered.keySet());
+	}
+	
+	public static Optional<PipelineMetrics> get(String cameraName) {
+		for (PipelineMetrics metrics : registered.keySet()) {
+			if (metrics.getCameraName().equals(cameraName)) return Optional.of(metrics);
+		}
+		
+		return Optional.empty();
+	}
+	
+	private static ObjectName getObjectName(String cameraName) throws JMException {
+		return new ObjectName(DOMAIN + ":type=CameraPipeline,camera=" + ObjectName.quote(cameraName));
+	}
+}
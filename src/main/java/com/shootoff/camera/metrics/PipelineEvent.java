@@ -0,0 +1,72 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * A Java Flight Recorder event for one step of getting a shot from the
+ * camera to the score. Every event carries the camera and the capture
+ * sequence number of the frame it worked on, so a recording shows where
+ * the time between a laser flash and its score went.
+ * 
+ * A thread that starts working on a frame calls
+ * <tt>PipelineEvents.setCurrentFrame</tt> and the events it commits
+ * afterwards are tagged with that frame. When the recorder is off or the
+ * event is disabled, <tt>shouldCommit</tt> is false and nothing beyond
+ * creating the event is done. Events must only be created through the
+ * pattern described in PipelineEvents, so JDKs without the Flight Recorder
+ * API never load them.
+ */
+@Category({ "ShootOFF", "Camera Pipeline" })
+public abstract class PipelineEvent extends Event {
+	@Label("Camera")
+	protected String cameraName;
+	
+	@Label("Frame Sequence")
+	@Description("The frame's position in the capture stream, or -1 if the event was not caused by a frame")
+	protected long frameSequence;
+	
+	/**
+	 * Tags the event with the current thread's frame and commits it if it
+	 * is enabled and lasted past the recording's threshold.
+	 */
+	public void commitForCurrentFrame() {
+		if (!shouldCommit()) return;
+		
+		cameraName = PipelineEvents.getCurrentCameraName();
+		frameSequence = PipelineEvents.getCurrentFrameSequence();
+		commit();
+	}
+	
+	/**
+	 * Like <tt>commitForCurrentFrame</tt>, but for a thread that isn't tagged
+	 * with a frame, e.g. the capture thread.
+	 */
+	public void commitForFrame(String cameraName, long frameSequence) {
+		if (!shouldCommit()) return;
+		
+		this.cameraName = cameraName;
+		this.frameSequence = frameSequence;
+		commit();
+	}
+}
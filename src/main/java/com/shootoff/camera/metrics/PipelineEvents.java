@@ -0,0 +1,94 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+/**
+ * The only way the rest of ShootOFF should touch pipeline events. The
+ * events extend <tt>jdk.jfr.Event</tt>, which older JDKs (e.g. Oracle JDK
+ * 8u40) don't have, and loading one there fails with a
+ * NoClassDefFoundError. Callers only create an event if
+ * <tt>isEnabled</tt> is true, so on those JDKs no event class is ever
+ * loaded and recording events costs one check of a constant:
+ * 
+ * <pre>
+ * HitCheckEvent event = PipelineEvents.isEnabled() ? new HitCheckEvent() : null;
+ * if (event != null) event.begin();
+ * </pre>
+ * 
+ * Threads are tagged with the frame they are working on here rather than in
+ * PipelineEvent for the same reason.
+ */
+public final class PipelineEvents {
+	private static final boolean ENABLED = isFlightRecorderAvailable();
+	
+	private static final ThreadLocal<CurrentFrame> currentFrame = new ThreadLocal<CurrentFrame>() {
+		@Override
+		protected CurrentFrame initialValue() {
+			return new CurrentFrame();
+		}
+	};
+	
+	private PipelineEvents() {}
+	
+	private static boolean isFlightRecorderAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event", false, PipelineEvents.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * @return <tt>true</tt> if the JDK has the Flight Recorder event API, so
+	 * 		pipeline events may be created
+	 */
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+	
+	/**
+	 * Tags events committed by this thread with a frame until
+	 * <tt>clearCurrentFrame</tt> is called.
+	 */
+	public static void setCurrentFrame(String cameraName, long frameSequence) {
+		if (!ENABLED) return;
+		
+		CurrentFrame frame = currentFrame.get();
+		frame.cameraName = cameraName;
+		frame.frameSequence = frameSequence;
+	}
+	
+	public static void clearCurrentFrame() {
+		setCurrentFrame(null, -1);
+	}
+	
+	static String getCurrentCameraName() {
+		return currentFrame.get().cameraName;
+	}
+	
+	static long getCurrentFrameSequence() {
+		return currentFrame.get().frameSequence;
+	}
+	
+	private static class CurrentFrame {
+		private String cameraName = null;
+		private long frameSequence = -1;
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters, rates, and timings for one camera's capture pipeline. Every
+ * method is thread safe and cheap, so stages record into it on every frame.
+ */
+public class PipelineMetrics implements PipelineMetricsMXBean {
+	private final String cameraName;
+	
+	private final RateMeter capturedFrames = new RateMeter();
+	private final RateMeter displayedFrames = new RateMeter();
+	private final RateMeter detectionCycles = new RateMeter();
+	private final List<LongSupplier> droppedFrameCounters = new CopyOnWriteArrayList<LongSupplier>();
+	private final RateMeter shotsDetected = new RateMeter();
+	private final RateMeter droppedRecordingFrames = new RateMeter();
+	
+	private final Histogram thresholdTime = new Histogram();
+	private final Histogram bloomFilterTime = new Histogram();
+	private final Histogram searchTime = new Histogram();
+	private final Histogram displayTime = new Histogram();
+	private final Histogram candidatePixels = new Histogram();
+	private final Histogram shotLatency = new Histogram();
+	private final Histogram encoderLag = new Histogram();
+	private final Histogram captureInterval = new Histogram();
+	
+	private volatile double targetCaptureFPS = 0;
+	
+	public PipelineMetrics(String cameraName) {
+		this.cameraName = cameraName;
+	}
+	
+	public void markCaptured() {
+		capturedFrames.mark();
+	}
+	
+	/**
+	 * @param nanos	the time since the previous frame was captured
+	 */
+	public void recordCaptureInterval(long nanos) {
+		captureInterval.record(nanos / 1000);
+	}
+	
+	public void setTargetCaptureFPS(double fps) {
+		targetCaptureFPS = fps;
+	}
+	
+	public void markDisplayed(long nanos) {
+		displayedFrames.mark();
+		displayTime.record(nanos / 1000);
+	}
+	
+	public void markDetectionCycle() {
+		detectionCycles.mark();
+	}
+	
+	public void markShotDetected() {
+		shotsDetected.mark();
+	}
+	
+	/**
+	 * Adds a counter of frames some part of the pipeline lost, e.g. searches
+	 * a ShotSearchExecutor dropped, to the dropped frame count.
+	 */
+	public void addDroppedFrameCounter(LongSupplier counter) {
+		droppedFrameCounters.add(counter);
+	}
+	
+	public void recordThresholdTime(long nanos) {
+		thresholdTime.record(nanos / 1000);
+	}
+	
+	public void recordBloomFilterTime(long nanos) {
+		bloomFilterTime.record(nanos / 1000);
+	}
+	
+	public void recordSearchTime(long nanos) {
+		searchTime.record(nanos / 1000);
+	}
+	
+	public void recordCandidatePixels(int pixels) {
+		candidatePixels.record(pixels);
+	}
+	
+	public void recordShotLatency(long millis) {
+		shotLatency.record(millis);
+	}
+	
+	public void markRecordingFrameDropped() {
+		droppedRecordingFrames.mark();
+	}
+	
+	public void recordEncoderLag(long millis) {
+		encoderLag.record(millis);
+	}
+	
+	@Override
+	public String getCameraName() {
+		return cameraName;
+	}
+	
+	@Override
+	public long getCapturedFrames() {
+		return capturedFrames.getCount();
+	}
+	
+	@Override
+	public double getCaptureFPS() {
+		return capturedFrames.getRate();
+	}
+	
+	@Override
+	public double getTargetCaptureFPS() {
+		return targetCaptureFPS;
+	}
+	
+	@Override
+	public HistogramSnapshot getCaptureInterval() {
+		return captureInterval.getSnapshot();
+	}
+	
+	@Override
+	public long getDisplayedFrames() {
+		return displayedFrames.getCount();
+	}
+	
+	@Override
+	public double getDisplayFPS() {
+		return displayedFrames.getRate();
+	}
+	
+	@Override
+	public long getDetectionCycles() {
+		return detectionCycles.getCount();
+	}
+	
+	@Override
+	public double getDetectionCyclesPerSecond() {
+		return detectionCycles.getRate();
+	}
+	
+	@Override
+	public long getDroppedFrames() {
+		long dropped = 0;
+		for (LongSupplier counter : droppedFrameCounters) dropped += counter.getAsLong();
+		return dropped + droppedRecordingFrames.getCount();
+	}
+	
+	@Override
+	public long getShotsDetected() {
+		return shotsDetected.getCount();
+	}
+	
+	@Override
+	public HistogramSnapshot getThresholdTime() {
+		return thresholdTime.getSnapshot();
+	}
+	
+	@Override
+	public HistogramSnapshot getBloomFilterTime() {
+		return bloomFilterTime.getSnapshot();
+	}
+	
+	@Override
+	public HistogramSnapshot getSearchTime() {
+		return searchTime.getSnapshot();
+	}
+	
+	@Override
+	public HistogramSnapshot getDisplayTime() {
+		return displayTime.getSnapshot();
+	}
+	
+	@Override
+	public HistogramSnapshot getCandidatePixels() {
+		return candidatePixels.getSnapshot();
+	}
+	
+	@Override
+	public HistogramSnapshot getShotLatencyMillis() {
+		return shotLatency.getSnapshot();
+	}
+	
+	@Override
+	public HistogramSnapshot getEncoderLagMillis() {
+		return encoderLag.getSnapshot();
+	}
+	
+	/**
+	 * Clears the histograms, e.g. to only look at timings after a warm up.
+	 * Counters and rates keep counting.
+	 */
+	@Override
+	public void reset() {
+		thresholdTime.reset();
+		bloomFilterTime.reset();
+		searchTime.reset();
+		displayTime.reset();
+		candidatePixels.reset();
+		shotLatency.reset();
+		encoderLag.reset();
+		captureInterval.reset();
+	}
+}
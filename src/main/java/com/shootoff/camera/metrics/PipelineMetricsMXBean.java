@@ -0,0 +1,90 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+/**
+ * The JMX view of a camera's PipelineMetrics. Times are in microseconds
+ * unless an attribute's name says otherwise.
+ */
+public interface PipelineMetricsMXBean {
+	public String getCameraName();
+	
+	public long getCapturedFrames();
+	
+	public double getCaptureFPS();
+	
+	/**
+	 * @return the frame rate the camera says it delivers, or 0 if it doesn't
+	 * 		know, to compare with <tt>getCaptureFPS</tt>
+	 */
+	public double getTargetCaptureFPS();
+	
+	/**
+	 * @return the time between captured frames
+	 */
+	public HistogramSnapshot getCaptureInterval();
+	
+	public long getDisplayedFrames();
+	
+	public double getDisplayFPS();
+	
+	public long getDetectionCycles();
+	
+	public double getDetectionCyclesPerSecond();
+	
+	/**
+	 * @return frames that were captured but lost before they were searched or
+	 * 		recorded
+	 */
+	public long getDroppedFrames();
+	
+	public long getShotsDetected();
+	
+	/**
+	 * @return the time taken to convert frames to gray and threshold them,
+	 * 		which is done in one pass
+	 */
+	public HistogramSnapshot getThresholdTime();
+	
+	public HistogramSnapshot getBloomFilterTime();
+	
+	public HistogramSnapshot getSearchTime();
+	
+	public HistogramSnapshot getDisplayTime();
+	
+	/**
+	 * @return the number of pixels in each searched frame that could be part
+	 * 		of a shot
+	 */
+	public HistogramSnapshot getCandidatePixels();
+	
+	/**
+	 * @return milliseconds from capturing a frame to drawing the shots found
+	 * 		in it
+	 */
+	public HistogramSnapshot getShotLatencyMillis();
+	
+	/**
+	 * @return milliseconds from capturing a frame to encoding it in a
+	 * 		recording
+	 */
+	public HistogramSnapshot getEncoderLagMillis();
+	
+	public void reset();
+}
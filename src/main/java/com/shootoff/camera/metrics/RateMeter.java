@@ -0,0 +1,61 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.camera.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts events and reports how many happened per second during the last
+ * full second.
+ */
+public class RateMeter {
+	private static final long WINDOW = TimeUnit.SECONDS.toNanos(1);
+	
+	private long count = 0;
+	private long windowCount = 0;
+	private long windowStart = System.nanoTime();
+	private double rate = 0;
+	
+	public synchronized void mark() {
+		roll(System.nanoTime());
+		windowCount++;
+		count++;
+	}
+	
+	public synchronized long getCount() {
+		return count;
+	}
+	
+	/**
+	 * @return events per second, which drops towards 0 if events stop
+	 */
+	public synchronized double getRate() {
+		roll(System.nanoTime());
+		return rate;
+	}
+	
+	protected synchronized void roll(long now) {
+		long elapsed = now - windowStart;
+		if (elapsed < WINDOW) return;
+		
+		rate = windowCount * (double)TimeUnit.SECONDS.toNanos(1) / elapsed;
+		windowCount = 0;
+		windowStart = now;
+	}
+}
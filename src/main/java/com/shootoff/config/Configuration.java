@@ -47,6 +47,9 @@ import com.github.sarxos.webcam.ds.buildin.WebcamDefaultDriver;
 import com.shootoff.camera.DeduplicationProcessor;
 import com.shootoff.camera.MalfunctionsProcessor;
 import com.shootoff.camera.ShotProcessor;
+import com.shootoff.camera.ShotSearchExecutor;
+import com.shootoff.camera.ShotSearcher;
+import com.shootoff.camera.VideoEncoder;
 import com.shootoff.camera.VirtualMagazineProcessor;
 import com.shootoff.plugins.TrainingProtocol;
 
@@ -60,6 +63,15 @@ public class Configuration {
 	private static final String VIRTUAL_MAGAZINE_CAPACITY_PROP = "shootoff.virtualmagazine.capacity";
 	private static final String USE_MALFUNCTIONS_PROP = "shootoff.malfunctions.use";
 	private static final String MALFUNCTIONS_PROBABILITY_PROP = "shootoff.malfunctions.probability";
+	private static final String SHOT_SEARCH_QUEUE_DEPTH_PROP = "shootoff.shotsearch.queuedepth";
+	private static final String SHOT_SEARCH_DROP_POLICY_PROP = "shootoff.shotsearch.droppolicy";
+	private static final String SHOT_SEARCH_ENGINE_PROP = "shootoff.shotsearch.engine";
+	private static final String RECORDING_QUEUE_DEPTH_PROP = "shootoff.recording.queuedepth";
+	private static final String RECORDING_DROP_POLICY_PROP = "shootoff.recording.droppolicy";
+	private static final String USE_SHOT_CLIPS_PROP = "shootoff.shotclips.use";
+	private static final String SHOT_CLIP_PRE_ROLL_PROP = "shootoff.shotclips.preroll";
+	private static final String SHOT_CLIP_POST_ROLL_PROP = "shootoff.shotclips.postroll";
+	private static final String USE_HIT_RASTERS_PROP = "shootoff.hitrasters.use";
 	
 	protected static final String DETECTION_RATE_MESSAGE = 
 			"DETECTION_RATE has an invalid value: %d. Acceptable values are "
@@ -79,6 +91,24 @@ public class Configuration {
 	protected static final String INJECT_MALFUNCTIONS_MESSAGE = 
 			"INJECT_MALFUNCTIONS has an invalid value: %f. Acceptable values are "
 			+ "between 0.1 and 99.9.";
+	protected static final String SHOT_SEARCH_QUEUE_DEPTH_MESSAGE = 
+			"SHOT_SEARCH_QUEUE_DEPTH has an invalid value: %d. Acceptable values are "
+			+ "between 1 and 16.";
+	protected static final String SHOT_SEARCH_DROP_POLICY_MESSAGE = 
+			"SHOT_SEARCH_DROP_POLICY has an invalid value: %s. Acceptable values are "
+			+ "\"oldest\" and \"newest\".";
+	protected static final String SHOT_SEARCH_ENGINE_MESSAGE = 
+			"SHOT_SEARCH_ENGINE has an invalid value: %s. Acceptable values are "
+			+ "\"sector\" and \"blob\".";
+	protected static final String RECORDING_QUEUE_DEPTH_MESSAGE = 
+			"RECORDING_QUEUE_DEPTH has an invalid value: %d. Acceptable values are "
+			+ "between 1 and 120.";
+	protected static final String RECORDING_DROP_POLICY_MESSAGE = 
+			"RECORDING_DROP_POLICY has an invalid value: %s. Acceptable values are "
+			+ "\"drop\" and \"block\".";
+	protected static final String SHOT_CLIP_ROLL_MESSAGE = 
+			"SHOT_CLIP_ROLL has an invalid value: %d. Acceptable values are "
+			+ "between 0 and 5000.";
 	
 	private static final String DEFAULT_CONFIG_FILE = "shootoff.properties";
 
@@ -95,6 +125,15 @@ public class Configuration {
 	private int virtualMagazineCapacity = 7;
 	private boolean useMalfunctions = false;
 	private float malfunctionsProbability = (float)10.0;
+	private int shotSearchQueueDepth = 2;
+	private String shotSearchDropPolicyName = "oldest";
+	private String shotSearchEngineName = "sector";
+	private int recordingQueueDepth = 30;
+	private String recordingDropPolicyName = "drop";
+	private boolean useShotClips = false;
+	private int shotClipPreRoll = 1000; // ms
+	private int shotClipPostRoll = 1000; // ms
+	private boolean useHitRasters = false;
 	private boolean debugMode = false;
 	private TrainingProtocol currentProtocol = null;
 
@@ -228,6 +267,44 @@ public class Configuration {
 					Float.parseFloat(prop.getProperty(MALFUNCTIONS_PROBABILITY_PROP)));
 		}
 		
+		if (prop.containsKey(SHOT_SEARCH_QUEUE_DEPTH_PROP)) {
+			setShotSearchQueueDepth(
+					Integer.parseInt(prop.getProperty(SHOT_SEARCH_QUEUE_DEPTH_PROP)));
+		}
+		
+		if (prop.containsKey(SHOT_SEARCH_DROP_POLICY_PROP)) {
+			setShotSearchDropPolicyName(prop.getProperty(SHOT_SEARCH_DROP_POLICY_PROP));
+		}
+		
+		if (prop.containsKey(SHOT_SEARCH_ENGINE_PROP)) {
+			setShotSearchEngineName(prop.getProperty(SHOT_SEARCH_ENGINE_PROP));
+		}
+		
+		if (prop.containsKey(RECORDING_QUEUE_DEPTH_PROP)) {
+			setRecordingQueueDepth(
+					Integer.parseInt(prop.getProperty(RECORDING_QUEUE_DEPTH_PROP)));
+		}
+		
+		if (prop.containsKey(RECORDING_DROP_POLICY_PROP)) {
+			setRecordingDropPolicyName(prop.getProperty(RECORDING_DROP_POLICY_PROP));
+		}
+		
+		if (prop.containsKey(USE_SHOT_CLIPS_PROP)) {
+			setUseShotClips(Boolean.parseBoolean(prop.getProperty(USE_SHOT_CLIPS_PROP)));
+		}
+		
+		if (prop.containsKey(SHOT_CLIP_PRE_ROLL_PROP)) {
+			setShotClipPreRoll(Integer.parseInt(prop.getProperty(SHOT_CLIP_PRE_ROLL_PROP)));
+		}
+		
+		if (prop.containsKey(SHOT_CLIP_POST_ROLL_PROP)) {
+			setShotClipPostRoll(Integer.parseInt(prop.getProperty(SHOT_CLIP_POST_ROLL_PROP)));
+		}
+		
+		if (prop.containsKey(USE_HIT_RASTERS_PROP)) {
+			setUseHitRasters(Boolean.parseBoolean(prop.getProperty(USE_HIT_RASTERS_PROP)));
+		}
+		
 		validateConfiguration();
 	}
 	
@@ -253,6 +330,15 @@ public class Configuration {
 		prop.setProperty(VIRTUAL_MAGAZINE_CAPACITY_PROP, String.valueOf(virtualMagazineCapacity));
 		prop.setProperty(USE_MALFUNCTIONS_PROP, String.valueOf(useMalfunctions));
 		prop.setProperty(MALFUNCTIONS_PROBABILITY_PROP, String.valueOf(malfunctionsProbability));
+		prop.setProperty(SHOT_SEARCH_QUEUE_DEPTH_PROP, String.valueOf(shotSearchQueueDepth));
+		prop.setProperty(SHOT_SEARCH_DROP_POLICY_PROP, shotSearchDropPolicyName);
+		prop.setProperty(SHOT_SEARCH_ENGINE_PROP, shotSearchEngineName);
+		prop.setProperty(RECORDING_QUEUE_DEPTH_PROP, String.valueOf(recordingQueueDepth));
+		prop.setProperty(RECORDING_DROP_POLICY_PROP, recordingDropPolicyName);
+		prop.setProperty(USE_SHOT_CLIPS_PROP, String.valueOf(useShotClips));
+		prop.setProperty(SHOT_CLIP_PRE_ROLL_PROP, String.valueOf(shotClipPreRoll));
+		prop.setProperty(SHOT_CLIP_POST_ROLL_PROP, String.valueOf(shotClipPostRoll));
+		prop.setProperty(USE_HIT_RASTERS_PROP, String.valueOf(useHitRasters));
 		
 		OutputStream outputStream = new FileOutputStream(configName);
 		prop.store(outputStream, "ShootOFF Configuration");
@@ -350,6 +436,42 @@ public class Configuration {
 			throw new ConfigurationException(
 					String.format(INJECT_MALFUNCTIONS_MESSAGE, malfunctionsProbability));
 		}
+		
+		if (shotSearchQueueDepth < 1 || shotSearchQueueDepth > 16) {
+			throw new ConfigurationException(
+					String.format(SHOT_SEARCH_QUEUE_DEPTH_MESSAGE, shotSearchQueueDepth));
+		}
+		
+		if (!shotSearchDropPolicyName.equals("oldest") && 
+				!shotSearchDropPolicyName.equals("newest")) {
+			throw new ConfigurationException(
+					String.format(SHOT_SEARCH_DROP_POLICY_MESSAGE, shotSearchDropPolicyName));
+		}
+		
+		if (!shotSearchEngineName.equals("sector") && !shotSearchEngineName.equals("blob")) {
+			throw new ConfigurationException(
+					String.format(SHOT_SEARCH_ENGINE_MESSAGE, shotSearchEngineName));
+		}
+		
+		if (recordingQueueDepth < 1 || recordingQueueDepth > 120) {
+			throw new ConfigurationException(
+					String.format(RECORDING_QUEUE_DEPTH_MESSAGE, recordingQueueDepth));
+		}
+		
+		if (!recordingDropPolicyName.equals("drop") && !recordingDropPolicyName.equals("block")) {
+			throw new ConfigurationException(
+					String.format(RECORDING_DROP_POLICY_MESSAGE, recordingDropPolicyName));
+		}
+		
+		if (shotClipPreRoll < 0 || shotClipPreRoll > 5000) {
+			throw new ConfigurationException(
+					String.format(SHOT_CLIP_ROLL_MESSAGE, shotClipPreRoll));
+		}
+		
+		if (shotClipPostRoll < 0 || shotClipPostRoll > 5000) {
+			throw new ConfigurationException(
+					String.format(SHOT_CLIP_ROLL_MESSAGE, shotClipPostRoll));
+		}
 	}
 	
 	public void setWebcams(List<String> webcamNames, List<Webcam> webcams) {
@@ -423,6 +545,42 @@ public class Configuration {
 			shotProcessors.add(malfunctionsProcessor);
 		}
 	}
+	
+	public void setShotSearchQueueDepth(int shotSearchQueueDepth) {
+		this.shotSearchQueueDepth = shotSearchQueueDepth;
+	}
+	
+	public void setShotSearchDropPolicyName(String shotSearchDropPolicyName) {
+		this.shotSearchDropPolicyName = shotSearchDropPolicyName;
+	}
+	
+	public void setShotSearchEngineName(String shotSearchEngineName) {
+		this.shotSearchEngineName = shotSearchEngineName;
+	}
+	
+	public void setRecordingQueueDepth(int recordingQueueDepth) {
+		this.recordingQueueDepth = recordingQueueDepth;
+	}
+	
+	public void setRecordingDropPolicyName(String recordingDropPolicyName) {
+		this.recordingDropPolicyName = recordingDropPolicyName;
+	}
+	
+	public void setUseShotClips(boolean useShotClips) {
+		this.useShotClips = useShotClips;
+	}
+	
+	public void setShotClipPreRoll(int shotClipPreRoll) {
+		this.shotClipPreRoll = shotClipPreRoll;
+	}
+	
+	public void setShotClipPostRoll(int shotClipPostRoll) {
+		this.shotClipPostRoll = shotClipPostRoll;
+	}
+	
+	public void setUseHitRasters(boolean useHitRasters) {
+		this.useHitRasters = useHitRasters;
+	}
 
 	public void setDebugMode(boolean debugMode) {
 		this.debugMode = debugMode;
@@ -502,6 +660,76 @@ public class Configuration {
 		return malfunctionsProbability;
 	}
 
+	public int getShotSearchQueueDepth() {
+		return shotSearchQueueDepth;
+	}
+	
+	public String getShotSearchDropPolicyName() {
+		return shotSearchDropPolicyName;
+	}
+	
+	public ShotSearchExecutor.DropPolicy getShotSearchDropPolicy() {
+		if (shotSearchDropPolicyName.equals("newest")) {
+			return ShotSearchExecutor.DropPolicy.DROP_NEWEST;
+		} else {
+			return ShotSearchExecutor.DropPolicy.DROP_OLDEST;
+		}
+	}
+	
+	public String getShotSearchEngineName() {
+		return shotSearchEngineName;
+	}
+	
+	public ShotSearcher.SearchEngine getShotSearchEngine() {
+		if (shotSearchEngineName.equals("blob")) {
+			return ShotSearcher.SearchEngine.BLOB;
+		} else {
+			return ShotSearcher.SearchEngine.SECTOR;
+		}
+	}
+	
+	public int getRecordingQueueDepth() {
+		return recordingQueueDepth;
+	}
+	
+	public String getRecordingDropPolicyName() {
+		return recordingDropPolicyName;
+	}
+	
+	public VideoEncoder.DropPolicy getRecordingDropPolicy() {
+		if (recordingDropPolicyName.equals("block")) {
+			return VideoEncoder.DropPolicy.BLOCK;
+		} else {
+			return VideoEncoder.DropPolicy.DROP;
+		}
+	}
+	
+	public boolean useShotClips() {
+		return useShotClips;
+	}
+	
+	/**
+	 * @return milliseconds of video saved before each shot
+	 */
+	public int getShotClipPreRoll() {
+		return shotClipPreRoll;
+	}
+	
+	/**
+	 * @return milliseconds of video saved after each shot
+	 */
+	public int getShotClipPostRoll() {
+		return shotClipPostRoll;
+	}
+	
+	/**
+	 * @return whether targets are rasterized so most hit checks are a single
+	 * 		lookup
+	 */
+	public boolean useHitRasters() {
+		return useHitRasters;
+	}
+	
 	public boolean inDebugMode() {
 		return debugMode;
 	}
@@ -19,19 +19,29 @@
 package com.shootoff.gui;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.shootoff.camera.CamerasSupervisor;
 import com.shootoff.camera.Shot;
+import com.shootoff.camera.ShotClipRecorder;
+import com.shootoff.camera.ShotDetectionListener;
 import com.shootoff.camera.ShotProcessor;
+import com.shootoff.camera.metrics.HitCheckEvent;
+import com.shootoff.camera.metrics.PipelineEvents;
+import com.shootoff.camera.metrics.PipelineMetrics;
+import com.shootoff.camera.metrics.ProtocolShotEvent;
+import com.shootoff.camera.metrics.RegionCommandEvent;
+import com.shootoff.camera.metrics.ShotProcessorEvent;
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.controller.ProjectorArenaController;
 import com.shootoff.plugins.TrainingProtocol;
@@ -42,6 +52,7 @@ import com.shootoff.targets.TargetRegion;
 import com.shootoff.targets.animation.SpriteAnimation;
 import com.shootoff.targets.io.TargetIO;
 
+import javafx.animation.AnimationTimer;
 import javafx.animation.Animation.Status;
 import javafx.application.Platform;
 import javafx.collections.ObservableList;
@@ -52,27 +63,35 @@ import javafx.scene.control.ContextMenu;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.MouseButton;import javafx.scene.paint.Color;
 import javafx.scene.shape.Shape;
 
-public class CanvasManager {
+public class CanvasManager implements ShotDetectionListener {
 	private final Logger logger = LoggerFactory.getLogger(CanvasManager.class);
 	private final Group canvasGroup;
 	private final Configuration config;
 	private final CamerasSupervisor camerasSupervisor;
 	private final ObservableList<ShotEntry> shotEntries;
 	private final ImageView background = new ImageView();
+	private final DoubleBufferedImage backgroundFrames = new DoubleBufferedImage();
+	private final AtomicBoolean streamingBackground = new AtomicBoolean(false);
+	private Optional<AnimationTimer> backgroundStream = Optional.empty();
 	private final List<Shot> shots;
 	private final List<Group> targets = new ArrayList<Group>();
+	private final TargetHitIndex hitIndex;
+	private final UIUpdateBatcher uiUpdates = UIUpdateBatcher.getInstance();
+	private final ShotMarkerLayer markerLayer = new ShotMarkerLayer();
 	
 	private ProgressIndicator progress;
 	private Optional<ContextMenu> contextMenu;
 	private Optional<Group> selectedTarget = Optional.empty();
 	private long startTime = 0;
-	private boolean showShots = true;
 	
 	private Optional<ProjectorArenaController> arenaController = Optional.empty();
 	private Optional<Bounds> projectionBounds = Optional.empty();
+	private Optional<PerformanceOverlay> performanceOverlay = Optional.empty();
+	private Optional<ShotClipRecorder> shotClipRecorder = Optional.empty();
 	
 	public CanvasManager(Group canvasGroup, Configuration config, CamerasSupervisor camerasSupervisor, 
 			ObservableList<ShotEntry> shotEntries) {
@@ -81,6 +100,7 @@ public class CanvasManager {
 		this.camerasSupervisor = camerasSupervisor;
 		this.shotEntries = shotEntries;
 		shots = Collections.synchronizedList(new ArrayList<Shot>());
+		hitIndex = new TargetHitIndex(config.useHitRasters());
 	
 		this.background.setOnMouseClicked((event) -> {
 				toggleTargetSelection(Optional.empty());
@@ -114,14 +134,107 @@ public class CanvasManager {
 	}
 	
 	public void updateBackground(Image img) {
-		if (!canvasGroup.getChildren().contains(background)) {
+		if (Platform.isFxApplicationThread()) {
+			showBackground();
+			background.setImage(img);
+		} else {
 			Platform.runLater(() -> {
-					canvasGroup.getChildren().clear();
-					canvasGroup.getChildren().add(background);
+					showBackground();
+					background.setImage(img);
 				});
 		}
+	}
+	
+	/**
+	 * Shows a camera frame as the background. The frame is copied into a
+	 * reused buffer and shown on the next pulse, so this can be called from
+	 * any thread without creating a new image for every frame.
+	 * 
+	 * @param pixels	packed RGB bytes, three per pixel in row major order
+	 * @param width		the frame's width in pixels
+	 * @param height	the frame's height in pixels
+	 */
+	public void updateBackground(ByteBuffer pixels, int width, int height) {
+		backgroundFrames.write(pixels, width, height);
 		
-		background.setImage(img);
+		if (streamingBackground.compareAndSet(false, true)) {
+			Platform.runLater(() -> {
+					showBackground();
+					
+					AnimationTimer stream = new AnimationTimer() {
+						@Override
+						public void handle(long now) {
+							Optional<WritableImage> frame = backgroundFrames.swap();
+							if (frame.isPresent()) background.setImage(frame.get());
+						}
+					};
+					
+					backgroundStream = Optional.of(stream);
+					stream.start();
+				});
+		}
+	}
+	
+	/**
+	 * Stops checking for new frames on every pulse once the camera feeding
+	 * this canvas has stopped. The last frame stays shown, and the next frame
+	 * passed to <tt>updateBackground</tt> starts streaming again.
+	 */
+	public void stopBackgroundStream() {
+		// Queued behind the runnable that starts the stream, if it is pending
+		Platform.runLater(() -> {
+				if (backgroundStream.isPresent()) {
+					backgroundStream.get().stop();
+					backgroundStream = Optional.empty();
+				}
+				
+				streamingBackground.set(false);
+			});
+	}
+	
+	private void showBackground() {
+		if (!canvasGroup.getChildren().contains(background)) {
+			canvasGroup.getChildren().clear();
+			canvasGroup.getChildren().add(background);
+			canvasGroup.getChildren().add(markerLayer);
+			if (performanceOverlay.isPresent()) canvasGroup.getChildren().add(performanceOverlay.get());
+		}
+	}
+	
+	/**
+	 * Shows or hides an overlay with live performance metrics for the camera
+	 * feeding this canvas. Must be called on the FX thread.
+	 */
+	public void setShowPerformanceOverlay(boolean show, PipelineMetrics metrics) {
+		if (show == performanceOverlay.isPresent()) return;
+		
+		if (show) {
+			PerformanceOverlay overlay = new PerformanceOverlay(metrics);
+			performanceOverlay = Optional.of(overlay);
+			canvasGroup.getChildren().add(overlay);
+			overlay.start();
+		} else {
+			performanceOverlay.get().stop();
+			canvasGroup.getChildren().remove(performanceOverlay.get());
+			performanceOverlay = Optional.empty();
+		}
+	}
+	
+	public boolean isShowingPerformanceOverlay() {
+		return performanceOverlay.isPresent();
+	}
+	
+	/**
+	 * Stops everything that keeps updating this canvas once the camera
+	 * feeding it is closed, so the overlay's sampling task doesn't outlive
+	 * the camera. Safe to call from any thread.
+	 */
+	public void close() {
+		stopBackgroundStream();
+		
+		Platform.runLater(() -> {
+				if (performanceOverlay.isPresent()) setShowPerformanceOverlay(false, null);
+			});
 	}
 	
 	public Group getCanvasGroup() {
@@ -129,11 +242,9 @@ public class CanvasManager {
 	}
 	
 	public void clearShots() {
-		Platform.runLater(() -> {
-			for (Shot shot : shots) {
-				canvasGroup.getChildren().remove(shot.getMarker());
-			}
-			
+		// Batched so shots drawn before the clear can't be added after it
+		uiUpdates.runLater(() -> {
+			markerLayer.clear();
 			shots.clear();
 			if (shotEntries != null) shotEntries.clear();
 			if (arenaController.isPresent()) arenaController.get().getCanvasManager().clearShots();
@@ -159,34 +270,77 @@ public class CanvasManager {
 		clearShots();
 	}
 	
+	/**
+	 * Sets the recorder that saves a clip of the camera's video around each
+	 * accepted shot.
+	 */
+	public void setShotClipRecorder(ShotClipRecorder shotClipRecorder) {
+		this.shotClipRecorder = Optional.ofNullable(shotClipRecorder);
+	}
+	
 	public void setProjectorArena(ProjectorArenaController arenaController, Bounds projectionBounds) {		
 		this.arenaController = Optional.ofNullable(arenaController);
 		this.projectionBounds = Optional.ofNullable(projectionBounds);
 	}
 	
 	public void setShowShots(boolean showShots) {
-		if (this.showShots != showShots) {
-			for (Shot shot : shots) shot.getMarker().setVisible(showShots);
-		}
+		markerLayer.setVisible(showShots);
+	}
 		
-		this.showShots = showShots;
+	/**
+	 * Draws a shot's marker in the selection color or its own color. Must be
+	 * called on the FX thread.
+	 * 
+	 * @return <tt>false</tt> if the shot wasn't drawn on this canvas
+	 */
+	public boolean setShotSelected(Shot shot, boolean selected) {
+		return markerLayer.setSelected(shot, selected);
 	}
 	
+	@Override
 	public void addShot(Color color, double x, double y) {
+		addShot(color, x, y, Optional.empty());
+	}
+	
+	/**
+	 * Adds a shot detected in a camera frame and records the time from when
+	 * the frame was captured until the shot was drawn. Nothing is recorded
+	 * for shots a ShotProcessor rejects.
+	 * 
+	 * @param captured	when the frame was captured in milliseconds
+	 */
+	public void addShot(Color color, double x, double y, PipelineMetrics metrics, long captured) {
+		addShot(color, x, y, Optional.of(() -> metrics.recordShotLatency(System.currentTimeMillis() - captured)));
+	}
+	
+	private void addShot(Color color, double x, double y, Optional<Runnable> shotDrawn) {
 		if (startTime == 0) startTime = System.currentTimeMillis();
 		Shot shot = new Shot(color, x, y, 
 				System.currentTimeMillis() - startTime, config.getMarkerRadius());
 		
 		for (ShotProcessor processor : config.getShotProcessors()) {
-			if (!processor.processShot(shot)) {
+			ShotProcessorEvent processorEvent = PipelineEvents.isEnabled() ? new ShotProcessorEvent() : null;
+			if (processorEvent != null) processorEvent.begin();
+			boolean accepted = processor.processShot(shot);
+			
+			if (processorEvent != null) {
+				processorEvent.processor = processor.getClass().getName();
+				processorEvent.accepted = accepted;
+				processorEvent.commitForCurrentFrame();
+			}
+			
+			if (!accepted) {
 				logger.debug("Processing Shot: Shot Rejected By {}", processor.getClass().getName());
 				return;
 			}
 		}
 		
-		shotEntries.add(new ShotEntry(shot));
+		ShotEntry shotEntry = new ShotEntry(shot);
+		uiUpdates.runLater(() -> shotEntries.add(shotEntry));
 		shots.add(shot);
-		drawShot(shot);
+		drawShot(shot, shotDrawn);
+		
+		if (shotClipRecorder.isPresent()) shotClipRecorder.get().saveClip(shots.size(), System.currentTimeMillis());
 		
 		Optional<TrainingProtocol> currentProtocol = config.getProtocol();
 		Optional<TargetRegion> hitRegion = checkHit(shot);
@@ -209,72 +363,106 @@ public class CanvasManager {
 			}
 		}
 		
-		if (currentProtocol.isPresent() && !processedShot) currentProtocol.get().shotListener(shot, hitRegion);
+		if (currentProtocol.isPresent() && !processedShot) notifyProtocol(currentProtocol.get(), shot, hitRegion);
 	}
 	
 	public boolean addArenaShot(Shot shot) {
 		shots.add(shot);
-		drawShot(shot);
+		drawShot(shot, Optional.empty());
 		
 		Optional<TrainingProtocol> currentProtocol = config.getProtocol();
 		Optional<TargetRegion> hitRegion = checkHit(shot);
 		if (hitRegion.isPresent() && hitRegion.get().tagExists("command")) executeRegionCommands(hitRegion.get());
 		if (currentProtocol.isPresent()) {
-			currentProtocol.get().shotListener(shot, hitRegion);
+			notifyProtocol(currentProtocol.get(), shot, hitRegion);
 			return true;
 		}
 		
 		return false;
 	}
 	
-	private void drawShot(Shot shot) {
-		Platform.runLater(() -> {
-				canvasGroup.getChildren().add(shot.getMarker());
-				shot.getMarker().setVisible(showShots);
+	private void notifyProtocol(TrainingProtocol protocol, Shot shot, Optional<TargetRegion> hitRegion) {
+		ProtocolShotEvent protocolEvent = PipelineEvents.isEnabled() ? new ProtocolShotEvent() : null;
+		if (protocolEvent != null) protocolEvent.begin();
+		protocol.shotListener(shot, hitRegion);
+		
+		if (protocolEvent != null) {
+			protocolEvent.protocol = protocol.getClass().getName();
+			protocolEvent.hit = hitRegion.isPresent();
+			protocolEvent.commitForCurrentFrame();
+		}
+	}
+	
+	private void drawShot(Shot shot, Optional<Runnable> shotDrawn) {
+		uiUpdates.runLater(() -> {
+				// Canvases that never show a background only get the layer
+				// once they have a shot to draw
+				if (markerLayer.getParent() == null) canvasGroup.getChildren().add(markerLayer);
+				
+				markerLayer.addMarker(shot);
+				if (shotDrawn.isPresent()) shotDrawn.get().run();
 			});
 	}
 	
-	private Optional<TargetRegion> checkHit(Shot shot) {
-		for (Group target : targets) {
-			if (target.getBoundsInParent().contains(shot.getX(), shot.getY())) {				
-				// Target was hit, see if a specific region was hit
-				for (int i = target.getChildren().size() - 1; i >= 0; i--) {
-					Node node = target.getChildren().get(i);
-					if (node.contains(node.parentToLocal(shot.getX(), shot.getY()))) {
-						// If we hit an image region on a transparent pixel, ignore it
-						TargetRegion region = (TargetRegion)node;
-						if (region.getType() == RegionType.IMAGE) {
-							Image currentImage = ((ImageRegion)region).getImage();
-							int adjustedX = (int)(shot.getX() - node.getBoundsInParent().getMinX());
-							int adjustedY = (int)(shot.getY() - node.getBoundsInParent().getMinY());
-							
-							if (currentImage.getHeight() > adjustedY && 
-								currentImage.getWidth() > adjustedX && 
-									currentImage.getPixelReader().getArgb(adjustedX, adjustedY) >> 24 == 0) {
-								continue;
-							}
-						}
-						
-						if (config.inDebugMode()) {
-							Map<String, String> tags = region.getAllTags();
-							
-							StringBuilder tagList = new StringBuilder();
-							for (Iterator<String> it = tags.keySet().iterator(); it.hasNext();) {
-								String tagName = it.next();
-								tagList.append(tagName);
-								tagList.append(":");
-								tagList.append(tags.get(tagName));
-								if (it.hasNext()) tagList.append(", ");
-							}
-						
-							logger.debug("Processing Shot: Found Hit Region For Shot ({}, {}), Type ({}), Tags ({})", 
-									shot.getX(), shot.getY(), region.getType(), tagList.toString());	
-						}
-						
-						return Optional.of((TargetRegion)node);
+	// Package-private so HitTestBenchmark can measure hit checks alone
+	Optional<TargetRegion> checkHit(Shot shot) {
+		HitCheckEvent hitCheckEvent = PipelineEvents.isEnabled() ? new HitCheckEvent() : null;
+		if (hitCheckEvent != null) hitCheckEvent.begin();
+		
+		Optional<TargetRegion> hitRegion = findHitRegion(shot);
+		
+		if (hitCheckEvent != null && hitCheckEvent.shouldCommit()) {
+			hitCheckEvent.targets = targets.size();
+			hitCheckEvent.hit = hitRegion.isPresent();
+			if (hitRegion.isPresent() && hitRegion.get().tagExists("name"))
+				hitCheckEvent.regionName = hitRegion.get().getTag("name");
+			hitCheckEvent.commitForCurrentFrame();
+		}
+		
+		return hitRegion;
+	}
+	
+	// Only the regions the hit index says contain the shot are checked, in
+	// the same order as checking every region of every target would. A
+	// target with an up to date raster answers with one lookup unless the
+	// shot is on an edge or an image region
+	private Optional<TargetRegion> findHitRegion(Shot shot) {
+		Node currentTarget = null;
+		boolean skipTarget = false;
+		
+		for (Node node : hitIndex.getCandidates(shot.getX(), shot.getY())) {
+			Node target = node.getParent();
+			
+			if (target != currentTarget) {
+				currentTarget = target;
+				skipTarget = target == null || !target.getBoundsInParent().contains(shot.getX(), shot.getY());
+				
+				Optional<TargetHitRaster> raster = skipTarget ? Optional.empty() : hitIndex.getRaster(target);
+				if (raster.isPresent()) {
+					short region = raster.get().getRegion(shot.getX(), shot.getY());
+					
+					if (region == TargetHitRaster.NO_REGION) {
+						skipTarget = true;
+					} else if (region != TargetHitRaster.CHECK_REGIONS) {
+						return foundHitRegion(shot, (TargetRegion)raster.get().getRegionNode(region));
 					}
 				}
 			}
+			
+			if (skipTarget) continue;
+			
+			if (node.contains(node.parentToLocal(shot.getX(), shot.getY()))) {
+				// If we hit an image region on a transparent pixel, ignore it
+				TargetRegion region = (TargetRegion)node;
+				if (region.getType() == RegionType.IMAGE) {
+					int adjustedX = (int)(shot.getX() - node.getBoundsInParent().getMinX());
+					int adjustedY = (int)(shot.getY() - node.getBoundsInParent().getMinY());
+					
+					if (((ImageRegion)region).isTransparentPixel(adjustedX, adjustedY)) continue;
+				}
+				
+				return foundHitRegion(shot, region);
+			}
 		}
 		
 		logger.debug("Processing Shot: Did Not Find Hit For Shot ({}, {})", 
@@ -283,6 +471,26 @@ public class CanvasManager {
 		return Optional.empty();
 	}
 	
+	private Optional<TargetRegion> foundHitRegion(Shot shot, TargetRegion region) {
+		if (config.inDebugMode()) {
+			Map<String, String> tags = region.getAllTags();
+			
+			StringBuilder tagList = new StringBuilder();
+			for (Iterator<String> it = tags.keySet().iterator(); it.hasNext();) {
+				String tagName = it.next();
+				tagList.append(tagName);
+				tagList.append(":");
+				tagList.append(tags.get(tagName));
+				if (it.hasNext()) tagList.append(", ");
+			}
+		
+			logger.debug("Processing Shot: Found Hit Region For Shot ({}, {}), Type ({}), Tags ({})", 
+					shot.getX(), shot.getY(), region.getType(), tagList.toString());	
+		}
+		
+		return Optional.of(region);
+	}
+	
 	private void executeRegionCommands(TargetRegion region) {
 		String commandsSource = region.getTag("command");
 		String commands[]  = commandsSource.split(";");		
@@ -300,6 +508,9 @@ public class CanvasManager {
 				args = null;
 			}
 			
+			RegionCommandEvent commandEvent = PipelineEvents.isEnabled() ? new RegionCommandEvent() : null;
+			if (commandEvent != null) commandEvent.begin();
+			
 			switch (commandName) {
 			case "reset":
 				camerasSupervisor.reset();
@@ -326,6 +537,11 @@ public class CanvasManager {
 				TrainingProtocolBase.playSound(args[0]);
 				break;
 			}
+			
+			if (commandEvent != null) {
+				commandEvent.command = commandName;
+				commandEvent.commitForCurrentFrame();
+			}
 		}
 	}
 	
@@ -420,20 +636,31 @@ public class CanvasManager {
 	}
 	
 	public void addTarget(Group target, boolean userDeletable) {
-		Platform.runLater(() -> { canvasGroup.getChildren().add(target); });
+		Platform.runLater(() -> {
+				canvasGroup.getChildren().add(target);
+				
+				// Keep shots drawn before the target was added visible
+				if (markerLayer.getParent() != null) markerLayer.toFront();
+			});
 		new TargetContainer(target, config, this, userDeletable);
 		targets.add(target);
+		hitIndex.addTarget(target);
 	}
 	
 	public void removeTarget(Group target) {
 		Platform.runLater(() -> { canvasGroup.getChildren().remove(target); });
 		targets.remove(target);
+		hitIndex.removeTarget(target);
 	}
 	
 	public List<Group> getTargets() {
 		return targets;
 	}
 	
+	TargetHitIndex getHitIndex() {
+		return hitIndex;
+	}
+	
 	private void toggleTargetSelection(Optional<Group> newSelection) {
 		if (selectedTarget.isPresent())
 			setTargetSelection(selectedTarget.get(), false);
@@ -0,0 +1,114 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * Reusable buffers for showing a stream of frames. A producer thread copies
+ * each frame into a back buffer, and on each pulse the FX thread swaps the
+ * back buffer with its own and writes it into the image being shown. A
+ * WritableImage may only be written on the FX thread, where writes can't
+ * race with the render thread uploading the image. Only one frame is ever
+ * waiting: a frame written before the FX thread got to the previous one
+ * simply replaces it, so a slow FX thread drops frames instead of queuing
+ * them up.
+ */
+public class DoubleBufferedImage {
+	private byte[] backBuffer = new byte[0];
+	private byte[] frontBuffer = new byte[0];
+	private int backWidth;
+	private int backHeight;
+	private boolean framePending = false;
+	
+	// Only used on the FX thread
+	private WritableImage image;
+	
+	private long writtenFrames = 0;
+	private long replacedFrames = 0;
+	
+	/**
+	 * Copies a frame into the back buffer. May be called from any thread.
+	 * 
+	 * @param pixels	packed RGB bytes, three per pixel in row major order
+	 * @param width		the frame's width in pixels
+	 * @param height	the frame's height in pixels
+	 */
+	public synchronized void write(ByteBuffer pixels, int width, int height) {
+		int length = width * height * 3;
+		if (backBuffer.length != length) backBuffer = new byte[length];
+		
+		pixels.duplicate().get(backBuffer, 0, length);
+		backWidth = width;
+		backHeight = height;
+		
+		if (framePending) replacedFrames++;
+		writtenFrames++;
+		framePending = true;
+	}
+	
+	/**
+	 * Writes the waiting frame, if there is one, into the image. Must be
+	 * called on the FX thread.
+	 * 
+	 * @return the image to show, which is the same image every time unless the
+	 * 		frame size changed, or empty if no new frame was written
+	 */
+	public Optional<WritableImage> swap() {
+		int width, height;
+		
+		synchronized (this) {
+			if (!framePending) return Optional.empty();
+			
+			// The producer can write the next frame into the old front
+			// buffer while this one is copied into the image
+			byte[] swap = frontBuffer;
+			frontBuffer = backBuffer;
+			backBuffer = swap;
+			width = backWidth;
+			height = backHeight;
+			framePending = false;
+		}
+		
+		if (image == null || (int)image.getWidth() != width || (int)image.getHeight() != height) {
+			image = new WritableImage(width, height);
+		}
+		
+		image.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getByteRgbInstance(),
+				frontBuffer, 0, width * 3);
+		
+		return Optional.of(image);
+	}
+	
+	public synchronized long getWrittenFrames() {
+		return writtenFrames;
+	}
+	
+	/**
+	 * @return the number of frames that were replaced by a newer frame before
+	 * 		they were shown
+	 */
+	public synchronized long getReplacedFrames() {
+		return replacedFrames;
+	}
+}
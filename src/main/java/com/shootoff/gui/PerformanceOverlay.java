@@ -0,0 +1,233 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.shootoff.camera.metrics.HistogramSnapshot;
+import com.shootoff.camera.metrics.PipelineMetrics;
+
+import javafx.application.Platform;
+import javafx.scene.Group;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Polyline;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+/**
+ * A small overlay that shows a camera's pipeline metrics on top of its
+ * canvas: frame rates, shot latency, dropped frames, the time each stage
+ * spends per frame and how busy it keeps its thread, heap use, garbage
+ * collection, and a sparkline of the capture frame rate over the last
+ * minute.
+ * 
+ * Metrics are sampled on a shared background thread at a fixed rate and
+ * applied to the scene with one <tt>Platform.runLater</tt> per sample. A
+ * sample is skipped if the previous one hasn't been applied yet, so a busy
+ * FX thread never gets a backlog of updates from the overlay.
+ */
+public class PerformanceOverlay extends Group {
+	public static final long UPDATE_INTERVAL = 500; // ms
+	
+	private static final int SPARKLINE_SAMPLES = (int)(TimeUnit.MINUTES.toMillis(1) / UPDATE_INTERVAL);
+	private static final double SPARKLINE_WIDTH = 240;
+	private static final double SPARKLINE_HEIGHT = 30;
+	private static final double PADDING = 5;
+	
+	private static final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread thread = new Thread(r, "Performance Overlay");
+			thread.setDaemon(true);
+			return thread;
+		});
+	
+	private final PipelineMetrics metrics;
+	private final Rectangle backdrop = new Rectangle();
+	private final Text text = new Text();
+	private final Polyline sparkline = new Polyline();
+	private final AtomicBoolean updatePending = new AtomicBoolean(false);
+	private Optional<ScheduledFuture<?>> sampling = Optional.empty();
+	
+	// Everything below is only touched by the sampler
+	private final double[] captureRates = new double[SPARKLINE_SAMPLES];
+	private int sampleCount = 0;
+	private long lastSampleTime = -1;
+	private HistogramSnapshot[] lastStageTimes = new HistogramSnapshot[0];
+	private long lastGcCount = 0;
+	private long lastGcTime = 0;
+	
+	public PerformanceOverlay(PipelineMetrics metrics) {
+		this.metrics = metrics;
+		
+		backdrop.setFill(Color.color(0, 0, 0, 0.6));
+		backdrop.setArcWidth(PADDING * 2);
+		backdrop.setArcHeight(PADDING * 2);
+		
+		text.setFont(Font.font("Monospaced", 11));
+		text.setFill(Color.WHITE);
+		text.setX(PADDING);
+		text.setY(PADDING + 11);
+		
+		sparkline.setStroke(Color.LIMEGREEN);
+		sparkline.setManaged(false);
+		
+		setMouseTransparent(true);
+		getChildren().addAll(backdrop, text, sparkline);
+	}
+	
+	public void start() {
+		if (sampling.isPresent()) return;
+		
+		sampling = Optional.of(sampler.scheduleAtFixedRate(this::update, 0, UPDATE_INTERVAL,
+				TimeUnit.MILLISECONDS));
+	}
+	
+	public void stop() {
+		if (sampling.isPresent()) {
+			sampling.get().cancel(false);
+			sampling = Optional.empty();
+		}
+	}
+	
+	private void update() {
+		if (!updatePending.compareAndSet(false, true)) return;
+		
+		String description = sample(System.nanoTime());
+		List<Double> points = getSparklinePoints();
+		
+		Platform.runLater(() -> {
+				updatePending.set(false);
+				
+				text.setText(description);
+				
+				double textBottom = text.getLayoutBounds().getMaxY();
+				double width = Math.max(text.getLayoutBounds().getWidth(), SPARKLINE_WIDTH) + PADDING * 2;
+				backdrop.setWidth(width);
+				backdrop.setHeight(textBottom + SPARKLINE_HEIGHT + PADDING * 2);
+				
+				sparkline.setLayoutX(PADDING);
+				sparkline.setLayoutY(textBottom + PADDING);
+				sparkline.getPoints().setAll(points);
+				
+				// Targets added after the overlay would otherwise cover it
+				if (getParent() != null && getParent().getChildrenUnmodifiable().indexOf(this) !=
+						getParent().getChildrenUnmodifiable().size() - 1) {
+					toFront();
+				}
+			});
+	}
+	
+	/**
+	 * Takes a sample of the metrics and describes it. Rates and stage loads
+	 * are over the time since the previous sample.
+	 * 
+	 * @param now	the current time from <tt>System.nanoTime</tt>
+	 */
+	protected String sample(long now) {
+		double elapsedMicros = lastSampleTime < 0 ? 0 : (now - lastSampleTime) / 1000.0;
+		lastSampleTime = now;
+		
+		double captureFPS = metrics.getCaptureFPS();
+		captureRates[sampleCount % SPARKLINE_SAMPLES] = captureFPS;
+		sampleCount++;
+		
+		StringBuilder description = new StringBuilder();
+		
+		description.append(String.format("%s%nCapture %.1f/%.0f fps  Display %.1f fps  Detection %.1f/s%n",
+				metrics.getCameraName(), captureFPS, metrics.getTargetCaptureFPS(), metrics.getDisplayFPS(),
+				metrics.getDetectionCyclesPerSecond()));
+		
+		HistogramSnapshot latency = metrics.getShotLatencyMillis();
+		description.append(String.format("Shots %d  Latency p50 %d ms p99 %d ms  Dropped %d%n",
+				metrics.getShotsDetected(), latency.getP50(), latency.getP99(), metrics.getDroppedFrames()));
+		
+		String[] stageNames = { "Threshold", "Bloom", "Search", "Display" };
+		HistogramSnapshot[] stageTimes = { metrics.getThresholdTime(), metrics.getBloomFilterTime(),
+				metrics.getSearchTime(), metrics.getDisplayTime() };
+		
+		for (int i = 0; i < stageTimes.length; i++) {
+			long frames = stageTimes[i].getCount();
+			double busyMicros = stageTimes[i].getCount() * stageTimes[i].getMean();
+			
+			// Histograms that were reset since the last sample start over
+			if (i < lastStageTimes.length && lastStageTimes[i].getCount() <= frames) {
+				frames -= lastStageTimes[i].getCount();
+				busyMicros -= lastStageTimes[i].getCount() * lastStageTimes[i].getMean();
+			}
+			
+			double meanMillis = frames == 0 ? 0 : busyMicros / frames / 1000;
+			double load = elapsedMicros == 0 ? 0 : busyMicros / elapsedMicros * 100;
+			
+			description.append(String.format("%-9s %6.2f ms %5.1f%%%n", stageNames[i], meanMillis, load));
+		}
+		
+		lastStageTimes = stageTimes;
+		
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		
+		long gcCount = 0;
+		long gcTime = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			gcCount += Math.max(0, collector.getCollectionCount());
+			gcTime += Math.max(0, collector.getCollectionTime());
+		}
+		
+		double elapsedSeconds = elapsedMicros / 1000000;
+		description.append(String.format("Heap %d/%d MB  GC %.1f/s %.0f ms/s", heap.getUsed() >> 20,
+				heap.getCommitted() >> 20, elapsedSeconds == 0 ? 0 : (gcCount - lastGcCount) / elapsedSeconds,
+				elapsedSeconds == 0 ? 0 : (gcTime - lastGcTime) / elapsedSeconds));
+		
+		lastGcCount = gcCount;
+		lastGcTime = gcTime;
+		
+		return description.toString();
+	}
+	
+	/**
+	 * @return x and y coordinates of the capture frame rates sampled over the
+	 * 		last minute, oldest first, scaled so that the highest rate reaches
+	 * 		the top of the sparkline
+	 */
+	protected List<Double> getSparklinePoints() {
+		int samples = Math.min(sampleCount, SPARKLINE_SAMPLES);
+		List<Double> points = new ArrayList<Double>(samples * 2);
+		
+		double highest = 1;
+		for (int i = 0; i < samples; i++) highest = Math.max(highest, captureRates[i]);
+		
+		double step = SPARKLINE_WIDTH / (SPARKLINE_SAMPLES - 1);
+		for (int i = 0; i < samples; i++) {
+			double rate = captureRates[(sampleCount - samples + i) % SPARKLINE_SAMPLES];
+			points.add(i * step);
+			points.add(SPARKLINE_HEIGHT - rate / highest * SPARKLINE_HEIGHT);
+		}
+		
+		return points;
+	}
+}
@@ -0,0 +1,175 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.shootoff.camera.Shot;
+import com.shootoff.targets.TargetRegion;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.paint.Color;
+
+/**
+ * Draws a canvas's shot markers onto a single Canvas instead of adding a
+ * node to the scene for every shot. Markers are kept in primitive arrays and
+ * drawn as they are added; selecting a marker only redraws the markers that
+ * overlap it. The canvas grows to fit the markers drawn on it.
+ * 
+ * Every method must be called on the FX thread.
+ */
+public class ShotMarkerLayer extends Canvas {
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private double[] xs = new double[INITIAL_CAPACITY];
+	private double[] ys = new double[INITIAL_CAPACITY];
+	private int[] radii = new int[INITIAL_CAPACITY];
+	private int[] colors = new int[INITIAL_CAPACITY]; // ARGB
+	private boolean[] selected = new boolean[INITIAL_CAPACITY];
+	private int count = 0;
+	
+	private final Map<Shot, Integer> indices = new IdentityHashMap<Shot, Integer>();
+	
+	public ShotMarkerLayer() {
+		super(0, 0);
+		
+		// Clicks go through to the targets under the markers
+		setMouseTransparent(true);
+	}
+	
+	public void addMarker(Shot shot) {
+		if (count == xs.length) grow();
+		
+		int index = count++;
+		xs[index] = shot.getX();
+		ys[index] = shot.getY();
+		radii[index] = shot.getMarkerRadius();
+		colors[index] = toARGB(shot.getColor());
+		selected[index] = false;
+		indices.put(shot, index);
+		
+		double right = Math.ceil(xs[index] + radii[index]);
+		double bottom = Math.ceil(ys[index] + radii[index]);
+		
+		if (right > getWidth() || bottom > getHeight()) {
+			// Resizing clears the canvas, so everything must be redrawn
+			setWidth(Math.max(getWidth(), right));
+			setHeight(Math.max(getHeight(), bottom));
+			redraw(0, 0, getWidth(), getHeight());
+		} else {
+			drawMarker(getGraphicsContext2D(), index);
+		}
+	}
+	
+	/**
+	 * Draws a shot's marker in the selection color or its own color.
+	 * 
+	 * @return <tt>false</tt> if the shot isn't on this layer
+	 */
+	public boolean setSelected(Shot shot, boolean isSelected) {
+		Integer index = indices.get(shot);
+		if (index == null) return false;
+		if (selected[index] == isSelected) return true;
+		
+		selected[index] = isSelected;
+		
+		double radius = radii[index];
+		redraw(xs[index] - radius, ys[index] - radius, radius * 2, radius * 2);
+		
+		return true;
+	}
+	
+	public boolean isSelected(Shot shot) {
+		Integer index = indices.get(shot);
+		return index != null && selected[index];
+	}
+	
+	public int getMarkerCount() {
+		return count;
+	}
+	
+	public void clear() {
+		count = 0;
+		indices.clear();
+		getGraphicsContext2D().clearRect(0, 0, getWidth(), getHeight());
+	}
+	
+	// Clears the area and redraws every marker that overlaps it in the order
+	// they were added, so markers that were on top stay on top. Drawing is
+	// clipped to the area so markers that only partly overlap it don't cover
+	// newer markers outside of it
+	private void redraw(double x, double y, double width, double height) {
+		GraphicsContext gc = getGraphicsContext2D();
+		
+		// Antialiased edges reach a little past the marker's bounds
+		double minX = x - 1, minY = y - 1, maxX = x + width + 1, maxY = y + height + 1;
+		gc.clearRect(minX, minY, maxX - minX, maxY - minY);
+		
+		gc.save();
+		gc.beginPath();
+		gc.rect(minX, minY, maxX - minX, maxY - minY);
+		gc.clip();
+		
+		for (int i = 0; i < count; i++) {
+			double radius = radii[i] + 1;
+			
+			if (xs[i] + radius >= minX && xs[i] - radius <= maxX &&
+					ys[i] + radius >= minY && ys[i] - radius <= maxY) {
+				drawMarker(gc, i);
+			}
+		}
+		
+		gc.restore();
+	}
+	
+	private void drawMarker(GraphicsContext gc, int index) {
+		if (selected[index]) {
+			gc.setFill(TargetRegion.SELECTED_STROKE_COLOR);
+		} else {
+			gc.setFill(toColor(colors[index]));
+		}
+		
+		double radius = radii[index];
+		gc.fillOval(xs[index] - radius, ys[index] - radius, radius * 2, radius * 2);
+	}
+	
+	private void grow() {
+		int capacity = xs.length * 2;
+		
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		radii = Arrays.copyOf(radii, capacity);
+		colors = Arrays.copyOf(colors, capacity);
+		selected = Arrays.copyOf(selected, capacity);
+	}
+	
+	private static int toARGB(Color color) {
+		return (int)Math.round(color.getOpacity() * 255) << 24 |
+				(int)Math.round(color.getRed() * 255) << 16 |
+				(int)Math.round(color.getGreen() * 255) << 8 |
+				(int)Math.round(color.getBlue() * 255);
+	}
+	
+	private static Color toColor(int argb) {
+		return Color.rgb((argb >> 16) & 0xFF, (argb >> 8) & 0xFF, argb & 0xFF, ((argb >>> 24) & 0xFF) / 255.0);
+	}
+}
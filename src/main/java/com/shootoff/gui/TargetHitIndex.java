@@ -0,0 +1,358 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javafx.application.Platform;
+import javafx.beans.InvalidationListener;
+import javafx.collections.ListChangeListener;
+import javafx.geometry.Bounds;
+import javafx.scene.Group;
+import javafx.scene.Node;
+
+/**
+ * A uniform grid of the regions on a canvas's targets, used to find the few
+ * regions a shot could have hit without asking every region whether it
+ * contains the shot.
+ * 
+ * Each region is stored in every cell its bounds overlap. A target is
+ * re-indexed the next time the grid is queried after any of its regions'
+ * bounds change or regions are added to or removed from it, which covers
+ * targets moved or resized by a TargetContainer as well as targets moved by
+ * training protocols.
+ * 
+ * If rasterizing is enabled each target is also drawn into a
+ * TargetHitRaster once it has stopped changing for <tt>RASTER_DELAY</tt>
+ * ms. The target's geometry is copied on the FX thread and rasterized in
+ * the background, and the raster is discarded as soon as the target changes
+ * again, so callers must fall back to testing the candidate regions while a
+ * target has no raster.
+ */
+public class TargetHitIndex {
+	public static final int CELL_SIZE = 32;
+	
+	// Dragging a target changes it on every mouse event, so wait until it
+	// has settled before rasterizing it
+	public static final long RASTER_DELAY = 250; // ms
+	
+	private static final ScheduledExecutorService rasterBuilder = Executors.newSingleThreadScheduledExecutor((r) -> {
+			Thread thread = new Thread(r, "Target Hit Rasterizer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	
+	// Regions overlapping more cells than this (e.g. a full screen
+	// background) are checked for every shot instead of filling the grid
+	private static final int MAX_REGION_CELLS = 1024;
+	
+	// Targets in the order they were added, then regions from the top most
+	// down, which is the order CanvasManager always checked them in
+	private static final Comparator<IndexedRegion> HIT_ORDER = (a, b) -> {
+		int targetOrder = Long.compare(a.target.order, b.target.order);
+		if (targetOrder != 0) return targetOrder;
+		
+		return Integer.compare(b.depth, a.depth);
+	};
+	
+	private final Map<Long, List<IndexedRegion>> cells = new HashMap<Long, List<IndexedRegion>>();
+	private final List<IndexedRegion> oversizedRegions = new ArrayList<IndexedRegion>();
+	private final Map<Group, IndexedTarget> targets = new IdentityHashMap<Group, IndexedTarget>();
+	private final Set<IndexedTarget> dirtyTargets =
+			Collections.newSetFromMap(new IdentityHashMap<IndexedTarget, Boolean>());
+	private final boolean rasterize;
+	private long nextTargetOrder = 0;
+	
+	public TargetHitIndex() {
+		this(false);
+	}
+	
+	/**
+	 * @param rasterize	whether to build a TargetHitRaster for each target
+	 */
+	public TargetHitIndex(boolean rasterize) {
+		this.rasterize = rasterize;
+	}
+	
+	public synchronized void addTarget(Group target) {
+		if (targets.containsKey(target)) return;
+		
+		IndexedTarget indexedTarget = new IndexedTarget(target, nextTargetOrder++);
+		targets.put(target, indexedTarget);
+		target.getChildren().addListener(indexedTarget.childrenListener);
+		dirtyTargets.add(indexedTarget);
+		scheduleRaster(indexedTarget);
+	}
+	
+	public synchronized void removeTarget(Group target) {
+		IndexedTarget indexedTarget = targets.remove(target);
+		if (indexedTarget == null) return;
+		
+		target.getChildren().removeListener(indexedTarget.childrenListener);
+		unindex(indexedTarget);
+		dirtyTargets.remove(indexedTarget);
+		discardRaster(indexedTarget);
+	}
+	
+	/**
+	 * @return the target's raster, or empty if rasterizing is disabled or the
+	 * 		target changed since its raster was last built
+	 */
+	public synchronized Optional<TargetHitRaster> getRaster(Node target) {
+		IndexedTarget indexedTarget = targets.get(target);
+		if (indexedTarget == null) return Optional.empty();
+		
+		return indexedTarget.raster;
+	}
+	
+	/**
+	 * @return the regions whose bounds contain the point, in the order they
+	 * 		should be checked for a hit
+	 */
+	public synchronized List<Node> getCandidates(double x, double y) {
+		refresh();
+		
+		List<IndexedRegion> cell = cells.get(getCellKey(getCell(x), getCell(y)));
+		List<IndexedRegion> regions;
+		
+		if (oversizedRegions.isEmpty()) {
+			if (cell == null) return Collections.emptyList();
+			regions = cell;
+		} else {
+			regions = new ArrayList<IndexedRegion>(oversizedRegions);
+			if (cell != null) regions.addAll(cell);
+			regions.sort(HIT_ORDER);
+		}
+		
+		List<Node> candidates = new ArrayList<Node>();
+		for (IndexedRegion region : regions) {
+			if (region.bounds.contains(x, y)) candidates.add(region.node);
+		}
+		
+		return candidates;
+	}
+	
+	protected synchronized int getOccupiedCellCount() {
+		refresh();
+		return cells.size();
+	}
+	
+	private synchronized void markDirty(IndexedTarget target) {
+		if (targets.get(target.target) != target) return;
+		
+		dirtyTargets.add(target);
+		discardRaster(target);
+		scheduleRaster(target);
+	}
+	
+	private void discardRaster(IndexedTarget target) {
+		target.generation++;
+		target.raster = Optional.empty();
+		
+		if (target.pendingRaster.isPresent()) {
+			target.pendingRaster.get().cancel(false);
+			target.pendingRaster = Optional.empty();
+		}
+	}
+	
+	private void scheduleRaster(IndexedTarget target) {
+		if (!rasterize) return;
+		
+		long generation = target.generation;
+		target.pendingRaster = Optional.of(rasterBuilder.schedule(
+				() -> Platform.runLater(() -> captureRaster(target, generation)),
+				RASTER_DELAY, TimeUnit.MILLISECONDS));
+	}
+	
+	// Runs on the FX thread, which is the only thread that may read the
+	// regions' geometry while they are in a live scene. The copy is then
+	// rasterized on the rasterizer thread
+	private void captureRaster(IndexedTarget target, long generation) {
+		synchronized (this) {
+			if (!isCurrent(target, generation)) return;
+			
+			target.pendingRaster = Optional.empty();
+		}
+		
+		TargetHitRaster.RegionGeometry geometry =
+				TargetHitRaster.RegionGeometry.capture(new ArrayList<Node>(target.target.getChildren()));
+		rasterBuilder.execute(() -> buildRaster(target, generation, geometry));
+	}
+	
+	// The raster is only kept if the target didn't change while it was being
+	// captured or built
+	private void buildRaster(IndexedTarget target, long generation, TargetHitRaster.RegionGeometry geometry) {
+		Optional<TargetHitRaster> raster = TargetHitRaster.build(geometry, () -> !isCurrent(target, generation));
+		
+		synchronized (this) {
+			if (isCurrent(target, generation)) target.raster = raster;
+		}
+	}
+	
+	private synchronized boolean isCurrent(IndexedTarget target, long generation) {
+		return targets.get(target.target) == target && target.generation == generation;
+	}
+	
+	private void refresh() {
+		if (dirtyTargets.isEmpty()) return;
+		
+		List<IndexedTarget> refreshing = new ArrayList<IndexedTarget>(dirtyTargets);
+		dirtyTargets.clear();
+		
+		for (IndexedTarget target : refreshing) {
+			unindex(target);
+			index(target);
+		}
+	}
+	
+	private void index(IndexedTarget target) {
+		List<Node> children = target.target.getChildren();
+		
+		for (int i = 0; i < children.size(); i++) {
+			Node node = children.get(i);
+			
+			// Reading the bounds validates them, so the listener hears
+			// about the next change
+			IndexedRegion region = new IndexedRegion(target, node, i, node.getBoundsInParent());
+			node.boundsInParentProperty().addListener(target.boundsListener);
+			target.regions.add(region);
+			
+			if (region.getCellCount() > MAX_REGION_CELLS) {
+				insert(oversizedRegions, region);
+				continue;
+			}
+			
+			for (int cellX = region.minCellX; cellX <= region.maxCellX; cellX++) {
+				for (int cellY = region.minCellY; cellY <= region.maxCellY; cellY++) {
+					long key = getCellKey(cellX, cellY);
+					List<IndexedRegion> cell = cells.get(key);
+					
+					if (cell == null) {
+						cell = new ArrayList<IndexedRegion>();
+						cells.put(key, cell);
+					}
+					
+					insert(cell, region);
+				}
+			}
+		}
+	}
+	
+	private void unindex(IndexedTarget target) {
+		for (IndexedRegion region : target.regions) {
+			region.node.boundsInParentProperty().removeListener(target.boundsListener);
+			
+			if (region.getCellCount() > MAX_REGION_CELLS) {
+				oversizedRegions.remove(region);
+				continue;
+			}
+			
+			for (int cellX = region.minCellX; cellX <= region.maxCellX; cellX++) {
+				for (int cellY = region.minCellY; cellY <= region.maxCellY; cellY++) {
+					long key = getCellKey(cellX, cellY);
+					List<IndexedRegion> cell = cells.get(key);
+					
+					if (cell != null) {
+						cell.remove(region);
+						if (cell.isEmpty()) cells.remove(key);
+					}
+				}
+			}
+		}
+		
+		target.regions.clear();
+	}
+	
+	private static void insert(List<IndexedRegion> cell, IndexedRegion region) {
+		int index = Collections.binarySearch(cell, region, HIT_ORDER);
+		cell.add(index < 0 ? -index - 1 : index, region);
+	}
+	
+	private static int getCell(double coordinate) {
+		return (int)Math.floor(coordinate / CELL_SIZE);
+	}
+	
+	private static long getCellKey(int cellX, int cellY) {
+		return ((long)cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+	
+	private class IndexedTarget {
+		private final Group target;
+		private final long order;
+		private final List<IndexedRegion> regions = new ArrayList<IndexedRegion>();
+		private final InvalidationListener boundsListener = (observable) -> markDirty(this);
+		private final ListChangeListener<Node> childrenListener = (change) -> markDirty(this);
+		private long generation = 0;
+		private Optional<TargetHitRaster> raster = Optional.empty();
+		private Optional<ScheduledFuture<?>> pendingRaster = Optional.empty();
+		
+		public IndexedTarget(Group target, long order) {
+			this.target = target;
+			this.order = order;
+		}
+	}
+	
+	private static class IndexedRegion {
+		private final IndexedTarget target;
+		private final Node node;
+		private final int depth;
+		private final Bounds bounds;
+		private final int minCellX;
+		private final int minCellY;
+		private final int maxCellX;
+		private final int maxCellY;
+		
+		public IndexedRegion(IndexedTarget target, Node node, int depth, Bounds bounds) {
+			this.target = target;
+			this.node = node;
+			this.depth = depth;
+			this.bounds = bounds;
+			
+			minCellX = getCell(clamp(bounds.getMinX()));
+			minCellY = getCell(clamp(bounds.getMinY()));
+			maxCellX = getCell(clamp(bounds.getMaxX()));
+			maxCellY = getCell(clamp(bounds.getMaxY()));
+		}
+		
+		// Keeps empty or enormous bounds from overflowing the cell math
+		private static double clamp(double coordinate) {
+			if (Double.isNaN(coordinate)) return 0;
+			
+			return Math.max(-(double)Integer.MAX_VALUE, Math.min(Integer.MAX_VALUE, coordinate));
+		}
+		
+		public long getCellCount() {
+			if (maxCellX < minCellX || maxCellY < minCellY) return 0;
+			
+			return ((long)maxCellX - minCellX + 1) * ((long)maxCellY - minCellY + 1);
+		}
+	}
+}
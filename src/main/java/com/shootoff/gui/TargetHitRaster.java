@@ -0,0 +1,337 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import java.awt.BasicStroke;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+import com.shootoff.targets.RegionType;
+import com.shootoff.targets.TargetRegion;
+
+import javafx.geometry.Bounds;
+import javafx.scene.Node;
+import javafx.scene.shape.Ellipse;
+import javafx.scene.shape.FillRule;
+import javafx.scene.shape.Polygon;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.shape.StrokeLineJoin;
+import javafx.scene.shape.StrokeType;
+import javafx.scene.transform.Transform;
+
+/**
+ * A target's regions drawn into an off-heap raster at the target's current
+ * position and scale, with one short per pixel naming the top most region
+ * that covers the pixel. Looking up the region hit by a shot is then one
+ * read instead of a geometric test per region.
+ * 
+ * A pixel only names a region if the region covers the whole pixel and no
+ * region above it touches the pixel. Pixels crossed by any region's edge
+ * (including regions smaller than a pixel), and pixels covered by an image
+ * region (whose transparent pixels don't count as hits and may change as it
+ * animates), are marked <tt>CHECK_REGIONS</tt> so the caller falls back to
+ * the geometric tests for them.
+ * 
+ * Rasters are built from a RegionGeometry, an immutable copy of the
+ * regions' shapes that is captured on the FX thread, so building a raster
+ * on another thread never reads live scene nodes.
+ */
+public class TargetHitRaster {
+	public static final short NO_REGION = 0;
+	public static final short CHECK_REGIONS = -1;
+	
+	// Larger targets (e.g. a target scaled to fill a projector) would need
+	// more than 2 MB each, so they are always checked geometrically
+	public static final int MAX_PIXELS = 1 << 20;
+	
+	// Pixels are tested for touching a region with this much slack, so a
+	// shot exactly on a pixel's edge is checked against regions that end
+	// there
+	private static final double EDGE_SLACK = 1e-6;
+	
+	private final Node[] regions;
+	private final int minX;
+	private final int minY;
+	private final int width;
+	private final int height;
+	private final ShortBuffer raster;
+	
+	private TargetHitRaster(Node[] regions, int minX, int minY, int width, int height) {
+		this.regions = regions;
+		this.minX = minX;
+		this.minY = minY;
+		this.width = width;
+		this.height = height;
+		
+		raster = ByteBuffer.allocateDirect(width * height * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+	}
+	
+	/**
+	 * Captures and rasterizes a target's regions on the calling thread.
+	 * 
+	 * @see #build(RegionGeometry, BooleanSupplier)
+	 */
+	public static Optional<TargetHitRaster> build(List<Node> regions, BooleanSupplier cancelled) {
+		return build(RegionGeometry.capture(regions), cancelled);
+	}
+	
+	/**
+	 * Rasterizes a target's regions. May be called from any thread.
+	 * 
+	 * @param geometry	the target's regions
+	 * @param cancelled	checked after each row, e.g. to stop building a raster
+	 * 					for a target that moved again
+	 * @return the raster, or empty if the target is too large or building it
+	 * 		was cancelled
+	 */
+	public static Optional<TargetHitRaster> build(RegionGeometry geometry, BooleanSupplier cancelled) {
+		Node[] nodes = geometry.nodes;
+		if (nodes.length == 0 || nodes.length >= Short.MAX_VALUE) return Optional.empty();
+		
+		double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		
+		for (Rectangle2D bounds : geometry.bounds) {
+			// Like JavaFX's bounds, only negative sizes are empty
+			if (bounds.getWidth() < 0 || bounds.getHeight() < 0) continue;
+			
+			minX = Math.min(minX, bounds.getMinX());
+			minY = Math.min(minY, bounds.getMinY());
+			maxX = Math.max(maxX, bounds.getMaxX());
+			maxY = Math.max(maxY, bounds.getMaxY());
+		}
+		
+		if (minX > maxX || minY > maxY) return Optional.empty();
+		
+		long width = (long)Math.ceil(maxX) - (long)Math.floor(minX) + 1;
+		long height = (long)Math.ceil(maxY) - (long)Math.floor(minY) + 1;
+		if (width * height > MAX_PIXELS) return Optional.empty();
+		
+		TargetHitRaster hitRaster = new TargetHitRaster(nodes, (int)Math.floor(minX), (int)Math.floor(minY),
+				(int)width, (int)height);
+		
+		if (!hitRaster.fill(geometry, cancelled)) return Optional.empty();
+		
+		return Optional.of(hitRaster);
+	}
+	
+	private boolean fill(RegionGeometry geometry, BooleanSupplier cancelled) {
+		Rectangle2D pixel = new Rectangle2D.Double();
+		Rectangle2D touching = new Rectangle2D.Double();
+		
+		for (int y = 0; y < height; y++) {
+			if (cancelled.getAsBoolean()) return false;
+			
+			for (int x = 0; x < width; x++) {
+				pixel.setRect(minX + x, minY + y, 1, 1);
+				touching.setRect(minX + x - EDGE_SLACK, minY + y - EDGE_SLACK, 1 + EDGE_SLACK * 2,
+						1 + EDGE_SLACK * 2);
+				
+				raster.put(y * width + x, geometry.sample(pixel, touching));
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @return the index of the top most region at the point plus one,
+	 * 		<tt>NO_REGION</tt> if no region covers the point, or
+	 * 		<tt>CHECK_REGIONS</tt> if the regions must be tested
+	 */
+	public short getRegion(double x, double y) {
+		int pixelX = (int)Math.floor(x) - minX;
+		int pixelY = (int)Math.floor(y) - minY;
+		
+		if (pixelX < 0 || pixelY < 0 || pixelX >= width || pixelY >= height) return NO_REGION;
+		
+		return raster.get(pixelY * width + pixelX);
+	}
+	
+	/**
+	 * @param region	a value returned by <tt>getRegion</tt> that names a region
+	 */
+	public Node getRegionNode(short region) {
+		return regions[region - 1];
+	}
+	
+	/**
+	 * A copy of a target's regions in the target's coordinates, which later
+	 * changes to the regions don't affect.
+	 */
+	public static class RegionGeometry {
+		private final Node[] nodes;
+		private final Rectangle2D[] bounds;
+		// Null for regions that must always be tested geometrically
+		private final Shape[] fills;
+		// Null for regions whose stroke doesn't add to their fill
+		private final Shape[] strokes;
+		
+		private RegionGeometry(Node[] nodes) {
+			this.nodes = nodes;
+			bounds = new Rectangle2D[nodes.length];
+			fills = new Shape[nodes.length];
+			strokes = new Shape[nodes.length];
+		}
+		
+		/**
+		 * Copies the regions' shapes. Must be called on the FX thread when
+		 * the regions are in a live scene.
+		 * 
+		 * @param regions	the target's regions from the bottom most to the
+		 * 					top most
+		 */
+		public static RegionGeometry capture(List<Node> regions) {
+			RegionGeometry geometry = new RegionGeometry(regions.toArray(new Node[regions.size()]));
+			
+			for (int i = 0; i < geometry.nodes.length; i++) {
+				Node node = geometry.nodes[i];
+				
+				Bounds bounds = node.getBoundsInParent();
+				geometry.bounds[i] = new Rectangle2D.Double(bounds.getMinX(), bounds.getMinY(), bounds.getWidth(),
+						bounds.getHeight());
+				
+				Optional<Shape> fill = getFill(node);
+				
+				if (fill.isPresent()) {
+					AffineTransform toParent = toAffineTransform(node.getLocalToParentTransform());
+					
+					geometry.fills[i] = toParent.createTransformedShape(fill.get());
+					
+					Optional<Shape> stroke = getStroke((javafx.scene.shape.Shape)node, fill.get());
+					if (stroke.isPresent()) geometry.strokes[i] = toParent.createTransformedShape(stroke.get());
+				}
+			}
+			
+			return geometry;
+		}
+		
+		// Image regions, and shapes this class doesn't know, are left empty
+		// so every pixel they touch is checked geometrically
+		private static Optional<Shape> getFill(Node node) {
+			if (node instanceof TargetRegion && ((TargetRegion)node).getType() == RegionType.IMAGE) {
+				return Optional.empty();
+			}
+			
+			if (node instanceof Rectangle) {
+				Rectangle rectangle = (Rectangle)node;
+				return Optional.of(new RoundRectangle2D.Double(rectangle.getX(), rectangle.getY(),
+						rectangle.getWidth(), rectangle.getHeight(), rectangle.getArcWidth(),
+						rectangle.getArcHeight()));
+			} else if (node instanceof Ellipse) {
+				Ellipse ellipse = (Ellipse)node;
+				return Optional.of(new Ellipse2D.Double(ellipse.getCenterX() - ellipse.getRadiusX(),
+						ellipse.getCenterY() - ellipse.getRadiusY(), ellipse.getRadiusX() * 2,
+						ellipse.getRadiusY() * 2));
+			} else if (node instanceof Polygon) {
+				Polygon polygon = (Polygon)node;
+				List<Double> points = polygon.getPoints();
+				Path2D path = new Path2D.Double(polygon.getFillRule() == FillRule.EVEN_ODD ?
+						Path2D.WIND_EVEN_ODD : Path2D.WIND_NON_ZERO);
+				
+				for (int i = 0; i + 1 < points.size(); i += 2) {
+					if (i == 0) {
+						path.moveTo(points.get(i), points.get(i + 1));
+					} else {
+						path.lineTo(points.get(i), points.get(i + 1));
+					}
+				}
+				
+				if (points.size() >= 2) path.closePath();
+				
+				return Optional.of(path);
+			}
+			
+			return Optional.empty();
+		}
+		
+		// A selected target's regions are stroked, and JavaFX counts the
+		// part of the stroke outside the fill as part of the shape
+		private static Optional<Shape> getStroke(javafx.scene.shape.Shape shape, Shape fill) {
+			if (shape.getStroke() == null || shape.getStrokeWidth() <= 0) return Optional.empty();
+			
+			float width;
+			if (shape.getStrokeType() == StrokeType.OUTSIDE) {
+				width = (float)shape.getStrokeWidth() * 2;
+			} else if (shape.getStrokeType() == StrokeType.CENTERED) {
+				width = (float)shape.getStrokeWidth();
+			} else {
+				return Optional.empty();
+			}
+			
+			int join;
+			if (shape.getStrokeLineJoin() == StrokeLineJoin.ROUND) {
+				join = BasicStroke.JOIN_ROUND;
+			} else if (shape.getStrokeLineJoin() == StrokeLineJoin.BEVEL) {
+				join = BasicStroke.JOIN_BEVEL;
+			} else {
+				join = BasicStroke.JOIN_MITER;
+			}
+			
+			BasicStroke stroke = new BasicStroke(width, BasicStroke.CAP_SQUARE, join,
+					(float)Math.max(1, shape.getStrokeMiterLimit()));
+			
+			return Optional.of(stroke.createStrokedShape(fill));
+		}
+		
+		private static AffineTransform toAffineTransform(Transform transform) {
+			return new AffineTransform(transform.getMxx(), transform.getMyx(), transform.getMxy(),
+					transform.getMyy(), transform.getTx(), transform.getTy());
+		}
+		
+		// A region names the pixel if it covers all of it. A region that only
+		// touches the pixel, or can't be tested here, means the pixel must be
+		// checked. Shape's tests may be conservative, but only ever towards
+		// checking the pixel
+		private short sample(Rectangle2D pixel, Rectangle2D touching) {
+			for (int i = nodes.length - 1; i >= 0; i--) {
+				if (!intersectsClosed(bounds[i], touching)) continue;
+				
+				if (fills[i] == null) return CHECK_REGIONS;
+				
+				if (fills[i].contains(pixel) || (strokes[i] != null && strokes[i].contains(pixel))) {
+					return (short)(i + 1);
+				}
+				
+				if (fills[i].intersects(touching) || (strokes[i] != null && strokes[i].intersects(touching))) {
+					return CHECK_REGIONS;
+				}
+			}
+			
+			return NO_REGION;
+		}
+		
+		// Unlike Rectangle2D.intersects, counts bounds with no width or
+		// height, which JavaFX doesn't treat as empty
+		private static boolean intersectsClosed(Rectangle2D bounds, Rectangle2D rect) {
+			return bounds.getMinX() <= rect.getMaxX() && bounds.getMaxX() >= rect.getMinX() &&
+					bounds.getMinY() <= rect.getMaxY() && bounds.getMaxY() >= rect.getMinY();
+		}
+	}
+}
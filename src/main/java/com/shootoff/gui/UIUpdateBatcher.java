@@ -0,0 +1,176 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.metrics.Histogram;
+import com.shootoff.camera.metrics.HistogramSnapshot;
+import com.shootoff.camera.metrics.MetricsRegistry;
+
+import javafx.application.Platform;
+
+/**
+ * Collects updates to the scene from shot processing (shot markers, shot
+ * timer rows, protocol column values, feed labels) and applies everything
+ * that piles up between two pulses with a single <tt>Platform.runLater</tt>.
+ * Several cameras firing strings of shots then add one runnable to the FX
+ * queue instead of several per shot.
+ * 
+ * Ordered updates run in the order they were submitted. Keyed updates only
+ * keep the latest update for each key (e.g. a label's text or the shot
+ * timer table's scroll position) and run after the ordered updates,
+ * including keyed updates submitted by the ordered updates themselves.
+ */
+public class UIUpdateBatcher implements UIUpdateBatcherMXBean {
+	private static final UIUpdateBatcher instance = new UIUpdateBatcher(Platform::runLater);
+	
+	static {
+		MetricsRegistry.publish("UIUpdates", instance);
+	}
+	
+	private final Logger logger = LoggerFactory.getLogger(UIUpdateBatcher.class);
+	private final Consumer<Runnable> scheduler;
+	
+	private List<Runnable> orderedUpdates = new ArrayList<Runnable>();
+	private Map<Object, Runnable> keyedUpdates = new IdentityHashMap<Object, Runnable>();
+	private int pendingUpdates = 0;
+	private boolean scheduled = false;
+	
+	private final AtomicLong pulses = new AtomicLong();
+	private final AtomicLong submittedUpdates = new AtomicLong();
+	private final AtomicLong supersededUpdates = new AtomicLong();
+	private final Histogram updatesPerPulse = new Histogram();
+	
+	/**
+	 * @param scheduler	puts a runnable on the thread that owns the scene
+	 */
+	protected UIUpdateBatcher(Consumer<Runnable> scheduler) {
+		this.scheduler = scheduler;
+	}
+	
+	public static UIUpdateBatcher getInstance() {
+		return instance;
+	}
+	
+	/**
+	 * Runs <tt>update</tt> on the FX thread after every ordered update
+	 * submitted before it.
+	 */
+	public synchronized void runLater(Runnable update) {
+		orderedUpdates.add(update);
+		submitted();
+	}
+	
+	/**
+	 * Runs <tt>update</tt> on the FX thread unless another update with the
+	 * same <tt>key</tt> is submitted before the next pulse, in which case
+	 * only the newer one runs.
+	 */
+	public synchronized void runLatest(Object key, Runnable update) {
+		if (keyedUpdates.put(key, update) != null) supersededUpdates.incrementAndGet();
+		submitted();
+	}
+	
+	private void submitted() {
+		submittedUpdates.incrementAndGet();
+		pendingUpdates++;
+		
+		if (!scheduled) {
+			scheduled = true;
+			scheduler.accept(this::applyUpdates);
+		}
+	}
+	
+	protected void applyUpdates() {
+		List<Runnable> ordered;
+		
+		synchronized (this) {
+			ordered = orderedUpdates;
+			orderedUpdates = new ArrayList<Runnable>();
+		}
+		
+		for (Runnable update : ordered) apply(update);
+		
+		Map<Object, Runnable> keyed;
+		int updateCount;
+		
+		synchronized (this) {
+			keyed = keyedUpdates;
+			keyedUpdates = new IdentityHashMap<Object, Runnable>();
+			
+			// Ordered updates submitted while this pulse ran are left for
+			// the next one
+			updateCount = pendingUpdates - orderedUpdates.size();
+			pendingUpdates = orderedUpdates.size();
+			
+			if (orderedUpdates.isEmpty()) {
+				scheduled = false;
+			} else {
+				scheduler.accept(this::applyUpdates);
+			}
+		}
+		
+		for (Runnable update : keyed.values()) apply(update);
+		
+		pulses.incrementAndGet();
+		updatesPerPulse.record(updateCount);
+	}
+	
+	private void apply(Runnable update) {
+		try {
+			update.run();
+		} catch (RuntimeException e) {
+			logger.error("Failed to apply a UI update", e);
+		}
+	}
+	
+	@Override
+	public long getPulses() {
+		return pulses.get();
+	}
+	
+	@Override
+	public long getSubmittedUpdates() {
+		return submittedUpdates.get();
+	}
+	
+	@Override
+	public long getSupersededUpdates() {
+		return supersededUpdates.get();
+	}
+	
+	@Override
+	public HistogramSnapshot getUpdatesPerPulse() {
+		return updatesPerPulse.getSnapshot();
+	}
+	
+	@Override
+	public void reset() {
+		updatesPerPulse.reset();
+	}
+}
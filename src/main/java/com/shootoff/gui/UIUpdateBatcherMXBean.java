@@ -0,0 +1,49 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.gui;
+
+import com.shootoff.camera.metrics.HistogramSnapshot;
+
+/**
+ * The JMX view of the UIUpdateBatcher.
+ */
+public interface UIUpdateBatcherMXBean {
+	/**
+	 * @return the number of runnables the batcher has put on the FX queue
+	 */
+	public long getPulses();
+	
+	/**
+	 * @return the number of updates that were submitted
+	 */
+	public long getSubmittedUpdates();
+	
+	/**
+	 * @return updates that were replaced by a newer update with the same key
+	 * 		before they were applied
+	 */
+	public long getSupersededUpdates();
+	
+	/**
+	 * @return the number of updates coalesced into each pulse's runnable
+	 */
+	public HistogramSnapshot getUpdatesPerPulse();
+	
+	public void reset();
+}
@@ -33,12 +33,15 @@ import marytts.util.io.FileFilter;
 import com.github.sarxos.webcam.Webcam;
 import com.shootoff.camera.CameraManager;
 import com.shootoff.camera.CamerasSupervisor;
+import com.shootoff.camera.RawFrameWriter;
+import com.shootoff.camera.Shot;
 import com.shootoff.config.Configuration;
 import com.shootoff.gui.CameraConfigListener;
 import com.shootoff.gui.CanvasManager;
 import com.shootoff.gui.ShotEntry;
 import com.shootoff.gui.ShotSectorPane;
 import com.shootoff.gui.TargetListener;
+import com.shootoff.gui.UIUpdateBatcher;
 import com.shootoff.plugins.DuelingTree;
 import com.shootoff.plugins.ISSFStandardPistol;
 import com.shootoff.plugins.ProjectorTrainingProtocolBase;
@@ -49,7 +52,6 @@ import com.shootoff.plugins.TimedHolsterDrill;
 import com.shootoff.plugins.TrainingProtocol;
 import com.shootoff.plugins.TrainingProtocolBase;
 import com.shootoff.targets.RectangleRegion;
-import com.shootoff.targets.TargetRegion;
 import com.shootoff.targets.io.TargetIO;
 
 import javafx.application.Platform;
@@ -157,7 +159,7 @@ public class ShootOFFController implements CameraConfigListener, TargetListener
 	        {
 	        	change.next();
 	        	if (change.getAddedSize() < 1) return;
-	        	Platform.runLater(() -> {
+	        	UIUpdateBatcher.getInstance().runLatest(shotTimerTable, () -> {
 	        			final int size = shotTimerTable.getItems().size();
 	        			if (size > 0) shotTimerTable.scrollTo(size - 1);
 	        		});
@@ -170,11 +172,11 @@ public class ShootOFFController implements CameraConfigListener, TargetListener
 	        {
 	        	while (change.next()) {
 		        	for (ShotEntry unselected : change.getRemoved()) {
-		        		unselected.getShot().getMarker().setFill(unselected.getShot().getColor());
+		        		setShotSelected(unselected.getShot(), false);
 		        	}
 		        	
 		        	for (ShotEntry selected : change.getAddedSubList()) {
-		        		selected.getShot().getMarker().setFill(TargetRegion.SELECTED_STROKE_COLOR);
+		        		setShotSelected(selected.getShot(), true);
 		        	}
 	        	}
 	        }
@@ -191,6 +193,12 @@ public class ShootOFFController implements CameraConfigListener, TargetListener
 		addConfiguredCameras();
 	}
 	
+	private void setShotSelected(Shot shot, boolean selected) {
+		for (CanvasManager canvasManager : camerasSupervisor.getCanvasManagers()) {
+			if (canvasManager.setShotSelected(shot, selected)) return;
+		}
+	}
+	
 	private void addConfiguredCameras() {
 		cameraTabPane.getTabs().clear();
 		camerasSupervisor.clearManagers();
@@ -285,6 +293,19 @@ public class ShootOFFController implements CameraConfigListener, TargetListener
 		
 		contextMenu.getItems().add(toggleDetectionSectors);
 		
+		MenuItem togglePerformanceOverlay = new MenuItem("Toggle Performance Overlay");
+		
+		togglePerformanceOverlay.setOnAction((event) -> {
+				CameraManager cameraManager = camerasSupervisor.getCameraManager(
+						cameraTabPane.getSelectionModel().getSelectedIndex());
+				CanvasManager canvasManager = cameraManager.getCanvasManager();
+				
+				canvasManager.setShowPerformanceOverlay(!canvasManager.isShowingPerformanceOverlay(),
+						cameraManager.getMetrics());
+			});
+		
+		contextMenu.getItems().add(togglePerformanceOverlay);
+		
 		if (config.inDebugMode()) {
 			MenuItem startStreamDebuggerMenuItem = new MenuItem("Start Stream Debugger");
 			
@@ -336,6 +357,29 @@ public class ShootOFFController implements CameraConfigListener, TargetListener
 				});
 			
 			contextMenu.getItems().add(recordMenuItem);
+			
+			MenuItem rawCaptureMenuItem = new MenuItem("Start Raw Capture");
+			
+			rawCaptureMenuItem.setOnAction((event) -> {
+					CameraManager cameraManager = camerasSupervisor.getCameraManager(
+							cameraTabPane.getSelectionModel().getSelectedIndex());
+				
+					if (cameraManager.isRawCapturing()) {
+						rawCaptureMenuItem.setText("Start Raw Capture");
+						cameraManager.stopRawCapture();
+					} else {
+						String tabName = cameraTabPane.getSelectionModel().getSelectedItem().getText();
+						
+						try {
+							cameraManager.startRawCapture(new File(tabName + RawFrameWriter.EXTENSION));
+							rawCaptureMenuItem.setText("Stop Raw Capture");
+						} catch (IOException e) {
+							e.printStackTrace();
+						}
+					}
+				});
+			
+			contextMenu.getItems().add(rawCaptureMenuItem);
 		}
 		
 		return contextMenu;
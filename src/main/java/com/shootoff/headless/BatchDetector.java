@@ -0,0 +1,183 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.CameraManager;
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+/**
+ * Detects shots in recorded videos from the command line, without starting
+ * JavaFX. Each video is decoded as fast as possible on its own thread and
+ * the shots from every video are written to one CSV or JSON report, e.g. to
+ * re-score archived sessions or to compare detection settings:
+ * 
+ * <pre>
+ * java com.shootoff.headless.BatchDetector -f json -o shots.json a.mp4 b.mp4 -- -i 200
+ * </pre>
+ * 
+ * Arguments after <tt>--</tt> are ShootOFF's own options and override the
+ * configuration file. Raw captures (<tt>.raw</tt>) are read without
+ * decoding and give exactly the frames the camera captured.
+ */
+public class BatchDetector {
+	private static final Logger logger = LoggerFactory.getLogger(BatchDetector.class);
+	
+	private BatchDetector() {}
+	
+	public static void main(String[] args) {
+		System.exit(run(args, System.out));
+	}
+	
+	/**
+	 * @return the process' exit status: 0 if every video was processed, 1 if
+	 * 		any video failed, or 2 if the arguments were invalid
+	 */
+	protected static int run(String[] args, OutputStream defaultOutput) {
+		int split = Arrays.asList(args).indexOf("--");
+		String[] batchArgs = split < 0 ? args : Arrays.copyOfRange(args, 0, split);
+		String[] configArgs = split < 0 ? new String[0] : Arrays.copyOfRange(args, split + 1, args.length);
+		
+		Options options = new Options();
+		options.addOption("h", "help", false, "show this help");
+		options.addOption("c", "config", true, "load settings from this ShootOFF configuration file");
+		options.addOption("o", "output", true, "write shots to this file instead of standard output");
+		options.addOption("f", "format", true, "write shots as csv or json (default csv)");
+		options.addOption("t", "threads", true, 
+				"process this many videos at once (default is the number of processors)");
+		options.addOption("b", "bloom-count", true, 
+				"sets the number of past frames a pixel must have been dark in to be a shot (default " +
+				CameraManager.DEFAULT_BLOOM_COUNT + ")");
+		options.addOption("n", "no-dedup", false, "keep shots that look like repeats of the previous shot");
+		
+		CommandLine cmd;
+		ShotReportWriter.Format format;
+		int threads;
+		int bloomCount;
+		Configuration config;
+		
+		try {
+			CommandLineParser parser = new DefaultParser();
+			cmd = parser.parse(options, batchArgs);
+			
+			if (cmd.hasOption("h") || cmd.getArgList().isEmpty()) {
+				printHelp(options);
+				return cmd.hasOption("h") ? 0 : 2;
+			}
+			
+			format = ShotReportWriter.Format.valueOf(cmd.getOptionValue("f", "csv").toUpperCase());
+			threads = Integer.parseInt(cmd.getOptionValue("t", 
+					String.valueOf(Runtime.getRuntime().availableProcessors())));
+			bloomCount = Integer.parseInt(cmd.getOptionValue("b", 
+					String.valueOf(CameraManager.DEFAULT_BLOOM_COUNT)));
+			
+			if (threads < 1 || bloomCount < 1) throw new NumberFormatException("must be at least 1");
+			
+			if (cmd.hasOption("c")) {
+				config = new Configuration(cmd.getOptionValue("c"), configArgs);
+			} else {
+				config = new Configuration(configArgs);
+			}
+		} catch (ParseException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			printHelp(options);
+			return 2;
+		} catch (IOException | ConfigurationException e) {
+			System.err.println("Could not load the configuration: " + e.getMessage());
+			return 2;
+		}
+		
+		List<VideoShotDetector> detectors = new ArrayList<VideoShotDetector>();
+		for (String videoPath : cmd.getArgList()) {
+			VideoShotDetector detector = new VideoShotDetector(config, new File(videoPath), bloomCount);
+			detector.setDeduplicating(!cmd.hasOption("n"));
+			detectors.add(detector);
+		}
+		
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, detectors.size()));
+		List<Future<List<DetectedShot>>> results = new ArrayList<Future<List<DetectedShot>>>();
+		for (VideoShotDetector detector : detectors) results.add(executor.submit(detector));
+		executor.shutdown();
+		
+		List<DetectedShot> shots = new ArrayList<DetectedShot>();
+		long frames = 0;
+		boolean failed = false;
+		
+		for (int i = 0; i < detectors.size(); i++) {
+			try {
+				shots.addAll(results.get(i).get());
+				frames += detectors.get(i).getFrameCount();
+			} catch (ExecutionException | InterruptedException e) {
+				logger.error("Failed to detect shots in " + detectors.get(i).getVideoFile().getPath(), e);
+				failed = true;
+			}
+		}
+		
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		logger.info("Found {} shots in {} frames of {} videos in {} ms ({} frames per second)", shots.size(),
+				frames, detectors.size(), elapsed, frames * 1000 / elapsed);
+		
+		try {
+			if (cmd.hasOption("o")) {
+				try (Writer out = new OutputStreamWriter(new FileOutputStream(cmd.getOptionValue("o")),
+						StandardCharsets.UTF_8)) {
+					ShotReportWriter.write(format, shots, out);
+				}
+			} else {
+				ShotReportWriter.write(format, shots, new OutputStreamWriter(defaultOutput, StandardCharsets.UTF_8));
+			}
+		} catch (IOException e) {
+			logger.error("Failed to write the shot report", e);
+			return 1;
+		}
+		
+		return failed ? 1 : 0;
+	}
+	
+	private static void printHelp(Options options) {
+		HelpFormatter formatter = new HelpFormatter();
+		formatter.printHelp("com.shootoff.headless.BatchDetector [options] video... [-- shootoff options]", 
+				options);
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.geometry.Point2D;
+
+/**
+ * How well detection did on one recorded clip, or on a whole corpus of
+ * clips, compared to the clip's ground truth.
+ * 
+ * A detected shot counts as a true positive if it is the closest unmatched
+ * detection to a real shot and no farther than the match distance from
+ * it. Each real shot is matched once, in the order the shots happened.
+ */
+public class ClipResult {
+	private final String name;
+	private final int realShots;
+	private final int detectedShots;
+	private final int matchedShots;
+	private final double errorSum;
+	private final double maxError;
+	private final long frames;
+	private final long elapsedMillis;
+	// Nanoseconds, sorted
+	private final long[] frameLatencies;
+	
+	protected ClipResult(String name, int realShots, int detectedShots, int matchedShots, double errorSum,
+			double maxError, long frames, long elapsedMillis, long[] frameLatencies) {
+		
+		this.name = name;
+		this.realShots = realShots;
+		this.detectedShots = detectedShots;
+		this.matchedShots = matchedShots;
+		this.errorSum = errorSum;
+		this.maxError = maxError;
+		this.frames = frames;
+		this.elapsedMillis = elapsedMillis;
+		this.frameLatencies = frameLatencies.clone();
+		Arrays.sort(this.frameLatencies);
+	}
+	
+	/**
+	 * @param maxDistance		how far in pixels a detection may be from a real shot
+	 * 							to count as that shot
+	 * @param frameLatencies	how long each frame took to process in nanoseconds
+	 */
+	public static ClipResult evaluate(String name, List<Point2D> realShots, List<DetectedShot> detectedShots,
+			double maxDistance, long frames, long elapsedMillis, long[] frameLatencies) {
+		
+		boolean[] matched = new boolean[detectedShots.size()];
+		int matchedShots = 0;
+		double errorSum = 0;
+		double maxError = 0;
+		
+		for (Point2D realShot : realShots) {
+			int closest = -1;
+			double closestDistance = maxDistance;
+			
+			for (int i = 0; i < detectedShots.size(); i++) {
+				if (matched[i]) continue;
+				
+				double distance = realShot.distance(detectedShots.get(i).getX(), detectedShots.get(i).getY());
+				if (distance <= closestDistance) {
+					closest = i;
+					closestDistance = distance;
+				}
+			}
+			
+			if (closest < 0) continue;
+			
+			matched[closest] = true;
+			matchedShots++;
+			errorSum += closestDistance;
+			maxError = Math.max(maxError, closestDistance);
+		}
+		
+		return new ClipResult(name, realShots.size(), detectedShots.size(), matchedShots, errorSum, maxError,
+				frames, elapsedMillis, frameLatencies);
+	}
+	
+	/**
+	 * Combines the results of clips that were processed at the same time.
+	 * 
+	 * @param elapsedMillis	the wall clock time it took to process every clip
+	 */
+	public static ClipResult combine(String name, List<ClipResult> results, long elapsedMillis) {
+		int realShots = 0, detectedShots = 0, matchedShots = 0;
+		double errorSum = 0, maxError = 0;
+		long frames = 0;
+		int latencyCount = 0;
+		
+		for (ClipResult result : results) {
+			realShots += result.realShots;
+			detectedShots += result.detectedShots;
+			matchedShots += result.matchedShots;
+			errorSum += result.errorSum;
+			maxError = Math.max(maxError, result.maxError);
+			frames += result.frames;
+			latencyCount += result.frameLatencies.length;
+		}
+		
+		long[] frameLatencies = new long[latencyCount];
+		int copied = 0;
+		for (ClipResult result : results) {
+			System.arraycopy(result.frameLatencies, 0, frameLatencies, copied, result.frameLatencies.length);
+			copied += result.frameLatencies.length;
+		}
+		
+		return new ClipResult(name, realShots, detectedShots, matchedShots, errorSum, maxError, frames,
+				elapsedMillis, frameLatencies);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int getRealShots() {
+		return realShots;
+	}
+	
+	public int getDetectedShots() {
+		return detectedShots;
+	}
+	
+	public int getMatchedShots() {
+		return matchedShots;
+	}
+	
+	/**
+	 * @return the fraction of detected shots that were real shots, or 1 if
+	 * 		nothing was detected
+	 */
+	public double getPrecision() {
+		return detectedShots == 0 ? 1 : (double)matchedShots / detectedShots;
+	}
+	
+	/**
+	 * @return the fraction of real shots that were detected, or 1 if there
+	 * 		were no real shots
+	 */
+	public double getRecall() {
+		return realShots == 0 ? 1 : (double)matchedShots / realShots;
+	}
+	
+	/**
+	 * @return the average distance in pixels between matched shots and the
+	 * 		real shots they matched
+	 */
+	public double getMeanError() {
+		return matchedShots == 0 ? 0 : errorSum / matchedShots;
+	}
+	
+	public double getMaxError() {
+		return maxError;
+	}
+	
+	public long getFrames() {
+		return frames;
+	}
+	
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+	
+	public double getFramesPerSecond() {
+		return frames * 1000.0 / Math.max(1, elapsedMillis);
+	}
+	
+	/**
+	 * @param percentile	between 0 and 100
+	 * @return the per frame processing time in milliseconds that
+	 * 		<tt>percentile</tt> percent of frames took at most, using the
+	 * 		nearest rank
+	 */
+	public double getLatencyPercentile(double percentile) {
+		if (frameLatencies.length == 0) return 0;
+		
+		int rank = (int)Math.ceil(percentile / 100 * frameLatencies.length);
+		return frameLatencies[Math.max(0, Math.min(frameLatencies.length, rank) - 1)] / 1e6;
+	}
+}
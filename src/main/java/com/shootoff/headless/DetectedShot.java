@@ -0,0 +1,81 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import javafx.scene.paint.Color;
+
+/**
+ * A shot found in a recorded video.
+ */
+public class DetectedShot {
+	private final String videoName;
+	private final long frameIndex;
+	private final long timestamp;
+	private final double x;
+	private final double y;
+	private final Color color;
+	
+	public DetectedShot(String videoName, long frameIndex, long timestamp, double x, double y, Color color) {
+		this.videoName = videoName;
+		this.frameIndex = frameIndex;
+		this.timestamp = timestamp;
+		this.x = x;
+		this.y = y;
+		this.color = color;
+	}
+	
+	public String getVideoName() {
+		return videoName;
+	}
+	
+	/**
+	 * @return the index of the frame the shot was found in, starting at 0
+	 */
+	public long getFrameIndex() {
+		return frameIndex;
+	}
+	
+	/**
+	 * @return the frame's position in the video in milliseconds
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+	
+	public double getX() {
+		return x;
+	}
+	
+	public double getY() {
+		return y;
+	}
+	
+	public Color getColor() {
+		return color;
+	}
+	
+	/**
+	 * @return "red", "green", or the color's web value for any other color
+	 */
+	public String getColorName() {
+		if (Color.RED.equals(color)) return "red";
+		if (Color.GREEN.equals(color)) return "green";
+		return color.toString();
+	}
+}
@@ -0,0 +1,81 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javafx.geometry.Point2D;
+
+/**
+ * Reads the shots that really happened in a recorded clip from the debug log
+ * saved next to it (<tt>clip.mp4_log.txt</tt> for <tt>clip.mp4</tt>). Every
+ * shot CanvasManager processed, whether or not it hit a target, is a real
+ * shot; suspected shots that were rejected (e.g. as duplicates) are not.
+ */
+public final class GroundTruth {
+	public static final String LOG_SUFFIX = "_log.txt";
+	
+	private static final String PROCESSED_SHOT = "Processing Shot:";
+	private static final String REJECTED_SHOT = "Shot Rejected";
+	private static final Pattern SHOT_COORDS = Pattern.compile(
+			"For Shot \\((-?\\d+(?:\\.\\d+)?), (-?\\d+(?:\\.\\d+)?)\\)");
+	
+	private GroundTruth() {}
+	
+	public static File getLogFile(File videoFile) {
+		return new File(videoFile.getPath() + LOG_SUFFIX);
+	}
+	
+	public static boolean hasLog(File videoFile) {
+		return getLogFile(videoFile).isFile();
+	}
+	
+	/**
+	 * @return the real shots in the order they happened
+	 */
+	public static List<Point2D> load(File logFile) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(logFile.toPath(), StandardCharsets.UTF_8)) {
+			return parse(reader);
+		}
+	}
+	
+	protected static List<Point2D> parse(BufferedReader reader) throws IOException {
+		List<Point2D> shots = new ArrayList<Point2D>();
+		
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (!line.contains(PROCESSED_SHOT) || line.contains(REJECTED_SHOT)) continue;
+			
+			Matcher matcher = SHOT_COORDS.matcher(line);
+			if (matcher.find()) {
+				shots.add(new Point2D(Double.parseDouble(matcher.group(1)), Double.parseDouble(matcher.group(2))));
+			}
+		}
+		
+		return shots;
+	}
+}
@@ -0,0 +1,130 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.FrameSource;
+import com.shootoff.camera.RawFrameWriter;
+import com.xuggle.mediatool.IMediaReader;
+import com.xuggle.mediatool.MediaListenerAdapter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.mediatool.event.IVideoPictureEvent;
+
+/**
+ * Converts a recorded video, e.g. an MP4 from "Start Recording", to a raw
+ * capture so that it can be replayed without decoding:
+ * 
+ * <pre>
+ * java com.shootoff.headless.RawCaptureConverter session.mp4 session.raw
+ * </pre>
+ * 
+ * Frame timestamps are the video's timestamps, starting at 0. The video's
+ * compression artifacts are kept, so only captures made with raw capture
+ * are exact copies of what the camera saw.
+ */
+public class RawCaptureConverter extends MediaListenerAdapter {
+	private static final Logger logger = LoggerFactory.getLogger(RawCaptureConverter.class);
+	
+	private final File videoFile;
+	private final File rawFile;
+	private Optional<RawFrameWriter> writer = Optional.empty();
+	private Optional<ByteBuffer> pixels = Optional.empty();
+	
+	public RawCaptureConverter(File videoFile, File rawFile) {
+		this.videoFile = videoFile;
+		this.rawFile = rawFile;
+	}
+	
+	public static void main(String[] args) {
+		if (args.length != 2) {
+			System.err.println("Usage: com.shootoff.headless.RawCaptureConverter video output" +
+					RawFrameWriter.EXTENSION);
+			System.exit(2);
+		}
+		
+		try {
+			long frames = new RawCaptureConverter(new File(args[0]), new File(args[1])).convert();
+			logger.info("Wrote {} frames to {}", frames, args[1]);
+		} catch (IOException | UncheckedIOException e) {
+			logger.error("Failed to convert " + args[0], e);
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Decodes the whole video and writes its frames to the raw capture.
+	 * 
+	 * @return the number of frames written
+	 */
+	public long convert() throws IOException {
+		IMediaReader reader = ToolFactory.makeReader(videoFile.getAbsolutePath());
+		reader.setBufferedImageTypeToGenerate(BufferedImage.TYPE_3BYTE_BGR);
+		reader.addListener(this);
+		
+		try {
+			while (reader.readPacket() == null)
+				do {} while(false);
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			if (writer.isPresent()) writer.get().close();
+		}
+		
+		if (!writer.isPresent()) throw new IOException(videoFile.getPath() + " has no video frames");
+		
+		return writer.get().getFrameCount();
+	}
+	
+	@Override
+	public void onVideoPicture(IVideoPictureEvent event) {
+		BufferedImage image = event.getImage();
+		
+		try {
+			if (!writer.isPresent()) {
+				writer = Optional.of(new RawFrameWriter(rawFile, image.getWidth(), image.getHeight()));
+				pixels = Optional.of(ByteBuffer.allocateDirect(
+						image.getWidth() * image.getHeight() * FrameSource.BYTES_PER_PIXEL));
+			}
+			
+			// The decoder hands us BGR, raw captures are RGB
+			byte[] bgr = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+			ByteBuffer rgb = pixels.get();
+			rgb.clear();
+			for (int i = 0; i < bgr.length; i += FrameSource.BYTES_PER_PIXEL) {
+				rgb.put(bgr[i + 2]).put(bgr[i + 1]).put(bgr[i]);
+			}
+			rgb.flip();
+			
+			writer.get().write(rgb, event.getTimeStamp(TimeUnit.MILLISECONDS));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
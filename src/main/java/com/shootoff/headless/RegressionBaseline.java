@@ -0,0 +1,167 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The stored results of a regression run that later runs are compared
+ * against. Accuracy is compared for every clip and speed only for the
+ * corpus as a whole, because the speed of one clip depends too much on what
+ * else was running at the same time.
+ */
+public class RegressionBaseline {
+	public static final String TOTAL = "total";
+	
+	private static final String PRECISION = ".precision";
+	private static final String RECALL = ".recall";
+	private static final String MEAN_ERROR = ".meanError";
+	private static final String FPS = ".fps";
+	private static final String P99_LATENCY = ".p99Latency";
+	
+	private final Properties values;
+	private double maxAccuracyDrop = 0;
+	private double maxErrorIncrease = 0.5; // px
+	private double maxSlowdown = 20; // %
+	
+	protected RegressionBaseline(Properties values) {
+		this.values = values;
+	}
+	
+	public static RegressionBaseline load(File baselineFile) throws IOException {
+		Properties values = new Properties();
+		try (InputStream in = Files.newInputStream(baselineFile.toPath())) {
+			values.load(in);
+		}
+		return new RegressionBaseline(values);
+	}
+	
+	/**
+	 * @param results	the result for every clip and the combined result,
+	 * 					named <tt>TOTAL</tt>
+	 */
+	public static RegressionBaseline fromResults(List<ClipResult> results) {
+		Properties values = new Properties();
+		
+		for (ClipResult result : results) {
+			values.setProperty(result.getName() + PRECISION, format(result.getPrecision()));
+			values.setProperty(result.getName() + RECALL, format(result.getRecall()));
+			values.setProperty(result.getName() + MEAN_ERROR, format(result.getMeanError()));
+			
+			if (result.getName().equals(TOTAL)) {
+				values.setProperty(TOTAL + FPS, format(result.getFramesPerSecond()));
+				values.setProperty(TOTAL + P99_LATENCY, format(result.getLatencyPercentile(99)));
+			}
+		}
+		
+		return new RegressionBaseline(values);
+	}
+	
+	public void save(File baselineFile) throws IOException {
+		try (OutputStream out = Files.newOutputStream(baselineFile.toPath())) {
+			values.store(out, "Shot detection regression baseline");
+		}
+	}
+	
+	/**
+	 * @param maxAccuracyDrop	how much precision or recall (between 0 and 1)
+	 * 							may drop for any clip
+	 */
+	public void setMaxAccuracyDrop(double maxAccuracyDrop) {
+		this.maxAccuracyDrop = maxAccuracyDrop;
+	}
+	
+	/**
+	 * @param maxErrorIncrease	how many pixels the mean localisation error may
+	 * 							grow by for any clip
+	 */
+	public void setMaxErrorIncrease(double maxErrorIncrease) {
+		this.maxErrorIncrease = maxErrorIncrease;
+	}
+	
+	/**
+	 * @param maxSlowdown	by how many percent the corpus' frames per second
+	 * 						may drop and its 99th percentile latency may grow
+	 */
+	public void setMaxSlowdown(double maxSlowdown) {
+		this.maxSlowdown = maxSlowdown;
+	}
+	
+	/**
+	 * @return a description of every way <tt>results</tt> are worse than
+	 * 		the baseline, or nothing if none are. Clips that are not in the
+	 * 		baseline are skipped.
+	 */
+	public List<String> findRegressions(List<ClipResult> results) {
+		List<String> regressions = new ArrayList<String>();
+		
+		for (ClipResult result : results) {
+			String name = result.getName();
+			
+			checkDrop(regressions, name + PRECISION, result.getPrecision(), maxAccuracyDrop);
+			checkDrop(regressions, name + RECALL, result.getRecall(), maxAccuracyDrop);
+			checkRise(regressions, name + MEAN_ERROR, result.getMeanError(), maxErrorIncrease);
+			
+			if (name.equals(TOTAL)) {
+				String fps = TOTAL + FPS;
+				if (values.containsKey(fps)) {
+					checkDrop(regressions, fps, result.getFramesPerSecond(), get(fps) * maxSlowdown / 100);
+				}
+				
+				String latency = TOTAL + P99_LATENCY;
+				if (values.containsKey(latency)) {
+					checkRise(regressions, latency, result.getLatencyPercentile(99), 
+							get(latency) * maxSlowdown / 100);
+				}
+			}
+		}
+		
+		return regressions;
+	}
+	
+	private void checkDrop(List<String> regressions, String key, double value, double allowed) {
+		if (values.containsKey(key) && value < get(key) - allowed - 1e-9) {
+			regressions.add(String.format(Locale.US, "%s dropped from %s to %s", key, values.getProperty(key),
+					format(value)));
+		}
+	}
+	
+	private void checkRise(List<String> regressions, String key, double value, double allowed) {
+		if (values.containsKey(key) && value > get(key) + allowed + 1e-9) {
+			regressions.add(String.format(Locale.US, "%s rose from %s to %s", key, values.getProperty(key),
+					format(value)));
+		}
+	}
+	
+	private double get(String key) {
+		return Double.parseDouble(values.getProperty(key));
+	}
+	
+	private static String format(double value) {
+		return String.format(Locale.US, "%.4f", value);
+	}
+}
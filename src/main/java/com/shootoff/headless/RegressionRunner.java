@@ -0,0 +1,257 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.CommandLineParser;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+/**
+ * Replays a corpus of recorded clips through shot detection and compares
+ * what was detected to each clip's ground truth log (see GroundTruth),
+ * reporting precision, recall, localisation error, frames per second, and
+ * per frame latency percentiles:
+ * 
+ * <pre>
+ * java com.shootoff.headless.RegressionRunner -b baseline.properties clips/
+ * </pre>
+ * 
+ * Directories are searched recursively for clips that have a log. Clips are
+ * processed in parallel. With a baseline, the run fails if any result got
+ * worse than the baseline allows (see RegressionBaseline). Arguments after
+ * <tt>--</tt> are ShootOFF's own options.
+ */
+public class RegressionRunner {
+	private static final Logger logger = LoggerFactory.getLogger(RegressionRunner.class);
+	private static final double DEFAULT_MAX_DISTANCE = 10; // px
+	
+	private RegressionRunner() {}
+	
+	public static void main(String[] args) {
+		System.exit(run(args, System.out));
+	}
+	
+	/**
+	 * @return the process' exit status: 0 if every clip was processed and
+	 * 		nothing regressed, 1 if a clip failed or something regressed, or 2
+	 * 		if the arguments were invalid
+	 */
+	protected static int run(String[] args, PrintStream out) {
+		int split = Arrays.asList(args).indexOf("--");
+		String[] runnerArgs = split < 0 ? args : Arrays.copyOfRange(args, 0, split);
+		String[] configArgs = split < 0 ? new String[0] : Arrays.copyOfRange(args, split + 1, args.length);
+		
+		Options options = new Options();
+		options.addOption("h", "help", false, "show this help");
+		options.addOption("c", "config", true, "load settings from this ShootOFF configuration file");
+		options.addOption("t", "threads", true,
+				"process this many clips at once (default is the number of processors)");
+		options.addOption("d", "max-distance", true,
+				"how far in pixels a detected shot may be from a real shot to match it (default " +
+				DEFAULT_MAX_DISTANCE + ")");
+		options.addOption("b", "baseline", true, "compare the results to this baseline");
+		options.addOption("s", "save-baseline", true, "save the results as a baseline to this file");
+		options.addOption("a", "max-accuracy-drop", true,
+				"how much precision or recall may drop for any clip (default 0)");
+		options.addOption("e", "max-error-increase", true,
+				"how many pixels the mean localisation error may grow for any clip (default 0.5)");
+		options.addOption("p", "max-slowdown", true,
+				"by how many percent throughput may drop and latency may grow (default 20)");
+		
+		CommandLine cmd;
+		List<File> clips;
+		int threads;
+		double maxDistance;
+		Configuration config;
+		
+		try {
+			CommandLineParser parser = new DefaultParser();
+			cmd = parser.parse(options, runnerArgs);
+			
+			if (cmd.hasOption("h") || cmd.getArgList().isEmpty()) {
+				printHelp(options);
+				return cmd.hasOption("h") ? 0 : 2;
+			}
+			
+			threads = Integer.parseInt(cmd.getOptionValue("t",
+					String.valueOf(Runtime.getRuntime().availableProcessors())));
+			maxDistance = Double.parseDouble(cmd.getOptionValue("d", String.valueOf(DEFAULT_MAX_DISTANCE)));
+			
+			if (threads < 1) throw new NumberFormatException("threads must be at least 1");
+			
+			if (cmd.hasOption("c")) {
+				config = new Configuration(cmd.getOptionValue("c"), configArgs);
+			} else {
+				config = new Configuration(configArgs);
+			}
+			
+			clips = findClips(cmd.getArgList());
+		} catch (ParseException | IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			printHelp(options);
+			return 2;
+		} catch (IOException | ConfigurationException e) {
+			System.err.println("Could not load the configuration or clips: " + e.getMessage());
+			return 2;
+		}
+		
+		if (clips.isEmpty()) {
+			System.err.println("No clips with a ground truth log (clip" + GroundTruth.LOG_SUFFIX + ") were found");
+			return 2;
+		}
+		
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, clips.size()));
+		List<Future<ClipResult>> futures = new ArrayList<Future<ClipResult>>();
+		for (File clip : clips) futures.add(executor.submit(evaluateClip(config, clip, maxDistance)));
+		executor.shutdown();
+		
+		List<ClipResult> results = new ArrayList<ClipResult>();
+		boolean failed = false;
+		
+		for (int i = 0; i < clips.size(); i++) {
+			try {
+				results.add(futures.get(i).get());
+			} catch (ExecutionException | InterruptedException e) {
+				logger.error("Failed to evaluate " + clips.get(i).getPath(), e);
+				failed = true;
+			}
+		}
+		
+		results.add(ClipResult.combine(RegressionBaseline.TOTAL, new ArrayList<ClipResult>(results),
+				System.currentTimeMillis() - start));
+		printResults(results, out);
+		
+		try {
+			if (cmd.hasOption("s")) {
+				RegressionBaseline.fromResults(results).save(new File(cmd.getOptionValue("s")));
+			}
+			
+			if (cmd.hasOption("b")) {
+				RegressionBaseline baseline = RegressionBaseline.load(new File(cmd.getOptionValue("b")));
+				if (cmd.hasOption("a")) baseline.setMaxAccuracyDrop(Double.parseDouble(cmd.getOptionValue("a")));
+				if (cmd.hasOption("e")) baseline.setMaxErrorIncrease(Double.parseDouble(cmd.getOptionValue("e")));
+				if (cmd.hasOption("p")) baseline.setMaxSlowdown(Double.parseDouble(cmd.getOptionValue("p")));
+				
+				List<String> regressions = baseline.findRegressions(results);
+				for (String regression : regressions) out.println("REGRESSION: " + regression);
+				if (!regressions.isEmpty()) failed = true;
+			}
+		} catch (IOException e) {
+			logger.error("Failed to load or save the baseline", e);
+			return 1;
+		} catch (NumberFormatException e) {
+			System.err.println(e.getMessage());
+			printHelp(options);
+			return 2;
+		}
+		
+		return failed ? 1 : 0;
+	}
+	
+	/**
+	 * Finds every clip among <tt>paths</tt> and in the directories among them
+	 * that has a ground truth log.
+	 */
+	protected static List<File> findClips(List<String> paths) throws IOException {
+		List<File> clips = new ArrayList<File>();
+		
+		for (String path : paths) {
+			File file = new File(path);
+			
+			if (file.isDirectory()) {
+				try (Stream<Path> files = Files.walk(file.toPath())) {
+					clips.addAll(files.map(Path::toFile)
+							.filter(f -> f.isFile() && !f.getName().endsWith(GroundTruth.LOG_SUFFIX) &&
+									GroundTruth.hasLog(f))
+							.sorted()
+							.collect(Collectors.toList()));
+				}
+			} else if (GroundTruth.hasLog(file)) {
+				clips.add(file);
+			} else {
+				logger.warn("Skipping {}: it has no ground truth log", path);
+			}
+		}
+		
+		return clips;
+	}
+	
+	private static Callable<ClipResult> evaluateClip(Configuration config, File clip, double maxDistance) {
+		return () -> {
+			VideoShotDetector detector = new VideoShotDetector(config, clip);
+			
+			long start = System.currentTimeMillis();
+			List<DetectedShot> shots = detector.call();
+			long elapsed = System.currentTimeMillis() - start;
+			
+			return ClipResult.evaluate(clip.getPath(), GroundTruth.load(GroundTruth.getLogFile(clip)), shots,
+					maxDistance, detector.getFrameCount(), elapsed, detector.getFrameLatencies());
+		};
+	}
+	
+	private static void printResults(List<ClipResult> results, PrintStream out) {
+		out.printf(Locale.US, "%-40s %5s %5s %9s %7s %8s %8s %8s %8s %8s %8s %8s%n", "clip", "real", "found",
+				"precision", "recall", "mean err", "max err", "fps", "p50 ms", "p90 ms", "p99 ms", "max ms");
+		
+		for (ClipResult result : results) {
+			String name = result.getName();
+			if (name.length() > 40) name = "..." + name.substring(name.length() - 37);
+			
+			out.printf(Locale.US, "%-40s %5d %5d %9.3f %7.3f %8.2f %8.2f %8.1f %8.3f %8.3f %8.3f %8.3f%n",
+					name, result.getRealShots(), result.getDetectedShots(), result.getPrecision(),
+					result.getRecall(), result.getMeanError(), result.getMaxError(), result.getFramesPerSecond(),
+					result.getLatencyPercentile(50), result.getLatencyPercentile(90),
+					result.getLatencyPercentile(99), result.getLatencyPercentile(100));
+		}
+		
+		out.flush();
+	}
+	
+	private static void printHelp(Options options) {
+		HelpFormatter formatter = new HelpFormatter();
+		formatter.printHelp("com.shootoff.headless.RegressionRunner [options] clip-or-directory... " +
+				"[-- shootoff options]", options);
+	}
+}
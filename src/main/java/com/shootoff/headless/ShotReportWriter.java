@@ -0,0 +1,118 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Writes detected shots as CSV (one row per shot with a header row) or as a
+ * JSON array of objects with the same fields.
+ */
+public final class ShotReportWriter {
+	public enum Format {
+		CSV, JSON
+	}
+	
+	private static final String[] FIELDS = { "video", "frame", "timestamp", "x", "y", "color" };
+	
+	private ShotReportWriter() {}
+	
+	public static void write(Format format, List<DetectedShot> shots, Writer out) throws IOException {
+		switch (format) {
+		case CSV:
+			writeCSV(shots, out);
+			break;
+		case JSON:
+			writeJSON(shots, out);
+			break;
+		}
+		
+		out.flush();
+	}
+	
+	public static void writeCSV(List<DetectedShot> shots, Writer out) throws IOException {
+		out.write(String.join(",", FIELDS));
+		out.write("\n");
+		
+		for (DetectedShot shot : shots) {
+			out.write(String.format(Locale.US, "%s,%d,%d,%.2f,%.2f,%s\n", quoteCSV(shot.getVideoName()),
+					shot.getFrameIndex(), shot.getTimestamp(), shot.getX(), shot.getY(), shot.getColorName()));
+		}
+	}
+	
+	public static void writeJSON(List<DetectedShot> shots, Writer out) throws IOException {
+		out.write("[");
+		
+		for (int i = 0; i < shots.size(); i++) {
+			DetectedShot shot = shots.get(i);
+			
+			out.write(i == 0 ? "\n" : ",\n");
+			out.write(String.format(Locale.US,
+					"  {\"%s\": %s, \"%s\": %d, \"%s\": %d, \"%s\": %.2f, \"%s\": %.2f, \"%s\": %s}",
+					FIELDS[0], quoteJSON(shot.getVideoName()), FIELDS[1], shot.getFrameIndex(),
+					FIELDS[2], shot.getTimestamp(), FIELDS[3], shot.getX(), FIELDS[4], shot.getY(),
+					FIELDS[5], quoteJSON(shot.getColorName())));
+		}
+		
+		out.write(shots.isEmpty() ? "]\n" : "\n]\n");
+	}
+	
+	private static String quoteCSV(String value) {
+		if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+			return "\"" + value.replace("\"", "\"\"") + "\"";
+		}
+		
+		return value;
+	}
+	
+	private static String quoteJSON(String value) {
+		StringBuilder quoted = new StringBuilder("\"");
+		
+		for (char c : value.toCharArray()) {
+			switch (c) {
+			case '"':
+				quoted.append("\\\"");
+				break;
+			case '\\':
+				quoted.append("\\\\");
+				break;
+			case '\n':
+				quoted.append("\\n");
+				break;
+			case '\r':
+				quoted.append("\\r");
+				break;
+			case '\t':
+				quoted.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					quoted.append(String.format("\\u%04x", (int)c));
+				} else {
+					quoted.append(c);
+				}
+			}
+		}
+		
+		return quoted.append('"').toString();
+	}
+}
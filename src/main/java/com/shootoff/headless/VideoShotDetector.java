@@ -0,0 +1,220 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.headless;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.shootoff.camera.BlobDetector;
+import com.shootoff.camera.CameraManager;
+import com.shootoff.camera.ColorClassifier;
+import com.shootoff.camera.DeduplicationProcessor;
+import com.shootoff.camera.DetectionFrame;
+import com.shootoff.camera.FrameDetector;
+import com.shootoff.camera.RawFrameReader;
+import com.shootoff.camera.Shot;
+import com.shootoff.camera.ShotSearcher;
+import com.shootoff.config.Configuration;
+import com.xuggle.mediatool.IMediaReader;
+import com.xuggle.mediatool.MediaListenerAdapter;
+import com.xuggle.mediatool.ToolFactory;
+import com.xuggle.mediatool.event.IVideoPictureEvent;
+
+import javafx.scene.paint.Color;
+
+/**
+ * Finds the shots in a recorded video without a GUI. Frames are decoded as
+ * fast as xuggle can read them and every frame is searched on the calling
+ * thread, so detectors for several videos can run side by side on their own
+ * threads.
+ * 
+ * Like the GUI, shots that look like a repeat of the previous shot are
+ * dropped by a DeduplicationProcessor unless deduplication is turned off.
+ * No other shot processors are run.
+ */
+public class VideoShotDetector extends MediaListenerAdapter implements Callable<List<DetectedShot>> {
+	private final Logger logger = LoggerFactory.getLogger(VideoShotDetector.class);
+	private final Configuration config;
+	private final File videoFile;
+	private final int bloomCount;
+	private final boolean[][] sectorStatuses = new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS];
+	
+	private final BlobDetector blobDetector = new BlobDetector();
+	private final ColorClassifier colorClassifier = new ColorClassifier();
+	private final List<DetectedShot> shots = new ArrayList<DetectedShot>();
+	private Optional<FrameDetector> frameDetector = Optional.empty();
+	private Optional<DeduplicationProcessor> deduplicator = Optional.of(new DeduplicationProcessor());
+	private long frameIndex = 0;
+	private long timestamp = 0;
+	// How long detection took for each frame, excluding decoding
+	private long[] frameLatencies = new long[1024];
+	
+	public VideoShotDetector(Configuration config, File videoFile) {
+		this(config, videoFile, CameraManager.DEFAULT_BLOOM_COUNT);
+	}
+	
+	public VideoShotDetector(Configuration config, File videoFile, int bloomCount) {
+		this.config = config;
+		this.videoFile = videoFile;
+		this.bloomCount = bloomCount;
+		
+		for (int y = 0; y < ShotSearcher.SECTOR_ROWS; y++) {
+			for (int x = 0; x < ShotSearcher.SECTOR_COLUMNS; x++) {
+				sectorStatuses[y][x] = true;
+			}
+		}
+	}
+	
+	public void setDeduplicating(boolean deduplicating) {
+		deduplicator = deduplicating ? Optional.of(new DeduplicationProcessor()) : Optional.empty();
+	}
+	
+	public File getVideoFile() {
+		return videoFile;
+	}
+	
+	/**
+	 * @return the number of frames decoded so far
+	 */
+	public long getFrameCount() {
+		return frameIndex;
+	}
+	
+	/**
+	 * @return how long detecting shots in each decoded frame took in
+	 * 		nanoseconds, not counting the time spent decoding it
+	 */
+	public long[] getFrameLatencies() {
+		return Arrays.copyOf(frameLatencies, (int)frameIndex);
+	}
+	
+	/**
+	 * Decodes the whole video, or reads the whole capture if it is a raw
+	 * capture.
+	 * 
+	 * @return the shots in the order they were found
+	 */
+	@Override
+	public List<DetectedShot> call() {
+		if (RawFrameReader.isRawCapture(videoFile)) {
+			try {
+				return detectRawCapture();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		
+		IMediaReader reader = ToolFactory.makeReader(videoFile.getAbsolutePath());
+		reader.setBufferedImageTypeToGenerate(BufferedImage.TYPE_3BYTE_BGR);
+		reader.addListener(this);
+		
+		long start = System.currentTimeMillis();
+		while (reader.readPacket() == null)
+			do {} while(false);
+		
+		logger.debug("Found {} shots in {} frames of {} in {} ms", shots.size(), frameIndex,
+				videoFile.getName(), System.currentTimeMillis() - start);
+		
+		return shots;
+	}
+	
+	/**
+	 * Raw captures are memory mapped and their frames are detected in place,
+	 * so nothing is decoded or copied.
+	 */
+	private List<DetectedShot> detectRawCapture() throws IOException {
+		long start = System.currentTimeMillis();
+		
+		try (RawFrameReader reader = new RawFrameReader(videoFile)) {
+			for (int i = 0; i < reader.getFrameCount(); i++) {
+				long frameStart = System.nanoTime();
+				timestamp = reader.getTimestamp(i) - reader.getTimestamp(0);
+				
+				Optional<DetectionFrame> frame = getFrameDetector(reader.getWidth(), reader.getHeight())
+						.detect(reader.getFrame(i), bloomCount);
+				searchFrame(frame, frameStart);
+			}
+		}
+		
+		logger.debug("Found {} shots in {} frames of {} in {} ms", shots.size(), frameIndex,
+				videoFile.getName(), System.currentTimeMillis() - start);
+		
+		return shots;
+	}
+	
+	@Override
+	public void onVideoPicture(IVideoPictureEvent event) {
+		long start = System.nanoTime();
+		BufferedImage currentFrame = event.getImage();
+		timestamp = event.getTimeStamp(TimeUnit.MILLISECONDS);
+		
+		Optional<DetectionFrame> frame = getFrameDetector(currentFrame.getWidth(), currentFrame.getHeight())
+				.detect(currentFrame, bloomCount);
+		searchFrame(frame, start);
+	}
+	
+	private FrameDetector getFrameDetector(int width, int height) {
+		if (!frameDetector.isPresent()) {
+			// Searches run synchronously, so one detection frame is enough
+			frameDetector = Optional.of(new FrameDetector(config, width, height, 1));
+		}
+		
+		return frameDetector.get();
+	}
+	
+	// start is when work on the frame started, from System.nanoTime
+	private void searchFrame(Optional<DetectionFrame> frame, long start) {
+		if (frame.isPresent() && frame.get().getWhitePixelCount() == 0) {
+			frame.get().release();
+		} else if (frame.isPresent()) {
+			ShotSearcher shotSearcher = new ShotSearcher(config, this::addShot, sectorStatuses, frame.get());
+			
+			shotSearcher.setBlobDetector(blobDetector);
+			shotSearcher.setColorClassifier(colorClassifier);
+			shotSearcher.run();
+		}
+		
+		if (frameIndex == frameLatencies.length) {
+			frameLatencies = Arrays.copyOf(frameLatencies, frameLatencies.length * 2);
+		}
+		
+		frameLatencies[(int)frameIndex] = System.nanoTime() - start;
+		frameIndex++;
+	}
+	
+	private void addShot(Color color, double x, double y) {
+		if (deduplicator.isPresent() &&
+				!deduplicator.get().processShot(new Shot(color, x, y, timestamp, config.getMarkerRadius()))) {
+			return;
+		}
+		
+		shots.add(new DetectedShot(videoFile.getName(), frameIndex, timestamp, x, y, color));
+	}
+}
@@ -36,9 +36,9 @@ import com.shootoff.config.Configuration;
 import com.shootoff.gui.CanvasManager;
 import com.shootoff.gui.DelayedStartListener;
 import com.shootoff.gui.ShotEntry;
+import com.shootoff.gui.UIUpdateBatcher;
 import com.shootoff.gui.controller.DelayedStartIntervalController;
 
-import javafx.application.Platform;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.value.ObservableValue;
 import javafx.fxml.FXMLLoader;
@@ -151,8 +151,9 @@ public class TrainingProtocolBase {
 	 * @param value	the text that should be inserted
 	 */
 	public void setShotTimerColumnText(String name, String value) {
+		// Batched with the shot's row so the row exists when this runs
 		if (shotTimerTable != null) {
-			Platform.runLater(() -> {
+			UIUpdateBatcher.getInstance().runLater(() -> {
 					shotTimerTable.getItems().get(shotTimerTable.getItems().size() - 1).setProtocolValue(name, value);
 				});
 		}
@@ -166,7 +167,7 @@ public class TrainingProtocolBase {
 	public void showTextOnFeed(String message) {
 		if (config.inDebugMode()) System.out.println(message);
 		
-		Platform.runLater(() -> {
+		UIUpdateBatcher.getInstance().runLatest(protocolLabels, () -> {
 				for (Label protocolLabel : protocolLabels.values())
 					protocolLabel.setText(message);
 			});
@@ -0,0 +1,102 @@
+/*
+ * ShootOFF - Software for Laser Dry Fire Training
+ * Copyright (C) 2015 phrack
+ * 
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.shootoff.targets;
+
+import java.awt.image.BufferedImage;
+import java.util.Optional;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
+
+/**
+ * Which pixels of an image are fully transparent, stored one bit per pixel.
+ * Masks are computed once when an image is loaded and never change, so hit
+ * checks can test a pixel's transparency from any thread without reading
+ * the image.
+ */
+public class AlphaMask {
+	private final int width;
+	private final int height;
+	private final long[] transparent;
+	
+	private AlphaMask(int width, int height) {
+		this.width = width;
+		this.height = height;
+		transparent = new long[(int)(((long)width * height + 63) / 64)];
+	}
+	
+	public static AlphaMask fromBufferedImage(BufferedImage image) {
+		AlphaMask mask = new AlphaMask(image.getWidth(), image.getHeight());
+		int[] row = new int[mask.width];
+		
+		for (int y = 0; y < mask.height; y++) {
+			image.getRGB(0, y, mask.width, 1, row, 0, mask.width);
+			mask.setRow(y, row);
+		}
+		
+		return mask;
+	}
+	
+	/**
+	 * @return the image's mask, or empty if the image can't be read (e.g.
+	 * 		because it failed to load)
+	 */
+	public static Optional<AlphaMask> fromImage(Image image) {
+		PixelReader reader = image.getPixelReader();
+		if (reader == null || image.isError()) return Optional.empty();
+		
+		AlphaMask mask = new AlphaMask((int)image.getWidth(), (int)image.getHeight());
+		int[] row = new int[mask.width];
+		
+		for (int y = 0; y < mask.height; y++) {
+			reader.getPixels(0, y, mask.width, 1, PixelFormat.getIntArgbInstance(), row, 0, mask.width);
+			mask.setRow(y, row);
+		}
+		
+		return Optional.of(mask);
+	}
+	
+	private void setRow(int y, int[] argb) {
+		long pixel = (long)y * width;
+		
+		for (int x = 0; x < width; x++, pixel++) {
+			if (argb[x] >>> 24 == 0) transparent[(int)(pixel >>> 6)] |= 1L << pixel;
+		}
+	}
+	
+	public int getWidth() {
+		return width;
+	}
+	
+	public int getHeight() {
+		return height;
+	}
+	
+	/**
+	 * @return <tt>true</tt> if the pixel's alpha is 0, <tt>false</tt> if it is
+	 * 		at least partly opaque or outside the image
+	 */
+	public boolean isTransparent(int x, int y) {
+		if (x < 0 || y < 0 || x >= width || y >= height) return false;
+		
+		long pixel = (long)y * width + x;
+		return (transparent[(int)(pixel >>> 6)] & (1L << pixel)) != 0;
+	}
+}
@@ -35,6 +35,8 @@ public class ImageRegion extends ImageView implements TargetRegion {
 	private final File imageFile;
 	
 	private Optional<SpriteAnimation> animation = Optional.empty();
+	private Optional<Image> loadedImage = Optional.empty();
+	private Optional<AlphaMask> loadedAlphaMask = Optional.empty();
 
 	public ImageRegion(double x, double y, File imageFile) {
 		super();
@@ -44,7 +46,10 @@ public class ImageRegion extends ImageView implements TargetRegion {
 		this.imageFile = imageFile;
 		
 		try {
-			this.setImage(new Image(new FileInputStream(imageFile)));
+			Image image = new Image(new FileInputStream(imageFile));
+			loadedImage = Optional.of(image);
+			loadedAlphaMask = AlphaMask.fromImage(image);
+			this.setImage(image);
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -73,6 +78,34 @@ public class ImageRegion extends ImageView implements TargetRegion {
 	public void reset() {
 		if (animation.isPresent()) animation.get().reset();
 	}
+	
+	/**
+	 * Checks whether a pixel of the image currently shown is fully
+	 * transparent using the masks computed when the image and animation
+	 * frames were loaded, so it is safe to call from any thread.
+	 * 
+	 * @return <tt>true</tt> if the pixel's alpha is 0, <tt>false</tt> if it is
+	 * 		at least partly opaque or outside the image
+	 */
+	public boolean isTransparentPixel(int x, int y) {
+		Image currentImage = getImage();
+		Optional<AlphaMask> mask = getAlphaMask(currentImage);
+		if (mask.isPresent()) return mask.get().isTransparent(x, y);
+		
+		// The image was set by something other than this region or its
+		// animation, so there is no mask for it
+		if (currentImage == null || currentImage.getPixelReader() == null) return false;
+		
+		return currentImage.getHeight() > y && currentImage.getWidth() > x && x >= 0 && y >= 0 &&
+				currentImage.getPixelReader().getArgb(x, y) >> 24 == 0;
+	}
+	
+	private Optional<AlphaMask> getAlphaMask(Image image) {
+		if (loadedImage.isPresent() && loadedImage.get() == image) return loadedAlphaMask;
+		if (animation.isPresent()) return animation.get().getAlphaMask(image);
+		
+		return Optional.empty();
+	}
 
 	@Override
 	public void changeWidth(double widthDelta) {
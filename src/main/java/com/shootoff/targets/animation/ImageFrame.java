@@ -20,6 +20,8 @@ package com.shootoff.targets.animation;
 
 import java.awt.image.BufferedImage;
 
+import com.shootoff.targets.AlphaMask;
+
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
 
@@ -27,11 +29,13 @@ public class ImageFrame {
     private final int delay;
     private final BufferedImage bufferedImage;
     private final Image image;
+    private final AlphaMask alphaMask;
     private final String disposal;
 
     public ImageFrame (BufferedImage image, int delay, String disposal){
         this.bufferedImage = image;
         this.image = SwingFXUtils.toFXImage(image, null);
+        this.alphaMask = AlphaMask.fromBufferedImage(image);
         this.delay = delay;
         this.disposal = disposal;
     }
@@ -39,6 +43,7 @@ public class ImageFrame {
     public ImageFrame (BufferedImage image){
         this.bufferedImage = image;
         this.image = SwingFXUtils.toFXImage(image, null);
+        this.alphaMask = AlphaMask.fromBufferedImage(image);
         this.delay = -1;
         this.disposal = null;
     }
@@ -50,6 +55,10 @@ public class ImageFrame {
     public Image getImage() {
         return image;
     }
+    
+    public AlphaMask getAlphaMask() {
+        return alphaMask;
+    }
 
     public int getDelay() {
         return delay;
@@ -18,6 +18,10 @@
 
 package com.shootoff.targets.animation;
 
+import java.util.Optional;
+
+import com.shootoff.targets.AlphaMask;
+
 import javafx.animation.Interpolator;
 import javafx.animation.Transition;
 import javafx.scene.image.Image;
@@ -51,6 +55,18 @@ public class SpriteAnimation extends Transition {
     public int getFrameCount() {
     	return frames.length;
     }
+    
+    /**
+     * @return the mask computed when <tt>image</tt> was loaded, or empty if
+     * 		it isn't one of this animation's frames
+     */
+    public Optional<AlphaMask> getAlphaMask(Image image) {
+    	for (ImageFrame frame : frames) {
+    		if (frame.getImage() == image) return Optional.of(frame.getAlphaMask());
+    	}
+    	
+    	return Optional.empty();
+    }
 
     public void reset() {
     	isReversed = false;
@@ -0,0 +1,124 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestBlobDetector {
+	private List<Blob> findBlobs(String... rows) {
+		int width = rows[0].length();
+		int height = rows.length;
+		byte[] shotFrame = new byte[width * height];
+		
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (rows[y].charAt(x) == '#') shotFrame[y * width + x] = DetectionFrame.WHITE_PIXEL;
+			}
+		}
+		
+		BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		return new BlobDetector().findBlobs(new DetectionFrame(frame, shotFrame));
+	}
+	
+	@Test
+	public void testEmptyFrameHasNoBlobs() {
+		assertEquals(0, findBlobs("....", "....").size());
+	}
+	
+	@Test
+	public void testSeparateBlobs() {
+		List<Blob> blobs = findBlobs(
+				"##......",
+				"##....#.",
+				"......##");
+		
+		assertEquals(2, blobs.size());
+		
+		assertEquals(0, blobs.get(0).getMinX());
+		assertEquals(0, blobs.get(0).getMinY());
+		assertEquals(2, blobs.get(0).getWidth());
+		assertEquals(2, blobs.get(0).getHeight());
+		assertEquals(4, blobs.get(0).getArea());
+		assertEquals(0.5, blobs.get(0).getCentroidX(), 0.001);
+		assertEquals(0.5, blobs.get(0).getCentroidY(), 0.001);
+		
+		assertEquals(6, blobs.get(1).getMinX());
+		assertEquals(1, blobs.get(1).getMinY());
+		assertEquals(3, blobs.get(1).getArea());
+		assertEquals(19.0 / 3, blobs.get(1).getCentroidX(), 0.001);
+		assertEquals(5.0 / 3, blobs.get(1).getCentroidY(), 0.001);
+	}
+	
+	@Test
+	public void testBranchesAreJoined() {
+		// The two arms get different labels until the bottom row joins them
+		List<Blob> blobs = findBlobs(
+				"#...#...#",
+				"#...#...#",
+				"#########");
+		
+		assertEquals(1, blobs.size());
+		assertEquals(9, blobs.get(0).getWidth());
+		assertEquals(3, blobs.get(0).getHeight());
+		assertEquals(15, blobs.get(0).getArea());
+	}
+	
+	@Test
+	public void testDiagonalPixelsAreConnected() {
+		List<Blob> blobs = findBlobs(
+				"#...#",
+				".#.#.",
+				"..#..");
+		
+		assertEquals(1, blobs.size());
+		assertEquals(5, blobs.get(0).getArea());
+	}
+	
+	@Test
+	public void testRowsDoNotWrap() {
+		// Each row is 65 pixels long, so the end of one row and the start of
+		// the next row share a word but are not neighbors
+		StringBuilder row = new StringBuilder();
+		for (int i = 0; i < 64; i++) row.append('.');
+		
+		List<Blob> blobs = findBlobs(row + "#", "#" + row);
+		
+		assertEquals(2, blobs.size());
+		assertEquals(64, blobs.get(0).getMinX());
+		assertEquals(0, blobs.get(1).getMinX());
+	}
+	
+	@Test
+	public void testBlobsSpanningWords() {
+		StringBuilder top = new StringBuilder();
+		StringBuilder bottom = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			top.append(i >= 60 && i < 140 ? '#' : '.');
+			bottom.append(i >= 130 && i < 190 ? '#' : '.');
+		}
+		
+		List<Blob> blobs = findBlobs(top.toString(), bottom.toString());
+		
+		assertEquals(1, blobs.size());
+		assertEquals(60, blobs.get(0).getMinX());
+		assertEquals(189, blobs.get(0).getMaxX());
+		assertEquals(140, blobs.get(0).getArea());
+	}
+	
+	@Test
+	public void testDetectorCanBeReused() {
+		BlobDetector detector = new BlobDetector();
+		BufferedImage frame = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+		
+		byte[] shotFrame = new byte[] { 1, 0, 1, 1, 0, 1 };
+		assertEquals(2, detector.findBlobs(new DetectionFrame(frame, shotFrame)).size());
+		
+		shotFrame = new byte[] { 0, 1, 0, 0, 0, 0 };
+		List<Blob> blobs = detector.findBlobs(new DetectionFrame(frame, shotFrame));
+		assertEquals(1, blobs.size());
+		assertEquals(1, blobs.get(0).getArea());
+	}
+}
@@ -0,0 +1,145 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Optional;
+
+import javax.imageio.ImageIO;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+public class TestColorClassifier {
+	private Configuration config;
+	private ColorClassifier classifier;
+	
+	@Before
+	public void setUp() throws ConfigurationException {
+		config = new Configuration(new String[0]);
+		classifier = new ColorClassifier();
+	}
+	
+	private DetectionFrame loadFrame(String imagePath) throws IOException {
+		BufferedImage testFrame = ImageIO.read(getClass().getResourceAsStream(imagePath));
+		
+		BufferedImage grayScale = new BufferedImage(testFrame.getWidth(),
+				testFrame.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+		grayScale.createGraphics().drawImage(testFrame, 0, 0, null);
+		
+		return new DetectionFrame(testFrame,
+				CameraManager.getFrameCount(CameraManager.threshold(config, grayScale)));
+	}
+	
+	// The cross of pixels ShotSearcher.detectColor used to average one by one
+	private double[] sampleColor(DetectionFrame frame, int x, int y) {
+		double[] color = new double[4];
+		addPixel(color, frame, x, y);
+		
+		for (int x_offset = x; x_offset > 0 && x - x_offset < 5; x_offset--)
+			addPixel(color, frame, x_offset, y);
+		for (int x_offset = x; x_offset < frame.getWidth() && x_offset - x < 5; x_offset++)
+			addPixel(color, frame, x_offset, y);
+		for (int y_offset = y; y_offset < frame.getHeight() && y_offset - y < 5; y_offset++)
+			addPixel(color, frame, x, y_offset);
+		for (int y_offset = y; y_offset > 0 && y - y_offset < 5; y_offset--)
+			addPixel(color, frame, x, y_offset);
+		
+		return color;
+	}
+	
+	private void addPixel(double[] color, DetectionFrame frame, int x, int y) {
+		int rgb = frame.getRGB(x, y);
+		color[0] += (rgb >> 16) & 0xFF;
+		color[1] += (rgb >> 8) & 0xFF;
+		color[2] += rgb & 0xFF;
+		color[3]++;
+	}
+	
+	@Test
+	public void testAverageMatchesSampledPixels() throws IOException {
+		DetectionFrame frame = loadFrame("/shotsearcher/interference_one_shot.png");
+		int lastX = frame.getWidth() - 1;
+		int lastY = frame.getHeight() - 1;
+		
+		// Whole frame, so that candidates on every edge are included
+		classifier.setRegion(frame, 0, 0, lastX, lastY);
+		
+		int[][] candidates = { { 0, 0 }, { lastX, lastY }, { 0, lastY }, { lastX, 0 },
+				{ 2, 3 }, { 411, 331 }, { 53, 175 }, { lastX - 2, 100 }, { 200, lastY - 1 } };
+		
+		for (int[] candidate : candidates) {
+			double[] color = sampleColor(frame, candidate[0], candidate[1]);
+			int expected = (int)(color[0] / color[3]) << 16 | (int)(color[1] / color[3]) << 8 |
+					(int)(color[2] / color[3]);
+			
+			assertEquals(expected, classifier.averageRGB(candidate[0], candidate[1]));
+		}
+	}
+	
+	@Test
+	public void testRegionsAreClippedToFrame() throws IOException {
+		DetectionFrame frame = loadFrame("/shotsearcher/no_interference_one_shot.png");
+		
+		classifier.setRegion(frame, 52, 173, 56, 177);
+		assertEquals(Optional.of(Color.RED), classifier.classify(53, 175));
+		
+		classifier.setRegion(frame, frame.getWidth() - 3, 0, frame.getWidth() - 1, 2);
+		double[] color = sampleColor(frame, frame.getWidth() - 1, 0);
+		assertEquals((int)(color[1] / color[3]),
+				(classifier.averageRGB(frame.getWidth() - 1, 0) >> 8) & 0xFF);
+	}
+	
+	@Test
+	public void testClassificationMatchesRatios() throws IOException {
+		final double threshold = ColorClassifier.DEFAULT_COLOR_DIFF_THRESHOLD;
+		
+		for (String image : new String[] { "/shotsearcher/no_interference_two_shots.png",
+				"/shotsearcher/interference_one_shot.png" }) {
+			
+			DetectionFrame frame = loadFrame(image);
+			classifier.setRegion(frame, 0, 0, frame.getWidth() - 1, frame.getHeight() - 1);
+			
+			int candidates = 0;
+			int agreements = 0;
+			
+			for (int y = 0; y < frame.getHeight(); y++) {
+				for (int x = 0; x < frame.getWidth(); x++) {
+					if (!frame.isWhite(x, y)) continue;
+					
+					double[] color = sampleColor(frame, x, y);
+					double r = color[0] / color[3], g = color[1] / color[3], b = color[2] / color[3];
+					
+					Optional<Color> expected = Optional.empty();
+					if (g != 0 && b != 0 && r / g > threshold && r / b > threshold) {
+						expected = Optional.of(Color.RED);
+					} else if (r != 0 && b != 0 && g / r > threshold && g / b > threshold) {
+						expected = Optional.of(Color.GREEN);
+					}
+					
+					candidates++;
+					if (expected.equals(classifier.classify(x, y))) agreements++;
+				}
+			}
+			
+			assertTrue(candidates > 0);
+			assertEquals(image, candidates, agreements);
+		}
+	}
+	
+	@Test
+	public void testThresholdChangeRebuildsTable() throws IOException {
+		DetectionFrame frame = loadFrame("/shotsearcher/no_interference_one_shot.png");
+		classifier.setRegion(frame, 52, 173, 56, 177);
+		assertEquals(Optional.of(Color.RED), classifier.classify(53, 175));
+		
+		classifier.setColorDiffThreshold(100);
+		assertEquals(Optional.empty(), classifier.classify(53, 175));
+	}
+}
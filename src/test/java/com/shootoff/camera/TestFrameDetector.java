@@ -0,0 +1,193 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+public class TestFrameDetector {
+	private static final int BLOOM_COUNT = 10;
+	
+	private Configuration config;
+	private BufferedImage shotFrame;
+	private BufferedImage blankFrame;
+	
+	@Before
+	public void setUp() throws ConfigurationException, IOException {
+		config = new Configuration(new String[0]);
+		shotFrame = ImageIO.read(getClass().getResourceAsStream("/shotsearcher/no_interference_one_shot.png"));
+		blankFrame = new BufferedImage(shotFrame.getWidth(), shotFrame.getHeight(),
+				BufferedImage.TYPE_3BYTE_BGR);
+	}
+	
+	private boolean detectAndRelease(FrameDetector detector, BufferedImage frame, int bloomCount) {
+		Optional<DetectionFrame> detectionFrame = detector.detect(frame, bloomCount);
+		
+		if (detectionFrame.isPresent()) {
+			detectionFrame.get().release();
+			return true;
+		}
+		
+		return false;
+	}
+	
+	@Test
+	public void testBloomFilterFillsBeforeDetecting() {
+		FrameDetector detector = new FrameDetector(config, shotFrame.getWidth(), shotFrame.getHeight());
+		
+		for (int i = 0; i < BLOOM_COUNT; i++) {
+			assertFalse(detectAndRelease(detector, blankFrame, BLOOM_COUNT));
+		}
+		
+		assertTrue(detector.isBloomFilterInitialized());
+		assertTrue(detectAndRelease(detector, shotFrame, BLOOM_COUNT));
+	}
+	
+	@Test
+	public void testBloomCountChangeRefillsFilter() {
+		FrameDetector detector = new FrameDetector(config, shotFrame.getWidth(), shotFrame.getHeight());
+		
+		for (int i = 0; i < BLOOM_COUNT; i++) detectAndRelease(detector, blankFrame, BLOOM_COUNT);
+		assertTrue(detector.isBloomFilterInitialized());
+		
+		assertFalse(detectAndRelease(detector, blankFrame, 2));
+		assertFalse(detector.isBloomFilterInitialized());
+		assertFalse(detectAndRelease(detector, blankFrame, 2));
+		assertTrue(detectAndRelease(detector, blankFrame, 2));
+	}
+	
+	@Test
+	public void testShotFrameMatchesThresholdedImage() {
+		FrameDetector detector = new FrameDetector(config, shotFrame.getWidth(), shotFrame.getHeight());
+		detectAndRelease(detector, blankFrame, 1);
+		
+		DetectionFrame detectionFrame = detector.detect(shotFrame, 1).get();
+		
+		BufferedImage grayScale = new BufferedImage(shotFrame.getWidth(),
+				shotFrame.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
+		grayScale.createGraphics().drawImage(shotFrame, 0, 0, null);
+		byte[] expected = CameraManager.getFrameCount(CameraManager.threshold(config, grayScale));
+		
+		int whitePixels = 0;
+		for (int y = 0; y < shotFrame.getHeight(); y++) {
+			for (int x = 0; x < shotFrame.getWidth(); x++) {
+				boolean white = expected[y * shotFrame.getWidth() + x] == DetectionFrame.WHITE_PIXEL;
+				assertEquals(white, detectionFrame.isWhite(x, y));
+				assertEquals(shotFrame.getRGB(x, y), detectionFrame.getRGB(x, y));
+				if (white) whitePixels++;
+			}
+		}
+		
+		assertTrue(whitePixels > 0);
+		assertEquals(whitePixels, detectionFrame.getWhitePixelCount());
+		detectionFrame.release();
+	}
+	
+	@Test
+	public void testPixelBufferMatchesImage() {
+		FrameDetector imageDetector = new FrameDetector(config, shotFrame.getWidth(), shotFrame.getHeight());
+		FrameDetector bufferDetector = new FrameDetector(config, shotFrame.getWidth(), shotFrame.getHeight());
+		
+		ByteBuffer blankPixels = ByteBuffer.allocateDirect(shotFrame.getWidth() * shotFrame.getHeight() * 3);
+		ImageFrameSource.copyPixels(blankFrame, blankPixels);
+		ByteBuffer shotPixels = ByteBuffer.allocateDirect(shotFrame.getWidth() * shotFrame.getHeight() * 3);
+		ImageFrameSource.copyPixels(shotFrame, shotPixels);
+		
+		detectAndRelease(imageDetector, blankFrame, 1);
+		assertFalse(bufferDetector.detect(blankPixels, 1).isPresent());
+		
+		DetectionFrame expected = imageDetector.detect(shotFrame, 1).get();
+		DetectionFrame actual = bufferDetector.detect(shotPixels, 1).get();
+		
+		assertTrue(actual.getWhitePixelCount() > 0);
+		assertEquals(expected.getWhitePixelCount(), actual.getWhitePixelCount());
+		
+		for (int y = 0; y < shotFrame.getHeight(); y++) {
+			for (int x = 0; x < shotFrame.getWidth(); x++) {
+				assertEquals(expected.isWhite(x, y), actual.isWhite(x, y));
+				assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+		
+		expected.release();
+		actual.release();
+	}
+	
+	@Test
+	public void testBrightPixelAnywhereInWindowMasksShot() {
+		final int bloomCount = 3;
+		FrameDetector detector = new FrameDetector(config, shotFrame.getWidth(), shotFrame.getHeight());
+		
+		detectAndRelease(detector, shotFrame, bloomCount);
+		detectAndRelease(detector, blankFrame, bloomCount);
+		detectAndRelease(detector, blankFrame, bloomCount);
+		
+		// The shot is still the oldest frame in the window
+		DetectionFrame detectionFrame = detector.detect(shotFrame, bloomCount).get();
+		assertEquals(0, detectionFrame.getWhitePixelCount());
+		detectionFrame.release();
+		
+		for (int i = 0; i < bloomCount; i++) detectAndRelease(detector, blankFrame, bloomCount);
+		
+		detectionFrame = detector.detect(shotFrame, bloomCount).get();
+		assertTrue(detectionFrame.getWhitePixelCount() > 0);
+		detectionFrame.release();
+	}
+	
+	@Test
+	public void testBusySlotsSkipSearch() {
+		FrameDetector detector = new FrameDetector(config, shotFrame.getWidth(), shotFrame.getHeight(), 1);
+		detectAndRelease(detector, blankFrame, 1);
+		
+		Optional<DetectionFrame> searching = detector.detect(shotFrame, 1);
+		assertTrue(searching.isPresent());
+		assertFalse(detector.detect(shotFrame, 1).isPresent());
+		
+		searching.get().release();
+		assertTrue(detectAndRelease(detector, shotFrame, 1));
+	}
+	
+	@Test
+	public void testSteadyStateDetectionAllocatesAlmostNothing() {
+		final int WARMUP_FRAMES = 500;
+		final int MEASURED_FRAMES = 200;
+		// Detecting on 480x361 frames used to allocate well over a megabyte per frame
+		final long MAX_BYTES_PER_FRAME = 1024;
+		
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threadBean =
+				(com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		
+		FrameDetector detector = new FrameDetector(config, shotFrame.getWidth(), shotFrame.getHeight());
+		
+		for (int i = 0; i < WARMUP_FRAMES; i++) {
+			detectAndRelease(detector, i % 2 == 0 ? blankFrame : shotFrame, BLOOM_COUNT);
+		}
+		
+		long threadId = Thread.currentThread().getId();
+		long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+		
+		for (int i = 0; i < MEASURED_FRAMES; i++) {
+			detectAndRelease(detector, i % 2 == 0 ? blankFrame : shotFrame, BLOOM_COUNT);
+		}
+		
+		long bytesPerFrame = (threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore) / MEASURED_FRAMES;
+		
+		assertTrue(String.format("Detection allocated %d bytes per frame", bytesPerFrame),
+				bytesPerFrame < MAX_BYTES_PER_FRAME);
+	}
+}
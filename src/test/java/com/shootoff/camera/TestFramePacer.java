@@ -0,0 +1,113 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestFramePacer {
+	private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+	
+	@Test
+	public void testDelaySubtractsProcessingTime() {
+		FramePacer pacer = new FramePacer(() -> 20);
+		
+		assertEquals(50 * MS, pacer.getFrameInterval());
+		assertEquals(50 * MS, pacer.getDelay(0, 0));
+		assertEquals(35 * MS, pacer.getDelay(0, 15 * MS));
+		
+		// Reading took longer than a frame, so read again right away
+		assertEquals(0, pacer.getDelay(0, 80 * MS));
+	}
+	
+	@Test
+	public void testUnknownFPSUsesDefaultInterval() {
+		for (double fps : new double[] { 0, -1, Double.NaN, Double.POSITIVE_INFINITY }) {
+			FramePacer pacer = new FramePacer(() -> fps);
+			
+			assertEquals(0, pacer.getTargetFPS(), 0.0001);
+			assertEquals(FramePacer.DEFAULT_INTERVAL, pacer.getFrameInterval());
+		}
+	}
+	
+	@Test
+	public void testTargetFPSIsCheckedEveryFrame() {
+		double[] fps = { 0 };
+		FramePacer pacer = new FramePacer(() -> fps[0]);
+		
+		assertEquals(FramePacer.DEFAULT_INTERVAL, pacer.getFrameInterval());
+		
+		fps[0] = 10;
+		assertEquals(100 * MS, pacer.getFrameInterval());
+	}
+	
+	@Test
+	public void testUnknownFPSUsesMeasuredReadTime() {
+		FramePacer pacer = new FramePacer(() -> -1);
+		
+		// A source that blocks for 10 ms per frame, i.e. 100 fps
+		long now = 0;
+		for (int i = 1; i < FramePacer.MEASURED_READS; i++) {
+			pacer.frameDelivered(now, now += 10 * MS);
+			assertEquals(FramePacer.DEFAULT_INTERVAL, pacer.getFrameInterval());
+		}
+		
+		pacer.frameDelivered(now, now += 10 * MS);
+		assertEquals(10 * MS, pacer.getFrameInterval());
+		
+		// Reading took the whole interval, so there is nothing to wait for
+		assertEquals(0, pacer.getDelay(0, 10 * MS));
+	}
+	
+	@Test
+	public void testQuickReadsKeepDefaultInterval() {
+		FramePacer pacer = new FramePacer(() -> 0);
+		
+		// Reads that return right away aren't waiting for the source
+		long now = 0;
+		for (int i = 0; i < 50; i++) {
+			pacer.frameDelivered(now, now + MS);
+			now += FramePacer.DEFAULT_INTERVAL;
+		}
+		
+		assertEquals(FramePacer.DEFAULT_INTERVAL, pacer.getFrameInterval());
+	}
+	
+	@Test
+	public void testTargetFPSOverridesMeasuredReadTime() {
+		FramePacer pacer = new FramePacer(() -> 20);
+		
+		long now = 0;
+		for (int i = 0; i < 50; i++) pacer.frameDelivered(now, now += 10 * MS);
+		
+		assertEquals(50 * MS, pacer.getFrameInterval());
+	}
+	
+	@Test
+	public void testAchievedFPS() {
+		FramePacer pacer = new FramePacer(() -> 30);
+		
+		assertEquals(0, pacer.getAchievedFPS(), 0.0001);
+		assertEquals(-1, pacer.frameDelivered(0));
+		assertEquals(0, pacer.getAchievedFPS(), 0.0001);
+		
+		// The camera promised 30 fps but only delivers 20
+		for (int i = 1; i <= 50; i++) assertEquals(50 * MS, pacer.frameDelivered(i * 50 * MS));
+		
+		assertEquals(20, pacer.getAchievedFPS(), 0.0001);
+		assertEquals(30, pacer.getTargetFPS(), 0.0001);
+	}
+	
+	@Test
+	public void testAchievedFPSFollowsChanges() {
+		FramePacer pacer = new FramePacer(() -> 30);
+		
+		long now = 0;
+		pacer.frameDelivered(now);
+		for (int i = 0; i < 50; i++) pacer.frameDelivered(now += 50 * MS);
+		for (int i = 0; i < 50; i++) pacer.frameDelivered(now += 25 * MS);
+		
+		assertEquals(40, pacer.getAchievedFPS(), 0.5);
+	}
+}
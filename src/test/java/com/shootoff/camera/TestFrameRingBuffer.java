@@ -0,0 +1,215 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TestFrameRingBuffer {
+	// Publishes a 1x1 frame whose red component is value
+	private void publish(FrameRingBuffer ring, int value) {
+		ByteBuffer buffer = ring.claimBuffer();
+		buffer.put((byte)value).put((byte)0).put((byte)0);
+		ring.publish(buffer, value);
+	}
+	
+	@Test
+	public void testCapacityIsRoundedToPowerOfTwo() {
+		assertEquals(8, new FrameRingBuffer(5, 1, 1).getCapacity());
+		assertEquals(8, new FrameRingBuffer(8, 1, 1).getCapacity());
+		assertEquals(1, new FrameRingBuffer(1, 1, 1).getCapacity());
+	}
+	
+	@Test
+	public void testPublishedFramesAreReadable() {
+		FrameRingBuffer ring = new FrameRingBuffer(4, 1, 1);
+		
+		assertEquals(-1, ring.getLastPublished());
+		assertFalse(ring.acquireLatest().isPresent());
+		
+		publish(ring, 100);
+		publish(ring, 200);
+		
+		assertEquals(1, ring.getLastPublished());
+		
+		CapturedFrame latest = ring.acquireLatest().get();
+		assertEquals(200, latest.getTimestamp());
+		assertEquals((byte)200, latest.getPixels().get(0));
+		assertEquals(3, latest.getPixels().capacity());
+		latest.release();
+		
+		CapturedFrame first = ring.acquire(0).get();
+		assertEquals(100, first.getTimestamp());
+		assertEquals((byte)100, first.getPixels().get(0));
+		first.release();
+		
+		assertFalse(ring.acquire(2).isPresent());
+	}
+	
+	@Test
+	public void testOverwrittenFramesAreGone() {
+		FrameRingBuffer ring = new FrameRingBuffer(4, 1, 1);
+		
+		for (int i = 0; i < 6; i++) publish(ring, i);
+		
+		assertFalse(ring.acquire(0).isPresent());
+		assertFalse(ring.acquire(1).isPresent());
+		assertEquals(2, ring.acquire(2).get().getSequence());
+		assertEquals(5, ring.acquire(5).get().getSequence());
+	}
+	
+	@Test
+	public void testBuffersAreRecycled() {
+		FrameRingBuffer ring = new FrameRingBuffer(4, 1, 1);
+		
+		for (int i = 0; i < 100; i++) publish(ring, i);
+		
+		// One buffer for each slot plus the one being filled when a slot is
+		// overwritten
+		assertEquals(5, ring.getAllocatedBuffers());
+	}
+	
+	@Test
+	public void testAcquiredFrameIsNotRecycled() {
+		FrameRingBuffer ring = new FrameRingBuffer(2, 1, 1);
+		
+		publish(ring, 7);
+		CapturedFrame held = ring.acquire(0).get();
+		
+		for (int i = 0; i < 10; i++) publish(ring, 50 + i);
+		
+		assertEquals((byte)7, held.getPixels().get(0));
+		assertEquals(4, ring.getAllocatedBuffers());
+		
+		held.release();
+		for (int i = 0; i < 10; i++) publish(ring, 100 + i);
+		
+		assertEquals(4, ring.getAllocatedBuffers());
+	}
+	
+	@Test
+	public void testUnpublishedBufferCanBeRecycled() {
+		FrameRingBuffer ring = new FrameRingBuffer(2, 2, 2);
+		
+		ByteBuffer buffer = ring.claimBuffer();
+		assertEquals(12, buffer.remaining());
+		ring.recycle(buffer);
+		
+		assertSame(buffer, ring.claimBuffer());
+		assertEquals(1, ring.getAllocatedBuffers());
+	}
+	
+	@Test
+	public void testEveryFrameConsumerSeesFramesInOrder() throws InterruptedException {
+		FrameRingBuffer ring = new FrameRingBuffer(16, 1, 1);
+		List<Long> seen = Collections.synchronizedList(new ArrayList<Long>());
+		CountDownLatch done = new CountDownLatch(10);
+		
+		FrameConsumer consumer = new FrameConsumer("test", ring, FrameConsumer.SkipPolicy.EVERY_FRAME, () -> 0,
+				(frame) -> {
+					seen.add(frame.getSequence());
+					done.countDown();
+				});
+		Thread thread = consumer.start();
+		
+		for (int i = 0; i < 10; i++) publish(ring, i);
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		ring.close();
+		thread.join(5000);
+		
+		assertFalse(thread.isAlive());
+		assertEquals(10, consumer.getConsumedCount());
+		assertEquals(0, consumer.getSkippedCount());
+		for (int i = 0; i < 10; i++) assertEquals(i, (long)seen.get(i));
+	}
+	
+	@Test
+	public void testLatestConsumerSkipsFramesWhileBusy() throws InterruptedException {
+		FrameRingBuffer ring = new FrameRingBuffer(16, 1, 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Long> seen = Collections.synchronizedList(new ArrayList<Long>());
+		
+		FrameConsumer consumer = new FrameConsumer("test", ring, FrameConsumer.SkipPolicy.LATEST, () -> 0,
+				(frame) -> {
+					seen.add(frame.getSequence());
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+		Thread thread = consumer.start();
+		
+		publish(ring, 0);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		// Published while the stage is still busy with the first frame
+		for (int i = 1; i < 5; i++) publish(ring, i);
+		
+		release.countDown();
+		
+		long deadline = System.currentTimeMillis() + 5000;
+		while (consumer.getConsumedCount() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		
+		ring.close();
+		thread.join(5000);
+		
+		assertFalse(thread.isAlive());
+		assertEquals(2, consumer.getConsumedCount());
+		assertEquals(3, consumer.getSkippedCount());
+		assertEquals(0, (long)seen.get(0));
+		assertEquals(4, (long)seen.get(1));
+	}
+	
+	@Test
+	public void testEveryFrameConsumerSkipsOverwrittenFrames() throws InterruptedException {
+		FrameRingBuffer ring = new FrameRingBuffer(4, 1, 1);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Long> seen = Collections.synchronizedList(new ArrayList<Long>());
+		
+		FrameConsumer consumer = new FrameConsumer("test", ring, FrameConsumer.SkipPolicy.EVERY_FRAME, () -> 0,
+				(frame) -> {
+					seen.add(frame.getSequence());
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				});
+		Thread thread = consumer.start();
+		
+		publish(ring, 0);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		// Frames 1 and 2 are overwritten before the consumer gets to them
+		for (int i = 1; i < 7; i++) publish(ring, i);
+		
+		release.countDown();
+		
+		long deadline = System.currentTimeMillis() + 5000;
+		while (consumer.getConsumedCount() < 5 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		
+		ring.close();
+		thread.join(5000);
+		
+		assertEquals(5, consumer.getConsumedCount());
+		assertEquals(2, consumer.getSkippedCount());
+		assertEquals(3, (long)seen.get(1));
+		assertEquals(6, (long)seen.get(4));
+	}
+}
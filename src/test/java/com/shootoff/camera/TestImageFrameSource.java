@@ -0,0 +1,96 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TestImageFrameSource {
+	private BufferedImage createFrame(int rgb) {
+		BufferedImage frame = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+		
+		for (int y = 0; y < frame.getHeight(); y++) {
+			for (int x = 0; x < frame.getWidth(); x++) {
+				frame.setRGB(x, y, rgb + x);
+			}
+		}
+		
+		return frame;
+	}
+	
+	@Test
+	public void testFramesAreCopiedAsRGBBytes() {
+		ImageFrameSource source = new ImageFrameSource("test", Arrays.asList(createFrame(0x102030)), 30, false);
+		source.open();
+		
+		ByteBuffer target = ByteBuffer.allocateDirect(3 * 2 * FrameSource.BYTES_PER_PIXEL);
+		assertTrue(source.read(target));
+		
+		assertEquals(0x10, target.get(0));
+		assertEquals(0x20, target.get(1));
+		assertEquals(0x30, target.get(2));
+		assertEquals(0x31, target.get(5));
+	}
+	
+	@Test
+	public void testSourceClosesAfterLastFrame() {
+		ImageFrameSource source = new ImageFrameSource("test",
+				Arrays.asList(createFrame(0x000000), createFrame(0x0000FF)), 30, false);
+		
+		ByteBuffer target = ByteBuffer.allocate(3 * 2 * FrameSource.BYTES_PER_PIXEL);
+		assertFalse(source.read(target));
+		
+		source.open();
+		for (int i = 0; i < 2; i++) {
+			target.clear();
+			assertTrue(source.read(target));
+		}
+		
+		target.clear();
+		assertFalse(source.read(target));
+		assertFalse(source.isOpen());
+	}
+	
+	@Test
+	public void testLoopingSourceStartsOver() {
+		ImageFrameSource source = new ImageFrameSource("test",
+				Arrays.asList(createFrame(0x000000), createFrame(0x0000F0)), 30, true);
+		source.open();
+		
+		ByteBuffer target = ByteBuffer.allocate(3 * 2 * FrameSource.BYTES_PER_PIXEL);
+		for (int i = 0; i < 5; i++) {
+			target.clear();
+			assertTrue(source.read(target));
+			assertEquals(i % 2 == 0 ? 0 : (byte)0xF0, target.get(2));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testFramesMustBeTheSameSize() {
+		new ImageFrameSource("test", Arrays.asList(createFrame(0),
+				new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB)), 30, false);
+	}
+	
+	@Test
+	public void testCapturedFrameConvertsBackToImage() {
+		BufferedImage original = createFrame(0x405060);
+		FrameRingBuffer ring = new FrameRingBuffer(2, original.getWidth(), original.getHeight());
+		
+		ByteBuffer buffer = ring.claimBuffer();
+		ImageFrameSource.copyPixels(original, buffer);
+		ring.publish(buffer, 0);
+		
+		CapturedFrame frame = ring.acquireLatest().get();
+		BufferedImage image = frame.toBufferedImage();
+		frame.release();
+		
+		for (int y = 0; y < original.getHeight(); y++) {
+			for (int x = 0; x < original.getWidth(); x++) {
+				assertEquals(original.getRGB(x, y), image.getRGB(x, y));
+			}
+		}
+	}
+}
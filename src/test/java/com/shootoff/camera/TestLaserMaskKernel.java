@@ -0,0 +1,178 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+public class TestLaserMaskKernel {
+	private Configuration config;
+	private BufferedImage testFrame;
+	
+	@Before
+	public void setUp() throws ConfigurationException, IOException {
+		config = new Configuration(new String[0]);
+		testFrame = ImageIO.read(getClass().getResourceAsStream("/shotsearcher/interference_one_shot.png"));
+	}
+	
+	private BufferedImage convert(BufferedImage frame, int type) {
+		BufferedImage converted = new BufferedImage(frame.getWidth(), frame.getHeight(), type);
+		converted.createGraphics().drawImage(frame, 0, 0, null);
+		return converted;
+	}
+	
+	private void assertMatchesImageThreshold(BufferedImage frame) {
+		int width = frame.getWidth();
+		int height = frame.getHeight();
+		int[] rgb = new int[width * height];
+		long[] mask = new long[DetectionFrame.getWordCount(width, height)];
+		
+		LaserMaskKernel.apply(frame, LaserMaskKernel.createLaserLevels(config.getLaserIntensity()), rgb, mask);
+		
+		BufferedImage grayScale = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+		grayScale.createGraphics().drawImage(convert(frame, BufferedImage.TYPE_INT_RGB), 0, 0, null);
+		byte[] expected = CameraManager.getFrameCount(CameraManager.threshold(config, grayScale));
+		
+		int whitePixels = 0;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int i = y * width + x;
+				boolean white = (mask[i >>> 6] & (1L << i)) != 0;
+				
+				assertEquals(expected[i] == DetectionFrame.WHITE_PIXEL, white);
+				assertEquals(frame.getRGB(x, y), rgb[i]);
+				if (white) whitePixels++;
+			}
+		}
+		
+		assertTrue(whitePixels > 0);
+		
+		int maskedPixels = 0;
+		for (long word : mask) maskedPixels += Long.bitCount(word);
+		assertEquals(whitePixels, maskedPixels);
+	}
+	
+	// A copy of the test frame whose pixels have varying alpha
+	private BufferedImage createTranslucent(int type) {
+		BufferedImage translucent = convert(testFrame, type);
+		
+		for (int y = 0; y < translucent.getHeight(); y++) {
+			for (int x = 0; x < translucent.getWidth(); x++) {
+				int alpha = (x + y) & 0xFF;
+				translucent.setRGB(x, y, (alpha << 24) | (testFrame.getRGB(x, y) & 0xFFFFFF));
+			}
+		}
+		
+		return translucent;
+	}
+	
+	// For translucent frames the kernel matches thresholding the frame's
+	// getRGB values, which ignores alpha
+	private void assertMatchesGetRGBThreshold(BufferedImage frame) {
+		int width = frame.getWidth();
+		int height = frame.getHeight();
+		byte[] laserLevels = LaserMaskKernel.createLaserLevels(config.getLaserIntensity());
+		int[] rgb = new int[width * height];
+		long[] mask = new long[DetectionFrame.getWordCount(width, height)];
+		
+		LaserMaskKernel.apply(frame, laserLevels, rgb, mask);
+		
+		int[] expectedRGB = frame.getRGB(0, 0, width, height, null, 0, width);
+		assertArrayEquals(expectedRGB, rgb);
+		
+		for (int i = 0; i < expectedRGB.length; i++) {
+			boolean white = (mask[i >>> 6] & (1L << i)) != 0;
+			assertEquals(laserLevels[LaserMaskKernel.toGray(expectedRGB[i])] == DetectionFrame.WHITE_PIXEL, white);
+		}
+	}
+	
+	@Test
+	public void testThreeByteBGR() {
+		assertMatchesImageThreshold(convert(testFrame, BufferedImage.TYPE_3BYTE_BGR));
+	}
+	
+	@Test
+	public void testFourByteABGR() {
+		assertMatchesImageThreshold(convert(testFrame, BufferedImage.TYPE_4BYTE_ABGR));
+	}
+	
+	@Test
+	public void testIntRGB() {
+		assertMatchesImageThreshold(convert(testFrame, BufferedImage.TYPE_INT_RGB));
+	}
+	
+	@Test
+	public void testIntARGB() {
+		assertMatchesImageThreshold(convert(testFrame, BufferedImage.TYPE_INT_ARGB));
+	}
+	
+	@Test
+	public void testIntBGRFallsBackToGetRGB() {
+		assertMatchesImageThreshold(convert(testFrame, BufferedImage.TYPE_INT_BGR));
+	}
+	
+	@Test
+	public void testTranslucentFourByteABGR() {
+		assertMatchesGetRGBThreshold(createTranslucent(BufferedImage.TYPE_4BYTE_ABGR));
+	}
+	
+	@Test
+	public void testTranslucentIntARGB() {
+		assertMatchesGetRGBThreshold(createTranslucent(BufferedImage.TYPE_INT_ARGB));
+	}
+	
+	@Test
+	public void testPremultipliedFallsBackToGetRGB() {
+		assertMatchesGetRGBThreshold(createTranslucent(BufferedImage.TYPE_4BYTE_ABGR_PRE));
+		assertMatchesGetRGBThreshold(createTranslucent(BufferedImage.TYPE_INT_ARGB_PRE));
+	}
+	
+	@Test
+	public void testSubimage() {
+		BufferedImage frame = convert(testFrame, BufferedImage.TYPE_3BYTE_BGR);
+		assertMatchesImageThreshold(frame.getSubimage(300, 250, 150, 100));
+	}
+	
+	@Test
+	public void testPixelBufferMatchesImage() {
+		int width = testFrame.getWidth();
+		int height = testFrame.getHeight();
+		byte[] laserLevels = LaserMaskKernel.createLaserLevels(config.getLaserIntensity());
+		
+		int[] expectedRGB = new int[width * height];
+		long[] expectedMask = new long[DetectionFrame.getWordCount(width, height)];
+		LaserMaskKernel.apply(convert(testFrame, BufferedImage.TYPE_3BYTE_BGR), laserLevels, expectedRGB,
+				expectedMask);
+		
+		ByteBuffer pixels = ByteBuffer.allocateDirect(width * height * FrameSource.BYTES_PER_PIXEL);
+		ImageFrameSource.copyPixels(testFrame, pixels);
+		
+		int[] rgb = new int[width * height];
+		long[] mask = new long[expectedMask.length];
+		LaserMaskKernel.apply(pixels, width, height, laserLevels, rgb, mask);
+		
+		assertArrayEquals(expectedRGB, rgb);
+		assertArrayEquals(expectedMask, mask);
+	}
+	
+	@Test
+	public void testLaserLevelsFollowIntensity() {
+		config.setLaserIntensity(255);
+		byte[] laserLevels = LaserMaskKernel.createLaserLevels(config.getLaserIntensity());
+		
+		for (byte level : laserLevels) assertEquals(DetectionFrame.BLACK_PIXEL, level);
+		
+		laserLevels = LaserMaskKernel.createLaserLevels(0);
+		assertEquals(DetectionFrame.BLACK_PIXEL, laserLevels[0]);
+		assertEquals(DetectionFrame.WHITE_PIXEL, laserLevels[255]);
+	}
+}
@@ -0,0 +1,138 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestRawFrameReader {
+	private File captureFile;
+	
+	@Before
+	public void setUp() throws IOException {
+		captureFile = File.createTempFile("capture", RawFrameWriter.EXTENSION);
+	}
+	
+	@After
+	public void tearDown() {
+		captureFile.delete();
+	}
+	
+	// A 2x1 frame whose bytes count up from first
+	private ByteBuffer createFrame(int first) {
+		ByteBuffer frame = ByteBuffer.allocateDirect(2 * FrameSource.BYTES_PER_PIXEL);
+		for (int i = 0; i < frame.capacity(); i++) frame.put((byte)(first + i));
+		frame.flip();
+		return frame;
+	}
+	
+	private void writeFrames(int count) throws IOException {
+		try (RawFrameWriter writer = new RawFrameWriter(captureFile, 2, 1)) {
+			for (int i = 0; i < count; i++) writer.write(createFrame(i * 10), 1000 + i * 50);
+			assertEquals(count, writer.getFrameCount());
+		}
+	}
+	
+	@Test
+	public void testFramesAreExact() throws IOException {
+		writeFrames(3);
+		
+		assertEquals(RawFrameWriter.HEADER_SIZE + 3 * RawFrameWriter.getFrameRecordSize(2, 1), 
+				captureFile.length());
+		
+		try (RawFrameReader reader = new RawFrameReader(captureFile)) {
+			assertEquals(2, reader.getWidth());
+			assertEquals(1, reader.getHeight());
+			assertEquals(3, reader.getFrameCount());
+			assertEquals(20, reader.getFPS(), 0.0001);
+			
+			for (int i = 0; i < 3; i++) {
+				assertEquals(1000 + i * 50, reader.getTimestamp(i));
+				assertEquals(createFrame(i * 10), reader.getFrame(i));
+				assertTrue(reader.getFrame(i).isReadOnly());
+			}
+		}
+	}
+	
+	@Test
+	public void testWriterLeavesCallersBufferAlone() throws IOException {
+		ByteBuffer frame = createFrame(0);
+		
+		try (RawFrameWriter writer = new RawFrameWriter(captureFile, 2, 1)) {
+			writer.write(frame, 0);
+		}
+		
+		assertEquals(0, frame.position());
+		assertEquals(frame.capacity(), frame.limit());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void testWrongFrameSize() throws IOException {
+		try (RawFrameWriter writer = new RawFrameWriter(captureFile, 2, 2)) {
+			writer.write(createFrame(0), 0);
+		}
+	}
+	
+	@Test
+	public void testPartialFrameIsIgnored() throws IOException {
+		writeFrames(2);
+		
+		// As if the capture was cut off while writing a third frame
+		try (RandomAccessFile file = new RandomAccessFile(captureFile, "rw")) {
+			file.setLength(file.length() + 5);
+		}
+		
+		try (RawFrameReader reader = new RawFrameReader(captureFile)) {
+			assertEquals(2, reader.getFrameCount());
+		}
+	}
+	
+	@Test(expected=IndexOutOfBoundsException.class)
+	public void testFrameOutOfRange() throws IOException {
+		writeFrames(2);
+		
+		try (RawFrameReader reader = new RawFrameReader(captureFile)) {
+			reader.getFrame(2);
+		}
+	}
+	
+	@Test(expected=IOException.class)
+	public void testNotARawCapture() throws IOException {
+		try (FileOutputStream out = new FileOutputStream(captureFile)) {
+			out.write(new byte[64]);
+		}
+		
+		new RawFrameReader(captureFile).close();
+	}
+	
+	@Test
+	public void testFrameSourceReplaysCapture() throws IOException {
+		writeFrames(2);
+		
+		RawFrameSource source = new RawFrameSource(captureFile, false);
+		assertEquals(2, source.getWidth());
+		assertEquals(1, source.getHeight());
+		assertEquals(20, source.getFPS(), 0.0001);
+		
+		source.open();
+		ByteBuffer target = ByteBuffer.allocateDirect(2 * FrameSource.BYTES_PER_PIXEL);
+		
+		for (int i = 0; i < 2; i++) {
+			target.clear();
+			assertTrue(source.read(target));
+			target.flip();
+			assertEquals(createFrame(i * 10), target);
+		}
+		
+		target.clear();
+		assertFalse(source.read(target));
+		assertFalse(source.isOpen());
+	}
+}
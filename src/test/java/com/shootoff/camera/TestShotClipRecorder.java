@@ -0,0 +1,119 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestShotClipRecorder {
+	private ShotClipRecorder recorder;
+	
+	@After
+	public void tearDown() {
+		if (recorder != null) recorder.close();
+	}
+	
+	@Test
+	public void testCapacityCoversClip() {
+		recorder = new ShotClipRecorder("test", new File("clips"), 1000, 1000);
+		
+		// Two seconds of clip and a second of slack
+		assertEquals(3 * ShotClipRecorder.CLIP_FPS + 1, recorder.getCapacity());
+	}
+	
+	@Test
+	public void testOldestFramesAreDropped() {
+		recorder = new ShotClipRecorder("test", new File("clips"), 0, 0);
+		int capacity = recorder.getCapacity();
+		
+		for (int i = 0; i < capacity + 5; i++) recorder.add(i, new byte[10]);
+		
+		assertEquals(capacity, recorder.getFrameCount());
+		assertEquals(capacity * 10, recorder.getBufferedBytes());
+		assertTrue(recorder.getFrames(0, 4).isEmpty());
+		assertEquals(capacity, recorder.getFrames(5, capacity + 4).size());
+	}
+	
+	@Test
+	public void testMemoryIsBounded() {
+		recorder = new ShotClipRecorder("test", new File("clips"), 5000, 5000, 100);
+		
+		for (int i = 0; i < 20; i++) recorder.add(i, new byte[30]);
+		
+		assertEquals(3, recorder.getFrameCount());
+		assertEquals(90, recorder.getBufferedBytes());
+		assertEquals(17, recorder.getFrames(0, 100).get(0).getTimestamp());
+	}
+	
+	@Test
+	public void testRecordedFramesAreCompressed() {
+		recorder = new ShotClipRecorder("test", new File("clips"), 1000, 1000);
+		FrameRingBuffer ring = new FrameRingBuffer(64, 48);
+		
+		ring.publish(ring.claimBuffer(), 42);
+		CapturedFrame frame = ring.acquireLatest().get();
+		recorder.record(frame);
+		frame.release();
+		
+		List<ShotClipRecorder.ClipFrame> frames = recorder.getFrames(0, 100);
+		assertEquals(1, frames.size());
+		assertEquals(42, frames.get(0).getTimestamp());
+		
+		// A black frame compresses to far less than its raw size
+		byte[] jpeg = frames.get(0).getJPEG();
+		assertTrue(jpeg.length < ring.getFrameSize());
+		assertEquals((byte)0xFF, jpeg[0]);
+		assertEquals((byte)0xD8, jpeg[1]);
+	}
+	
+	@Test
+	public void testClipHasFramesAroundShot() throws InterruptedException {
+		List<ShotClipRecorder.ClipFrame> written = new ArrayList<ShotClipRecorder.ClipFrame>();
+		List<File> files = new ArrayList<File>();
+		CountDownLatch clipWritten = new CountDownLatch(1);
+		
+		recorder = new ShotClipRecorder("Test Camera", new File("clips"), 100, 50) {
+			@Override
+			protected void writeClip(List<ClipFrame> frames, File clipFile) {
+				written.addAll(frames);
+				files.add(clipFile);
+				clipWritten.countDown();
+			}
+		};
+		
+		for (int i = 0; i < 20; i++) recorder.add(i * 20, new byte[1]);
+		
+		// The shot's post-roll already passed, so the clip is written right away
+		recorder.saveClip(7, 200);
+		assertTrue(clipWritten.await(5, TimeUnit.SECONDS));
+		
+		assertEquals(8, written.size());
+		assertEquals(100, written.get(0).getTimestamp());
+		assertEquals(240, written.get(written.size() - 1).getTimestamp());
+		assertTrue(files.get(0).getName().startsWith("Test_Camera-shot007-"));
+		assertTrue(files.get(0).getName().endsWith(".mp4"));
+	}
+	
+	@Test
+	public void testNoClipWithoutFrames() throws InterruptedException {
+		CountDownLatch clipWritten = new CountDownLatch(1);
+		
+		recorder = new ShotClipRecorder("test", new File("clips"), 100, 50) {
+			@Override
+			protected void writeClip(List<ClipFrame> frames, File clipFile) {
+				clipWritten.countDown();
+			}
+		};
+		
+		recorder.saveClip(1, 200);
+		assertFalse(clipWritten.await(200, TimeUnit.MILLISECONDS));
+		assertEquals(0, recorder.getSavedClipCount());
+	}
+}
@@ -0,0 +1,143 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+public class TestShotSearchExecutor {
+	private Configuration config;
+	private List<Integer> searched;
+	private CountDownLatch firstSearchStarted;
+	private CountDownLatch unblockSearches;
+	private ShotSearchExecutor executor;
+	
+	@Before
+	public void setUp() throws ConfigurationException {
+		config = new Configuration(new String[0]);
+		searched = Collections.synchronizedList(new ArrayList<Integer>());
+		firstSearchStarted = new CountDownLatch(1);
+		unblockSearches = new CountDownLatch(1);
+	}
+	
+	@After
+	public void tearDown() {
+		if (executor != null) executor.shutdown();
+	}
+	
+	private DetectionFrame acquiredFrame() {
+		DetectionFrame frame = new DetectionFrame(1, 1);
+		assertTrue(frame.acquire());
+		return frame;
+	}
+	
+	private ShotSearcher createSearcher(int frameNumber, DetectionFrame frame) {
+		return new ShotSearcher(config, null, null, frame) {
+			@Override
+			public void run() {
+				firstSearchStarted.countDown();
+				
+				try {
+					unblockSearches.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				
+				searched.add(frameNumber);
+				discard();
+			}
+		};
+	}
+	
+	private ShotSearcher createSearcher(int frameNumber) {
+		return createSearcher(frameNumber, acquiredFrame());
+	}
+	
+	@Test
+	public void testSearchesRunInFrameOrder() throws InterruptedException {
+		executor = new ShotSearchExecutor("test", 16, ShotSearchExecutor.DropPolicy.DROP_OLDEST);
+		unblockSearches.countDown();
+		
+		for (int i = 0; i < 10; i++) executor.submit(createSearcher(i));
+		executor.awaitIdle();
+		
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), searched);
+		assertEquals(10, executor.getQueuedCount());
+		assertEquals(0, executor.getDroppedCount());
+		assertEquals(10, executor.getCompletedCount());
+	}
+	
+	@Test
+	public void testDropOldestKeepsNewestSearches() throws InterruptedException {
+		executor = new ShotSearchExecutor("test", 2, ShotSearchExecutor.DropPolicy.DROP_OLDEST);
+		
+		executor.submit(createSearcher(0));
+		assertTrue(firstSearchStarted.await(5, TimeUnit.SECONDS));
+		
+		DetectionFrame droppedFrame = acquiredFrame();
+		executor.submit(createSearcher(1, droppedFrame));
+		executor.submit(createSearcher(2));
+		executor.submit(createSearcher(3));
+		
+		assertEquals(1, executor.getDroppedCount());
+		assertTrue("Dropped frames must go back to the detector", droppedFrame.acquire());
+		
+		unblockSearches.countDown();
+		executor.awaitIdle();
+		
+		assertEquals(Arrays.asList(0, 2, 3), searched);
+		assertEquals(4, executor.getQueuedCount());
+		assertEquals(3, executor.getCompletedCount());
+	}
+	
+	@Test
+	public void testDropNewestKeepsOldestSearches() throws InterruptedException {
+		executor = new ShotSearchExecutor("test", 2, ShotSearchExecutor.DropPolicy.DROP_NEWEST);
+		
+		executor.submit(createSearcher(0));
+		assertTrue(firstSearchStarted.await(5, TimeUnit.SECONDS));
+		
+		executor.submit(createSearcher(1));
+		executor.submit(createSearcher(2));
+		DetectionFrame droppedFrame = acquiredFrame();
+		executor.submit(createSearcher(3, droppedFrame));
+		
+		assertEquals(1, executor.getDroppedCount());
+		assertTrue(droppedFrame.acquire());
+		
+		unblockSearches.countDown();
+		executor.awaitIdle();
+		
+		assertEquals(Arrays.asList(0, 1, 2), searched);
+		assertEquals(3, executor.getQueuedCount());
+		assertEquals(3, executor.getCompletedCount());
+	}
+	
+	@Test
+	public void testShutdownReleasesWaitingFrames() throws InterruptedException {
+		executor = new ShotSearchExecutor("test", 2, ShotSearchExecutor.DropPolicy.DROP_OLDEST);
+		
+		executor.submit(createSearcher(0));
+		assertTrue(firstSearchStarted.await(5, TimeUnit.SECONDS));
+		
+		DetectionFrame waitingFrame = acquiredFrame();
+		executor.submit(createSearcher(1, waitingFrame));
+		executor.shutdown();
+		unblockSearches.countDown();
+		
+		assertTrue(waitingFrame.acquire());
+		assertEquals(1, executor.getDroppedCount());
+		assertEquals(0, executor.getPendingCount());
+	}
+}
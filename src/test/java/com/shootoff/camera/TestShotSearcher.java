@@ -144,4 +144,43 @@ public class TestShotSearcher {
 		assertEquals(331, shots.get(0).getY(), 1);
 		assertEquals(Color.RED, shots.get(0).getColor());
 	}
+	
+	@Test
+	public void testBlobEngineNoInterenceOneShotSectorOff() throws IOException, InterruptedException {
+		config.setShotSearchEngineName("blob");
+		sectorStatuses[1][0] = false;
+		List<Shot> shots = findShots("/shotsearcher/no_interference_one_shot.png");	
+		
+		assertEquals(0, shots.size());
+	}
+	
+	@Test
+	public void testBlobEngineNoInterenceTwoShots() throws IOException, InterruptedException {
+		config.setShotSearchEngineName("blob");
+		List<Shot> shots = findShots("/shotsearcher/no_interference_two_shots.png");	
+		
+		assertEquals(2, shots.size());
+		
+		assertEquals(42, shots.get(0).getX(), 1);
+		assertEquals(33, shots.get(0).getY(), 1);
+		assertEquals(Color.RED, shots.get(0).getColor());
+		
+		assertEquals(53, shots.get(1).getX(), 1);
+		assertEquals(175, shots.get(1).getY(), 1);
+		assertEquals(Color.RED, shots.get(1).getColor());
+	}
+	
+	@Test
+	public void testBlobEngineInterenceOneShot() throws IOException, InterruptedException {
+		config.setShotSearchEngineName("blob");
+		List<Shot> shots = findShots("/shotsearcher/interference_one_shot.png");	
+		
+		assertEquals(1, shots.size());
+		
+		// Real shot, centered on its centroid rather than the sector
+		// search's approximate center
+		assertEquals(411.5, shots.get(0).getX(), 1);
+		assertEquals(332.5, shots.get(0).getY(), 1);
+		assertEquals(Color.RED, shots.get(0).getColor());
+	}
 }
@@ -0,0 +1,141 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+public class TestSyntheticFrameSource {
+	private static final int WIDTH = 320;
+	private static final int HEIGHT = 240;
+	
+	private ByteBuffer read(SyntheticFrameSource source) {
+		ByteBuffer frame = ByteBuffer.allocate(WIDTH * HEIGHT * FrameSource.BYTES_PER_PIXEL);
+		assertTrue(source.read(frame));
+		assertFalse(frame.hasRemaining());
+		return frame;
+	}
+	
+	private int getRGB(ByteBuffer frame, int x, int y) {
+		int i = (y * WIDTH + x) * FrameSource.BYTES_PER_PIXEL;
+		return (frame.get(i) & 0xFF) << 16 | (frame.get(i + 1) & 0xFF) << 8 | (frame.get(i + 2) & 0xFF);
+	}
+	
+	@Test
+	public void testBackgroundColor() {
+		SyntheticFrameSource source = new SyntheticFrameSource("synthetic", WIDTH, HEIGHT, 30);
+		source.setBackgroundColor(new java.awt.Color(10, 20, 30));
+		source.open();
+		
+		ByteBuffer frame = read(source);
+		
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				assertEquals(0x0A141E, getRGB(frame, x, y));
+			}
+		}
+	}
+	
+	@Test
+	public void testClosedSourceHasNoFrames() {
+		SyntheticFrameSource source = new SyntheticFrameSource("synthetic", WIDTH, HEIGHT, 30);
+		assertFalse(source.read(ByteBuffer.allocate(WIDTH * HEIGHT * FrameSource.BYTES_PER_PIXEL)));
+	}
+	
+	@Test
+	public void testLaserDotDuration() {
+		SyntheticFrameSource source = new SyntheticFrameSource("synthetic", WIDTH, HEIGHT, 30);
+		source.setBackgroundColor(java.awt.Color.BLACK);
+		source.addLaserDot(new LaserDot(50, 40, Color.RED, 6, 1, 2, 2));
+		source.open();
+		
+		boolean[] expectedVisible = { false, false, true, true, false };
+		for (boolean visible : expectedVisible) {
+			ByteBuffer frame = read(source);
+			
+			assertEquals(visible ? 0xFFFFFF : 0, getRGB(frame, 50, 40));
+			// The halo is red
+			int halo = getRGB(frame, 55, 40);
+			assertEquals(visible, (halo >> 16) > 0);
+			assertEquals(0, halo & 0xFFFF);
+		}
+		
+		assertEquals(expectedVisible.length, source.getFrameIndex());
+	}
+	
+	@Test
+	public void testLoopingReplaysDots() {
+		SyntheticFrameSource source = new SyntheticFrameSource("synthetic", WIDTH, HEIGHT, 30);
+		source.addLaserDot(new LaserDot(50, 40, Color.RED, 6, 1, 1, 1));
+		source.setLoopLength(3);
+		source.open();
+		
+		for (int i = 0; i < 9; i++) {
+			assertEquals(i % 3 == 1, getRGB(read(source), 50, 40) == 0xFFFFFF);
+		}
+	}
+	
+	@Test
+	public void testNoiseIsSeeded() {
+		SyntheticFrameSource first = new SyntheticFrameSource("first", WIDTH, HEIGHT, 30);
+		SyntheticFrameSource second = new SyntheticFrameSource("second", WIDTH, HEIGHT, 30);
+		SyntheticFrameSource noiseless = new SyntheticFrameSource("noiseless", WIDTH, HEIGHT, 30);
+		first.setNoise(5);
+		second.setNoise(5);
+		first.open();
+		second.open();
+		noiseless.open();
+		
+		for (int i = 0; i < 3; i++) {
+			ByteBuffer noisy = read(first);
+			assertEquals(noisy.rewind(), read(second).rewind());
+			assertNotEquals(noisy.rewind(), read(noiseless).rewind());
+		}
+	}
+	
+	@Test
+	public void testDetectsGroundTruth() throws ConfigurationException {
+		Configuration config = new Configuration(new String[0]);
+		
+		SyntheticFrameSource source = new SyntheticFrameSource("synthetic", WIDTH, HEIGHT, 30);
+		source.setNoise(3);
+		source.addInterference(300, 20, 8);
+		source.addRandomLaserDots(3, 15, 10, Color.RED, 6, 1, 3);
+		source.addRandomLaserDots(2, 50, 10, Color.GREEN, 6, 1, 3);
+		source.open();
+		
+		boolean[][] sectorStatuses = new boolean[ShotSearcher.SECTOR_ROWS][ShotSearcher.SECTOR_COLUMNS];
+		for (boolean[] row : sectorStatuses) Arrays.fill(row, true);
+		
+		List<Shot> shots = new ArrayList<Shot>();
+		FrameDetector detector = new FrameDetector(config, WIDTH, HEIGHT, 1);
+		
+		for (int i = 0; i < 80; i++) {
+			Optional<DetectionFrame> frame = detector.detect(read(source), CameraManager.DEFAULT_BLOOM_COUNT);
+			
+			if (frame.isPresent()) {
+				new ShotSearcher(config, (color, x, y) -> shots.add(new Shot(color, x, y, 0, 1)), sectorStatuses,
+						frame.get()).run();
+			}
+		}
+		
+		List<LaserDot> laserDots = source.getLaserDots();
+		assertEquals(laserDots.size(), shots.size());
+		
+		for (int i = 0; i < laserDots.size(); i++) {
+			assertEquals(laserDots.get(i).getX(), shots.get(i).getX(), 2);
+			assertEquals(laserDots.get(i).getY(), shots.get(i).getY(), 2);
+			assertEquals(laserDots.get(i).getColor(), shots.get(i).getColor());
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package com.shootoff.camera;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestVideoEncoder {
+	private FrameRingBuffer ring;
+	private List<Long> encoded;
+	private CountDownLatch firstEncodeStarted;
+	private CountDownLatch unblockEncoding;
+	private boolean closedVideo;
+	private VideoEncoder encoder;
+	
+	@Before
+	public void setUp() {
+		ring = new FrameRingBuffer(16, 1, 1);
+		encoded = Collections.synchronizedList(new ArrayList<Long>());
+		firstEncodeStarted = new CountDownLatch(1);
+		unblockEncoding = new CountDownLatch(1);
+		closedVideo = false;
+	}
+	
+	@After
+	public void tearDown() {
+		unblockEncoding.countDown();
+		if (encoder != null) encoder.close();
+	}
+	
+	private VideoEncoder createEncoder(long startTime, int queueDepth, VideoEncoder.DropPolicy dropPolicy) {
+		return new VideoEncoder("test", null, startTime, queueDepth, dropPolicy) {
+			@Override
+			protected void encode(CapturedFrame frame) {
+				firstEncodeStarted.countDown();
+				
+				try {
+					unblockEncoding.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				
+				encoded.add(frame.getTimestamp());
+			}
+			
+			@Override
+			protected void closeVideo() {
+				closedVideo = true;
+			}
+		};
+	}
+	
+	// Publishes a frame captured at timestamp and submits it like the
+	// recording stage does
+	private void submit(long timestamp) {
+		ByteBuffer buffer = ring.claimBuffer();
+		ring.publish(buffer, timestamp);
+		
+		CapturedFrame frame = ring.acquireLatest().get();
+		encoder.submit(frame);
+		frame.release();
+	}
+	
+	@Test
+	public void testFramesAreEncodedInOrder() {
+		encoder = createEncoder(0, 16, VideoEncoder.DropPolicy.DROP);
+		unblockEncoding.countDown();
+		
+		for (int i = 0; i < 10; i++) submit(i);
+		encoder.close();
+		
+		assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L), encoded);
+		assertEquals(10, encoder.getEncodedCount());
+		assertEquals(0, encoder.getDroppedCount());
+		assertTrue(closedVideo);
+	}
+	
+	@Test
+	public void testFramesBeforeStartAreSkipped() {
+		encoder = createEncoder(5, 16, VideoEncoder.DropPolicy.DROP);
+		unblockEncoding.countDown();
+		
+		for (int i = 0; i < 8; i++) submit(i);
+		encoder.close();
+		
+		assertEquals(Arrays.asList(5L, 6L, 7L), encoded);
+		assertEquals(0, encoder.getDroppedCount());
+	}
+	
+	@Test
+	public void testDropLeavesOutNewFramesWhenFull() throws InterruptedException {
+		encoder = createEncoder(0, 2, VideoEncoder.DropPolicy.DROP);
+		
+		submit(0);
+		assertTrue(firstEncodeStarted.await(5, TimeUnit.SECONDS));
+		
+		submit(1);
+		submit(2);
+		submit(3);
+		
+		assertEquals(1, encoder.getDroppedCount());
+		assertEquals(2, encoder.getPendingCount());
+		
+		unblockEncoding.countDown();
+		encoder.close();
+		
+		assertEquals(Arrays.asList(0L, 1L, 2L), encoded);
+	}
+	
+	@Test
+	public void testBlockWaitsForRoom() throws InterruptedException {
+		encoder = createEncoder(0, 1, VideoEncoder.DropPolicy.BLOCK);
+		
+		submit(0);
+		assertTrue(firstEncodeStarted.await(5, TimeUnit.SECONDS));
+		submit(1);
+		
+		CountDownLatch submitted = new CountDownLatch(1);
+		new Thread(() -> {
+				submit(2);
+				submitted.countDown();
+			}).start();
+		
+		assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+		
+		unblockEncoding.countDown();
+		assertTrue(submitted.await(5, TimeUnit.SECONDS));
+		encoder.close();
+		
+		assertEquals(Arrays.asList(0L, 1L, 2L), encoded);
+		assertEquals(0, encoder.getDroppedCount());
+	}
+	
+	@Test
+	public void testEncodedFramesAreReleased() {
+		encoder = createEncoder(0, 16, VideoEncoder.DropPolicy.DROP);
+		unblockEncoding.countDown();
+		
+		// More frames than the ring holds, so buffers are only reused if the
+		// encoder hands its frames back
+		for (int i = 0; i < 64; i++) submit(i);
+		encoder.close();
+		
+		assertEquals(64, encoded.size());
+		assertTrue(ring.getAllocatedBuffers() < 64);
+	}
+}
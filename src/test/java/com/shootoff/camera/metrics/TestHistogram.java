@@ -0,0 +1,70 @@
+package com.shootoff.camera.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class TestHistogram {
+	@Test
+	public void testEmptyHistogram() {
+		Histogram histogram = new Histogram();
+		
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean(), 0.0001);
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+	
+	@Test
+	public void testSmallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 20; i++) histogram.record(i);
+		
+		assertEquals(20, histogram.getCount());
+		assertEquals(10.5, histogram.getMean(), 0.0001);
+		assertEquals(10, histogram.getValueAtPercentile(50));
+		assertEquals(18, histogram.getValueAtPercentile(90));
+		assertEquals(20, histogram.getValueAtPercentile(100));
+		assertEquals(20, histogram.getMax());
+	}
+	
+	@Test
+	public void testLargeValuesAreWithinPrecision() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 100000; i++) histogram.record(i * 10L);
+		
+		assertEquals(500000, histogram.getValueAtPercentile(50), 500000 * 0.04);
+		assertEquals(990000, histogram.getValueAtPercentile(99), 990000 * 0.04);
+		assertEquals(1000000, histogram.getValueAtPercentile(100));
+	}
+	
+	@Test
+	public void testBucketsCoverEveryValue() {
+		long[] values = { 0, 31, 32, 33, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE };
+		
+		for (long value : values) {
+			int index = Histogram.getIndex(value);
+			assertTrue(Histogram.getHighestValue(index) >= value);
+			if (index > 0) assertTrue(Histogram.getHighestValue(index - 1) < value);
+		}
+	}
+	
+	@Test
+	public void testNegativeValuesCountAsZero() {
+		Histogram histogram = new Histogram();
+		histogram.record(-5);
+		
+		assertEquals(1, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+	
+	@Test
+	public void testReset() {
+		Histogram histogram = new Histogram();
+		histogram.record(100);
+		histogram.reset();
+		
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(50));
+	}
+}
@@ -0,0 +1,66 @@
+package com.shootoff.camera.metrics;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+public class TestMetricsRegistry {
+	private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+	
+	private ObjectName getObjectName(String cameraName) throws JMException {
+		return new ObjectName(MetricsRegistry.DOMAIN + ":type=CameraPipeline,camera=" + 
+				ObjectName.quote(cameraName));
+	}
+	
+	@Test
+	public void testMetricsArePublished() throws JMException {
+		PipelineMetrics metrics = MetricsRegistry.register("Test Camera");
+		
+		try {
+			ObjectName name = getObjectName("Test Camera");
+			assertTrue(server.isRegistered(name));
+			assertTrue(MetricsRegistry.get("Test Camera").isPresent());
+			
+			metrics.markCaptured();
+			metrics.markCaptured();
+			metrics.recordSearchTime(2000000);
+			metrics.addDroppedFrameCounter(() -> 3);
+			
+			assertEquals(2L, server.getAttribute(name, "CapturedFrames"));
+			assertEquals(3L, server.getAttribute(name, "DroppedFrames"));
+			
+			CompositeData searchTime = (CompositeData)server.getAttribute(name, "SearchTime");
+			assertEquals(1L, searchTime.get("count"));
+			assertEquals(2000L, (long)searchTime.get("max"));
+		} finally {
+			MetricsRegistry.unregister(metrics);
+		}
+		
+		assertFalse(server.isRegistered(getObjectName("Test Camera")));
+		assertFalse(MetricsRegistry.get("Test Camera").isPresent());
+	}
+	
+	@Test
+	public void testCamerasWithTheSameName() throws JMException {
+		PipelineMetrics first = MetricsRegistry.register("Same Camera");
+		PipelineMetrics second = MetricsRegistry.register("Same Camera");
+		
+		try {
+			assertEquals("Same Camera", first.getCameraName());
+			assertEquals("Same Camera 2", second.getCameraName());
+			assertTrue(server.isRegistered(getObjectName("Same Camera 2")));
+			assertTrue(MetricsRegistry.getAll().contains(first));
+			assertTrue(MetricsRegistry.getAll().contains(second));
+		} finally {
+			MetricsRegistry.unregister(first);
+			MetricsRegistry.unregister(second);
+		}
+	}
+}
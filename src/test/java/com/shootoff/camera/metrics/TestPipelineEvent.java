@@ -0,0 +1,102 @@
+package com.shootoff.camera.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TestPipelineEvent {
+	@After
+	public void tearDown() {
+		PipelineEvents.clearCurrentFrame();
+	}
+	
+	private List<RecordedEvent> record(Runnable events) throws IOException {
+		Path file = Files.createTempFile("pipeline", ".jfr");
+		
+		try (Recording recording = new Recording()) {
+			recording.enable(HitCheckEvent.class);
+			recording.enable(FrameCaptureEvent.class);
+			recording.start();
+			events.run();
+			recording.stop();
+			recording.dump(file);
+			
+			return RecordingFile.readAllEvents(file);
+		} finally {
+			Files.delete(file);
+		}
+	}
+	
+	@Test
+	public void testEventsAreTaggedWithCurrentFrame() throws IOException {
+		List<RecordedEvent> events = record(() -> {
+				PipelineEvents.setCurrentFrame("Test Camera", 42);
+				
+				HitCheckEvent event = new HitCheckEvent();
+				event.begin();
+				event.hit = true;
+				event.regionName = "head";
+				event.commitForCurrentFrame();
+			});
+		
+		assertEquals(1, events.size());
+		assertEquals("com.shootoff.CheckHit", events.get(0).getEventType().getName());
+		assertEquals("Test Camera", events.get(0).getString("cameraName"));
+		assertEquals(42, events.get(0).getLong("frameSequence"));
+		assertTrue(events.get(0).getBoolean("hit"));
+		assertEquals("head", events.get(0).getString("regionName"));
+	}
+	
+	@Test
+	public void testUntaggedThreadHasNoFrame() throws IOException {
+		List<RecordedEvent> events = record(() -> {
+				PipelineEvents.setCurrentFrame("Test Camera", 42);
+				PipelineEvents.clearCurrentFrame();
+				
+				HitCheckEvent event = new HitCheckEvent();
+				event.begin();
+				event.commitForCurrentFrame();
+			});
+		
+		assertEquals(1, events.size());
+		assertNull(events.get(0).getString("cameraName"));
+		assertEquals(-1, events.get(0).getLong("frameSequence"));
+	}
+	
+	@Test
+	public void testExplicitFrame() throws IOException {
+		List<RecordedEvent> events = record(() -> {
+				FrameCaptureEvent event = new FrameCaptureEvent();
+				event.begin();
+				event.commitForFrame("Test Camera", 7);
+			});
+		
+		assertEquals(1, events.size());
+		assertEquals("Test Camera", events.get(0).getString("cameraName"));
+		assertEquals(7, events.get(0).getLong("frameSequence"));
+	}
+	
+	@Test
+	public void testEnabledWhenFlightRecorderIsAvailable() {
+		// The tests build against jdk.jfr, so the API is always here
+		assertTrue(PipelineEvents.isEnabled());
+	}
+	
+	@Test
+	public void testNothingIsRecordedWhenDisabled() throws IOException {
+		FrameCaptureEvent event = new FrameCaptureEvent();
+		event.begin();
+		assertFalse(event.shouldCommit());
+		event.commitForFrame("Test Camera", 7);
+	}
+}
@@ -9,6 +9,10 @@ import javafx.scene.paint.Color;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.shootoff.camera.ShotSearchExecutor;
+import com.shootoff.camera.ShotSearcher;
+import com.shootoff.camera.VideoEncoder;
+
 public class TestConfiguration {
 	Configuration defaultConfig;
 	
@@ -31,6 +35,15 @@ public class TestConfiguration {
 		assertEquals(false, defaultConfig.useMalfunctions());
 		assertTrue(defaultConfig.getMalfunctionsProbability() == 10.0);
 		assertEquals(false, defaultConfig.inDebugMode());
+		assertEquals(2, defaultConfig.getShotSearchQueueDepth());
+		assertEquals(ShotSearchExecutor.DropPolicy.DROP_OLDEST, defaultConfig.getShotSearchDropPolicy());
+		assertEquals(ShotSearcher.SearchEngine.SECTOR, defaultConfig.getShotSearchEngine());
+		assertEquals(30, defaultConfig.getRecordingQueueDepth());
+		assertEquals(VideoEncoder.DropPolicy.DROP, defaultConfig.getRecordingDropPolicy());
+		assertEquals(false, defaultConfig.useShotClips());
+		assertEquals(1000, defaultConfig.getShotClipPreRoll());
+		assertEquals(1000, defaultConfig.getShotClipPostRoll());
+		assertEquals(false, defaultConfig.useHitRasters());
 	}
 
 	@Test(expected=ConfigurationException.class)
@@ -154,6 +167,60 @@ public class TestConfiguration {
 		}
 	}
 	
+	@Test(expected=ConfigurationException.class)
+	public void testShotSearchQueueDepthBelowRange() throws ConfigurationException {
+		defaultConfig.setShotSearchQueueDepth(0);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testShotSearchQueueDepthAboveRange() throws ConfigurationException {
+		defaultConfig.setShotSearchQueueDepth(17);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testShotSearchDropPolicyInvalid() throws ConfigurationException {
+		defaultConfig.setShotSearchDropPolicyName("random");
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testShotSearchEngineInvalid() throws ConfigurationException {
+		defaultConfig.setShotSearchEngineName("neural");
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testRecordingQueueDepthBelowRange() throws ConfigurationException {
+		defaultConfig.setRecordingQueueDepth(0);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testRecordingQueueDepthAboveRange() throws ConfigurationException {
+		defaultConfig.setRecordingQueueDepth(121);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testRecordingDropPolicyInvalid() throws ConfigurationException {
+		defaultConfig.setRecordingDropPolicyName("oldest");
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testShotClipPreRollBelowRange() throws ConfigurationException {
+		defaultConfig.setShotClipPreRoll(-1);
+		defaultConfig.validateConfiguration();		
+	}
+	
+	@Test(expected=ConfigurationException.class)
+	public void testShotClipPostRollAboveRange() throws ConfigurationException {
+		defaultConfig.setShotClipPostRoll(5001);
+		defaultConfig.validateConfiguration();		
+	}
+	
 	@Test(expected=ConfigurationException.class)
 	public void testMalfunctionsProbabilityBelowRange() throws ConfigurationException {
 		defaultConfig.setMalfunctionsProbability((float)0.09);
@@ -196,6 +263,9 @@ public class TestConfiguration {
 		assertEquals(true, config.useMalfunctions());
 		assertTrue(config.getMalfunctionsProbability() == (float)43.15);
 		assertEquals(false, config.inDebugMode());
+		assertEquals(4, config.getShotSearchQueueDepth());
+		assertEquals(ShotSearchExecutor.DropPolicy.DROP_NEWEST, config.getShotSearchDropPolicy());
+		assertEquals(ShotSearcher.SearchEngine.BLOB, config.getShotSearchEngine());
 	}
 	
 	@Test
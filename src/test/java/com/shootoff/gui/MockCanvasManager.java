@@ -6,6 +6,7 @@ import java.util.List;
 import com.shootoff.camera.CamerasSupervisor;
 import com.shootoff.camera.Shot;
 import com.shootoff.camera.ShotProcessor;
+import com.shootoff.camera.metrics.PipelineMetrics;
 import com.shootoff.config.Configuration;
 
 import javafx.collections.FXCollections;
@@ -45,6 +46,11 @@ public class MockCanvasManager extends CanvasManager {
 		shots.add(shot);
 	}
 	
+	@Override
+	public void addShot(Color color, double x, double y, PipelineMetrics metrics, long captured) {
+		addShot(color, x, y);
+	}
+	
 	public List<Shot> getShots() {
 		return shots;
 	}
@@ -0,0 +1,86 @@
+package com.shootoff.gui;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.image.WritableImage;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestDoubleBufferedImage {
+	private DoubleBufferedImage frames;
+	
+	@Before
+	public void setUp() {
+		new JFXPanel(); // Initialize the JFX toolkit
+		frames = new DoubleBufferedImage();
+	}
+	
+	// A 2x1 frame whose first pixel has the given red component
+	private ByteBuffer createFrame(int red) {
+		ByteBuffer pixels = ByteBuffer.allocateDirect(2 * 3);
+		pixels.put(0, (byte)red);
+		return pixels;
+	}
+	
+	private int getRed(WritableImage image) {
+		return (image.getPixelReader().getArgb(0, 0) >> 16) & 0xFF;
+	}
+	
+	@Test
+	public void testNothingToSwapBeforeFirstFrame() {
+		assertFalse(frames.swap().isPresent());
+	}
+	
+	@Test
+	public void testImageIsReused() {
+		frames.write(createFrame(10), 2, 1);
+		WritableImage image = frames.swap().get();
+		assertEquals(10, getRed(image));
+		assertFalse(frames.swap().isPresent());
+		
+		// Writing only touches the image when the frame is swapped in
+		frames.write(createFrame(20), 2, 1);
+		assertEquals(10, getRed(image));
+		assertSame(image, frames.swap().get());
+		assertEquals(20, getRed(image));
+	}
+	
+	@Test
+	public void testWritingDoesNotChangeSwappedFrame() {
+		ByteBuffer pixels = createFrame(10);
+		frames.write(pixels, 2, 1);
+		pixels.put(0, (byte)20);
+		
+		assertEquals(10, getRed(frames.swap().get()));
+	}
+	
+	@Test
+	public void testOnlyNewestPendingFrameIsShown() {
+		frames.write(createFrame(10), 2, 1);
+		frames.write(createFrame(20), 2, 1);
+		frames.write(createFrame(30), 2, 1);
+		
+		Optional<WritableImage> shown = frames.swap();
+		assertEquals(30, getRed(shown.get()));
+		assertFalse(frames.swap().isPresent());
+		
+		assertEquals(3, frames.getWrittenFrames());
+		assertEquals(2, frames.getReplacedFrames());
+	}
+	
+	@Test
+	public void testSizeChangeReplacesImage() {
+		frames.write(createFrame(10), 2, 1);
+		frames.swap();
+		frames.write(ByteBuffer.allocateDirect(3 * 2 * 3), 3, 2);
+		
+		WritableImage image = frames.swap().get();
+		assertEquals(3, (int)image.getWidth());
+		assertEquals(2, (int)image.getHeight());
+	}
+}
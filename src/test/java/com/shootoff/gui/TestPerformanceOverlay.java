@@ -0,0 +1,61 @@
+package com.shootoff.gui;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javafx.embed.swing.JFXPanel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.camera.metrics.PipelineMetrics;
+
+public class TestPerformanceOverlay {
+	private PipelineMetrics metrics;
+	private PerformanceOverlay overlay;
+	
+	@Before
+	public void setUp() {
+		new JFXPanel(); // Initialize the JFX toolkit
+		metrics = new PipelineMetrics("Test Camera");
+		overlay = new PerformanceOverlay(metrics);
+	}
+	
+	@Test
+	public void testStageLoadIsSinceLastSample() {
+		long now = System.nanoTime();
+		overlay.sample(now);
+		
+		// 25 ms of searching in a 100 ms interval keeps the stage 25% busy
+		for (int i = 0; i < 5; i++) metrics.recordSearchTime(TimeUnit.MILLISECONDS.toNanos(5));
+		
+		String description = overlay.sample(now + TimeUnit.MILLISECONDS.toNanos(100));
+		
+		assertTrue(description.startsWith("Test Camera"));
+		assertTrue(description.contains(String.format("%-9s %6.2f ms %5.1f%%", "Search", 5.0, 25.0)));
+		assertTrue(description.contains(String.format("%-9s %6.2f ms %5.1f%%", "Threshold", 0.0, 0.0)));
+		
+		// Nothing new was recorded, so the stage was idle
+		description = overlay.sample(now + TimeUnit.MILLISECONDS.toNanos(200));
+		assertTrue(description.contains(String.format("%-9s %6.2f ms %5.1f%%", "Search", 0.0, 0.0)));
+	}
+	
+	@Test
+	public void testSparklineGrowsThenWraps() {
+		assertTrue(overlay.getSparklinePoints().isEmpty());
+		
+		long now = System.nanoTime();
+		overlay.sample(now);
+		overlay.sample(now + 1);
+		assertEquals(4, overlay.getSparklinePoints().size());
+		
+		int samplesPerMinute = (int)(TimeUnit.MINUTES.toMillis(1) / PerformanceOverlay.UPDATE_INTERVAL);
+		for (int i = 0; i < samplesPerMinute * 2; i++) overlay.sample(now + 2 + i);
+		
+		List<Double> points = overlay.getSparklinePoints();
+		assertEquals(samplesPerMinute * 2, points.size());
+		assertEquals(0.0, points.get(0), 0.0001);
+	}
+}
@@ -0,0 +1,81 @@
+package com.shootoff.gui;
+
+import static org.junit.Assert.*;
+
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.paint.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.camera.Shot;
+
+public class TestShotMarkerLayer {
+	private ShotMarkerLayer layer;
+	
+	@Before
+	public void setUp() {
+		new JFXPanel(); // Initialize the JFX toolkit
+		
+		layer = new ShotMarkerLayer();
+	}
+	
+	@Test
+	public void testAddMarkers() {
+		for (int i = 0; i < 100; i++) {
+			layer.addMarker(new Shot(Color.RED, i, i, i, 2));
+		}
+		
+		assertEquals(100, layer.getMarkerCount());
+		assertTrue(layer.isMouseTransparent());
+	}
+	
+	@Test
+	public void testLayerGrowsToFitMarkers() {
+		layer.addMarker(new Shot(Color.RED, 100, 50, 0, 2));
+		
+		assertEquals(102, layer.getWidth(), 0.001);
+		assertEquals(52, layer.getHeight(), 0.001);
+		
+		layer.addMarker(new Shot(Color.GREEN, 10, 200, 0, 2));
+		
+		assertEquals(102, layer.getWidth(), 0.001);
+		assertEquals(202, layer.getHeight(), 0.001);
+	}
+	
+	@Test
+	public void testSelectMarker() {
+		Shot shot = new Shot(Color.RED, 10, 10, 0, 2);
+		Shot other = new Shot(Color.GREEN, 11, 11, 0, 2);
+		layer.addMarker(shot);
+		layer.addMarker(other);
+		
+		assertTrue(layer.setSelected(shot, true));
+		assertTrue(layer.isSelected(shot));
+		assertFalse(layer.isSelected(other));
+		
+		assertTrue(layer.setSelected(shot, false));
+		assertFalse(layer.isSelected(shot));
+	}
+	
+	@Test
+	public void testSelectUnknownMarker() {
+		Shot shot = new Shot(Color.RED, 10, 10, 0, 2);
+		
+		assertFalse(layer.setSelected(shot, true));
+		assertFalse(layer.isSelected(shot));
+	}
+	
+	@Test
+	public void testClear() {
+		Shot shot = new Shot(Color.RED, 10, 10, 0, 2);
+		layer.addMarker(shot);
+		layer.clear();
+		
+		assertEquals(0, layer.getMarkerCount());
+		assertFalse(layer.setSelected(shot, true));
+		
+		layer.addMarker(new Shot(Color.RED, 10, 10, 0, 2));
+		assertEquals(1, layer.getMarkerCount());
+	}
+}
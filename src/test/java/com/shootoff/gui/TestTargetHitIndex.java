@@ -0,0 +1,114 @@
+package com.shootoff.gui;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.Group;
+import javafx.scene.shape.Rectangle;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTargetHitIndex {
+	private TargetHitIndex index;
+	private Rectangle bottom;
+	private Rectangle top;
+	private Group target;
+	
+	@Before
+	public void setUp() {
+		new JFXPanel(); // Initialize the JFX toolkit
+		
+		index = new TargetHitIndex();
+		bottom = new Rectangle(0, 0, 100, 100);
+		top = new Rectangle(25, 25, 50, 50);
+		target = new Group(bottom, top);
+		index.addTarget(target);
+	}
+	
+	@Test
+	public void testCandidatesAreInHitOrder() {
+		Rectangle other = new Rectangle(40, 40, 10, 10);
+		index.addTarget(new Group(other));
+		
+		assertEquals(Arrays.asList(top, bottom, other), index.getCandidates(45, 45));
+		assertEquals(Arrays.asList(bottom), index.getCandidates(10, 10));
+		assertEquals(Collections.emptyList(), index.getCandidates(200, 200));
+	}
+	
+	@Test
+	public void testMovedRegionsAreReindexed() {
+		assertEquals(Arrays.asList(top, bottom), index.getCandidates(50, 50));
+		
+		// This is how TargetContainer moves a target
+		for (Rectangle region : Arrays.asList(bottom, top)) region.setLayoutX(region.getLayoutX() + 300);
+		
+		assertEquals(Collections.emptyList(), index.getCandidates(50, 50));
+		assertEquals(Arrays.asList(top, bottom), index.getCandidates(350, 50));
+		
+		top.setScaleX(3);
+		assertEquals(Arrays.asList(top, bottom), index.getCandidates(305, 50));
+	}
+	
+	@Test
+	public void testAddedRegionsAreIndexed() {
+		Rectangle added = new Rectangle(500, 500, 10, 10);
+		target.getChildren().add(added);
+		
+		assertEquals(Arrays.asList(added), index.getCandidates(505, 505));
+	}
+	
+	@Test
+	public void testRemovedTargetsAreNotCandidates() {
+		index.removeTarget(target);
+		
+		assertEquals(Collections.emptyList(), index.getCandidates(50, 50));
+		assertEquals(0, index.getOccupiedCellCount());
+		
+		// Changes to a removed target no longer reach the index
+		top.setLayoutX(10);
+		assertEquals(0, index.getOccupiedCellCount());
+	}
+	
+	@Test
+	public void testOversizedRegionsDoNotFillGrid() {
+		int cells = index.getOccupiedCellCount();
+		
+		Rectangle background = new Rectangle(-5000, -5000, 10000, 10000);
+		target.getChildren().add(0, background);
+		
+		assertEquals(cells, index.getOccupiedCellCount());
+		assertEquals(Arrays.asList(top, bottom, background), index.getCandidates(50, 50));
+		assertEquals(Arrays.asList(background), index.getCandidates(-4000, 4000));
+	}
+	
+	@Test
+	public void testRasterIsDiscardedWhenTargetChanges() throws InterruptedException {
+		index = new TargetHitIndex(true);
+		index.addTarget(target);
+		
+		Optional<TargetHitRaster> raster = awaitRaster();
+		assertTrue(raster.isPresent());
+		assertEquals(2, raster.get().getRegion(50, 50));
+		
+		top.setLayoutX(100);
+		assertFalse(index.getRaster(target).isPresent());
+		
+		raster = awaitRaster();
+		assertTrue(raster.isPresent());
+		assertEquals(1, raster.get().getRegion(50, 50));
+		assertEquals(2, raster.get().getRegion(150, 50));
+	}
+	
+	private Optional<TargetHitRaster> awaitRaster() throws InterruptedException {
+		for (int i = 0; i < 20 && !index.getRaster(target).isPresent(); i++) {
+			Thread.sleep(TargetHitIndex.RASTER_DELAY);
+		}
+		
+		return index.getRaster(target);
+	}
+}
@@ -0,0 +1,111 @@
+package com.shootoff.gui;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.Node;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestTargetHitRaster {
+	private Rectangle bottom;
+	private Rectangle top;
+	
+	@Before
+	public void setUp() {
+		new JFXPanel(); // Initialize the JFX toolkit
+		
+		bottom = new Rectangle(0, 0, 100, 100);
+		top = new Rectangle(25.5, 25.5, 50, 50);
+	}
+	
+	@Test
+	public void testTopMostRegionIsStored() {
+		Optional<TargetHitRaster> raster = TargetHitRaster.build(Arrays.<Node> asList(bottom, top), () -> false);
+		assertTrue(raster.isPresent());
+		
+		short region = raster.get().getRegion(50.2, 50.7);
+		assertEquals(2, region);
+		assertSame(top, raster.get().getRegionNode(region));
+		
+		region = raster.get().getRegion(10, 90);
+		assertEquals(1, region);
+		assertSame(bottom, raster.get().getRegionNode(region));
+		
+		assertEquals(TargetHitRaster.NO_REGION, raster.get().getRegion(150, 50));
+		assertEquals(TargetHitRaster.NO_REGION, raster.get().getRegion(-10, 50));
+	}
+	
+	@Test
+	public void testEdgePixelsMustBeChecked() {
+		Optional<TargetHitRaster> raster = TargetHitRaster.build(Arrays.<Node> asList(bottom, top), () -> false);
+		
+		// top's left edge runs through the middle of these pixels
+		assertEquals(TargetHitRaster.CHECK_REGIONS, raster.get().getRegion(25.1, 50));
+		assertEquals(TargetHitRaster.CHECK_REGIONS, raster.get().getRegion(25.9, 50));
+		assertEquals(2, raster.get().getRegion(26.1, 50));
+	}
+	
+	@Test
+	public void testRasterFollowsTransforms() {
+		top.setLayoutX(100);
+		Optional<TargetHitRaster> raster = TargetHitRaster.build(Arrays.<Node> asList(bottom, top), () -> false);
+		
+		assertEquals(1, raster.get().getRegion(50, 50));
+		assertEquals(2, raster.get().getRegion(150, 50));
+	}
+	
+	@Test
+	public void testSubPixelRegionMustBeChecked() {
+		// No pixel corner falls inside tiny
+		Rectangle tiny = new Rectangle(50.3, 50.3, 0.4, 0.4);
+		Optional<TargetHitRaster> raster = TargetHitRaster.build(Arrays.<Node> asList(bottom, tiny), () -> false);
+		
+		assertEquals(TargetHitRaster.CHECK_REGIONS, raster.get().getRegion(50.5, 50.5));
+		assertEquals(1, raster.get().getRegion(52, 50.5));
+		
+		raster = TargetHitRaster.build(Arrays.<Node> asList(tiny), () -> false);
+		assertEquals(TargetHitRaster.CHECK_REGIONS, raster.get().getRegion(50.5, 50.5));
+	}
+	
+	@Test
+	public void testStrokeIsPartOfRegion() {
+		bottom.setStroke(Color.BLACK);
+		bottom.setStrokeWidth(4);
+		Optional<TargetHitRaster> raster = TargetHitRaster.build(Arrays.<Node> asList(bottom), () -> false);
+		
+		assertEquals(1, raster.get().getRegion(-1.5, 50));
+		assertEquals(TargetHitRaster.NO_REGION, raster.get().getRegion(-10, 50));
+	}
+	
+	@Test
+	public void testGeometryIsCopied() {
+		TargetHitRaster.RegionGeometry geometry =
+				TargetHitRaster.RegionGeometry.capture(Arrays.<Node> asList(bottom, top));
+		top.setLayoutX(100);
+		
+		Optional<TargetHitRaster> raster = TargetHitRaster.build(geometry, () -> false);
+		assertEquals(2, raster.get().getRegion(50, 50));
+		assertEquals(TargetHitRaster.NO_REGION, raster.get().getRegion(150, 50));
+	}
+	
+	@Test
+	public void testOversizedTargetsAreNotRasterized() {
+		Rectangle huge = new Rectangle(0, 0, 2000, 2000);
+		
+		assertFalse(TargetHitRaster.build(Arrays.<Node> asList(huge), () -> false).isPresent());
+		assertFalse(TargetHitRaster.build(Collections.<Node> emptyList(), () -> false).isPresent());
+	}
+	
+	@Test
+	public void testCancelledBuild() {
+		assertFalse(TargetHitRaster.build(Arrays.<Node> asList(bottom, top), () -> true).isPresent());
+	}
+}
@@ -0,0 +1,106 @@
+package com.shootoff.gui;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestUIUpdateBatcher {
+	private final List<Runnable> scheduled = new ArrayList<Runnable>();
+	private final List<String> applied = new ArrayList<String>();
+	private UIUpdateBatcher batcher;
+	
+	@Before
+	public void setUp() {
+		batcher = new UIUpdateBatcher((runnable) -> scheduled.add(runnable));
+	}
+	
+	private void runScheduled() {
+		List<Runnable> pulse = new ArrayList<Runnable>(scheduled);
+		scheduled.clear();
+		for (Runnable runnable : pulse) runnable.run();
+	}
+	
+	@Test
+	public void testUpdatesShareOneRunnable() {
+		batcher.runLater(() -> applied.add("marker"));
+		batcher.runLater(() -> applied.add("row"));
+		batcher.runLater(() -> applied.add("column"));
+		
+		assertEquals(1, scheduled.size());
+		assertTrue(applied.isEmpty());
+		
+		runScheduled();
+		
+		assertEquals(Arrays.asList("marker", "row", "column"), applied);
+		assertEquals(1, batcher.getPulses());
+		assertEquals(3, batcher.getSubmittedUpdates());
+		assertEquals(3, batcher.getUpdatesPerPulse().getMax());
+		
+		// Nothing is pending, so nothing is scheduled
+		assertTrue(scheduled.isEmpty());
+	}
+	
+	@Test
+	public void testLatestKeyedUpdateWins() {
+		Object label = new Object();
+		
+		batcher.runLatest(label, () -> applied.add("score: 1"));
+		batcher.runLater(() -> applied.add("marker"));
+		batcher.runLatest(label, () -> applied.add("score: 2"));
+		
+		assertEquals(1, scheduled.size());
+		runScheduled();
+		
+		assertEquals(Arrays.asList("marker", "score: 2"), applied);
+		assertEquals(1, batcher.getSupersededUpdates());
+		assertEquals(3, batcher.getUpdatesPerPulse().getMax());
+	}
+	
+	@Test
+	public void testKeyedUpdatesFromOrderedUpdatesRunInSamePulse() {
+		Object table = new Object();
+		
+		batcher.runLater(() -> {
+			applied.add("row");
+			batcher.runLatest(table, () -> applied.add("scroll"));
+		});
+		
+		runScheduled();
+		
+		assertEquals(Arrays.asList("row", "scroll"), applied);
+		assertTrue(scheduled.isEmpty());
+		assertEquals(2, batcher.getUpdatesPerPulse().getMax());
+	}
+	
+	@Test
+	public void testOrderedUpdatesFromUpdatesRunNextPulse() {
+		batcher.runLater(() -> {
+			applied.add("first");
+			batcher.runLater(() -> applied.add("second"));
+		});
+		
+		runScheduled();
+		assertEquals(Arrays.asList("first"), applied);
+		assertEquals(1, scheduled.size());
+		
+		runScheduled();
+		assertEquals(Arrays.asList("first", "second"), applied);
+		assertEquals(2, batcher.getPulses());
+		assertEquals(1, batcher.getUpdatesPerPulse().getMax());
+	}
+	
+	@Test
+	public void testFailedUpdateDoesNotStopPulse() {
+		batcher.runLater(() -> { throw new IllegalStateException("test"); });
+		batcher.runLater(() -> applied.add("after"));
+		
+		runScheduled();
+		
+		assertEquals(Arrays.asList("after"), applied);
+	}
+}
@@ -0,0 +1,103 @@
+package com.shootoff.headless;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.geometry.Point2D;
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+public class TestClipResult {
+	private DetectedShot detected(double x, double y) {
+		return new DetectedShot("clip.mp4", 0, 0, x, y, Color.RED);
+	}
+	
+	@Test
+	public void testPerfectDetection() {
+		ClipResult result = ClipResult.evaluate("clip.mp4", 
+				Arrays.asList(new Point2D(10, 10), new Point2D(100, 100)),
+				Arrays.asList(detected(10, 10), detected(100, 100)), 10, 50, 1000, new long[0]);
+		
+		assertEquals(2, result.getMatchedShots());
+		assertEquals(1.0, result.getPrecision(), 0.0001);
+		assertEquals(1.0, result.getRecall(), 0.0001);
+		assertEquals(0, result.getMeanError(), 0.0001);
+		assertEquals(50, result.getFramesPerSecond(), 0.0001);
+	}
+	
+	@Test
+	public void testMissedAndFalseShots() {
+		// The first real shot is found 5px away, the second is missed, and
+		// one detection is nowhere near a real shot
+		ClipResult result = ClipResult.evaluate("clip.mp4", 
+				Arrays.asList(new Point2D(10, 10), new Point2D(100, 100)),
+				Arrays.asList(detected(13, 14), detected(300, 300), detected(200, 200)), 10, 0, 0, new long[0]);
+		
+		assertEquals(2, result.getRealShots());
+		assertEquals(3, result.getDetectedShots());
+		assertEquals(1, result.getMatchedShots());
+		assertEquals(1.0 / 3, result.getPrecision(), 0.0001);
+		assertEquals(0.5, result.getRecall(), 0.0001);
+		assertEquals(5, result.getMeanError(), 0.0001);
+		assertEquals(5, result.getMaxError(), 0.0001);
+	}
+	
+	@Test
+	public void testDetectionOnlyMatchesOnce() {
+		ClipResult result = ClipResult.evaluate("clip.mp4", 
+				Arrays.asList(new Point2D(10, 10), new Point2D(12, 10)),
+				Arrays.asList(detected(11, 10)), 10, 0, 0, new long[0]);
+		
+		assertEquals(1, result.getMatchedShots());
+		assertEquals(1.0, result.getPrecision(), 0.0001);
+		assertEquals(0.5, result.getRecall(), 0.0001);
+	}
+	
+	@Test
+	public void testNoShots() {
+		ClipResult result = ClipResult.evaluate("clip.mp4", new ArrayList<Point2D>(), 
+				new ArrayList<DetectedShot>(), 10, 0, 0, new long[0]);
+		
+		assertEquals(1.0, result.getPrecision(), 0.0001);
+		assertEquals(1.0, result.getRecall(), 0.0001);
+		assertEquals(0, result.getLatencyPercentile(99), 0.0001);
+	}
+	
+	@Test
+	public void testLatencyPercentiles() {
+		long[] latencies = new long[100];
+		// 1ms to 100ms, out of order
+		for (int i = 0; i < latencies.length; i++) latencies[i] = (100 - i) * 1000000L;
+		
+		ClipResult result = ClipResult.evaluate("clip.mp4", new ArrayList<Point2D>(), 
+				new ArrayList<DetectedShot>(), 10, 100, 1000, latencies);
+		
+		assertEquals(1, result.getLatencyPercentile(0), 0.0001);
+		assertEquals(50, result.getLatencyPercentile(50), 0.0001);
+		assertEquals(99, result.getLatencyPercentile(99), 0.0001);
+		assertEquals(100, result.getLatencyPercentile(100), 0.0001);
+	}
+	
+	@Test
+	public void testCombine() {
+		ClipResult first = ClipResult.evaluate("a.mp4", Arrays.asList(new Point2D(10, 10)),
+				Arrays.asList(detected(12, 10)), 10, 100, 1000, new long[] { 1000000 });
+		ClipResult second = ClipResult.evaluate("b.mp4", Arrays.asList(new Point2D(10, 10)),
+				Arrays.asList(detected(50, 50)), 10, 100, 1000, new long[] { 3000000 });
+		
+		List<ClipResult> results = Arrays.asList(first, second);
+		ClipResult total = ClipResult.combine(RegressionBaseline.TOTAL, results, 1000);
+		
+		assertEquals(2, total.getRealShots());
+		assertEquals(2, total.getDetectedShots());
+		assertEquals(0.5, total.getPrecision(), 0.0001);
+		assertEquals(0.5, total.getRecall(), 0.0001);
+		assertEquals(2, total.getMeanError(), 0.0001);
+		assertEquals(200, total.getFramesPerSecond(), 0.0001);
+		assertEquals(3, total.getLatencyPercentile(100), 0.0001);
+	}
+}
@@ -0,0 +1,53 @@
+package com.shootoff.headless;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import javafx.geometry.Point2D;
+
+import org.junit.Test;
+
+public class TestGroundTruth {
+	@Test
+	public void testLoadRecordedLog() throws IOException {
+		File videoFile = new File(getClass().getResource("/shotsearcher/no_interference_two_shots.mp4").getFile());
+		
+		assertTrue(GroundTruth.hasLog(videoFile));
+		
+		List<Point2D> shots = GroundTruth.load(GroundTruth.getLogFile(videoFile));
+		
+		assertEquals(2, shots.size());
+		assertEquals(new Point2D(627, 168.5), shots.get(0));
+		assertEquals(new Point2D(430, 130), shots.get(1));
+	}
+	
+	@Test
+	public void testOnlyProcessedShotsCount() throws IOException {
+		String log = "[Thread-1] DEBUG com.shootoff.camera.ShotSearcher - Suspected shot accepted: " + 
+				"Original Coords (1, 2), Center (3.0, 4.0)\n" + 
+				"[Thread-1] DEBUG com.shootoff.gui.CanvasManager - Processing Shot: Found Hit Region For Shot " + 
+				"(3.0, 4.0), Type (RECTANGLE), Tags (points:5)\n" + 
+				"[Thread-2] DEBUG com.shootoff.gui.CanvasManager - Processing Shot: Shot Rejected By " + 
+				"com.shootoff.camera.DeduplicationProcessor\n" + 
+				"[Thread-3] DEBUG com.shootoff.gui.CanvasManager - Processing Shot: Did Not Find Hit For Shot " + 
+				"(10.5, 20.0)\n";
+		
+		List<Point2D> shots = GroundTruth.parse(new BufferedReader(new StringReader(log)));
+		
+		assertEquals(2, shots.size());
+		assertEquals(new Point2D(3, 4), shots.get(0));
+		assertEquals(new Point2D(10.5, 20), shots.get(1));
+	}
+	
+	@Test
+	public void testClipWithoutLog() {
+		File videoFile = new File(getClass().getResource("/shotsearcher/no_interference_two_shots.png").getFile());
+		
+		assertFalse(GroundTruth.hasLog(videoFile));
+	}
+}
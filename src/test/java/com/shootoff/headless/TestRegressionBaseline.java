@@ -0,0 +1,76 @@
+package com.shootoff.headless;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.geometry.Point2D;
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+public class TestRegressionBaseline {
+	private List<ClipResult> results(double detectedX, long elapsedMillis) {
+		ClipResult clip = ClipResult.evaluate("clip.mp4", Arrays.asList(new Point2D(10, 10)),
+				Arrays.asList(new DetectedShot("clip.mp4", 0, 0, detectedX, 10, Color.RED)), 10, 100,
+				elapsedMillis, new long[] { elapsedMillis * 10000 });
+		
+		List<ClipResult> results = new ArrayList<ClipResult>();
+		results.add(clip);
+		results.add(ClipResult.combine(RegressionBaseline.TOTAL, Arrays.asList(clip), elapsedMillis));
+		return results;
+	}
+	
+	@Test
+	public void testSameResultsDoNotRegress() throws IOException {
+		File baselineFile = File.createTempFile("baseline", ".properties");
+		baselineFile.deleteOnExit();
+		
+		RegressionBaseline.fromResults(results(10, 1000)).save(baselineFile);
+		RegressionBaseline baseline = RegressionBaseline.load(baselineFile);
+		
+		assertTrue(baseline.findRegressions(results(10, 1000)).isEmpty());
+		// Slightly slower and slightly less accurate is still within the limits
+		assertTrue(baseline.findRegressions(results(10.4, 1100)).isEmpty());
+	}
+	
+	@Test
+	public void testMissedShotRegresses() {
+		RegressionBaseline baseline = RegressionBaseline.fromResults(results(10, 1000));
+		
+		List<String> regressions = baseline.findRegressions(results(50, 1000));
+		
+		assertEquals(4, regressions.size());
+		assertTrue(regressions.get(0).startsWith("clip.mp4.precision dropped"));
+		assertTrue(regressions.get(1).startsWith("clip.mp4.recall dropped"));
+	}
+	
+	@Test
+	public void testLocalisationErrorRegresses() {
+		RegressionBaseline baseline = RegressionBaseline.fromResults(results(10, 1000));
+		
+		List<String> regressions = baseline.findRegressions(results(12, 1000));
+		assertEquals(2, regressions.size());
+		assertTrue(regressions.get(0).startsWith("clip.mp4.meanError rose"));
+		
+		baseline.setMaxErrorIncrease(3);
+		assertTrue(baseline.findRegressions(results(12, 1000)).isEmpty());
+	}
+	
+	@Test
+	public void testSlowdownRegresses() {
+		RegressionBaseline baseline = RegressionBaseline.fromResults(results(10, 1000));
+		
+		List<String> regressions = baseline.findRegressions(results(10, 2000));
+		assertEquals(2, regressions.size());
+		assertTrue(regressions.get(0).startsWith("total.fps dropped"));
+		assertTrue(regressions.get(1).startsWith("total.p99Latency rose"));
+		
+		baseline.setMaxSlowdown(150);
+		assertTrue(baseline.findRegressions(results(10, 2000)).isEmpty());
+	}
+}
@@ -0,0 +1,53 @@
+package com.shootoff.headless;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Test;
+
+public class TestShotReportWriter {
+	private final List<DetectedShot> shots = Arrays.asList(
+			new DetectedShot("a.mp4", 12, 400, 627, 168.5, Color.RED),
+			new DetectedShot("b, \"c\".mp4", 90, 3000, 430.25, 130, Color.GREEN));
+	
+	@Test
+	public void testCSV() throws IOException {
+		StringWriter out = new StringWriter();
+		ShotReportWriter.write(ShotReportWriter.Format.CSV, shots, out);
+		
+		assertEquals("video,frame,timestamp,x,y,color\n" +
+				"a.mp4,12,400,627.00,168.50,red\n" +
+				"\"b, \"\"c\"\".mp4\",90,3000,430.25,130.00,green\n", out.toString());
+	}
+	
+	@Test
+	public void testJSON() throws IOException {
+		StringWriter out = new StringWriter();
+		ShotReportWriter.write(ShotReportWriter.Format.JSON, shots, out);
+		
+		assertEquals("[\n" +
+				"  {\"video\": \"a.mp4\", \"frame\": 12, \"timestamp\": 400, \"x\": 627.00, \"y\": 168.50, " +
+				"\"color\": \"red\"},\n" +
+				"  {\"video\": \"b, \\\"c\\\".mp4\", \"frame\": 90, \"timestamp\": 3000, \"x\": 430.25, " +
+				"\"y\": 130.00, \"color\": \"green\"}\n" +
+				"]\n", out.toString());
+	}
+	
+	@Test
+	public void testNoShots() throws IOException {
+		StringWriter out = new StringWriter();
+		ShotReportWriter.write(ShotReportWriter.Format.JSON, new ArrayList<DetectedShot>(), out);
+		assertEquals("[]\n", out.toString());
+		
+		out = new StringWriter();
+		ShotReportWriter.write(ShotReportWriter.Format.CSV, new ArrayList<DetectedShot>(), out);
+		assertEquals("video,frame,timestamp,x,y,color\n", out.toString());
+	}
+}
@@ -0,0 +1,45 @@
+package com.shootoff.headless;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.List;
+
+import javafx.scene.paint.Color;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.shootoff.config.Configuration;
+import com.shootoff.config.ConfigurationException;
+
+public class TestVideoShotDetector {
+	private Configuration config;
+	
+	@Before
+	public void setUp() throws ConfigurationException {
+		config = new Configuration(new String[0]);
+	}
+	
+	@Test
+	public void testNoInterferenceTwoShots() {
+		File videoFile = new File(getClass().getResource("/shotsearcher/no_interference_two_shots.mp4").getFile());
+		VideoShotDetector detector = new VideoShotDetector(config, videoFile);
+		List<DetectedShot> shots = detector.call();
+		
+		assertEquals(2, shots.size());
+		assertTrue(detector.getFrameCount() > 0);
+		
+		assertEquals("no_interference_two_shots.mp4", shots.get(0).getVideoName());
+		assertEquals(627, shots.get(0).getX(), 1);
+		assertEquals(168.5, shots.get(0).getY(), 1);
+		assertEquals(Color.RED, shots.get(0).getColor());
+		
+		assertEquals(430, shots.get(1).getX(), 1);
+		assertEquals(130, shots.get(1).getY(), 1);
+		assertEquals(Color.RED, shots.get(1).getColor());
+		
+		assertTrue(shots.get(0).getFrameIndex() < shots.get(1).getFrameIndex());
+		assertTrue(shots.get(0).getTimestamp() < shots.get(1).getTimestamp());
+	}
+}
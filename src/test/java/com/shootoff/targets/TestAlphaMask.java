@@ -0,0 +1,83 @@
+package com.shootoff.targets;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Optional;
+
+import javafx.embed.swing.JFXPanel;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelReader;
+
+import org.junit.Test;
+
+import com.shootoff.targets.animation.GifAnimation;
+
+public class TestAlphaMask {
+	@Test
+	public void testTransparentPixels() {
+		// 67 pixels wide so rows don't line up with words
+		BufferedImage image = new BufferedImage(67, 3, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, 0xFF000000);
+		image.setRGB(66, 1, 0x01FFFFFF);
+		image.setRGB(5, 2, 0x80FF0000);
+		
+		AlphaMask mask = AlphaMask.fromBufferedImage(image);
+		
+		assertEquals(67, mask.getWidth());
+		assertEquals(3, mask.getHeight());
+		assertFalse(mask.isTransparent(0, 0));
+		assertFalse(mask.isTransparent(66, 1));
+		assertFalse(mask.isTransparent(5, 2));
+		assertTrue(mask.isTransparent(1, 0));
+		assertTrue(mask.isTransparent(0, 1));
+		assertTrue(mask.isTransparent(66, 2));
+	}
+	
+	@Test
+	public void testOutsideImageIsNotTransparent() {
+		AlphaMask mask = AlphaMask.fromBufferedImage(new BufferedImage(4, 4, BufferedImage.TYPE_INT_ARGB));
+		
+		assertTrue(mask.isTransparent(3, 3));
+		assertFalse(mask.isTransparent(-1, 0));
+		assertFalse(mask.isTransparent(0, 4));
+		assertFalse(mask.isTransparent(4, 0));
+	}
+	
+	@Test
+	public void testImageRegionMatchesPixelReader() {
+		new JFXPanel(); // Initialize the JFX toolkit
+		
+		ImageRegion region = new ImageRegion(0, 0, new File("targets" + File.separator + "plate.gif"));
+		assertMatchesImage(region, region.getImage());
+	}
+	
+	@Test
+	public void testEveryAnimationFrameHasMask() throws Exception {
+		new JFXPanel(); // Initialize the JFX toolkit
+		
+		File gifFile = new File("targets" + File.separator + "pepper_popper.gif");
+		ImageRegion region = new ImageRegion(0, 0, gifFile);
+		GifAnimation animation = new GifAnimation(region, gifFile);
+		region.setAnimation(animation);
+		
+		assertTrue(animation.getFrameCount() > 1);
+		assertFalse(animation.getAlphaMask(region.getImage()).isPresent());
+		
+		animation.reset();
+		Optional<AlphaMask> firstFrameMask = animation.getAlphaMask(region.getImage());
+		assertTrue(firstFrameMask.isPresent());
+		assertMatchesImage(region, region.getImage());
+	}
+	
+	private void assertMatchesImage(ImageRegion region, Image image) {
+		PixelReader reader = image.getPixelReader();
+		
+		for (int y = 0; y < (int)image.getHeight(); y++) {
+			for (int x = 0; x < (int)image.getWidth(); x++) {
+				assertEquals(reader.getArgb(x, y) >> 24 == 0, region.isTransparentPixel(x, y));
+			}
+		}
+	}
+}